@@ -2,11 +2,15 @@ package eu.spitfire.ssp;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import eu.spitfire.ssp.backend.coap.CoapBackendComponentFactory;
+import eu.spitfire.ssp.backend.coap.cache.CoapCacheResources;
 import eu.spitfire.ssp.backend.files.RdfFilesBackendComponentFactory;
 import eu.spitfire.ssp.backend.generic.BackendComponentFactory;
 import eu.spitfire.ssp.backend.vs.VirtualSensorsBackendComponentFactory;
 import eu.spitfire.ssp.server.handler.SemanticCache;
+import eu.spitfire.ssp.server.internal.history.ObservationHistory;
+import eu.spitfire.ssp.server.internal.history.ObservationHistoryFunction;
 import eu.spitfire.ssp.server.internal.message.WebserviceRegistration;
+import eu.spitfire.ssp.server.internal.utils.NegativeCache;
 import eu.spitfire.ssp.server.handler.HttpRequestDispatcher;
 import eu.spitfire.ssp.server.pipelines.HttpProxyPipelineFactory;
 import eu.spitfire.ssp.server.webservices.*;
@@ -55,6 +59,7 @@ public abstract class Initializer {
     private ExecutionHandler executionHandler;
     private HttpRequestDispatcher httpRequestDispatcher;
     protected SemanticCache semanticCache;
+    private ObservationHistory observationHistory;
 
     private Collection<BackendComponentFactory> componentFactories;
 
@@ -80,6 +85,17 @@ public abstract class Initializer {
         //Create Pipeline Components
         createMqttResourceHandler(config);
         this.semanticCache = createSemanticCache(this.config);
+        this.semanticCache.setStaleWhileRevalidateMillis(
+                TimeUnit.SECONDS.toMillis(this.config.getLong("cache.stale-while-revalidate", 0))
+        );
+        this.semanticCache.setRefreshAhead(
+                this.config.getDouble("cache.refresh-ahead.threshold", 0),
+                TimeUnit.SECONDS.toMillis(this.config.getLong("cache.refresh-ahead.lead", 5)),
+                TimeUnit.SECONDS.toMillis(this.config.getLong("cache.refresh-ahead.jitter", 2)),
+                this.config.getInt("cache.refresh-ahead.concurrency", 4)
+        );
+        createNegativeCache();
+        createObservationHistory();
         createHttpRequestDispatcher();
 
         //create local pipeline factory
@@ -91,6 +107,7 @@ public abstract class Initializer {
 
         //Create backend component factories
         createBackendComponentFactories();
+        registerGraphUpdateListeners();
 
         //Create and register initial Webservices
         registerHomepage();
@@ -98,6 +115,8 @@ public abstract class Initializer {
         registerSparqlEndpoint();
         registerResourceDirectory();
         registerGraphDirectory();
+        registerStatistics();
+        registerSensorHistory();
 
         //this is just an example on what is possible...
         registerTrafficMonitoring();
@@ -140,6 +159,34 @@ public abstract class Initializer {
     }
 
 
+    private void createNegativeCache() {
+        long ttl = this.config.getLong("cache.negative.ttl", 0);
+        if(ttl <= 0){
+            return;
+        }
+
+        int expectedIris = this.config.getInt("cache.negative.expected-iris", 100000);
+        this.semanticCache.setNegativeCache(new NegativeCache(TimeUnit.SECONDS.toMillis(ttl), expectedIris));
+        log.info("Negative cache created (TTL: {} seconds, expected IRIs: {}).", ttl, expectedIris);
+    }
+
+
+    private void createObservationHistory() {
+        if(!this.config.getBoolean("history.enabled", false)){
+            return;
+        }
+
+        int capacity = this.config.getInt("history.capacity", 10000);
+        long retention = this.config.getLong("history.retention", 86400);
+
+        this.observationHistory = new ObservationHistory(capacity, TimeUnit.SECONDS.toMillis(retention));
+        this.semanticCache.setObservationHistory(this.observationHistory);
+        ObservationHistoryFunction.register(this.observationHistory);
+
+        log.info("Observation history created (capacity: {}, retention: {} seconds).", capacity, retention);
+    }
+
+
     private void createExecutionHandler() {
         this.executionHandler = new ExecutionHandler(this.ioExecutor);
         log.debug("Execution Handler created.");
@@ -198,6 +245,20 @@ public abstract class Initializer {
     }
 
 
+    private void registerGraphUpdateListeners() {
+        for(BackendComponentFactory componentFactory : this.componentFactories){
+            if(componentFactory instanceof CoapBackendComponentFactory){
+                CoapCacheResources cacheResources =
+                        ((CoapBackendComponentFactory) componentFactory).getCacheResources();
+                if(cacheResources != null){
+                    this.semanticCache.addGraphUpdateListener(cacheResources);
+                    log.info("Cached graphs are exposed as CoAP resources.");
+                }
+            }
+        }
+    }
+
+
     private void createLocalPipelineFactory() {
         LinkedHashSet<ChannelHandler> handler = new LinkedHashSet<>();
 //        if (!(mqttHandler == null))
@@ -342,7 +403,7 @@ public abstract class Initializer {
         );
 
         HttpWebservice httpWebservice = new SparqlEndpoint(
-                this.ioExecutor, this.internalTasksExecutor, localChannel
+                this.ioExecutor, this.internalTasksExecutor, localChannel, this.config.getInt("sparql.page-size", 1000)
         );
 
         registerHttpWebservice(uri, httpWebservice);
@@ -352,7 +413,7 @@ public abstract class Initializer {
     private void registerGraphDirectory() throws Exception{
         registerHttpWebservice(
                 new URI(null, null, null, -1, "/services/graph-directory", null, null),
-                new GraphDirectory(this.ioExecutor, this.internalTasksExecutor)
+                new GraphDirectory(this.ioExecutor, this.internalTasksExecutor, this.semanticCache.getCatalog())
         );
     }
 
@@ -360,7 +421,25 @@ public abstract class Initializer {
     private void registerResourceDirectory() throws Exception{
         registerHttpWebservice(
                 new URI(null, null, null, -1, "/services/resource-directory", null, null),
-                new ResourceDirectory(this.ioExecutor, this.internalTasksExecutor)
+                new ResourceDirectory(this.ioExecutor, this.internalTasksExecutor, this.semanticCache.getCatalog())
+        );
+    }
+
+    private void registerStatistics() throws Exception{
+        registerHttpWebservice(
+                new URI(null, null, null, -1, "/services/statistics", null, null),
+                new Statistics(this.ioExecutor, this.internalTasksExecutor, this.semanticCache)
+        );
+    }
+
+    private void registerSensorHistory() throws Exception{
+        if(this.observationHistory == null){
+            return;
+        }
+
+        registerHttpWebservice(
+                new URI(null, null, null, -1, "/services/sensor-history", null, null),
+                new SensorHistory(this.ioExecutor, this.internalTasksExecutor, this.observationHistory)
         );
     }
 
@@ -0,0 +1,190 @@
+package eu.spitfire.ssp.backend.coap;
+
+import com.google.common.base.Function;
+import com.google.common.net.InetAddresses;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves the hosts of CoAP URIs without blocking the calling thread. Literal IP addresses (the common case for
+ * resources registered by border routers) are parsed without any lookup. Host names are looked up by a small
+ * dedicated thread pool, i.e. slow or failing DNS servers never block the executors of the SSP. The results are
+ * cached (successful lookups for the positive TTL, failed lookups for the negative TTL) and concurrent lookups of
+ * the same host are coalesced.
+ */
+public class CoapAddressResolver {
+
+    private static Logger LOG = LoggerFactory.getLogger(CoapAddressResolver.class.getName());
+
+    /**
+     * The default CoAP port
+     */
+    public static final int DEFAULT_PORT = 5683;
+
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final ExecutorService lookupExecutor;
+
+    private final Map<String, Entry> entries;
+    private final Map<String, SettableFuture<InetAddress>> lookups;
+
+    private final AtomicLong cacheHits;
+    private final AtomicLong negativeCacheHits;
+    private final AtomicLong performedLookups;
+
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.backend.coap.CoapAddressResolver}
+     *
+     * @param ttlMillis the number of milliseconds to cache successful lookups
+     * @param negativeTtlMillis the number of milliseconds to cache failed lookups
+     * @param lookupThreads the number of threads to perform lookups
+     */
+    public CoapAddressResolver(long ttlMillis, long negativeTtlMillis, int lookupThreads) {
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.lookupExecutor = Executors.newFixedThreadPool(Math.max(1, lookupThreads),
+                new ThreadFactoryBuilder().setNameFormat("SSP-CoAP-Resolver-%d").setDaemon(true).build()
+        );
+
+        this.entries = new ConcurrentHashMap<>();
+        this.lookups = new ConcurrentHashMap<>();
+
+        this.cacheHits = new AtomicLong();
+        this.negativeCacheHits = new AtomicLong();
+        this.performedLookups = new AtomicLong();
+    }
+
+
+    /**
+     * Resolves the host of the given CoAP URI.
+     *
+     * @param uri the CoAP URI to resolve the host of
+     *
+     * @return a {@link com.google.common.util.concurrent.ListenableFuture} to be set with the socket address of the
+     * given URI (default port if the URI contains no port) or with an {@link java.net.UnknownHostException}
+     */
+    public ListenableFuture<InetSocketAddress> resolve(URI uri) {
+        final int port = uri.getPort() == -1 ? DEFAULT_PORT : uri.getPort();
+
+        return Futures.transform(resolve(uri.getHost()), new Function<InetAddress, InetSocketAddress>() {
+            @Override
+            public InetSocketAddress apply(InetAddress address) {
+                return new InetSocketAddress(address, port);
+            }
+        });
+    }
+
+
+    /**
+     * Resolves the given host.
+     *
+     * @param host the host name or literal IP address (IPv6 addresses may be enclosed in brackets)
+     *
+     * @return a {@link com.google.common.util.concurrent.ListenableFuture} to be set with the address of the given
+     * host or with an {@link java.net.UnknownHostException}
+     */
+    public ListenableFuture<InetAddress> resolve(final String host) {
+        if(host == null) {
+            return Futures.immediateFailedFuture(new UnknownHostException("No host given!"));
+        }
+
+        // literal addresses
+        String literal = host.startsWith("[") && host.endsWith("]") ? host.substring(1, host.length() - 1) : host;
+        if(InetAddresses.isInetAddress(literal)) {
+            return Futures.immediateFuture(InetAddresses.forString(literal));
+        }
+
+        // cached lookups
+        Entry entry = entries.get(host);
+        if(entry != null) {
+            if(entry.expiry > System.currentTimeMillis()) {
+                if(entry.address != null) {
+                    cacheHits.incrementAndGet();
+                    return Futures.immediateFuture(entry.address);
+                }
+                negativeCacheHits.incrementAndGet();
+                return Futures.immediateFailedFuture(new UnknownHostException(host + " (cached)"));
+            }
+            entries.remove(host, entry);
+        }
+
+        // lookups in progress
+        final SettableFuture<InetAddress> lookupFuture = SettableFuture.create();
+        SettableFuture<InetAddress> runningLookup = lookups.putIfAbsent(host, lookupFuture);
+        if(runningLookup != null) {
+            return runningLookup;
+        }
+
+        lookupExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                performedLookups.incrementAndGet();
+                try {
+                    InetAddress address = InetAddress.getByName(host);
+                    entries.put(host, new Entry(address, System.currentTimeMillis() + ttlMillis));
+                    lookupFuture.set(address);
+                } catch (Exception ex) {
+                    LOG.warn("Could not resolve host \"{}\"!", host);
+                    entries.put(host, new Entry(null, System.currentTimeMillis() + negativeTtlMillis));
+                    lookupFuture.setException(ex);
+                } finally {
+                    lookups.remove(host);
+                }
+            }
+        });
+
+        return lookupFuture;
+    }
+
+
+    /**
+     * Returns the number of answers from the positive and negative cache and the number of performed lookups.
+     *
+     * @return the statistics of this resolver
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("hits", cacheHits.get());
+        statistics.put("hits.negative", negativeCacheHits.get());
+        statistics.put("lookups", performedLookups.get());
+        statistics.put("lookups.in-progress", lookups.size());
+        statistics.put("entries", entries.size());
+        return statistics;
+    }
+
+
+    /**
+     * Stops the lookup threads.
+     */
+    public void shutdown() {
+        lookupExecutor.shutdownNow();
+    }
+
+
+    private static class Entry {
+
+        private final InetAddress address;
+        private final long expiry;
+
+        private Entry(InetAddress address, long expiry) {
+            this.address = address;
+            this.expiry = expiry;
+        }
+    }
+}
@@ -2,7 +2,9 @@ package eu.spitfire.ssp.backend.coap;
 
 
 import de.uzl.itm.ncoap.application.endpoint.CoapEndpoint;
+import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
 import de.uzl.itm.ncoap.communication.dispatching.server.NotFoundHandler;
+import eu.spitfire.ssp.backend.coap.cache.CoapCacheResources;
 import eu.spitfire.ssp.backend.coap.registry.CoapWebresourceRegistry;
 import eu.spitfire.ssp.backend.generic.BackendComponentFactory;
 import org.apache.commons.configuration.Configuration;
@@ -30,6 +32,11 @@ public class CoapBackendComponentFactory extends BackendComponentFactory<URI, Co
     private CoapWebresourceRegistry registry;
     private CoapWebresourceAccessor accessor;
     private CoapWebresourceObserver observer;
+    private BlockSize blockSize;
+    private boolean passthrough;
+    private CoapAddressResolver addressResolver;
+    private CoapHostHealth hostHealth;
+    private CoapCacheResources cacheResources;
 
 
     public CoapBackendComponentFactory(Configuration config, LocalServerChannel localChannel,
@@ -38,17 +45,39 @@ public class CoapBackendComponentFactory extends BackendComponentFactory<URI, Co
 
         super("coap", config, localChannel, internalTasksExecutor, ioExecutor);
 
+        int blockSize = config.getInt("coap.block-size", 0);
+        this.blockSize = blockSize > 0 ? BlockSize.valueOf("SIZE_" + blockSize) : null;
+        this.passthrough = config.getBoolean("coap.passthrough", true);
+
+        this.addressResolver = new CoapAddressResolver(
+                config.getLong("coap.resolver.ttl", 300) * 1000,
+                config.getLong("coap.resolver.negative-ttl", 30) * 1000,
+                config.getInt("coap.resolver.threads", 2)
+        );
+
+        this.hostHealth = new CoapHostHealth(
+                config.getInt("coap.circuit-breaker.failures", 3),
+                config.getLong("coap.circuit-breaker.probe-interval", 10) * 1000,
+                config.getLong("coap.circuit-breaker.max-probe-interval", 300) * 1000
+        );
+
         InetSocketAddress socketAddress = new InetSocketAddress(5683);
         this.coapApplication = new CoapEndpoint("SSP CoAP", NotFoundHandler.getDefault(), socketAddress);
-        this.registry = new CoapWebresourceRegistry(this);
+        this.registry = new CoapWebresourceRegistry(this, config);
         this.accessor = new CoapWebresourceAccessor(this);
         this.observer = new CoapWebresourceObserver(this);
+
+        if(config.getBoolean("coap.cache-resources.enabled", false)){
+            this.cacheResources = new CoapCacheResources(this, config);
+        }
     }
 
 
     @Override
     public void initialize() throws Exception {
-        //Nothing to do...
+        if(this.cacheResources != null){
+            this.cacheResources.start();
+        }
     }
 
     /**
@@ -63,6 +92,62 @@ public class CoapBackendComponentFactory extends BackendComponentFactory<URI, Co
     }
 
 
+    /**
+     * Returns the preferred size of the blocks of large representations (Block2, RFC 7959) to be requested from
+     * external CoAP servers or <code>null</code> if the servers are supposed to choose the size.
+     *
+     * @return the preferred size of the blocks of large representations or <code>null</code>
+     */
+    public BlockSize getBlockSize(){
+        return this.blockSize;
+    }
+
+
+    /**
+     * Returns <code>true</code> if the payloads of CoAP responses are to be passed through to HTTP clients accepting
+     * the same content format (and parsed only when needed, e.g. to be put into the cache) or <code>false</code> if
+     * the payloads are to be parsed on receipt.
+     *
+     * @return <code>true</code> if the payloads of CoAP responses are to be passed through
+     */
+    public boolean isPassthrough(){
+        return this.passthrough;
+    }
+
+
+    /**
+     * Returns the {@link eu.spitfire.ssp.backend.coap.CoapAddressResolver} to resolve the hosts of CoAP URIs
+     * without blocking.
+     *
+     * @return the {@link eu.spitfire.ssp.backend.coap.CoapAddressResolver} to resolve the hosts of CoAP URIs
+     */
+    public CoapAddressResolver getAddressResolver(){
+        return this.addressResolver;
+    }
+
+
+    /**
+     * Returns the {@link eu.spitfire.ssp.backend.coap.CoapHostHealth} to track the health of the hosts of CoAP
+     * Web resources (and to reject requests to unavailable hosts).
+     *
+     * @return the {@link eu.spitfire.ssp.backend.coap.CoapHostHealth} to track the health of the hosts
+     */
+    public CoapHostHealth getHostHealth(){
+        return this.hostHealth;
+    }
+
+
+    /**
+     * Returns the {@link eu.spitfire.ssp.backend.coap.cache.CoapCacheResources} to expose the cached graphs and the
+     * results of SPARQL queries as observable CoAP resources or <code>null</code> if disabled.
+     *
+     * @return the {@link eu.spitfire.ssp.backend.coap.cache.CoapCacheResources} or <code>null</code>
+     */
+    public CoapCacheResources getCacheResources(){
+        return this.cacheResources;
+    }
+
+
     @Override
     public CoapWebresourceObserver getObserver(CoapWebresource externalWebservice) {
         return this.observer;
@@ -86,5 +171,6 @@ public class CoapBackendComponentFactory extends BackendComponentFactory<URI, Co
     @Override
     public void shutdown() {
         this.coapApplication.shutdown();
+        this.addressResolver.shutdown();
     }
 }
@@ -0,0 +1,239 @@
+package eu.spitfire.ssp.backend.coap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps track of the health of the hosts of CoAP Web resources, i.e. the smoothed round trip time, the (smoothed)
+ * rate of timeouts and the time of the last message received from each host.
+ *
+ * After a number of consecutive timeouts the circuit of a host is opened, i.e. requests to that host are rejected
+ * (to let the callers fail fast instead of waiting for the retransmissions to time out). While the circuit is open,
+ * one request is let through per probe interval. The interval doubles (up to a maximum) with every timed out probe.
+ * Any message received from the host closes the circuit.
+ */
+public class CoapHostHealth {
+
+    private static Logger LOG = LoggerFactory.getLogger(CoapHostHealth.class.getName());
+
+    private static final double RTT_SMOOTHING = 0.125;
+    private static final double TIMEOUT_RATE_SMOOTHING = 0.2;
+
+    private final int failureThreshold;
+    private final long probeIntervalMillis;
+    private final long maxProbeIntervalMillis;
+
+    private final ConcurrentHashMap<String, Host> hosts;
+
+    private final AtomicLong rejectedRequests;
+    private final AtomicLong probes;
+
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.backend.coap.CoapHostHealth}
+     *
+     * @param failureThreshold the number of consecutive timeouts to open the circuit of a host
+     * @param probeIntervalMillis the initial number of milliseconds between two probes of a host with open circuit
+     * @param maxProbeIntervalMillis the maximum number of milliseconds between two probes
+     */
+    public CoapHostHealth(int failureThreshold, long probeIntervalMillis, long maxProbeIntervalMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.probeIntervalMillis = probeIntervalMillis;
+        this.maxProbeIntervalMillis = Math.max(probeIntervalMillis, maxProbeIntervalMillis);
+
+        this.hosts = new ConcurrentHashMap<>();
+        this.rejectedRequests = new AtomicLong();
+        this.probes = new AtomicLong();
+    }
+
+
+    /**
+     * Returns whether a request may be sent to the given host, i.e. <code>true</code> if the circuit of the host is
+     * closed or if it is time to probe the host and <code>false</code> otherwise.
+     *
+     * @param host the host to send a request to
+     *
+     * @return <code>true</code> if a request may be sent to the given host and <code>false</code> otherwise
+     */
+    public boolean allowRequest(String host) {
+        Host health = hosts.get(host);
+        if(health == null) {
+            return true;
+        }
+
+        synchronized (health) {
+            if(!health.open) {
+                return true;
+            }
+
+            long now = System.currentTimeMillis();
+            if(health.nextProbeTime <= now) {
+                // let one request through (the next one not before the end of the current interval)
+                health.nextProbeTime = now + health.probeIntervalMillis;
+                probes.incrementAndGet();
+                LOG.info("Probe host \"{}\" (circuit open).", host);
+                return true;
+            }
+        }
+
+        rejectedRequests.incrementAndGet();
+        return false;
+    }
+
+
+    /**
+     * Returns the earliest time (in milliseconds) to send a request to the given host, i.e. <code>0</code> if the
+     * circuit of the host is closed or the time of the next probe otherwise.
+     *
+     * @param host the host to send a request to
+     *
+     * @return the earliest time (in milliseconds) to send a request to the given host
+     */
+    public long getAvailableTime(String host) {
+        Host health = hosts.get(host);
+        if(health == null) {
+            return 0;
+        }
+
+        synchronized (health) {
+            return health.open ? health.nextProbeTime : 0;
+        }
+    }
+
+
+    /**
+     * Returns the smoothed round trip time of the given host or <code>0</code> if there was no response yet.
+     *
+     * @param host the host to get the smoothed round trip time of
+     *
+     * @return the smoothed round trip time (in milliseconds) of the given host
+     */
+    public double getSrttMillis(String host) {
+        Host health = hosts.get(host);
+        if(health == null) {
+            return 0;
+        }
+
+        synchronized (health) {
+            return health.srttMillis;
+        }
+    }
+
+
+    /**
+     * Records a message (response or update notification) received from the given host. This closes the circuit
+     * of the host.
+     *
+     * @param host the host the message was received from
+     * @param rttMillis the round trip time of the request or a negative value if unknown (e.g. for notifications)
+     */
+    public void recordResponse(String host, long rttMillis) {
+        Host health = getHost(host);
+        synchronized (health) {
+            health.lastSeen = System.currentTimeMillis();
+            health.timeoutRate = (1 - TIMEOUT_RATE_SMOOTHING) * health.timeoutRate;
+            health.failures = 0;
+            if(rttMillis >= 0) {
+                health.srttMillis = health.srttMillis == 0 ?
+                        rttMillis : (1 - RTT_SMOOTHING) * health.srttMillis + RTT_SMOOTHING * rttMillis;
+            }
+            if(health.open) {
+                LOG.info("Host \"{}\" is available again (circuit closed).", host);
+                health.open = false;
+                health.probeIntervalMillis = probeIntervalMillis;
+            }
+        }
+    }
+
+
+    /**
+     * Records a timed out request to the given host. This opens the circuit of the host after the configured number
+     * of consecutive timeouts or doubles the probe interval if the circuit is already open.
+     *
+     * @param host the host the request was sent to
+     */
+    public void recordTimeout(String host) {
+        Host health = getHost(host);
+        synchronized (health) {
+            health.timeoutRate = (1 - TIMEOUT_RATE_SMOOTHING) * health.timeoutRate + TIMEOUT_RATE_SMOOTHING;
+            health.failures++;
+
+            if(health.open) {
+                health.probeIntervalMillis = Math.min(maxProbeIntervalMillis, health.probeIntervalMillis * 2);
+                health.nextProbeTime = System.currentTimeMillis() + health.probeIntervalMillis;
+            }
+            else if(health.failures >= failureThreshold) {
+                LOG.warn("Host \"{}\" is unavailable after {} timeouts (circuit opened).", host, health.failures);
+                health.open = true;
+                health.probeIntervalMillis = probeIntervalMillis;
+                health.nextProbeTime = System.currentTimeMillis() + health.probeIntervalMillis;
+            }
+        }
+    }
+
+
+    private Host getHost(String host) {
+        Host health = hosts.get(host);
+        if(health == null) {
+            health = new Host();
+            Host previous = hosts.putIfAbsent(host, health);
+            if(previous != null) {
+                health = previous;
+            }
+        }
+        return health;
+    }
+
+
+    /**
+     * Returns the number of rejected requests and probes and the health of every known host, i.e. the state of its
+     * circuit, the smoothed round trip time, the timeout rate and the time of the last received message.
+     *
+     * @return the statistics of this health tracker
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("requests.rejected", rejectedRequests.get());
+        statistics.put("probes", probes.get());
+
+        int open = 0;
+        Map<String, Object> hostStatistics = new TreeMap<>();
+        for(Map.Entry<String, Host> entry : hosts.entrySet()) {
+            Host health = entry.getValue();
+            Map<String, Object> host = new LinkedHashMap<>();
+            synchronized (health) {
+                host.put("circuit", health.open ? "open" : "closed");
+                host.put("srtt", Math.round(health.srttMillis));
+                host.put("timeout-rate", Math.round(health.timeoutRate * 100) / 100.0);
+                host.put("last-seen", health.lastSeen);
+                if(health.open) {
+                    host.put("next-probe", health.nextProbeTime);
+                    open++;
+                }
+            }
+            hostStatistics.put(entry.getKey(), host);
+        }
+        statistics.put("hosts.open", open);
+        statistics.put("hosts", hostStatistics);
+
+        return statistics;
+    }
+
+
+    private static class Host {
+
+        private double srttMillis;
+        private double timeoutRate;
+        private long lastSeen;
+        private int failures;
+        private boolean open;
+        private long probeIntervalMillis;
+        private long nextProbeTime;
+    }
+}
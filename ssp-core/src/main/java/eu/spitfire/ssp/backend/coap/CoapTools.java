@@ -1,15 +1,16 @@
 package eu.spitfire.ssp.backend.coap;
 
 import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
 import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.options.ContentFormat;
 import eu.spitfire.ssp.server.internal.utils.Language;
+import eu.spitfire.ssp.server.internal.utils.RdfPayloadParser;
 import com.hp.hpl.jena.rdf.model.Model;
-import com.hp.hpl.jena.rdf.model.ModelFactory;
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-
 /**
  * Provides static tools to process CoAP message
  *
@@ -22,36 +23,62 @@ public abstract class CoapTools {
     /**
      * Reads the content of the given {@link de.uzl.itm.ncoap.message.CoapResponse} and deserializes that content
      * into a {@link com.hp.hpl.jena.rdf.model.Model} according to the
-     * {@link de.uzl.itm.ncoap.message.options.OptionValue.Name#CONTENT_FORMAT}.
+     * {@link de.uzl.itm.ncoap.message.options.OptionValue.Name#CONTENT_FORMAT}. The content is parsed straight from
+     * the {@link org.jboss.netty.buffer.ChannelBuffer} of the response, see
+     * {@link eu.spitfire.ssp.server.internal.utils.RdfPayloadParser}.
      *
      * @param coapResponse the {@link de.uzl.itm.ncoap.message.CoapResponse} to read the content from.
      *
      * @return a {@link com.hp.hpl.jena.rdf.model.Model} that contains the triples from the given
      * {@link de.uzl.itm.ncoap.message.CoapResponse}s content
+     *
+     * @throws java.lang.IllegalArgumentException if the content format of the given response is not supported
+     * @throws org.apache.jena.riot.RiotException if the content of the given response is malformed
      */
     public static Model getModelFromCoapResponse(CoapResponse coapResponse){
+        Language language = getLanguage(coapResponse);
 
-        try{
-            Model resourceStatus = ModelFactory.createDefaultModel();
-
-            //read payload from CoAP response
-            byte[] coapPayload = new byte[coapResponse.getContent().readableBytes()];
-            coapResponse.getContent().getBytes(0, coapPayload);
-
-            Language language = Language.getByCoapContentFormat(coapResponse.getContentFormat());
+        ChannelBuffer payload = coapResponse.getContent();
+        if(log.isDebugEnabled()){
+            log.debug("RDF Payload:\n{}", payload.toString(CoapMessage.CHARSET));
+        }
 
-            if(language == null)
-                return null;
+        return RdfPayloadParser.parse(payload, language);
+    }
 
-            log.debug("RDF Payload:\n{}", new String(coapPayload, CoapMessage.CHARSET));
 
-            resourceStatus.read(new ByteArrayInputStream(coapPayload), null, language.getRdfFormat().getLang().getName());
-            return resourceStatus;
+    /**
+     * Returns the {@link eu.spitfire.ssp.server.internal.utils.Language} of the content of the given
+     * {@link de.uzl.itm.ncoap.message.CoapResponse} according to the
+     * {@link de.uzl.itm.ncoap.message.options.OptionValue.Name#CONTENT_FORMAT}.
+     *
+     * @param coapResponse the {@link de.uzl.itm.ncoap.message.CoapResponse} to get the language of
+     *
+     * @return the {@link eu.spitfire.ssp.server.internal.utils.Language} of the content of the given response
+     *
+     * @throws java.lang.IllegalArgumentException if the content format of the given response is not supported
+     */
+    public static Language getLanguage(CoapResponse coapResponse){
+        Language language = Language.getByCoapContentFormat(coapResponse.getContentFormat());
+        if(language == null){
+            throw new IllegalArgumentException("Unsupported content format: " + coapResponse.getContentFormat());
         }
+        return language;
+    }
 
-        catch(Exception ex){
-            log.error("Could not read content from CoAP response!", ex);
-            return null;
-        }
+
+    /**
+     * Sets the {@link de.uzl.itm.ncoap.message.options.Option#ACCEPT} options of the given
+     * {@link de.uzl.itm.ncoap.message.CoapRequest} to all supported content formats. The compact binary format
+     * ({@link eu.spitfire.ssp.server.internal.utils.Language#RDF_BINARY}) comes first, i.e. is preferred by servers
+     * supporting it.
+     *
+     * @param coapRequest the {@link de.uzl.itm.ncoap.message.CoapRequest} to set the accepted content formats of
+     */
+    public static void setAccept(CoapRequest coapRequest){
+        coapRequest.setAccept(Language.APP_RDF_BINARY);
+        coapRequest.setAccept(ContentFormat.APP_RDF_XML);
+        coapRequest.setAccept(ContentFormat.APP_N3);
+        coapRequest.setAccept(ContentFormat.APP_TURTLE);
     }
 }
@@ -1,36 +1,76 @@
 package eu.spitfire.ssp.backend.coap;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import de.uzl.itm.ncoap.application.client.ClientCallback;
 import de.uzl.itm.ncoap.application.endpoint.CoapEndpoint;
+import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
 import de.uzl.itm.ncoap.message.CoapRequest;
 import de.uzl.itm.ncoap.message.CoapResponse;
 import de.uzl.itm.ncoap.message.MessageCode;
 import de.uzl.itm.ncoap.message.MessageType;
-import de.uzl.itm.ncoap.message.options.ContentFormat;
 import eu.spitfire.ssp.backend.generic.DataOriginAccessor;
 
+import eu.spitfire.ssp.server.internal.exception.DataOriginUnavailableException;
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
 import eu.spitfire.ssp.server.internal.exception.OperationTimeoutException;
+import eu.spitfire.ssp.server.internal.utils.Language;
 import com.hp.hpl.jena.rdf.model.Model;
+import org.jboss.netty.buffer.ChannelBuffers;
 
-import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A {@link CoapWebresourceAccessor} is the component to access external
  * {@link CoapWebresource}s, i.e. send GET, POST, PUT, or DELETE
  * message. Currently, only GET is supported.
  *
+ * Concurrent GET requests for the same resource are coalesced, i.e. only one request is sent to the device and all
+ * callers receive the same status. Received statuses are kept until their expiry (i.e. the CoAP max-age), so a
+ * device receives at most one GET per max-age regardless of the number of HTTP requests. Refreshes of the cache
+ * (e.g. refresh-ahead) bypass the received statuses (see {@link #getStatus(CoapWebresource, boolean)}).
+ *
+ * Requests to hosts considered unavailable by the {@link eu.spitfire.ssp.backend.coap.CoapHostHealth} are not sent
+ * but fail fast with a {@link eu.spitfire.ssp.server.internal.exception.DataOriginUnavailableException} containing
+ * the last known (possibly expired) status of the resource.
+ *
+ * In passthrough mode (default), the payloads of responses are not parsed on receipt. The statuses keep the payload
+ * to be sent as it is to HTTP clients accepting the content format of the resource. The payload is parsed when
+ * the model is needed the first time, e.g. when the status is put into the cache.
+ *
  * @author Oliver Kleine
  */
 public class CoapWebresourceAccessor extends DataOriginAccessor<URI, CoapWebresource> {
 
+    /**
+     * The maximum number of statuses to be kept (expired statuses are kept as last known statuses until the limit
+     * is reached)
+     */
+    public static final int MAX_CACHED_STATUSES = 10000;
+
     private CoapEndpoint coapApplication;
+    private BlockSize blockSize;
+    private boolean passthrough;
+    private CoapAddressResolver addressResolver;
+    private CoapHostHealth hostHealth;
+
+    private final Map<URI, SettableFuture<ExpiringNamedGraph>> inFlight;
+    private final Map<URI, CachedStatus> statuses;
+
+    private final AtomicLong sentRequests;
+    private final AtomicLong coalescedRequests;
+    private final AtomicLong cachedResponses;
+    private final AtomicLong rejectedRequests;
 
     /**
      * Creates a new instance of {@link CoapWebresourceAccessor}
@@ -41,32 +81,144 @@ public class CoapWebresourceAccessor extends DataOriginAccessor<URI, CoapWebreso
     public CoapWebresourceAccessor(CoapBackendComponentFactory componentFactory) {
         super(componentFactory);
         this.coapApplication = componentFactory.getCoapApplication();
+        this.blockSize = componentFactory.getBlockSize();
+        this.passthrough = componentFactory.isPassthrough();
+        this.addressResolver = componentFactory.getAddressResolver();
+        this.hostHealth = componentFactory.getHostHealth();
+
+        this.inFlight = new ConcurrentHashMap<>();
+        this.statuses = new ConcurrentHashMap<>();
+        this.sentRequests = new AtomicLong();
+        this.coalescedRequests = new AtomicLong();
+        this.cachedResponses = new AtomicLong();
+        this.rejectedRequests = new AtomicLong();
     }
 
 
     @Override
     public ListenableFuture<ExpiringNamedGraph> getStatus(CoapWebresource coapWebresource){
-        final SettableFuture<ExpiringNamedGraph> resultFuture = SettableFuture.create();
+        return getStatus(coapWebresource, false);
+    }
+
+
+    @Override
+    public ListenableFuture<ExpiringNamedGraph> getStatus(CoapWebresource coapWebresource, boolean bypassCache){
+        final URI webserviceUri = coapWebresource.getIdentifier();
+
+        // serve from response cache (if not expired and not bypassed)
+        CachedStatus cachedStatus = statuses.get(webserviceUri);
+        if(!bypassCache && cachedStatus != null && !cachedStatus.isExpired()){
+            cachedResponses.incrementAndGet();
+            return Futures.immediateFuture(cachedStatus.status);
+        }
+
+        // join a request in flight (if any)
+        SettableFuture<ExpiringNamedGraph> runningRequest = inFlight.get(webserviceUri);
+        if(runningRequest != null){
+            coalescedRequests.incrementAndGet();
+            return runningRequest;
+        }
+
+        // fail fast if the host is unavailable
+        if(!hostHealth.allowRequest(webserviceUri.getHost())){
+            rejectedRequests.incrementAndGet();
+            return Futures.immediateFailedFuture(new DataOriginUnavailableException(
+                    String.format("Host of \"%s\" is unavailable (request not sent).", webserviceUri),
+                    cachedStatus == null ? null : cachedStatus.status,
+                    cachedStatus == null ? 0 : (System.currentTimeMillis() - cachedStatus.retrieved) / 1000
+            ));
+        }
+
+        SettableFuture<ExpiringNamedGraph> resultFuture = SettableFuture.create();
+        runningRequest = inFlight.putIfAbsent(webserviceUri, resultFuture);
+        if(runningRequest != null){
+            coalescedRequests.incrementAndGet();
+            return runningRequest;
+        }
+
+        Futures.addCallback(resultFuture, new FutureCallback<ExpiringNamedGraph>() {
+            @Override
+            public void onSuccess(ExpiringNamedGraph status) {
+                putStatus(webserviceUri, status);
+                inFlight.remove(webserviceUri);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                inFlight.remove(webserviceUri);
+            }
+        });
+
+        sentRequests.incrementAndGet();
+        requestStatus(webserviceUri, resultFuture);
+        return resultFuture;
+    }
+
 
+    private void putStatus(URI webserviceUri, ExpiringNamedGraph status){
+        if(status.getExpiry() == null){
+            return;
+        }
+
+        if(statuses.size() >= MAX_CACHED_STATUSES && !statuses.containsKey(webserviceUri)){
+            Iterator<CachedStatus> iterator = statuses.values().iterator();
+            while(iterator.hasNext()){
+                if(iterator.next().isExpired()){
+                    iterator.remove();
+                }
+            }
+            if(statuses.size() >= MAX_CACHED_STATUSES){
+                return;
+            }
+        }
+
+        statuses.put(webserviceUri, new CachedStatus(status));
+    }
+
+
+    /**
+     * Returns the number of GET requests sent to devices and the number of requests suppressed, i.e. coalesced with
+     * a request in flight, answered with a cached (not yet expired) status or rejected as the host is unavailable.
+     *
+     * @return the statistics of this accessor
+     */
+    public Map<String, Object> getStatistics(){
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("requests.sent", sentRequests.get());
+        statistics.put("requests.suppressed.in-flight", coalescedRequests.get());
+        statistics.put("requests.suppressed.max-age", cachedResponses.get());
+        statistics.put("requests.suppressed.unavailable", rejectedRequests.get());
+        statistics.put("requests.in-flight", inFlight.size());
+        statistics.put("statuses.cached", statuses.size());
+        return statistics;
+    }
+
+
+    private void requestStatus(final URI webserviceUri, final SettableFuture<ExpiringNamedGraph> resultFuture){
         try{
-            URI webserviceUri = coapWebresource.getIdentifier();
-            CoapRequest coapRequest = new CoapRequest(MessageType.CON, MessageCode.GET, webserviceUri);
-            coapRequest.setAccept(ContentFormat.APP_RDF_XML);
-            coapRequest.setAccept(ContentFormat.APP_N3);
-            coapRequest.setAccept(ContentFormat.APP_TURTLE);
-
-            InetAddress remoteAddress = InetAddress.getByName(webserviceUri.getHost());
-            int port = webserviceUri.getPort() == -1 ? 5683 : webserviceUri.getPort();
-
-            coapApplication.sendCoapRequest(coapRequest,
-                new InternalCoapResponseCallback(resultFuture, webserviceUri), new InetSocketAddress(remoteAddress, port)
-            );
+            final CoapRequest coapRequest = new CoapRequest(MessageType.CON, MessageCode.GET, webserviceUri);
+            CoapTools.setAccept(coapRequest);
+            if(blockSize != null){
+                coapRequest.setPreferredBlock2Size(blockSize);
+            }
+
+            Futures.addCallback(addressResolver.resolve(webserviceUri), new FutureCallback<InetSocketAddress>() {
+                @Override
+                public void onSuccess(InetSocketAddress remoteSocket) {
+                    coapApplication.sendCoapRequest(coapRequest,
+                            new InternalCoapResponseCallback(resultFuture, webserviceUri), remoteSocket
+                    );
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    resultFuture.setException(t);
+                }
+            });
         }
         catch(Exception ex){
             resultFuture.setException(ex);
         }
-
-        return resultFuture;
     }
 
 
@@ -74,20 +226,36 @@ public class CoapWebresourceAccessor extends DataOriginAccessor<URI, CoapWebreso
 
         private SettableFuture<ExpiringNamedGraph> resultFuture;
         private URI webserviceUri;
+        private long startTime;
 
         private InternalCoapResponseCallback(SettableFuture<ExpiringNamedGraph> resultFuture, URI webserviceUri) {
             this.resultFuture = resultFuture;
             this.webserviceUri = webserviceUri;
+            this.startTime = System.nanoTime();
         }
 
 
         @Override
         public void processCoapResponse(CoapResponse coapResponse) {
+            hostHealth.recordResponse(webserviceUri.getHost(), (System.nanoTime() - startTime) / 1000000);
             try{
-                Model model = CoapTools.getModelFromCoapResponse(coapResponse);
+                if(MessageCode.isErrorMessage(coapResponse.getMessageCode())){
+                    throw new IllegalStateException(String.format(
+                            "Error response from \"%s\": %s", this.webserviceUri, coapResponse.getMessageCodeName()
+                    ));
+                }
+
                 Date expiry = new Date(System.currentTimeMillis() + coapResponse.getMaxAge() * 1000);
 
-                this.resultFuture.set(new ExpiringNamedGraph(this.webserviceUri, model, expiry));
+                if(passthrough){
+                    Language language = CoapTools.getLanguage(coapResponse);
+                    this.resultFuture.set(new ExpiringNamedGraph(this.webserviceUri,
+                            ChannelBuffers.copiedBuffer(coapResponse.getContent()), language, expiry));
+                }
+                else{
+                    Model model = CoapTools.getModelFromCoapResponse(coapResponse);
+                    this.resultFuture.set(new ExpiringNamedGraph(this.webserviceUri, model, expiry));
+                }
             }
             catch(Exception ex){
                 this.resultFuture.setException(ex);
@@ -97,9 +265,26 @@ public class CoapWebresourceAccessor extends DataOriginAccessor<URI, CoapWebreso
 
         @Override
         public void processTransmissionTimeout() {
+            hostHealth.recordTimeout(webserviceUri.getHost());
             resultFuture.setException(new OperationTimeoutException(
                 String.format("No response received from \"%s\" (Request timed out.)",  this.webserviceUri)
             ));
         }
     }
+
+
+    private static class CachedStatus {
+
+        private final ExpiringNamedGraph status;
+        private final long retrieved;
+
+        private CachedStatus(ExpiringNamedGraph status) {
+            this.status = status;
+            this.retrieved = System.currentTimeMillis();
+        }
+
+        private boolean isExpired() {
+            return status.getExpiry().getTime() <= System.currentTimeMillis();
+        }
+    }
 }
@@ -1,26 +1,32 @@
 package eu.spitfire.ssp.backend.coap;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import de.uzl.itm.ncoap.application.client.ClientCallback;
 import de.uzl.itm.ncoap.application.endpoint.CoapEndpoint;
+import de.uzl.itm.ncoap.communication.blockwise.BlockSize;
 import de.uzl.itm.ncoap.message.CoapRequest;
 import de.uzl.itm.ncoap.message.CoapResponse;
 import de.uzl.itm.ncoap.message.MessageCode;
 import de.uzl.itm.ncoap.message.MessageType;
-import de.uzl.itm.ncoap.message.options.ContentFormat;
 import eu.spitfire.ssp.backend.coap.registry.CoapWebresourceRegistry;
 import eu.spitfire.ssp.backend.generic.DataOriginObserver;
+import eu.spitfire.ssp.server.internal.exception.OperationTimeoutException;
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
 import com.hp.hpl.jena.rdf.model.Model;
+import org.jboss.netty.buffer.ChannelBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -29,12 +35,18 @@ import java.util.concurrent.atomic.AtomicInteger;
  * CoAP Web Services (as {@link eu.spitfire.ssp.backend.generic.DataOrigin}) and update the SSPs cache according to
  * the observations, i.e. status changes.
  *
+ * Notifications with the same ETag (or, if there is no ETag, the same content) as the latest status put into the
+ * cache are neither parsed nor put into the cache again. Only the expiry of the cached graph is extended.
+ *
  * @author Oliver Kleine
  */
 public class CoapWebresourceObserver extends DataOriginObserver<URI, CoapWebresource> {
 
     private Logger log = LoggerFactory.getLogger(CoapWebresourceObserver.class.getName());
     private CoapEndpoint coapApplication;
+    private BlockSize blockSize;
+    private CoapAddressResolver addressResolver;
+    private CoapHostHealth hostHealth;
 
     /**
      * Creates a new instance of {@link eu.spitfire.ssp.backend.generic.DataOriginObserver}.
@@ -46,6 +58,9 @@ public class CoapWebresourceObserver extends DataOriginObserver<URI, CoapWebreso
     protected CoapWebresourceObserver(CoapBackendComponentFactory componentFactory) {
         super(componentFactory);
         this.coapApplication = componentFactory.getCoapApplication();
+        this.blockSize = componentFactory.getBlockSize();
+        this.addressResolver = componentFactory.getAddressResolver();
+        this.hostHealth = componentFactory.getHostHealth();
     }
 
     /**
@@ -56,26 +71,51 @@ public class CoapWebresourceObserver extends DataOriginObserver<URI, CoapWebreso
      * @param coapWebresource the {@link CoapWebresource} to be observed
      */
     @Override
-    public void startObservation(CoapWebresource coapWebresource) {
+    public void startObservation(final CoapWebresource coapWebresource) {
+        observe(coapWebresource);
+    }
+
+
+    /**
+     * Starts the observation of the given {@link CoapWebresource} (see {@link #startObservation(CoapWebresource)}).
+     *
+     * @param coapWebresource the {@link CoapWebresource} to be observed
+     *
+     * @return a {@link com.google.common.util.concurrent.ListenableFuture} to be set with <code>null</code> when the
+     * first response was received or with an {@link java.lang.Exception} if the request failed
+     */
+    public ListenableFuture<Void> observe(final CoapWebresource coapWebresource) {
+        final SettableFuture<Void> responseFuture = SettableFuture.create();
         try{
-            URI webserviceUri = coapWebresource.getIdentifier();
-            CoapRequest coapRequest = new CoapRequest(MessageType.CON, MessageCode.GET, webserviceUri);
-            coapRequest.setAccept(ContentFormat.APP_RDF_XML);
-            coapRequest.setAccept(ContentFormat.APP_N3);
-            coapRequest.setAccept(ContentFormat.APP_TURTLE);
+            final URI webserviceUri = coapWebresource.getIdentifier();
+            final CoapRequest coapRequest = new CoapRequest(MessageType.CON, MessageCode.GET, webserviceUri);
+            CoapTools.setAccept(coapRequest);
             coapRequest.setObserve(0);
             coapRequest.setEndpointID1();
+            if(blockSize != null){
+                coapRequest.setPreferredBlock2Size(blockSize);
+            }
 
-            InetAddress remoteAddress = InetAddress.getByName(webserviceUri.getHost());
-            int port = webserviceUri.getPort() == -1 ? 5683 : webserviceUri.getPort();
+            Futures.addCallback(addressResolver.resolve(webserviceUri), new FutureCallback<InetSocketAddress>() {
+                @Override
+                public void onSuccess(InetSocketAddress remoteSocket) {
+                    coapApplication.sendCoapRequest(coapRequest,
+                            new UpdateNotificationCallback(webserviceUri, responseFuture), remoteSocket);
+                }
 
-            coapApplication.sendCoapRequest(coapRequest,
-                    new UpdateNotificationCallback(webserviceUri), new InetSocketAddress(remoteAddress, port)
-            );
+                @Override
+                public void onFailure(Throwable t) {
+                    log.error("Could not start observation of {}!", webserviceUri, t);
+                    responseFuture.setException(t);
+                }
+            });
         }
         catch(Exception ex){
             log.error("Could not start observation of {}!", coapWebresource.getIdentifier(), ex);
+            responseFuture.setException(ex);
         }
+
+        return responseFuture;
     }
 
 
@@ -84,16 +124,26 @@ public class CoapWebresourceObserver extends DataOriginObserver<URI, CoapWebreso
         private URI graphName;
         private InetSocketAddress updatedRemoteSocket;
         private AtomicInteger retransmissions;
+        private SettableFuture<Void> responseFuture;
 
-        private UpdateNotificationCallback(URI graphName) {
+        // fingerprint of the latest status put into the cache
+        private byte[] etag;
+        private HashCode contentHash;
+
+        private UpdateNotificationCallback(URI graphName, SettableFuture<Void> responseFuture) {
             this.graphName = graphName;
             this.updatedRemoteSocket = null;
             this.retransmissions = new AtomicInteger(0);
+            this.responseFuture = responseFuture;
         }
 
         @Override
         public void processTransmissionTimeout() {
             log.error("Request to {} timed out!", graphName);
+            hostHealth.recordTimeout(graphName.getHost());
+            responseFuture.setException(new OperationTimeoutException(
+                String.format("No response received from \"%s\" (Request timed out.)", graphName)
+            ));
         }
 
         @Override
@@ -115,6 +165,8 @@ public class CoapWebresourceObserver extends DataOriginObserver<URI, CoapWebreso
         @Override
         public synchronized void processCoapResponse(CoapResponse coapResponse) {
             log.info("Process Update notification for \"{}\".", graphName);
+            hostHealth.recordResponse(graphName.getHost(), -1);
+            responseFuture.set(null);
             try{
                  // the remote changed since the last update notification
                 if(updatedRemoteSocket != null){
@@ -136,9 +188,12 @@ public class CoapWebresourceObserver extends DataOriginObserver<URI, CoapWebreso
                         @Override
                         public void onSuccess(Void aVoid) {
                             log.debug("Successfully registered new data origin (new authority) {}.", graphName);
-                            UpdateNotificationCallback.this.graphName = graphName;
-                            UpdateNotificationCallback.this.updatedRemoteSocket = null;
-                            updateCache(coapResponse);
+                            synchronized (UpdateNotificationCallback.this) {
+                                UpdateNotificationCallback.this.graphName = graphName;
+                                UpdateNotificationCallback.this.updatedRemoteSocket = null;
+                                setFingerprint(null, null);
+                                updateCache(coapResponse);
+                            }
                         }
 
                         @Override
@@ -162,42 +217,114 @@ public class CoapWebresourceObserver extends DataOriginObserver<URI, CoapWebreso
             }
         }
 
-        private void updateCache(CoapResponse coapResponse){
+        private void updateCache(final CoapResponse coapResponse){
 
-            Model model = CoapTools.getModelFromCoapResponse(coapResponse);
+            // handle error response (e.g. because of shutdown of remote server)
+            if(MessageCode.isErrorMessage(coapResponse.getMessageCode())){
+                Futures.addCallback(getRegistry().unregisterDataOrigin(graphName), new FutureCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void aVoid) {
+                        log.debug("DELETED named graph because of error response {}.", graphName);
+                    }
 
-            // regular update notifications
-            if(model != null) {
-                Date expiry = new Date(System.currentTimeMillis() + coapResponse.getMaxAge() * 1000);
-                ExpiringNamedGraph expiringNamedGraph = new ExpiringNamedGraph(graphName, model, expiry);
+                    @Override
+                    public void onFailure(Throwable throwable) {
+                        log.error("Error while deleting graph {} because of error response!", graphName, throwable);
+                    }
+                });
+                return;
+            }
+
+            final Date expiry = new Date(System.currentTimeMillis() + coapResponse.getMaxAge() * 1000);
+            final byte[] etag = coapResponse.getEtag();
+            final HashCode contentHash = (etag == null || etag.length == 0) ? hash(coapResponse) : null;
 
-                Futures.addCallback(CoapWebresourceObserver.super.updateCache(expiringNamedGraph), new FutureCallback<Void>() {
+            // unchanged status (i.e. same ETag or same content), extend the expiry only
+            if(isUnchanged(etag, contentHash)){
+                Futures.addCallback(CoapWebresourceObserver.super.updateExpiry(graphName, expiry),
+                        new FutureCallback<Void>() {
                     @Override
                     public void onSuccess(Void result) {
-                        log.debug("Successfully updated graph {}.", graphName);
+                        log.debug("Unchanged status of graph {} (expiry extended to {}).", graphName, expiry);
                     }
 
                     @Override
                     public void onFailure(Throwable t) {
-                        log.error("Error while updating graph {}", graphName, t);
+                        // the graph is not contained in the cache (anymore)
+                        synchronized (UpdateNotificationCallback.this) {
+                            setFingerprint(null, null);
+                            updateCache(coapResponse, expiry, etag, contentHash);
+                        }
                     }
                 });
             }
 
-            // handle error response (e.g. because of shutdown of remote server)
+            // regular update notifications
             else{
-                Futures.addCallback(getRegistry().unregisterDataOrigin(graphName), new FutureCallback<Void>() {
-                    @Override
-                    public void onSuccess(Void aVoid) {
-                        log.debug("DELETED named graph because of error response {}.", graphName);
-                    }
+                updateCache(coapResponse, expiry, etag, contentHash);
+            }
+        }
 
-                    @Override
-                    public void onFailure(Throwable throwable) {
-                        log.error("Error while deleting graph {} because of error response!", graphName, throwable);
+
+        private void updateCache(CoapResponse coapResponse, Date expiry, byte[] etag, HashCode contentHash){
+            Model model;
+            try{
+                model = CoapTools.getModelFromCoapResponse(coapResponse);
+            }
+            catch(Exception ex){
+                log.error("Could not read update notification for graph {} (keep previous status)!", graphName, ex);
+                return;
+            }
+
+            final URI graphName = this.graphName;
+            ExpiringNamedGraph expiringNamedGraph = new ExpiringNamedGraph(graphName, model, expiry);
+            setFingerprint(etag, contentHash);
+
+            Futures.addCallback(CoapWebresourceObserver.super.updateCache(expiringNamedGraph), new FutureCallback<Void>() {
+                @Override
+                public void onSuccess(Void result) {
+                    log.debug("Successfully updated graph {}.", graphName);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    log.error("Error while updating graph {}", graphName, t);
+                    synchronized (UpdateNotificationCallback.this) {
+                        setFingerprint(null, null);
                     }
-                });
+                }
+            });
+        }
+
+
+        private boolean isUnchanged(byte[] etag, HashCode contentHash){
+            if(etag != null && etag.length > 0){
+                return Arrays.equals(etag, this.etag);
             }
+            return contentHash != null && contentHash.equals(this.contentHash);
+        }
+
+
+        private void setFingerprint(byte[] etag, HashCode contentHash){
+            this.etag = etag;
+            this.contentHash = contentHash;
+        }
+    }
+
+
+    private static HashCode hash(CoapResponse coapResponse){
+        ChannelBuffer content = coapResponse.getContent();
+        Hasher hasher = Hashing.murmur3_128().newHasher().putLong(coapResponse.getContentFormat());
+
+        if(content.hasArray()){
+            hasher.putBytes(content.array(), content.arrayOffset() + content.readerIndex(), content.readableBytes());
         }
+        else{
+            byte[] bytes = new byte[content.readableBytes()];
+            content.getBytes(content.readerIndex(), bytes);
+            hasher.putBytes(bytes);
+        }
+
+        return hasher.hash();
     }
 }
@@ -0,0 +1,419 @@
+package eu.spitfire.ssp.backend.coap.cache;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import de.uzl.itm.ncoap.application.endpoint.CoapEndpoint;
+import de.uzl.itm.ncoap.application.server.resource.NotObservableWebresource;
+import de.uzl.itm.ncoap.message.CoapMessage;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import de.uzl.itm.ncoap.message.options.ContentFormat;
+import de.uzl.itm.ncoap.message.options.OptionValue;
+import eu.spitfire.ssp.backend.coap.CoapBackendComponentFactory;
+import eu.spitfire.ssp.server.internal.message.InternalQueryExecutionRequest;
+import eu.spitfire.ssp.server.internal.utils.GraphUpdateListener;
+import eu.spitfire.ssp.server.internal.utils.Language;
+import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
+import eu.spitfire.ssp.server.internal.wrapper.QueryExecutionResults;
+import org.apache.commons.configuration.Configuration;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.local.LocalServerChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The {@link eu.spitfire.ssp.backend.coap.cache.CoapCacheResources} expose the content of the
+ * {@link eu.spitfire.ssp.server.handler.SemanticCache} to constrained clients on the
+ * {@link de.uzl.itm.ncoap.application.endpoint.CoapEndpoint} of the CoAP backend, i.e.
+ *
+ * <ul>
+ *     <li>
+ *         every named graph put into the cache as observable resource <code>/graphs/&lt;hash&gt;</code> (listed
+ *         by <code>/graphs</code> in link format with the graph name as title),
+ *     </li>
+ *     <li>
+ *         the results of SPARQL SELECT queries posted to <code>/sparql</code> as observable resource
+ *         <code>/sparql/&lt;hash&gt;</code> (the path is returned as Location-Path).
+ *     </li>
+ * </ul>
+ *
+ * Notifications are driven by the cache (see {@link eu.spitfire.ssp.server.internal.utils.GraphUpdateListener}),
+ * i.e. observers of a graph are notified whenever the graph was put into the cache. Queries are re-executed at most
+ * once per query interval (and only if the cache was updated in the meantime) and their observers are notified only
+ * if the results changed.
+ */
+public class CoapCacheResources implements GraphUpdateListener {
+
+    private static Logger LOG = LoggerFactory.getLogger(CoapCacheResources.class.getName());
+
+    /**
+     * Every n-th update notification is sent as confirmable message
+     */
+    public static final int CONFIRMABLE_INTERVAL = 20;
+
+    private final CoapEndpoint coapApplication;
+    private final LocalServerChannel localChannel;
+    private final ScheduledExecutorService executor;
+
+    private final long queryIntervalMillis;
+    private final int maxQueries;
+
+    private final Map<URI, CoapGraphWebresource> graphWebresources;
+    private final Map<String, CoapQueryWebresource> queryWebresources;
+    private final AtomicBoolean updated;
+
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.backend.coap.cache.CoapCacheResources}
+     *
+     * @param componentFactory the {@link eu.spitfire.ssp.backend.coap.CoapBackendComponentFactory} to get the
+     *                         {@link de.uzl.itm.ncoap.application.endpoint.CoapEndpoint}, the local channel and the
+     *                         executor from
+     * @param config the {@link org.apache.commons.configuration.Configuration} of the SSP
+     */
+    public CoapCacheResources(CoapBackendComponentFactory componentFactory, Configuration config) {
+        this.coapApplication = componentFactory.getCoapApplication();
+        this.localChannel = componentFactory.getLocalChannel();
+        this.executor = componentFactory.getInternalTasksExecutor();
+
+        this.queryIntervalMillis = config.getLong("coap.cache-resources.query-interval", 5) * 1000;
+        this.maxQueries = config.getInt("coap.cache-resources.max-queries", 100);
+
+        this.graphWebresources = new ConcurrentHashMap<>();
+        this.queryWebresources = new ConcurrentHashMap<>();
+        this.updated = new AtomicBoolean(false);
+    }
+
+
+    /**
+     * Registers the resources <code>/graphs</code> and <code>/sparql</code> and starts the periodic re-execution
+     * of the registered queries.
+     *
+     * @throws Exception if the resources could not be registered
+     */
+    public void start() throws Exception {
+        coapApplication.registerWebresource(new CoapGraphDirectoryWebservice());
+        coapApplication.registerWebresource(new CoapSparqlWebservice());
+
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (updated.getAndSet(false)) {
+                        for (CoapQueryWebresource webresource : queryWebresources.values()) {
+                            executeQuery(webresource);
+                        }
+                    }
+                } catch (Exception ex) {
+                    LOG.error("Exception while re-executing queries!", ex);
+                }
+            }
+        }, queryIntervalMillis, queryIntervalMillis, TimeUnit.MILLISECONDS);
+
+        LOG.info("CoAP resources for cached graphs and queries started (query interval: {} ms).",
+                queryIntervalMillis);
+    }
+
+
+    @Override
+    public void graphUpdated(ExpiringNamedGraph graph) {
+        URI graphName = graph.getGraphName();
+        CoapGraphWebresource webresource;
+
+        synchronized (graphWebresources) {
+            webresource = graphWebresources.get(graphName);
+            if (webresource == null) {
+                registerGraphWebresource(graph);
+            }
+        }
+
+        if (webresource != null) {
+            webresource.update(graph);
+        }
+        updated.set(true);
+    }
+
+
+    private void registerGraphWebresource(ExpiringNamedGraph graph) {
+        URI graphName = graph.getGraphName();
+        String uriPath = "/graphs/" + getHash(graphName.toString());
+        try {
+            CoapGraphWebresource webresource = new CoapGraphWebresource(uriPath, graph, executor);
+            coapApplication.registerWebresource(webresource);
+            graphWebresources.put(graphName, webresource);
+            LOG.debug("Graph \"{}\" available as CoAP resource \"{}\".", graphName, uriPath);
+        } catch (Exception ex) {
+            LOG.error("Could not register CoAP resource \"{}\" for graph \"{}\"!", uriPath, graphName, ex);
+        }
+    }
+
+
+    @Override
+    public void graphDeleted(URI graphName) {
+        CoapGraphWebresource webresource;
+        synchronized (graphWebresources) {
+            webresource = graphWebresources.remove(graphName);
+        }
+
+        if (webresource != null) {
+            coapApplication.shutdownWebresource(webresource.getUriPath());
+            LOG.debug("CoAP resource \"{}\" for graph \"{}\" removed.", webresource.getUriPath(), graphName);
+        }
+        updated.set(true);
+    }
+
+
+    /**
+     * Removes the query resource with the given path (observers are notified that the resource is gone).
+     *
+     * @param uriPath the path of the query resource
+     */
+    void removeQueryWebresource(String uriPath) {
+        if (queryWebresources.remove(uriPath) != null) {
+            coapApplication.shutdownWebresource(uriPath);
+            LOG.info("CoAP resource \"{}\" for query removed.", uriPath);
+        }
+    }
+
+
+    private ListenableFuture<QueryExecutionResults> executeQuery(Query query) {
+        InternalQueryExecutionRequest executionRequest = new InternalQueryExecutionRequest(query);
+        Channels.write(this.localChannel, executionRequest);
+        return executionRequest.getResultsFuture();
+    }
+
+
+    private void executeQuery(final CoapQueryWebresource webresource) {
+        Futures.addCallback(executeQuery(webresource.getQuery()), new FutureCallback<QueryExecutionResults>() {
+            @Override
+            public void onSuccess(QueryExecutionResults results) {
+                if (webresource.update(results)) {
+                    LOG.debug("Results of query \"{}\" changed.", webresource.getUriPath());
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOG.warn("Could not re-execute query \"{}\"!", webresource.getUriPath(), t);
+            }
+        }, executor);
+    }
+
+
+    private static String getHash(String value) {
+        return Hashing.murmur3_128().hashString(value, Charsets.UTF_8).toString().substring(0, 12);
+    }
+
+
+    private static MessageType getMessageType(CoapRequest coapRequest) {
+        return coapRequest.getMessageType() == MessageType.CON ? MessageType.ACK : MessageType.NON;
+    }
+
+
+    private class CoapGraphDirectoryWebservice extends NotObservableWebresource<Void> {
+
+        private CoapGraphDirectoryWebservice() {
+            super("/graphs", null, OptionValue.MAX_AGE_DEFAULT, executor);
+        }
+
+
+        @Override
+        public void processCoapRequest(SettableFuture<CoapResponse> responseFuture, CoapRequest coapRequest,
+                                       InetSocketAddress remoteAddress) {
+
+            if (coapRequest.getMessageCode() != MessageCode.GET) {
+                responseFuture.set(CoapResponse.createErrorResponse(getMessageType(coapRequest),
+                        MessageCode.METHOD_NOT_ALLOWED_405, "Only GET messages are allowed!"));
+                return;
+            }
+
+            CoapResponse coapResponse = new CoapResponse(getMessageType(coapRequest), MessageCode.CONTENT_205);
+            coapResponse.setContent(
+                    getSerializedResourceStatus(ContentFormat.APP_LINK_FORMAT), ContentFormat.APP_LINK_FORMAT
+            );
+            responseFuture.set(coapResponse);
+        }
+
+        /**
+         * Returns the links to the resources of all cached graphs (sorted by graph name) in link format, e.g.
+         * <code>&lt;/graphs/0123456789ab&gt;;title="coap://[2001:db8::1]/temp";obs;ct="65100 41 0"</code>.
+         *
+         * @param contentFormat the number representing the desired content format (ignored)
+         * @return the links to the resources of all cached graphs
+         */
+        @Override
+        public byte[] getSerializedResourceStatus(long contentFormat) {
+            StringBuilder contentFormats = new StringBuilder();
+            for (Language language : Language.values()) {
+                contentFormats.append(contentFormats.length() == 0 ? "" : " ")
+                        .append(language.getCoapContentFormat());
+            }
+
+            Map<String, String> links = new TreeMap<>();
+            for (CoapGraphWebresource webresource : graphWebresources.values()) {
+                links.put(webresource.getGraphName().toString(), webresource.getUriPath());
+            }
+
+            StringBuilder result = new StringBuilder();
+            for (Map.Entry<String, String> link : links.entrySet()) {
+                result.append(result.length() == 0 ? "" : ",")
+                        .append("<").append(link.getValue()).append(">;title=\"").append(link.getKey())
+                        .append("\";obs;ct=\"").append(contentFormats).append("\"");
+            }
+            return result.toString().getBytes(CoapMessage.CHARSET);
+        }
+
+        @Override
+        public byte[] getEtag(long contentFormat) {
+            return new byte[1];
+        }
+
+        @Override
+        public void updateEtag(Void resourceStatus) {
+            // nothing to do
+        }
+
+        @Override
+        public void shutdown() {
+            // nothing to do
+        }
+    }
+
+
+    private class CoapSparqlWebservice extends NotObservableWebresource<Void> {
+
+        private CoapSparqlWebservice() {
+            super("/sparql", null, OptionValue.MAX_AGE_DEFAULT, executor);
+        }
+
+
+        /**
+         * Handles POST requests containing a SPARQL SELECT query (UTF-8). The query is executed and its results are
+         * registered as observable resource (unless there is already a resource for the same query). The response
+         * contains the path of that resource as Location-Path.
+         */
+        @Override
+        public void processCoapRequest(final SettableFuture<CoapResponse> responseFuture,
+                                       final CoapRequest coapRequest, InetSocketAddress remoteAddress) {
+
+            final MessageType messageType = getMessageType(coapRequest);
+            if (coapRequest.getMessageCode() != MessageCode.POST) {
+                responseFuture.set(CoapResponse.createErrorResponse(messageType,
+                        MessageCode.METHOD_NOT_ALLOWED_405, "Only POST messages are allowed!"));
+                return;
+            }
+
+            final Query query;
+            try {
+                query = QueryFactory.create(coapRequest.getContent().toString(CoapMessage.CHARSET));
+            } catch (Exception ex) {
+                responseFuture.set(CoapResponse.createErrorResponse(messageType,
+                        MessageCode.BAD_REQUEST_400, "Malformed query: " + ex.getMessage()));
+                return;
+            }
+
+            if (!query.isSelectType()) {
+                responseFuture.set(CoapResponse.createErrorResponse(messageType,
+                        MessageCode.BAD_REQUEST_400, "Only SELECT queries are supported!"));
+                return;
+            }
+
+            final String uriPath = "/sparql/" + getHash(query.serialize());
+            if (queryWebresources.containsKey(uriPath)) {
+                responseFuture.set(createResponse(messageType, uriPath));
+                return;
+            }
+
+            Futures.addCallback(executeQuery(query), new FutureCallback<QueryExecutionResults>() {
+                @Override
+                public void onSuccess(QueryExecutionResults results) {
+                    try {
+                        synchronized (queryWebresources) {
+                            if (!queryWebresources.containsKey(uriPath)) {
+                                if (queryWebresources.size() >= maxQueries) {
+                                    responseFuture.set(CoapResponse.createErrorResponse(messageType,
+                                            MessageCode.SERVICE_UNAVAILABLE_503,
+                                            "Maximum number of queries reached!"));
+                                    return;
+                                }
+
+                                CoapQueryWebresource webresource = new CoapQueryWebresource(
+                                        uriPath, query, results, CoapCacheResources.this, executor
+                                );
+                                coapApplication.registerWebresource(webresource);
+                                queryWebresources.put(uriPath, webresource);
+                                LOG.info("Query available as CoAP resource \"{}\".", uriPath);
+                            }
+                        }
+                        responseFuture.set(createResponse(messageType, uriPath));
+                    } catch (Exception ex) {
+                        LOG.error("Could not register CoAP resource \"{}\" for query!", uriPath, ex);
+                        responseFuture.setException(ex);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    responseFuture.set(CoapResponse.createErrorResponse(messageType,
+                            MessageCode.INTERNAL_SERVER_ERROR_500, "Query execution failed: " + t.getMessage()));
+                }
+            }, executor);
+        }
+
+
+        private CoapResponse createResponse(MessageType messageType, String uriPath) {
+            CoapResponse coapResponse = new CoapResponse(messageType, MessageCode.CREATED_201);
+            try {
+                coapResponse.setLocationURI(new URI(null, null, uriPath, null));
+            } catch (Exception ex) {
+                LOG.warn("Could not set Location-Path \"{}\"!", uriPath, ex);
+            }
+            coapResponse.setContent(uriPath.getBytes(CoapMessage.CHARSET), ContentFormat.TEXT_PLAIN_UTF8);
+            return coapResponse;
+        }
+
+        /**
+         * Returns an empty byte array as there is only POST allowed. However, this method is only implemented for
+         * the sake of completeness and is not used at all by the framework.
+         *
+         * @param contentFormat the number representing the desired content format
+         * @return an empty byte array
+         */
+        @Override
+        public byte[] getSerializedResourceStatus(long contentFormat) {
+            return new byte[0];
+        }
+
+        @Override
+        public byte[] getEtag(long contentFormat) {
+            return new byte[1];
+        }
+
+        @Override
+        public void updateEtag(Void resourceStatus) {
+            // nothing to do
+        }
+
+        @Override
+        public void shutdown() {
+            // nothing to do
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package eu.spitfire.ssp.backend.coap.cache;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.hp.hpl.jena.rdf.model.Model;
+import de.uzl.itm.ncoap.application.server.resource.ObservableWebresource;
+import de.uzl.itm.ncoap.application.server.resource.WrappedResourceStatus;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import eu.spitfire.ssp.server.internal.utils.BinaryRdfEncoder;
+import eu.spitfire.ssp.server.internal.utils.Language;
+import eu.spitfire.ssp.server.internal.utils.RdfPayloadParser;
+import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
+import org.apache.jena.riot.RDFDataMgr;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Observable CoAP Web resource to serve a named graph contained in the
+ * {@link eu.spitfire.ssp.server.handler.SemanticCache}. The status of the resource is replaced (and the observers
+ * are notified) whenever the graph is put into the cache, i.e. observers are served by push from the cache.
+ *
+ * The serializations of a status are created once per content format (no matter how many observers are to be
+ * notified). If the status was received from a data origin in the requested content format, the received payload is
+ * served as is. The resource does not keep the model of the graph, i.e. other content formats are created from the
+ * received payload (or a binary encoding of the model) when they are requested the first time. The Max-Age of the resource is the remaining lifetime of the graph in the cache.
+ */
+public class CoapGraphWebresource extends ObservableWebresource<CoapGraphWebresource.GraphStatus> {
+
+    private static Logger LOG = LoggerFactory.getLogger(CoapGraphWebresource.class.getName());
+
+    /**
+     * The content format to be served if a request contains no Accept option
+     */
+    public static final long DEFAULT_CONTENT_FORMAT = Language.RDF_TURTLE.getCoapContentFormat();
+
+    private final URI graphName;
+    private final AtomicInteger version;
+
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.backend.coap.cache.CoapGraphWebresource}
+     *
+     * @param uriPath the path of the resource
+     * @param graph the current status of the graph
+     * @param executor the {@link java.util.concurrent.ScheduledExecutorService} to notify the observers
+     */
+    public CoapGraphWebresource(String uriPath, ExpiringNamedGraph graph, ScheduledExecutorService executor) {
+        super(uriPath, new GraphStatus(graph), getLifetime(graph.getExpiry()), executor);
+        this.graphName = graph.getGraphName();
+        this.version = new AtomicInteger();
+    }
+
+
+    /**
+     * Returns the name of the graph served by this resource
+     * @return the name of the graph served by this resource
+     */
+    public URI getGraphName() {
+        return graphName;
+    }
+
+
+    /**
+     * Replaces the status of this resource with the given graph and notifies the observers.
+     *
+     * @param graph the new status of the graph
+     */
+    public void update(ExpiringNamedGraph graph) {
+        setResourceStatus(new GraphStatus(graph), getLifetime(graph.getExpiry()));
+    }
+
+
+    private static long getLifetime(Date expiry) {
+        if(expiry == null) {
+            return 0;
+        }
+        return Math.max(0, (expiry.getTime() - System.currentTimeMillis()) / 1000);
+    }
+
+
+    /**
+     * Every {@link eu.spitfire.ssp.backend.coap.cache.CoapCacheResources#CONFIRMABLE_INTERVAL}th notification is
+     * sent as confirmable message to remove observers that are no longer reachable.
+     */
+    @Override
+    public boolean isUpdateNotificationConfirmable(InetSocketAddress remoteAddress) {
+        return version.get() % CoapCacheResources.CONFIRMABLE_INTERVAL == 0;
+    }
+
+
+    @Override
+    public void processCoapRequest(SettableFuture<CoapResponse> responseFuture, CoapRequest coapRequest,
+                                   InetSocketAddress remoteAddress) throws Exception {
+
+        MessageType messageType =
+                coapRequest.getMessageType() == MessageType.CON ? MessageType.ACK : MessageType.NON;
+
+        if (coapRequest.getMessageCode() != MessageCode.GET) {
+            responseFuture.set(CoapResponse.createErrorResponse(messageType,
+                    MessageCode.METHOD_NOT_ALLOWED_405, "Only GET messages are allowed!"));
+            return;
+        }
+
+        WrappedResourceStatus status;
+        if (coapRequest.getAcceptedContentFormats().isEmpty()) {
+            status = getWrappedResourceStatus(DEFAULT_CONTENT_FORMAT);
+        } else {
+            status = getWrappedResourceStatus(coapRequest.getAcceptedContentFormats());
+        }
+
+        if (status == null) {
+            responseFuture.set(CoapResponse.createErrorResponse(messageType, MessageCode.NOT_ACCEPTABLE_406,
+                    "Supported content formats: " + getSupportedContentFormats()));
+            return;
+        }
+
+        CoapResponse coapResponse = new CoapResponse(messageType, MessageCode.CONTENT_205);
+        coapResponse.setContent(status.getContent(), status.getContentFormat());
+        coapResponse.setEtag(status.getEtag());
+        coapResponse.setMaxAge(status.getMaxAge());
+        if (coapRequest.getObserve() == 0) {
+            coapResponse.setObserve();
+        }
+        responseFuture.set(coapResponse);
+    }
+
+
+    private static String getSupportedContentFormats() {
+        StringBuilder result = new StringBuilder();
+        for (Language language : Language.values()) {
+            result.append(result.length() == 0 ? "" : ", ").append(language.getCoapContentFormat());
+        }
+        return result.toString();
+    }
+
+
+    /**
+     * Returns the serialization of the current status in the given content format or <code>null</code> if the
+     * content format is not supported.
+     *
+     * @param contentFormat the number representing the desired content format
+     * @return the serialization of the current status or <code>null</code>
+     */
+    @Override
+    public byte[] getSerializedResourceStatus(long contentFormat) {
+        Language language = Language.getByCoapContentFormat(contentFormat);
+        if (language == null) {
+            return null;
+        }
+
+        try {
+            return getResourceStatus().serialize(language);
+        } catch (Exception ex) {
+            LOG.error("Could not serialize graph \"{}\" as {}!", graphName, language, ex);
+            return null;
+        }
+    }
+
+
+    @Override
+    public byte[] getEtag(long contentFormat) {
+        return ByteBuffer.allocate(8).putInt(version.get()).putInt((int) contentFormat).array();
+    }
+
+
+    @Override
+    public void updateEtag(GraphStatus resourceStatus) {
+        version.incrementAndGet();
+    }
+
+
+    @Override
+    public void shutdown() {
+        LOG.debug("Shutdown CoAP resource for graph \"{}\".", graphName);
+    }
+
+
+    /**
+     * The status of a {@link eu.spitfire.ssp.backend.coap.cache.CoapGraphWebresource}, i.e. one serialization of
+     * the graph (the payload received from the data origin or, if there is none, the binary encoding of the model)
+     * and the serializations in other content formats (created on demand from the first one). The status does not
+     * refer to the {@link eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph} or its model, i.e. the
+     * triples of the graph are not kept on the heap in addition to the cache.
+     */
+    static class GraphStatus {
+
+        private final Language sourceLanguage;
+        private final byte[] source;
+        private final Map<Language, byte[]> serializations;
+
+        private GraphStatus(ExpiringNamedGraph graph) {
+            ChannelBuffer content = graph.getContent();
+            if (content != null && graph.getLanguage() != null) {
+                this.sourceLanguage = graph.getLanguage();
+            } else {
+                this.sourceLanguage = Language.RDF_BINARY;
+                content = ChannelBuffers.dynamicBuffer();
+                new BinaryRdfEncoder().writeTriples(content, graph.getModel().getGraph());
+            }
+            this.source = new byte[content.readableBytes()];
+            content.readBytes(this.source);
+            this.serializations = new ConcurrentHashMap<>();
+        }
+
+        private byte[] serialize(Language language) {
+            if (language == sourceLanguage) {
+                return source;
+            }
+
+            byte[] serialization = serializations.get(language);
+            if (serialization != null) {
+                return serialization;
+            }
+
+            Model model = RdfPayloadParser.parse(ChannelBuffers.wrappedBuffer(source), sourceLanguage);
+            if (language == Language.RDF_BINARY) {
+                ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+                new BinaryRdfEncoder().writeTriples(buffer, model.getGraph());
+                serialization = new byte[buffer.readableBytes()];
+                buffer.readBytes(serialization);
+            } else {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                RDFDataMgr.write(outputStream, model, language.getRdfFormat());
+                serialization = outputStream.toByteArray();
+            }
+
+            serializations.put(language, serialization);
+            return serialization;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package eu.spitfire.ssp.backend.coap.cache;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.util.concurrent.SettableFuture;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.util.FmtUtils;
+import de.uzl.itm.ncoap.application.server.resource.ObservableWebresource;
+import de.uzl.itm.ncoap.application.server.resource.WrappedResourceStatus;
+import de.uzl.itm.ncoap.message.CoapRequest;
+import de.uzl.itm.ncoap.message.CoapResponse;
+import de.uzl.itm.ncoap.message.MessageCode;
+import de.uzl.itm.ncoap.message.MessageType;
+import de.uzl.itm.ncoap.message.options.ContentFormat;
+import de.uzl.itm.ncoap.message.options.OptionValue;
+import eu.spitfire.ssp.server.internal.utils.QueryResultsFormat;
+import eu.spitfire.ssp.server.internal.utils.SparqlResultsWriter;
+import eu.spitfire.ssp.server.internal.wrapper.QueryExecutionResults;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Observable CoAP Web resource to serve the results of a SPARQL SELECT query on the
+ * {@link eu.spitfire.ssp.server.handler.SemanticCache}. The query is re-executed by the
+ * {@link eu.spitfire.ssp.backend.coap.cache.CoapCacheResources} after updates of the cache and the observers are
+ * notified only if the results changed.
+ *
+ * Supported content formats are those returned by
+ * {@link eu.spitfire.ssp.server.internal.utils.QueryResultsFormat#getByCoapContentFormat(long)}. The resource is
+ * removed by a DELETE request.
+ */
+public class CoapQueryWebresource extends ObservableWebresource<CoapQueryWebresource.QueryStatus> {
+
+    private static Logger LOG = LoggerFactory.getLogger(CoapQueryWebresource.class.getName());
+
+    private final Query query;
+    private final CoapCacheResources cacheResources;
+    private final AtomicInteger version;
+
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.backend.coap.cache.CoapQueryWebresource}
+     *
+     * @param uriPath the path of the resource
+     * @param query the SPARQL SELECT {@link com.hp.hpl.jena.query.Query} to serve the results of
+     * @param results the initial results of the query
+     * @param cacheResources the {@link eu.spitfire.ssp.backend.coap.cache.CoapCacheResources} to remove this
+     *                       resource on DELETE requests
+     * @param executor the {@link java.util.concurrent.ScheduledExecutorService} to notify the observers
+     */
+    public CoapQueryWebresource(String uriPath, Query query, QueryExecutionResults results,
+                                CoapCacheResources cacheResources, ScheduledExecutorService executor) {
+
+        super(uriPath, new QueryStatus(results.getResultSet()), OptionValue.MAX_AGE_DEFAULT, executor);
+        this.query = query;
+        this.cacheResources = cacheResources;
+        this.version = new AtomicInteger();
+    }
+
+
+    /**
+     * Returns the SPARQL {@link com.hp.hpl.jena.query.Query} served by this resource
+     * @return the SPARQL {@link com.hp.hpl.jena.query.Query} served by this resource
+     */
+    public Query getQuery() {
+        return query;
+    }
+
+
+    /**
+     * Replaces the status of this resource with the given results and notifies the observers if (and only if) the
+     * results differ from the current status.
+     *
+     * @param results the results of the latest execution of the query
+     *
+     * @return <code>true</code> if the results changed and <code>false</code> otherwise
+     */
+    public boolean update(QueryExecutionResults results) {
+        QueryStatus status = new QueryStatus(results.getResultSet());
+        if (status.equals(getResourceStatus())) {
+            return false;
+        }
+
+        setResourceStatus(status, OptionValue.MAX_AGE_DEFAULT);
+        return true;
+    }
+
+
+    /**
+     * Every {@link eu.spitfire.ssp.backend.coap.cache.CoapCacheResources#CONFIRMABLE_INTERVAL}th notification is
+     * sent as confirmable message to remove observers that are no longer reachable.
+     */
+    @Override
+    public boolean isUpdateNotificationConfirmable(InetSocketAddress remoteAddress) {
+        return version.get() % CoapCacheResources.CONFIRMABLE_INTERVAL == 0;
+    }
+
+
+    @Override
+    public void processCoapRequest(SettableFuture<CoapResponse> responseFuture, CoapRequest coapRequest,
+                                   InetSocketAddress remoteAddress) throws Exception {
+
+        MessageType messageType =
+                coapRequest.getMessageType() == MessageType.CON ? MessageType.ACK : MessageType.NON;
+
+        if (coapRequest.getMessageCode() == MessageCode.DELETE) {
+            cacheResources.removeQueryWebresource(getUriPath());
+            responseFuture.set(new CoapResponse(messageType, MessageCode.DELETED_202));
+            return;
+        }
+
+        if (coapRequest.getMessageCode() != MessageCode.GET) {
+            responseFuture.set(CoapResponse.createErrorResponse(messageType,
+                    MessageCode.METHOD_NOT_ALLOWED_405, "Only GET and DELETE messages are allowed!"));
+            return;
+        }
+
+        WrappedResourceStatus status;
+        if (coapRequest.getAcceptedContentFormats().isEmpty()) {
+            status = getWrappedResourceStatus(ContentFormat.APP_JSON);
+        } else {
+            status = getWrappedResourceStatus(coapRequest.getAcceptedContentFormats());
+        }
+
+        if (status == null) {
+            responseFuture.set(CoapResponse.createErrorResponse(messageType, MessageCode.NOT_ACCEPTABLE_406,
+                    "Supported content formats: " + ContentFormat.APP_JSON + ", " + ContentFormat.APP_XML + ", "
+                            + QueryResultsFormat.APP_SPARQL_RESULTS_BINARY));
+            return;
+        }
+
+        CoapResponse coapResponse = new CoapResponse(messageType, MessageCode.CONTENT_205);
+        coapResponse.setContent(status.getContent(), status.getContentFormat());
+        coapResponse.setEtag(status.getEtag());
+        coapResponse.setMaxAge(status.getMaxAge());
+        if (coapRequest.getObserve() == 0) {
+            coapResponse.setObserve();
+        }
+        responseFuture.set(coapResponse);
+    }
+
+
+    /**
+     * Returns the serialization of the current results in the given content format or <code>null</code> if the
+     * content format is not supported.
+     *
+     * @param contentFormat the number representing the desired content format
+     * @return the serialization of the current results or <code>null</code>
+     */
+    @Override
+    public byte[] getSerializedResourceStatus(long contentFormat) {
+        QueryResultsFormat format = QueryResultsFormat.getByCoapContentFormat(contentFormat);
+        if (format == null) {
+            return null;
+        }
+
+        try {
+            return getResourceStatus().serialize(format);
+        } catch (Exception ex) {
+            LOG.error("Could not serialize results of query \"{}\" as {}!", getUriPath(), format, ex);
+            return null;
+        }
+    }
+
+
+    @Override
+    public byte[] getEtag(long contentFormat) {
+        return ByteBuffer.allocate(8).putInt(version.get()).putInt((int) contentFormat).array();
+    }
+
+
+    @Override
+    public void updateEtag(QueryStatus resourceStatus) {
+        version.incrementAndGet();
+    }
+
+
+    @Override
+    public void shutdown() {
+        LOG.debug("Shutdown CoAP resource for query \"{}\".", getUriPath());
+    }
+
+
+    /**
+     * The status of a {@link eu.spitfire.ssp.backend.coap.cache.CoapQueryWebresource}, i.e. the solutions of the
+     * query and their serializations (created on demand). Two statuses are equal if they contain the same variables
+     * and the same solutions (in any order, i.e. queries without ORDER BY do not cause notifications when the store
+     * returns the same solutions in another order). Blank nodes are considered equal to each other as their labels
+     * differ between two executions of the same query.
+     */
+    static class QueryStatus {
+
+        private final List<String> vars;
+        private final List<Binding> bindings;
+        private final Multiset<String> solutions;
+        private final Map<QueryResultsFormat, byte[]> serializations;
+
+        private QueryStatus(ResultSet resultSet) {
+            this.vars = resultSet.getResultVars();
+            this.bindings = new ArrayList<>();
+            this.solutions = HashMultiset.create();
+            while (resultSet.hasNext()) {
+                Binding binding = resultSet.nextBinding();
+                this.bindings.add(binding);
+                this.solutions.add(toKey(binding));
+            }
+            this.serializations = new ConcurrentHashMap<>();
+        }
+
+        private String toKey(Binding binding) {
+            StringBuilder key = new StringBuilder();
+            for (String var : vars) {
+                Node node = binding.get(Var.alloc(var));
+                if (node != null) {
+                    key.append(node.isBlank() ? "_:" : FmtUtils.stringForNode(node));
+                }
+                key.append('\n');
+            }
+            return key.toString();
+        }
+
+        private byte[] serialize(QueryResultsFormat format) {
+            byte[] serialization = serializations.get(format);
+            if (serialization != null) {
+                return serialization;
+            }
+
+            SparqlResultsWriter writer = SparqlResultsWriter.create(format, vars);
+            ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+            writer.writeHead(buffer);
+            for (Binding binding : bindings) {
+                writer.writeRow(buffer, binding);
+            }
+            writer.writeTail(buffer);
+
+            serialization = new byte[buffer.readableBytes()];
+            buffer.readBytes(serialization);
+            serializations.put(format, serialization);
+            return serialization;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof QueryStatus)) {
+                return false;
+            }
+            QueryStatus other = (QueryStatus) object;
+            return vars.equals(other.vars) && solutions.equals(other.solutions);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * vars.hashCode() + solutions.hashCode();
+        }
+    }
+}
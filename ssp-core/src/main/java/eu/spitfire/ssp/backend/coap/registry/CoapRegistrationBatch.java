@@ -0,0 +1,161 @@
+package eu.spitfire.ssp.backend.coap.registry;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import eu.spitfire.ssp.backend.coap.CoapWebresource;
+import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tracks the registration of all resources announced by one border router (or any other CoAP server) with one
+ * POST request to the registry. The retrieved initial statuses are collected and registered in batches via
+ * {@link eu.spitfire.ssp.backend.generic.DataOriginRegistry#registerDataOrigins(java.util.Map)}, i.e. with one
+ * bulk insertion into the cache per batch.
+ */
+class CoapRegistrationBatch {
+
+    private static Logger LOG = LoggerFactory.getLogger(CoapRegistrationBatch.class.getName());
+
+    private final CoapWebresourceRegistry registry;
+    private final String host;
+    private final int total;
+    private final int batchSize;
+    private final long startTime;
+
+    private Map<CoapWebresource, ExpiringNamedGraph> pending;
+    private int retrieved;
+    private int registered;
+    private int failed;
+    private long endTime;
+
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.backend.coap.registry.CoapRegistrationBatch}
+     *
+     * @param registry the {@link eu.spitfire.ssp.backend.coap.registry.CoapWebresourceRegistry} to register the
+     *                 resources at
+     * @param host the host which announced the resources
+     * @param total the number of announced resources
+     * @param batchSize the maximum number of resources to be registered with one bulk insertion
+     */
+    CoapRegistrationBatch(CoapWebresourceRegistry registry, String host, int total, int batchSize) {
+        this.registry = registry;
+        this.host = host;
+        this.total = total;
+        this.batchSize = Math.max(1, batchSize);
+        this.startTime = System.currentTimeMillis();
+        this.pending = new HashMap<>();
+    }
+
+
+    /**
+     * Awaits the retrieval of the initial status of the given {@link eu.spitfire.ssp.backend.coap.CoapWebresource}
+     * and registers it with the next batch.
+     *
+     * @param webresource the {@link eu.spitfire.ssp.backend.coap.CoapWebresource} to be registered
+     * @param statusFuture the {@link com.google.common.util.concurrent.ListenableFuture} to be set with the initial
+     *                     status of the given resource
+     */
+    void add(final CoapWebresource webresource, ListenableFuture<ExpiringNamedGraph> statusFuture) {
+        Futures.addCallback(statusFuture, new FutureCallback<ExpiringNamedGraph>() {
+
+            @Override
+            public void onSuccess(ExpiringNamedGraph status) {
+                Map<CoapWebresource, ExpiringNamedGraph> batch = null;
+                synchronized (CoapRegistrationBatch.this) {
+                    retrieved++;
+                    pending.put(webresource, status);
+                    if(pending.size() >= batchSize || isRetrievalComplete()) {
+                        batch = pending;
+                        pending = new HashMap<>();
+                    }
+                }
+                register(batch);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                LOG.warn("Could not retrieve initial status of \"{}\"!", webresource.getIdentifier(), throwable);
+                Map<CoapWebresource, ExpiringNamedGraph> batch = null;
+                synchronized (CoapRegistrationBatch.this) {
+                    failed++;
+                    updateEndTime();
+                    if(isRetrievalComplete() && !pending.isEmpty()) {
+                        batch = pending;
+                        pending = new HashMap<>();
+                    }
+                }
+                register(batch);
+            }
+        });
+    }
+
+
+    private void register(Map<CoapWebresource, ExpiringNamedGraph> batch) {
+        if(batch == null) {
+            return;
+        }
+
+        LOG.info("Register {} resources from host \"{}\".", batch.size(), host);
+        Map<CoapWebresource, ListenableFuture<Void>> futures = registry.registerDataOrigins(batch);
+        for(ListenableFuture<Void> registrationFuture : futures.values()) {
+            Futures.addCallback(registrationFuture, new FutureCallback<Void>() {
+
+                @Override
+                public void onSuccess(Void result) {
+                    synchronized (CoapRegistrationBatch.this) {
+                        registered++;
+                        updateEndTime();
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    synchronized (CoapRegistrationBatch.this) {
+                        failed++;
+                        updateEndTime();
+                    }
+                }
+            });
+        }
+    }
+
+
+    private boolean isRetrievalComplete() {
+        return retrieved + failed >= total;
+    }
+
+
+    private void updateEndTime() {
+        if(registered + failed >= total) {
+            endTime = System.currentTimeMillis();
+            LOG.info("Registration of resources from host \"{}\" completed ({} registered, {} failed).",
+                    host, registered, failed);
+        }
+    }
+
+
+    /**
+     * Returns the number of announced, registered, failed and pending resources and the duration of the
+     * registration.
+     *
+     * @return the progress of this registration
+     */
+    synchronized Map<String, Object> getProgress() {
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("host", host);
+        progress.put("started", startTime);
+        progress.put("total", total);
+        progress.put("registered", registered);
+        progress.put("failed", failed);
+        progress.put("pending", total - registered - failed);
+        progress.put("duration", (endTime == 0 ? System.currentTimeMillis() : endTime) - startTime);
+        return progress;
+    }
+}
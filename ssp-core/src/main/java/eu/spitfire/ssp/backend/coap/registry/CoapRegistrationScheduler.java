@@ -0,0 +1,419 @@
+package eu.spitfire.ssp.backend.coap.registry;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import eu.spitfire.ssp.backend.coap.CoapHostHealth;
+import eu.spitfire.ssp.backend.coap.CoapWebresource;
+import eu.spitfire.ssp.backend.coap.CoapWebresourceObserver;
+import eu.spitfire.ssp.backend.generic.DataOriginAccessor;
+import eu.spitfire.ssp.server.internal.exception.DataOriginUnavailableException;
+import eu.spitfire.ssp.server.internal.exception.OperationTimeoutException;
+import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Schedules the retrieval of the initial status of newly registered CoAP Web resources, i.e. the first GET request
+ * of every resource announced by a border router. Instead of sending all requests at once (which floods constrained
+ * networks with requests, retransmissions and timeouts), the scheduler
+ * <ul>
+ *     <li>limits the number of requests in flight (globally and per host),</li>
+ *     <li>sends the requests in order of their priority (lower values first, FIFO for equal priorities),</li>
+ *     <li>adapts the number of requests in flight per host (additive increase on responses, multiplicative decrease
+ *     on timeouts) and paces them according to the smoothed round trip time of that host and</li>
+ *     <li>backs off exponentially after timeouts and retries timed out requests once.</li>
+ * </ul>
+ *
+ * Requests to hosts considered unavailable by the {@link eu.spitfire.ssp.backend.coap.CoapHostHealth} are kept in
+ * the queue until the next probe of the host. The round trip time of hosts known from previous requests is used to
+ * pace the first requests.
+ *
+ * The observation requests of registered resources are scheduled the same way, i.e. an observation occupies a slot
+ * until the first notification (or the timeout) was received.
+ */
+public class CoapRegistrationScheduler {
+
+    private static Logger LOG = LoggerFactory.getLogger(CoapRegistrationScheduler.class.getName());
+
+    /**
+     * The maximum number of attempts to retrieve the initial status of a resource
+     */
+    public static final int MAX_ATTEMPTS = 2;
+
+    /**
+     * The maximum number of milliseconds to back off after timeouts
+     */
+    public static final long MAX_BACKOFF_MILLIS = 30000;
+
+    private static final long INITIAL_BACKOFF_MILLIS = 1000;
+    private static final double RTT_SMOOTHING = 0.125;
+
+    private final DataOriginAccessor<URI, CoapWebresource> accessor;
+    private final CoapHostHealth hostHealth;
+    private final ScheduledExecutorService executor;
+    private final int maxInFlight;
+    private final int maxInFlightPerHost;
+
+    private final TreeSet<Job> queue;
+    private final Map<String, Host> hosts;
+    private long sequence;
+    private int inFlight;
+    private ScheduledFuture<?> dispatchFuture;
+    private long dispatchTime;
+
+    private final AtomicLong succeeded;
+    private final AtomicLong failed;
+    private final AtomicLong retried;
+    private final AtomicLong timeouts;
+    private final AtomicLong observations;
+
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.backend.coap.registry.CoapRegistrationScheduler}
+     *
+     * @param accessor the {@link eu.spitfire.ssp.backend.generic.DataOriginAccessor} to retrieve the status with
+     *                 (usually the {@link eu.spitfire.ssp.backend.coap.CoapWebresourceAccessor})
+     * @param hostHealth the {@link eu.spitfire.ssp.backend.coap.CoapHostHealth} to consider unavailable hosts
+     * @param executor the {@link java.util.concurrent.ScheduledExecutorService} to schedule the requests
+     * @param maxInFlight the maximum number of requests in flight (all hosts)
+     * @param maxInFlightPerHost the maximum number of requests in flight per host
+     */
+    public CoapRegistrationScheduler(DataOriginAccessor<URI, CoapWebresource> accessor, CoapHostHealth hostHealth,
+                                     ScheduledExecutorService executor, int maxInFlight, int maxInFlightPerHost) {
+        this.accessor = accessor;
+        this.hostHealth = hostHealth;
+        this.executor = executor;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.maxInFlightPerHost = Math.max(1, maxInFlightPerHost);
+
+        this.queue = new TreeSet<>();
+        this.hosts = new HashMap<>();
+
+        this.succeeded = new AtomicLong();
+        this.failed = new AtomicLong();
+        this.retried = new AtomicLong();
+        this.timeouts = new AtomicLong();
+        this.observations = new AtomicLong();
+    }
+
+
+    /**
+     * Enqueues the retrieval of the initial status of the given {@link eu.spitfire.ssp.backend.coap.CoapWebresource}.
+     *
+     * @param webresource the {@link eu.spitfire.ssp.backend.coap.CoapWebresource} to retrieve the status of
+     * @param priority the priority of the request (lower values are sent first)
+     *
+     * @return a {@link com.google.common.util.concurrent.ListenableFuture} to be set with the status of the given
+     * resource or with the exception of the last attempt
+     */
+    public ListenableFuture<ExpiringNamedGraph> schedule(CoapWebresource webresource, int priority) {
+        SettableFuture<ExpiringNamedGraph> statusFuture = SettableFuture.create();
+        synchronized (this) {
+            queue.add(new Job(webresource, priority, sequence++, statusFuture, null, null));
+        }
+        dispatch();
+        return statusFuture;
+    }
+
+
+    /**
+     * Enqueues the observation request of the given {@link eu.spitfire.ssp.backend.coap.CoapWebresource}.
+     *
+     * @param observer the {@link eu.spitfire.ssp.backend.coap.CoapWebresourceObserver} to start the observation with
+     * @param webresource the {@link eu.spitfire.ssp.backend.coap.CoapWebresource} to be observed
+     * @param priority the priority of the request (lower values are sent first)
+     *
+     * @return a {@link com.google.common.util.concurrent.ListenableFuture} to be set with <code>null</code> when the
+     * first notification was received or with the exception of the last attempt
+     */
+    public ListenableFuture<Void> scheduleObservation(CoapWebresourceObserver observer, CoapWebresource webresource,
+                                                      int priority) {
+        SettableFuture<Void> observationFuture = SettableFuture.create();
+        synchronized (this) {
+            queue.add(new Job(webresource, priority, sequence++, null, observer, observationFuture));
+        }
+        dispatch();
+        return observationFuture;
+    }
+
+
+    private void dispatch() {
+        List<Job> jobs = new ArrayList<>();
+
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long nextSendTime = Long.MAX_VALUE;
+
+            Iterator<Job> iterator = queue.iterator();
+            while(inFlight < maxInFlight && iterator.hasNext()) {
+                Job job = iterator.next();
+                Host host = getHost(job.getHostName());
+
+                if(host.inFlight >= host.getLimit()) {
+                    continue;
+                }
+                long sendTime = Math.max(host.nextSendTime, hostHealth.getAvailableTime(job.getHostName()));
+                if(sendTime > now) {
+                    nextSendTime = Math.min(nextSendTime, sendTime);
+                    continue;
+                }
+
+                iterator.remove();
+                host.inFlight++;
+                host.nextSendTime = now + host.getGap();
+                inFlight++;
+                jobs.add(job);
+            }
+
+            boolean scheduled = dispatchFuture != null && !dispatchFuture.isDone();
+            if(nextSendTime < Long.MAX_VALUE && (!scheduled || nextSendTime < dispatchTime)) {
+                if(scheduled) {
+                    dispatchFuture.cancel(false);
+                }
+                dispatchTime = nextSendTime;
+                dispatchFuture = executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        dispatch();
+                    }
+                }, nextSendTime - now, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        for(Job job : jobs) {
+            if(job.observer == null) {
+                send(job);
+            } else {
+                sendObservation(job);
+            }
+        }
+    }
+
+
+    private void send(final Job job) {
+        job.attempts++;
+        final long startTime = System.nanoTime();
+        LOG.debug("Retrieve initial status of \"{}\" (attempt #{}).", job.webresource.getIdentifier(), job.attempts);
+
+        Futures.addCallback(accessor.getStatus(job.webresource), new FutureCallback<ExpiringNamedGraph>() {
+
+            @Override
+            public void onSuccess(ExpiringNamedGraph status) {
+                onCompletion(job, (System.nanoTime() - startTime) / 1000000, false, false);
+
+                // the registration needs the model anyway (parse here to sort out malformed payloads)
+                try {
+                    status.getModel();
+                } catch (Exception ex) {
+                    LOG.warn("Could not read initial status of \"{}\"!", job.webresource.getIdentifier());
+                    failed.incrementAndGet();
+                    job.statusFuture.setException(ex);
+                    return;
+                }
+
+                succeeded.incrementAndGet();
+                job.statusFuture.set(status);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                boolean timeout = throwable instanceof OperationTimeoutException;
+                boolean retry = (timeout || throwable instanceof DataOriginUnavailableException)
+                        && job.attempts < MAX_ATTEMPTS;
+
+                if(retry) {
+                    LOG.warn("Retrieval of initial status of \"{}\" failed (retry).",
+                            job.webresource.getIdentifier());
+                    retried.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                    job.statusFuture.setException(throwable);
+                }
+
+                onCompletion(job, (System.nanoTime() - startTime) / 1000000, timeout, retry);
+            }
+
+        }, executor);
+    }
+
+
+    private void sendObservation(final Job job) {
+        job.attempts++;
+        final long startTime = System.nanoTime();
+        LOG.debug("Start observation of \"{}\" (attempt #{}).", job.webresource.getIdentifier(), job.attempts);
+
+        Futures.addCallback(job.observer.observe(job.webresource), new FutureCallback<Void>() {
+
+            @Override
+            public void onSuccess(Void result) {
+                observations.incrementAndGet();
+                job.observationFuture.set(null);
+                onCompletion(job, (System.nanoTime() - startTime) / 1000000, false, false);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                boolean timeout = throwable instanceof OperationTimeoutException;
+                boolean retry = (timeout || throwable instanceof DataOriginUnavailableException)
+                        && job.attempts < MAX_ATTEMPTS;
+
+                if(retry) {
+                    LOG.warn("Observation of \"{}\" failed (retry).", job.webresource.getIdentifier());
+                    retried.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                    job.observationFuture.setException(throwable);
+                }
+
+                onCompletion(job, (System.nanoTime() - startTime) / 1000000, timeout, retry);
+            }
+
+        }, executor);
+    }
+
+
+    private void onCompletion(Job job, long rttMillis, boolean timeout, boolean retry) {
+        synchronized (this) {
+            Host host = getHost(job.getHostName());
+            host.inFlight--;
+            inFlight--;
+
+            if(retry) {
+                queue.add(job);
+            }
+
+            if(timeout) {
+                timeouts.incrementAndGet();
+                host.window = Math.max(1, host.window / 2);
+                host.backoffMillis = host.backoffMillis == 0 ?
+                        INITIAL_BACKOFF_MILLIS : Math.min(MAX_BACKOFF_MILLIS, host.backoffMillis * 2);
+                host.nextSendTime = System.currentTimeMillis() + host.backoffMillis;
+            } else {
+                host.window = Math.min(maxInFlightPerHost, host.window + 1 / host.window);
+                host.backoffMillis = 0;
+                host.srttMillis = host.srttMillis == 0 ?
+                        rttMillis : (1 - RTT_SMOOTHING) * host.srttMillis + RTT_SMOOTHING * rttMillis;
+            }
+
+            if(host.inFlight == 0 && !hasQueuedJobs(job.getHostName())) {
+                hosts.remove(job.getHostName());
+            }
+        }
+
+        dispatch();
+    }
+
+
+    private Host getHost(String hostName) {
+        Host host = hosts.get(hostName);
+        if(host == null) {
+            host = new Host();
+            host.srttMillis = hostHealth.getSrttMillis(hostName);
+            hosts.put(hostName, host);
+        }
+        return host;
+    }
+
+
+    private boolean hasQueuedJobs(String hostName) {
+        for(Job job : queue) {
+            if(job.getHostName().equals(hostName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Returns the number of queued, in-flight, succeeded, failed and retried requests, the number of timeouts and
+     * started observations and the current window and smoothed round trip time per host.
+     *
+     * @return the statistics of this scheduler
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("queued", queue.size());
+        statistics.put("in-flight", inFlight);
+        statistics.put("succeeded", succeeded.get());
+        statistics.put("failed", failed.get());
+        statistics.put("retried", retried.get());
+        statistics.put("timeouts", timeouts.get());
+        statistics.put("observations", observations.get());
+
+        Map<String, Object> hostStatistics = new TreeMap<>();
+        for(Map.Entry<String, Host> entry : hosts.entrySet()) {
+            Map<String, Object> host = new LinkedHashMap<>();
+            host.put("in-flight", entry.getValue().inFlight);
+            host.put("window", entry.getValue().window);
+            host.put("srtt", Math.round(entry.getValue().srttMillis));
+            host.put("backoff", entry.getValue().backoffMillis);
+            hostStatistics.put(entry.getKey(), host);
+        }
+        statistics.put("hosts", hostStatistics);
+
+        return statistics;
+    }
+
+
+    private class Host {
+
+        private int inFlight;
+        private double window = 1;
+        private double srttMillis;
+        private long backoffMillis;
+        private long nextSendTime;
+
+        private int getLimit() {
+            return Math.min(maxInFlightPerHost, (int) window);
+        }
+
+        private long getGap() {
+            return Math.round(srttMillis / window);
+        }
+    }
+
+
+    private static class Job implements Comparable<Job> {
+
+        private final CoapWebresource webresource;
+        private final int priority;
+        private final long sequence;
+        private final SettableFuture<ExpiringNamedGraph> statusFuture;
+        private final CoapWebresourceObserver observer;
+        private final SettableFuture<Void> observationFuture;
+        private int attempts;
+
+        private Job(CoapWebresource webresource, int priority, long sequence,
+                    SettableFuture<ExpiringNamedGraph> statusFuture, CoapWebresourceObserver observer,
+                    SettableFuture<Void> observationFuture) {
+            this.webresource = webresource;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.statusFuture = statusFuture;
+            this.observer = observer;
+            this.observationFuture = observationFuture;
+        }
+
+        private String getHostName() {
+            return webresource.getIdentifier().getHost();
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            if(this.priority != other.priority) {
+                return this.priority < other.priority ? -1 : 1;
+            }
+            return Long.compare(this.sequence, other.sequence);
+        }
+    }
+}
@@ -4,27 +4,35 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.gson.Gson;
 import de.uzl.itm.ncoap.application.endpoint.CoapEndpoint;
 import de.uzl.itm.ncoap.application.linkformat.LinkParam;
 import de.uzl.itm.ncoap.application.linkformat.LinkValueList;
 import de.uzl.itm.ncoap.application.server.resource.NotObservableWebresource;
+import de.uzl.itm.ncoap.message.CoapMessage;
 import de.uzl.itm.ncoap.message.CoapRequest;
 import de.uzl.itm.ncoap.message.CoapResponse;
 import de.uzl.itm.ncoap.message.MessageCode;
 import de.uzl.itm.ncoap.message.MessageType;
+import de.uzl.itm.ncoap.message.options.ContentFormat;
 import de.uzl.itm.ncoap.message.options.OptionValue;
 import eu.spitfire.ssp.backend.coap.CoapWebresource;
 import eu.spitfire.ssp.backend.coap.CoapBackendComponentFactory;
+import eu.spitfire.ssp.backend.coap.CoapWebresourceObserver;
+import eu.spitfire.ssp.backend.generic.DataOriginObserver;
 import eu.spitfire.ssp.backend.generic.DataOriginRegistry;
+import org.apache.commons.configuration.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
 import java.net.URI;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The {@link CoapWebresourceRegistry} starts a
@@ -33,19 +41,54 @@ import java.util.Set;
  * {@link eu.spitfire.ssp.backend.coap.CoapBackendComponentFactory#getCoapApplication()} and
  * waits for external CoAP Web Services to register.
  *
+ * Registering servers may either post their link list (in
+ * {@link de.uzl.itm.ncoap.message.options.ContentFormat#APP_LINK_FORMAT}, block-wise if necessary) or an empty
+ * request to let the registry request their <code>/.well-known/core</code> resource.
+ *
+ * The initial status of the announced resources is retrieved by a
+ * {@link eu.spitfire.ssp.backend.coap.registry.CoapRegistrationScheduler} (i.e. with a limited number of requests
+ * in flight) and registered in batches. The observations of the registered resources are started by the same
+ * scheduler, i.e. with the same limits. The progress of the registrations (and the request statistics of the
+ * {@link eu.spitfire.ssp.backend.coap.CoapWebresourceAccessor}) is published by the resource
+ * <code>/registry/status</code>.
+ *
  * @author Oliver Kleine
  */
 public class CoapWebresourceRegistry extends DataOriginRegistry<URI, CoapWebresource> {
 
     private static Logger LOG = LoggerFactory.getLogger(CoapWebresourceRegistry.class.getName());
 
+    /**
+     * The priority of resources announced as observable (registered first)
+     */
+    public static final int PRIORITY_OBSERVABLE = 0;
+
+    /**
+     * The priority of resources not announced as observable
+     */
+    public static final int PRIORITY_DEFAULT = 1;
+
+    private static final Gson GSON = new Gson();
+
     private CoapBackendComponentFactory componentFactory;
     private CoapEndpoint coapApplication;
 
-    public CoapWebresourceRegistry(CoapBackendComponentFactory componentFactory) {
+    private int maxInFlight;
+    private int maxInFlightPerHost;
+    private int batchSize;
+
+    private CoapRegistrationScheduler scheduler;
+    private Map<String, CoapRegistrationBatch> batches;
+
+    public CoapWebresourceRegistry(CoapBackendComponentFactory componentFactory, Configuration config) {
         super(componentFactory);
         this.componentFactory = componentFactory;
         this.coapApplication = componentFactory.getCoapApplication();
+
+        this.maxInFlight = config.getInt("coap.registration.max-in-flight", 8);
+        this.maxInFlightPerHost = config.getInt("coap.registration.max-in-flight-per-host", 1);
+        this.batchSize = config.getInt("coap.registration.batch-size", 100);
+        this.batches = new ConcurrentHashMap<>();
     }
 
 
@@ -56,7 +99,49 @@ public class CoapWebresourceRegistry extends DataOriginRegistry<URI, CoapWebreso
      */
     @Override
     public void startRegistry() throws Exception {
+        this.scheduler = new CoapRegistrationScheduler(
+                componentFactory.getAccessor(null), componentFactory.getHostHealth(),
+                componentFactory.getInternalTasksExecutor(), maxInFlight, maxInFlightPerHost
+        );
         coapApplication.registerWebresource(new CoapRegistryWebservice(componentFactory));
+        coapApplication.registerWebresource(new CoapRegistryStatusWebservice(componentFactory));
+    }
+
+
+    private void registerWebresources(String remoteHost, int remotePort, LinkValueList resources) throws Exception {
+        Collection<String> uriPaths = resources.getUriReferences();
+        CoapRegistrationBatch batch = new CoapRegistrationBatch(this, remoteHost, uriPaths.size(), batchSize);
+        batches.put(remoteHost, batch);
+
+        for (String uriPath : uriPaths) {
+            URI resourceUri = new URI("coap", null, remoteHost, remotePort, uriPath, null, null);
+            LOG.debug("New CoAP resource: {}", resourceUri);
+
+            CoapWebresource dataOrigin = new CoapWebresource(resourceUri);
+            int priority = isObservable(resources, uriPath) ? PRIORITY_OBSERVABLE : PRIORITY_DEFAULT;
+            batch.add(dataOrigin, scheduler.schedule(dataOrigin, priority));
+        }
+    }
+
+
+    /**
+     * Schedules the observation request with the
+     * {@link eu.spitfire.ssp.backend.coap.registry.CoapRegistrationScheduler}, i.e. the observations of all resources
+     * registered with one batch are started with the same limits as the retrieval of their initial status.
+     */
+    @Override
+    protected void startObservation(CoapWebresource dataOrigin, DataOriginObserver<URI, CoapWebresource> observer) {
+        scheduler.scheduleObservation((CoapWebresourceObserver) observer, dataOrigin, PRIORITY_OBSERVABLE);
+    }
+
+
+    private static boolean isObservable(LinkValueList resources, String uriPath) {
+        for (LinkParam linkParam : resources.getLinkParams(uriPath)) {
+            if (linkParam.getKey() == LinkParam.Key.OBS) {
+                return true;
+            }
+        }
+        return false;
     }
 
 
@@ -97,38 +182,23 @@ public class CoapWebresourceRegistry extends DataOriginRegistry<URI, CoapWebreso
 
 
                 // Get, await and handle the set of available Services on the newly registered Server
-                Futures.addCallback(requestWellKnownCore(remoteAddress), new FutureCallback<LinkValueList>() {
+                Futures.addCallback(getLinkValueList(coapRequest, remoteAddress), new FutureCallback<LinkValueList>() {
                     @Override
                     public void onSuccess(LinkValueList resources) {
                         try {
-                            HashSet<ListenableFuture<Void>> registrationFutures = new HashSet<>();
-
-                            for (String uriPath : resources.getUriReferences()) {
-                                String remoteHost = remoteAddress.getAddress().getHostAddress();
-                                int remotePort = remoteAddress.getPort() == 5683 ? -1 : remoteAddress.getPort();
-                                URI resourceUri = new URI("coap", null, remoteHost, remotePort, uriPath, null, null);
-                                log.debug("New CoAP resource: {}", resourceUri);
-
-                                // register new data origin
-                                CoapWebresource dataOrigin = new CoapWebresource(resourceUri);
-                                registrationFutures.add(registerDataOrigin(dataOrigin));
-                            }
-
-                            ListenableFuture<List<Void>> combinedRegistrationFuture = Futures.successfulAsList(registrationFutures);
-
-                            Futures.addCallback(combinedRegistrationFuture, new FutureCallback<List<Void>>() {
-                                @Override
-                                public void onSuccess(List<Void> voids) {
-                                    CoapResponse coapResponse = new CoapResponse(MessageType.NON, MessageCode.CREATED_201);
-                                    registrationResponseFuture.set(coapResponse);
-                                }
-
-                                @Override
-                                public void onFailure(Throwable throwable) {
-                                    log.error("This should never happen!", throwable);
-                                    registrationResponseFuture.setException(throwable);
-                                }
-                            });
+                            String remoteHost = remoteAddress.getAddress().getHostAddress();
+                            int remotePort = remoteAddress.getPort() == 5683 ? -1 : remoteAddress.getPort();
+                            registerWebresources(remoteHost, remotePort, resources);
+
+                            // answer immediately, the progress is published by the status resource
+                            String summary = String.format(
+                                    "Registration of %d resources started (see /registry/status).",
+                                    resources.getUriReferences().size()
+                            );
+                            CoapResponse coapResponse = new CoapResponse(MessageType.NON, MessageCode.CREATED_201);
+                            byte[] content = summary.getBytes(CoapMessage.CHARSET);
+                            coapResponse.setContent(content, ContentFormat.TEXT_PLAIN_UTF8);
+                            registrationResponseFuture.set(coapResponse);
 
                         } catch (Exception ex) {
                             log.error("Error while creating URI!", ex);
@@ -159,16 +229,41 @@ public class CoapWebresourceRegistry extends DataOriginRegistry<URI, CoapWebreso
         }
 
 
+        /**
+         * Returns the links contained in the given request (if its content is in
+         * {@link de.uzl.itm.ncoap.message.options.ContentFormat#APP_LINK_FORMAT}) or requests the
+         * <code>/.well-known/core</code> resource of the given remote socket otherwise. Large link lists may be
+         * posted block-wise (Block1, RFC 7959). The blocks are reassembled by the
+         * {@link de.uzl.itm.ncoap.application.endpoint.CoapEndpoint}.
+         */
+        private ListenableFuture<LinkValueList> getLinkValueList(CoapRequest coapRequest,
+                InetSocketAddress remoteSocket) throws Exception {
+
+            if (coapRequest.getContentFormat() == ContentFormat.APP_LINK_FORMAT
+                    && coapRequest.getContent().readableBytes() > 0) {
+
+                String linkValueList = coapRequest.getContent().toString(CoapMessage.CHARSET);
+                return Futures.immediateFuture(LinkValueList.decode(linkValueList));
+            }
+
+            return requestWellKnownCore(remoteSocket);
+        }
+
+
         private ListenableFuture<LinkValueList> requestWellKnownCore(final InetSocketAddress remoteSocket) throws Exception {
 
             // create URI
-            final String remoteHost = remoteSocket.getHostName();
+            // the literal address (getHostName() may trigger a blocking reverse lookup)
+            final String remoteHost = remoteSocket.getAddress().getHostAddress();
             final int remotePort = remoteSocket.getPort() == 5683 ? -1 : remoteSocket.getPort();
             URI uri = new URI("coap", null, remoteHost, remotePort, "/.well-known/core", null, null);
 
             // create and send request
             CoapRequest coapRequest = new CoapRequest(MessageType.CON, MessageCode.GET, uri);
-            WellKnownCoreCallback wncCallback = new WellKnownCoreCallback();
+            if (componentFactory.getBlockSize() != null) {
+                coapRequest.setPreferredBlock2Size(componentFactory.getBlockSize());
+            }
+            WellKnownCoreCallback wncCallback = new WellKnownCoreCallback(componentFactory.getHostHealth(), remoteHost);
             this.coapApplication.sendCoapRequest(coapRequest, wncCallback, remoteSocket);
 
             // return the future
@@ -190,4 +285,76 @@ public class CoapWebresourceRegistry extends DataOriginRegistry<URI, CoapWebreso
             // nothing to do
         }
     }
+
+
+    private class CoapRegistryStatusWebservice extends NotObservableWebresource<Void> {
+
+        /**
+         * Creates a new instance of {@link CoapRegistryStatusWebservice}.
+         *
+         * @param componentFactory the {@link eu.spitfire.ssp.backend.coap.CoapBackendComponentFactory} to
+         *                         get the executor from.
+         */
+        public CoapRegistryStatusWebservice(CoapBackendComponentFactory componentFactory) {
+            super("/registry/status", null, OptionValue.MAX_AGE_DEFAULT, componentFactory.getInternalTasksExecutor());
+        }
+
+
+        @Override
+        public void processCoapRequest(SettableFuture<CoapResponse> responseFuture, CoapRequest coapRequest,
+                                       InetSocketAddress remoteAddress) {
+
+            if (coapRequest.getMessageCode() != MessageCode.GET) {
+                responseFuture.set(CoapResponse.createErrorResponse(coapRequest.getMessageType(),
+                        MessageCode.METHOD_NOT_ALLOWED_405, "Only GET messages are allowed!"));
+                return;
+            }
+
+            MessageType messageType =
+                    coapRequest.getMessageType() == MessageType.CON ? MessageType.ACK : MessageType.NON;
+            CoapResponse coapResponse = new CoapResponse(messageType, MessageCode.CONTENT_205);
+            coapResponse.setContent(getSerializedResourceStatus(ContentFormat.APP_JSON), ContentFormat.APP_JSON);
+            responseFuture.set(coapResponse);
+        }
+
+        /**
+         * Returns the progress of the latest registration per host and the statistics of the
+         * {@link eu.spitfire.ssp.backend.coap.registry.CoapRegistrationScheduler}, the
+         * {@link eu.spitfire.ssp.backend.coap.CoapWebresourceAccessor} and the
+         * {@link eu.spitfire.ssp.backend.coap.CoapAddressResolver} as JSON.
+         *
+         * @param contentFormat the number representing the desired content format (ignored)
+         * @return the progress of the registrations as JSON
+         */
+        @Override
+        public byte[] getSerializedResourceStatus(long contentFormat) {
+            List<Map<String, Object>> progress = new ArrayList<>();
+            for (CoapRegistrationBatch batch : batches.values()) {
+                progress.add(batch.getProgress());
+            }
+
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("registrations", progress);
+            status.put("scheduler", scheduler.getStatistics());
+            status.put("accessor", componentFactory.getAccessor(null).getStatistics());
+            status.put("resolver", componentFactory.getAddressResolver().getStatistics());
+            status.put("health", componentFactory.getHostHealth().getStatistics());
+            return GSON.toJson(status).getBytes(CoapMessage.CHARSET);
+        }
+
+        @Override
+        public byte[] getEtag(long contentFormat) {
+            return new byte[1];
+        }
+
+        @Override
+        public void updateEtag(Void resourceStatus) {
+            // nothing to do
+        }
+
+        @Override
+        public void shutdown() {
+            // nothing to do
+        }
+    }
 }
@@ -8,6 +8,7 @@ import de.uzl.itm.ncoap.application.client.ClientCallback;
 import de.uzl.itm.ncoap.application.linkformat.LinkValueList;
 import de.uzl.itm.ncoap.message.CoapMessage;
 import de.uzl.itm.ncoap.message.CoapResponse;
+import eu.spitfire.ssp.backend.coap.CoapHostHealth;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.handler.timeout.TimeoutException;
 import org.slf4j.Logger;
@@ -28,10 +29,22 @@ public class WellKnownCoreCallback extends ClientCallback {
 
     private SettableFuture<LinkValueList> wellKnownCoreFuture;
     private AtomicInteger transmissionCounter;
+    private CoapHostHealth hostHealth;
+    private String host;
+    private long startTime;
 
-    public WellKnownCoreCallback(){
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.backend.coap.registry.WellKnownCoreCallback}
+     *
+     * @param hostHealth the {@link eu.spitfire.ssp.backend.coap.CoapHostHealth} to record the response or timeout
+     * @param host the host the request is sent to
+     */
+    public WellKnownCoreCallback(CoapHostHealth hostHealth, String host){
         this.transmissionCounter = new AtomicInteger(0);
         this.wellKnownCoreFuture = SettableFuture.create();
+        this.hostHealth = hostHealth;
+        this.host = host;
+        this.startTime = System.nanoTime();
     }
 
     /**
@@ -57,6 +70,7 @@ public class WellKnownCoreCallback extends ClientCallback {
      */
     @Override
     public void processCoapResponse(final CoapResponse coapResponse) {
+        hostHealth.recordResponse(host, (System.nanoTime() - startTime) / 1000000);
         try {
             ChannelBuffer payload = coapResponse.getContent();
             wellKnownCoreFuture.set(LinkValueList.decode(payload.toString(CoapMessage.CHARSET)));
@@ -101,6 +115,7 @@ public class WellKnownCoreCallback extends ClientCallback {
     public void processTransmissionTimeout() {
         String message = "Transmission of request for .well-known/core timed out!";
         log.error(message);
+        hostHealth.recordTimeout(host);
         wellKnownCoreFuture.setException(new TimeoutException(message));
     }
 
@@ -51,6 +51,25 @@ public abstract class DataOriginAccessor<I, D extends DataOrigin<I>> {
         return result;
     }
 
+    /**
+     * Returns a future that is to be set with actual status of the given
+     * {@link eu.spitfire.ssp.backend.generic.DataOrigin}. If <code>bypassCache</code> is <code>true</code>, the
+     * status must not be taken from a cache of the accessor (if any), e.g. to refresh a graph before its expiry.
+     *
+     * Accessors without a cache do not need to override this method as it delegates to
+     * {@link #getStatus(DataOrigin)}.
+     *
+     * @param dataOrigin the {@link eu.spitfire.ssp.backend.generic.DataOrigin} to retrieve the status from
+     * @param bypassCache <code>true</code> if the status must be retrieved from the data origin or
+     *                    <code>false</code> if a cached (not yet expired) status is acceptable
+     *
+     * @return a {@link com.google.common.util.concurrent.ListenableFuture} to be set with the the actual
+     * {@link eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph} of the given data origin
+     */
+    public ListenableFuture<ExpiringNamedGraph> getStatus(D dataOrigin, boolean bypassCache){
+        return getStatus(dataOrigin);
+    }
+
     /**
      * Extending classes are supposed to override this method to support status changes.
      *
@@ -6,7 +6,9 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import eu.spitfire.ssp.server.internal.message.DataOriginReplacementRequest;
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
+import eu.spitfire.ssp.server.internal.message.DataOriginBulkRegistrationRequest;
 import eu.spitfire.ssp.server.internal.message.DataOriginRegistrationRequest;
+import eu.spitfire.ssp.server.internal.exception.NamedGraphNotFoundException;
 import eu.spitfire.ssp.server.internal.exception.OperationNotSupportedException;
 import eu.spitfire.ssp.server.webservices.HttpWebservice;
 import eu.spitfire.ssp.server.internal.utils.HttpResponseFactory;
@@ -23,6 +25,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.net.URI;
 import java.net.URLDecoder;
 import java.util.HashMap;
 import java.util.Locale;
@@ -85,7 +88,36 @@ public class DataOriginMapper<I, D extends DataOrigin<I>> extends HttpWebservice
 
 
     /**
-     * Handles instances of {@link eu.spitfire.ssp.server.internal.message.DataOriginRegistrationRequest}
+     * Retrieves the actual status of the graph with the given name from its
+     * {@link eu.spitfire.ssp.backend.generic.DataOrigin} using the appropriate
+     * {@link eu.spitfire.ssp.backend.generic.DataOriginAccessor}, e.g. to refresh the cache.
+     *
+     * @param graphName the name of the graph to be retrieved
+     * @param bypassCache <code>true</code> if the status must not be taken from a cache of the accessor (see
+     *                    {@link DataOriginAccessor#getStatus(DataOrigin, boolean)})
+     *
+     * @return a {@link com.google.common.util.concurrent.ListenableFuture} to be set with the actual status of the
+     * graph or with an exception if the status could not be retrieved
+     */
+    public ListenableFuture<ExpiringNamedGraph> getStatus(URI graphName, boolean bypassCache){
+        D dataOrigin = this.proxyUriToDataOrigin.get("/?graph=" + graphName);
+        DataOriginAccessor<I, D> accessor = dataOrigin == null ? null : this.componentFactory.getAccessor(dataOrigin);
+
+        if(accessor == null){
+            SettableFuture<ExpiringNamedGraph> result = SettableFuture.create();
+            result.setException(new NamedGraphNotFoundException(
+                    String.format("No data origin for graph %s found in backend %s", graphName, getBackendName())
+            ));
+            return result;
+        }
+
+        return accessor.getStatus(dataOrigin, bypassCache);
+    }
+
+
+    /**
+     * Handles instances of {@link eu.spitfire.ssp.server.internal.message.DataOriginRegistrationRequest} and
+     * {@link eu.spitfire.ssp.server.internal.message.DataOriginBulkRegistrationRequest}
      * @param ctx
      * @param me
      * @throws Exception
@@ -95,29 +127,14 @@ public class DataOriginMapper<I, D extends DataOrigin<I>> extends HttpWebservice
     public void writeRequested(final ChannelHandlerContext ctx, final MessageEvent me) throws Exception {
 
         if(me.getMessage() instanceof DataOriginRegistrationRequest){
+            addDataOrigin((DataOriginRegistrationRequest<I, D>) me.getMessage());
+        }
 
-            DataOriginRegistrationRequest<I, D> registration = (DataOriginRegistrationRequest<I, D>) me.getMessage();
-            SettableFuture<?> registrationFuture = registration.getRegistrationFuture();
-
-            final D dataOrigin = registration.getDataOrigin();
-            final String proxyUri = "/?graph=" + dataOrigin.getGraphName();
-
-            addDataOrigin(proxyUri, dataOrigin);
-
-            Futures.addCallback(registrationFuture, new FutureCallback<Object>() {
-
-                @Override
-                public void onSuccess(Object result) {
-                    //nothing to do...
-                }
-
-                @Override
-                public void onFailure(Throwable throwable) {
-                    LOG.error("Error in registration of {}", proxyUri, throwable);
-                    removeDataOrigin(proxyUri, dataOrigin);
-                }
-            });
-
+        else if(me.getMessage() instanceof DataOriginBulkRegistrationRequest){
+            DataOriginBulkRegistrationRequest<I, D> request = (DataOriginBulkRegistrationRequest<I, D>) me.getMessage();
+            for(DataOriginRegistrationRequest<I, D> registration : request.getRegistrations()){
+                addDataOrigin(registration);
+            }
         }
 
         else if(me.getMessage() instanceof DataOriginReplacementRequest){
@@ -129,6 +146,30 @@ public class DataOriginMapper<I, D extends DataOrigin<I>> extends HttpWebservice
     }
 
 
+    private void addDataOrigin(DataOriginRegistrationRequest<I, D> registration){
+        SettableFuture<?> registrationFuture = registration.getRegistrationFuture();
+
+        final D dataOrigin = registration.getDataOrigin();
+        final String proxyUri = "/?graph=" + dataOrigin.getGraphName();
+
+        addDataOrigin(proxyUri, dataOrigin);
+
+        Futures.addCallback(registrationFuture, new FutureCallback<Object>() {
+
+            @Override
+            public void onSuccess(Object result) {
+                //nothing to do...
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                LOG.error("Error in registration of {}", proxyUri, throwable);
+                removeDataOrigin(proxyUri, dataOrigin);
+            }
+        });
+    }
+
+
     private void addDataOrigin(String proxyUri, D dataOrigin){
 
         I identifier = dataOrigin.getIdentifier();
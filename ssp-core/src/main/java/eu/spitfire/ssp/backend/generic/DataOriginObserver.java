@@ -3,11 +3,15 @@ package eu.spitfire.ssp.backend.generic;
 import com.google.common.util.concurrent.ListenableFuture;
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
 import eu.spitfire.ssp.server.internal.message.InternalCacheUpdateRequest;
+import eu.spitfire.ssp.server.internal.message.InternalExpiryUpdateRequest;
 import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.local.LocalServerChannel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.net.URI;
+import java.util.Date;
+
 /**
  * An {@link DataOriginObserver} is the component to observe the status of one or more instances of
  * {@link eu.spitfire.ssp.backend.generic.DataOrigin}. Whenever that status changes, the observer
@@ -53,6 +57,28 @@ public abstract class DataOriginObserver<I, D extends DataOrigin<I>>{
     }
 
 
+    /**
+     * Extends the expiry of the cached graph with the given name without replacing its content. Extending classes
+     * should invoke this method instead of
+     * {@link #updateCache(eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph)} if the observed status did
+     * not change (e.g. a notification with the same ETag as the previous one).
+     *
+     * @param graphName the name of the graph to update the expiry of
+     * @param expiry the new expiry of the graph
+     *
+     * @return a {@link com.google.common.util.concurrent.ListenableFuture} that is set with <code>null</code> if the
+     * expiry was updated or with a {@link eu.spitfire.ssp.server.internal.exception.NamedGraphNotFoundException} if
+     * the graph is not contained in the cache (i.e. a complete update is required).
+     */
+    public final ListenableFuture<Void> updateExpiry(URI graphName, Date expiry){
+        LocalServerChannel localChannel = componentFactory.getLocalChannel();
+        InternalExpiryUpdateRequest updateRequest = new InternalExpiryUpdateRequest(graphName, expiry);
+        Channels.write(localChannel, updateRequest);
+
+        return updateRequest.getExpiryUpdateFuture();
+    }
+
+
 //    public final ListenableFuture<Void> updateCache(final SensorValueUpdate sensorValueUpdate){
 //        InternalCacheUpdateRequest cacheUpdateTask = new InternalCacheUpdateRequest(sensorValueUpdate);
 //        return updateCache(cacheUpdateTask);
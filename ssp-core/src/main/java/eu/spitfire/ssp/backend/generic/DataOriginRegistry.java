@@ -6,6 +6,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import eu.spitfire.ssp.server.internal.message.DataOriginReplacementRequest;
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
+import eu.spitfire.ssp.server.internal.message.DataOriginBulkRegistrationRequest;
 import eu.spitfire.ssp.server.internal.message.DataOriginDeregistrationRequest;
 import eu.spitfire.ssp.server.internal.message.DataOriginRegistrationRequest;
 import com.hp.hpl.jena.rdf.model.Model;
@@ -15,7 +16,11 @@ import org.jboss.netty.channel.Channels;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * A {@link DataOriginRegistry} is the component to register new data origins, i.e. the resources from data origins.
@@ -41,6 +46,64 @@ public abstract class DataOriginRegistry<I, D extends DataOrigin<I>> {
         return registrationFuture;
     }
 
+    /**
+     * Registers several data origins with their (already retrieved) initial status at once, i.e. the initial status
+     * of all data origins is put into the cache with a single bulk insertion. This is to be preferred over several
+     * calls of {@link #registerDataOrigin(DataOrigin, ExpiringNamedGraph)} if many data origins are to be registered,
+     * e.g. all resources behind a border router.
+     *
+     * @param initialStatuses the data origins to be registered as keys and their initial status as values
+     *
+     * @return the data origins as keys and {@link com.google.common.util.concurrent.ListenableFuture}s containing
+     * the result of their particular registration as values
+     */
+    public final Map<D, ListenableFuture<Void>> registerDataOrigins(Map<D, ExpiringNamedGraph> initialStatuses){
+        Map<D, ListenableFuture<Void>> result = new LinkedHashMap<>();
+        if(initialStatuses.isEmpty()){
+            return result;
+        }
+
+        final List<DataOriginRegistrationRequest<I, D>> registrations = new ArrayList<>(initialStatuses.size());
+        for(Map.Entry<D, ExpiringNamedGraph> entry : initialStatuses.entrySet()){
+            D dataOrigin = entry.getKey();
+            SettableFuture<Void> registrationFuture = SettableFuture.create();
+            registrations.add(new DataOriginRegistrationRequest<>(
+                    dataOrigin, entry.getValue().getModel(), entry.getValue().getExpiry(),
+                    componentFactory.getDataOriginMapper(), registrationFuture
+            ));
+            awaitRegistration(dataOrigin, registrationFuture);
+            result.put(dataOrigin, registrationFuture);
+        }
+
+        log.debug("Try to register {} data origins at once.", registrations.size());
+
+        try{
+            //Send bulk registration message
+            DataOriginBulkRegistrationRequest<I, D> request = new DataOriginBulkRegistrationRequest<>(registrations);
+            ChannelFuture channelFuture = Channels.write(componentFactory.getLocalChannel(), request);
+            channelFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if(!future.isSuccess()){
+                        log.error("Exception on ChannelFuture during bulk registration.", future.getCause());
+                        for(DataOriginRegistrationRequest<I, D> registration : registrations){
+                            registration.getRegistrationFuture().setException(future.getCause());
+                        }
+                    }
+                }
+            });
+        }
+
+        catch (Exception ex) {
+            log.error("Bulk registration of {} data origins failed!", registrations.size(), ex);
+            for(DataOriginRegistrationRequest<I, D> registration : registrations){
+                registration.getRegistrationFuture().setException(ex);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * This method is to be called by implementing classes, i.e. registries for particular data origins,
      * to register the model from that data origin at the SSP.
@@ -119,32 +182,7 @@ public abstract class DataOriginRegistry<I, D extends DataOrigin<I>> {
 
 
             //Await registration result
-            Futures.addCallback(registrationFuture, new FutureCallback<Void>() {
-                @Override
-                public void onSuccess(Void result) {
-                    log.info("Successfully registered new data origin \"{}\".", dataOrigin);
-
-                    //Start observation if the data origin is observable
-                    if(dataOrigin.isObservable()){
-                        DataOriginObserver<I, D> observer = componentFactory.getObserver(dataOrigin);
-
-                        if(observer != null){
-                            log.info("Start observation of data origin \"{}\".", dataOrigin);
-                            observer.startObservation(dataOrigin);
-                        }
-                        else{
-                            log.warn("Backend component factory did not return a data origin observer for \"{}\"",
-                                    dataOrigin.getIdentifier());
-                        }
-                    }
-                }
-
-                @Override
-                public void onFailure(Throwable t) {
-                    log.warn("Exception during registration of graph {}.", dataOrigin.getGraphName(), t.getMessage());
-                    log.debug("Exception during registration of graph {}", dataOrigin.getGraphName(), t);
-                }
-            });
+            awaitRegistration(dataOrigin, registrationFuture);
         }
 
         catch (Exception ex) {
@@ -154,6 +192,48 @@ public abstract class DataOriginRegistry<I, D extends DataOrigin<I>> {
     }
 
 
+    private void awaitRegistration(final D dataOrigin, SettableFuture<Void> registrationFuture){
+        Futures.addCallback(registrationFuture, new FutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                log.info("Successfully registered new data origin \"{}\".", dataOrigin);
+
+                //Start observation if the data origin is observable
+                if(dataOrigin.isObservable()){
+                    DataOriginObserver<I, D> observer = componentFactory.getObserver(dataOrigin);
+
+                    if(observer != null){
+                        log.info("Start observation of data origin \"{}\".", dataOrigin);
+                        startObservation(dataOrigin, observer);
+                    }
+                    else{
+                        log.warn("Backend component factory did not return a data origin observer for \"{}\"",
+                                dataOrigin.getIdentifier());
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("Exception during registration of graph {}.", dataOrigin.getGraphName(), t.getMessage());
+                log.debug("Exception during registration of graph {}", dataOrigin.getGraphName(), t);
+            }
+        });
+    }
+
+
+    /**
+     * Starts the observation of the given (successfully registered) data origin. Implementing classes may override
+     * this method to limit the number of observations started at once, e.g. after a bulk registration.
+     *
+     * @param dataOrigin the data origin to be observed
+     * @param observer the {@link eu.spitfire.ssp.backend.generic.DataOriginObserver} to observe the data origin
+     */
+    protected void startObservation(D dataOrigin, DataOriginObserver<I, D> observer){
+        observer.startObservation(dataOrigin);
+    }
+
+
     public ListenableFuture<Void> unregisterDataOrigin(final I identifier){
         final SettableFuture<Void> unregistrationFuture = SettableFuture.create();
         log.info("Try to unregister data origin: \"{}\".", identifier);
@@ -28,6 +28,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import eu.spitfire.ssp.backend.generic.DataOrigin;
 import eu.spitfire.ssp.backend.generic.DataOriginMapper;
+import eu.spitfire.ssp.server.internal.message.DataOriginBulkRegistrationRequest;
 import eu.spitfire.ssp.server.internal.message.DataOriginDeregistrationRequest;
 import eu.spitfire.ssp.server.internal.message.DataOriginRegistrationRequest;
 import eu.spitfire.ssp.server.internal.message.DataOriginReplacementRequest;
@@ -108,6 +109,11 @@ public class HttpRequestDispatcher extends SimpleChannelHandler {
         else{
             //Lookup proper http request processor
             httpWebservice = registeredWebservices.get(proxyURI);
+
+            //Webservices are registered without query (e.g. /services/graph-directory for ...?cursor=...)
+            if(httpWebservice == null && proxyURI.getQuery() != null && !"/".equals(proxyURI.getPath())){
+                httpWebservice = registeredWebservices.get(new URI(null, null, proxyURI.getPath(), null));
+            }
         }
 
         //Send NOT FOUND if there is no proper processor
@@ -149,30 +155,14 @@ public class HttpRequestDispatcher extends SimpleChannelHandler {
         }
 
         else if(me.getMessage() instanceof DataOriginRegistrationRequest){
-            final DataOriginRegistrationRequest request = (DataOriginRegistrationRequest) me.getMessage();
-
-            URI graphName = request.getDataOrigin().getGraphName();
-            Object identifier = request.getDataOrigin().getIdentifier();
-            DataOriginMapper proxyWebservice = request.getHttpProxyService();
-
-            log.info("Try to register graph \"{}\" from data origin \"{}\" with backend \"{}\".",
-                    new Object[]{graphName, identifier, proxyWebservice.getBackendName()});
-
-            final URI proxyURI = new URI("/?graph=" + graphName);
-            registerProxyWebservice(proxyURI, request.getHttpProxyService());
-
-            Futures.addCallback(request.getRegistrationFuture(), new FutureCallback<Object>() {
-                @Override
-                public void onSuccess(Object result) {
-                    //nothing to do
-                }
-
-                @Override
-                public void onFailure(Throwable t) {
-                        unregisterProxyWebservice(proxyURI);
-                }
+            registerDataOrigin((DataOriginRegistrationRequest) me.getMessage());
+        }
 
-            });
+        else if(me.getMessage() instanceof DataOriginBulkRegistrationRequest){
+            DataOriginBulkRegistrationRequest request = (DataOriginBulkRegistrationRequest) me.getMessage();
+            for(Object registration : request.getRegistrations()){
+                registerDataOrigin((DataOriginRegistrationRequest) registration);
+            }
         }
 
         else if(me.getMessage() instanceof DataOriginDeregistrationRequest){
@@ -218,6 +208,32 @@ public class HttpRequestDispatcher extends SimpleChannelHandler {
     }
 
 
+    private void registerDataOrigin(final DataOriginRegistrationRequest request) throws Exception{
+        URI graphName = request.getDataOrigin().getGraphName();
+        Object identifier = request.getDataOrigin().getIdentifier();
+        DataOriginMapper proxyWebservice = request.getHttpProxyService();
+
+        log.info("Try to register graph \"{}\" from data origin \"{}\" with backend \"{}\".",
+                new Object[]{graphName, identifier, proxyWebservice.getBackendName()});
+
+        final URI proxyURI = new URI("/?graph=" + graphName);
+        registerProxyWebservice(proxyURI, request.getHttpProxyService());
+
+        Futures.addCallback(request.getRegistrationFuture(), new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+                //nothing to do
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                unregisterProxyWebservice(proxyURI);
+            }
+
+        });
+    }
+
+
     private void registerProxyWebservice(URI proxyUri, HttpWebservice httpWebservice){
         if(registeredWebservices.containsKey(proxyUri))
             return;
@@ -31,20 +31,24 @@ import eu.spitfire.ssp.server.internal.wrapper.QueryExecutionResults;
 import eu.spitfire.ssp.server.internal.utils.HttpResponseFactory;
 import eu.spitfire.ssp.server.internal.utils.Language;
 import eu.spitfire.ssp.server.internal.utils.QueryResultsFormat;
-import com.hp.hpl.jena.query.ResultSetFormatter;
+import eu.spitfire.ssp.server.internal.utils.SparqlResultsWriter;
+import com.hp.hpl.jena.query.ResultSet;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.*;
+import org.jboss.netty.handler.codec.http.DefaultHttpChunk;
+import org.jboss.netty.handler.codec.http.DefaultHttpResponse;
+import org.jboss.netty.handler.codec.http.HttpChunk;
 import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.HttpVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * The {@link HttpSemanticPayloadFormatter} recognizes the requested mimetype from the incoming {@link HttpRequest}.
@@ -63,6 +67,21 @@ public class HttpSemanticPayloadFormatter extends SimpleChannelHandler {
     public static final Language DEFAULT_LANGUAGE = Language.RDF_TURTLE;
     public static final QueryResultsFormat DEFAULT_SPARQL_RESULT_FORMAT = QueryResultsFormat.XML;
 
+    /**
+     * Name of the response header containing the duration of the SPARQL query execution (in milliseconds)
+     */
+    public static final String QUERY_DURATION = "X-Query-Duration";
+
+    /**
+     * Name of the response header containing the token to retrieve the next page of SPARQL results
+     */
+    public static final String CONTINUATION_TOKEN = "X-Continuation-Token";
+
+    /**
+     * The (approximate) size of the chunks of streamed SPARQL results (in bytes)
+     */
+    public static final int CHUNK_SIZE = 8192;
+
 //    private static final int RDF = 1;
 //    private static final int SPARQL_RESULT = 2;
 
@@ -207,7 +226,7 @@ public class HttpSemanticPayloadFormatter extends SimpleChannelHandler {
 	public void writeRequested(ChannelHandlerContext ctx, final MessageEvent me) throws Exception {
         LOG.debug("Downstream: {}", me.getMessage());
 
-        if(me.getMessage() instanceof HttpResponse){
+        if(me.getMessage() instanceof HttpResponse || me.getMessage() instanceof HttpChunk){
             ctx.sendDownstream(me);
             return;
         }
@@ -229,7 +248,7 @@ public class HttpSemanticPayloadFormatter extends SimpleChannelHandler {
                     ((ExpiringGraph) me.getMessage()));
         }
 
-        // serialize SPARQL results in HTTP response
+        // stream SPARQL results (SPARQL protocol, i.e. the results are the payload)
         else if (me.getMessage() instanceof QueryExecutionResults) {
             QueryResultsFormat resultsFormat = null;
             if (acceptHeader != null) {
@@ -239,16 +258,8 @@ public class HttpSemanticPayloadFormatter extends SimpleChannelHandler {
                 resultsFormat = DEFAULT_SPARQL_RESULT_FORMAT;
             }
 
-            QueryExecutionResults results = (QueryExecutionResults) me.getMessage();
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            ResultSetFormatter.output(outputStream, results.getResultSet(), resultsFormat.getResultsFormat());
-
-            // create the HTTP response
-            Map<String, String> content = new HashMap<>();
-            content.put("results", outputStream.toString());
-            content.put("duration", String.valueOf(results.getDuration()));
-
-            httpResponse = HttpResponseFactory.createHttpJsonResponse(httpRequest.getProtocolVersion(), content);
+            new ChunkedResultsWriter(ctx, me, resultsFormat, httpRequest.getProtocolVersion()).start();
+            return;
         }
 
         // some unexpected error (should never happen!)
@@ -391,5 +402,111 @@ public class HttpSemanticPayloadFormatter extends SimpleChannelHandler {
 
         return result;
     }
-}
 
+
+    /**
+     * Writes the {@link com.hp.hpl.jena.query.ResultSet} of {@link QueryExecutionResults} as chunked HTTP response.
+     * The next chunk (of about {@link #CHUNK_SIZE} bytes) is serialized when the previous one was written, i.e. the
+     * serialization never runs ahead of the client. The execution duration (milliseconds) and the token to retrieve
+     * the next page (if any) are sent as headers {@link #QUERY_DURATION} and {@link #CONTINUATION_TOKEN}. The future
+     * of the original write is completed after the last chunk was written.
+     */
+    private static class ChunkedResultsWriter {
+
+        private final ChannelHandlerContext ctx;
+        private final MessageEvent me;
+        private final QueryResultsFormat format;
+        private final HttpVersion httpVersion;
+        private final QueryExecutionResults results;
+        private final SparqlResultsWriter writer;
+        private boolean headWritten;
+
+        private ChunkedResultsWriter(ChannelHandlerContext ctx, MessageEvent me, QueryResultsFormat format,
+                                     HttpVersion httpVersion){
+            this.ctx = ctx;
+            this.me = me;
+            this.format = format;
+            this.httpVersion = httpVersion;
+            this.results = (QueryExecutionResults) me.getMessage();
+            this.writer = SparqlResultsWriter.create(format, results.getResultSet().getResultVars());
+        }
+
+
+        private void start(){
+            HttpResponse httpResponse = new DefaultHttpResponse(httpVersion, HttpResponseStatus.OK);
+            httpResponse.setChunked(true);
+            httpResponse.headers().set(HttpHeaders.Names.TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+            httpResponse.headers().set(HttpHeaders.Names.CONTENT_TYPE, format == QueryResultsFormat.BINARY ?
+                    format.getMimeType() : format.getMimeType() + "; charset=UTF-8");
+            httpResponse.headers().set(QUERY_DURATION, results.getDuration());
+            if(results.getNext() != null){
+                httpResponse.headers().set(CONTINUATION_TOKEN, results.getNext());
+            }
+            httpResponse.headers().set("Access-Control-Expose-Headers", QUERY_DURATION + ", " + CONTINUATION_TOKEN);
+
+            write(httpResponse);
+        }
+
+
+        private void writeNextChunk(){
+            if(!ctx.getChannel().isConnected()){
+                LOG.warn("Connection to {} closed (SPARQL results aborted)!", me.getRemoteAddress());
+                me.getFuture().cancel();
+                return;
+            }
+
+            ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(CHUNK_SIZE + CHUNK_SIZE / 4);
+            ResultSet resultSet = results.getResultSet();
+            try{
+                if(!headWritten){
+                    writer.writeHead(buffer);
+                    headWritten = true;
+                }
+                while(resultSet.hasNext() && buffer.readableBytes() < CHUNK_SIZE){
+                    writer.writeRow(buffer, resultSet.nextBinding());
+                }
+                if(!resultSet.hasNext()){
+                    writer.writeTail(buffer);
+                }
+            }
+            catch(Exception ex){
+                LOG.error("Could not serialize SPARQL results for {} (aborted)!", me.getRemoteAddress(), ex);
+                me.getFuture().setFailure(ex);
+                ctx.getChannel().close();
+                return;
+            }
+
+            if(resultSet.hasNext()){
+                write(new DefaultHttpChunk(buffer));
+            }
+            else{
+                if(buffer.readable()){
+                    Channels.write(ctx, Channels.future(ctx.getChannel()), new DefaultHttpChunk(buffer),
+                            me.getRemoteAddress());
+                }
+                Channels.write(ctx, me.getFuture(), HttpChunk.LAST_CHUNK, me.getRemoteAddress());
+                LOG.info("SPARQL results written to {}.", me.getRemoteAddress());
+            }
+        }
+
+
+        private void write(Object message){
+            ChannelFuture channelFuture = Channels.future(ctx.getChannel());
+            channelFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if(future.isSuccess()){
+                        writeNextChunk();
+                    } else {
+                        LOG.warn("Could not write SPARQL results to {} (aborted)!", me.getRemoteAddress(),
+                                future.getCause());
+                        me.getFuture().setFailure(future.getCause());
+                        future.getChannel().close();
+                    }
+                }
+            });
+
+            Channels.write(ctx, channelFuture, message, me.getRemoteAddress());
+        }
+    }
+}
@@ -24,34 +24,64 @@
  */
 package eu.spitfire.ssp.server.handler;
 
+import com.google.common.base.Function;
 import com.google.common.util.concurrent.*;
+import eu.spitfire.ssp.backend.generic.DataOriginMapper;
+import eu.spitfire.ssp.server.internal.history.ObservationHistory;
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringGraph;
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
 import eu.spitfire.ssp.server.internal.wrapper.QueryExecutionResults;
+import eu.spitfire.ssp.server.internal.wrapper.StaleGraph;
+import eu.spitfire.ssp.server.internal.exception.DataOriginUnavailableException;
+import eu.spitfire.ssp.server.internal.exception.NamedGraphNotFoundException;
 import eu.spitfire.ssp.server.internal.message.*;
-import eu.spitfire.ssp.server.internal.utils.Converter;
+import eu.spitfire.ssp.server.internal.utils.GraphCatalog;
+import eu.spitfire.ssp.server.internal.utils.GraphUpdateListener;
 import eu.spitfire.ssp.server.internal.utils.HttpResponseFactory;
+import eu.spitfire.ssp.server.internal.utils.NegativeCache;
+import eu.spitfire.ssp.server.internal.utils.QueryCoalescer;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryFactory;
 import com.hp.hpl.jena.query.ResultSet;
 import com.hp.hpl.jena.query.Syntax;
 import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.sparql.core.Quad;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.*;
 import org.jboss.netty.handler.codec.http.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -69,9 +99,31 @@ public abstract class SemanticCache extends SimpleChannelHandler {
     //private static final TimeUnit MILLIS = TimeUnit.MILLISECONDS;
 
     private Map<URI, ScheduledFuture> namedGraphExpiryFutures = Collections.synchronizedMap(new HashMap<>());
+    private Map<URI, Date> namedGraphExpiries = new ConcurrentHashMap<>();
+    private Map<URI, Long> namedGraphUpdates = new ConcurrentHashMap<>();
+
+    //to retrieve the actual status of a graph on cache misses and for stale graphs
+    private Map<URI, DataOriginMapper> dataOriginMappers = new ConcurrentHashMap<>();
+    private ConcurrentHashMap<URI, ListenableFuture<ExpiringNamedGraph>> refreshFutures = new ConcurrentHashMap<>();
+    //the statuses put into the cache last (weakly referenced, to detect refreshes returning the same status)
+    private Map<URI, WeakReference<ExpiringNamedGraph>> namedGraphStatuses = new ConcurrentHashMap<>();
+    private long staleWhileRevalidateMillis = 0;
+
+    //to refresh frequently requested graphs before they expire
+    private Map<URI, AtomicInteger> namedGraphAccesses = new ConcurrentHashMap<>();
+    private Map<URI, ScheduledFuture> refreshAheadFutures = new ConcurrentHashMap<>();
+    private double refreshAheadThreshold = 0;
+    private long refreshAheadLeadMillis;
+    private long refreshAheadJitterMillis;
+    private Semaphore refreshAheadPermits;
 
     private ListeningScheduledExecutorService internalTasksExecutor;
     private ExecutorService ioTasksExecutor;
+    private ObservationHistory observationHistory;
+    private NegativeCache negativeCache;
+    private GraphCatalog catalog = new GraphCatalog();
+    private QueryCoalescer queryCoalescer = new QueryCoalescer();
+    private List<GraphUpdateListener> graphUpdateListeners = new CopyOnWriteArrayList<>();
 
     protected SemanticCache(ExecutorService ioTasksExecutor, ScheduledExecutorService internalTasksExecutor) {
         this.ioTasksExecutor = ioTasksExecutor;
@@ -83,6 +135,198 @@ public abstract class SemanticCache extends SimpleChannelHandler {
         return this.internalTasksExecutor;
     }
 
+
+    /**
+     * Returns the {@link eu.spitfire.ssp.server.internal.utils.GraphCatalog} of the named graphs contained in this
+     * cache, i.e. the subjects and types per graph and some meta data (e.g. the number of triples).
+     *
+     * @return the {@link eu.spitfire.ssp.server.internal.utils.GraphCatalog} of this cache
+     */
+    public GraphCatalog getCatalog(){
+        return this.catalog;
+    }
+
+
+    private void addToCatalog(URI graphName, Model graph){
+        DataOriginMapper dataOriginMapper = dataOriginMappers.get(graphName);
+        this.catalog.putNamedGraph(graphName, graph,
+                dataOriginMapper == null ? null : dataOriginMapper.getBackendName());
+    }
+
+
+    /**
+     * Sets the (optional) {@link eu.spitfire.ssp.server.internal.history.ObservationHistory} to record the sensor
+     * values of all graphs put into this cache.
+     *
+     * @param observationHistory the {@link eu.spitfire.ssp.server.internal.history.ObservationHistory} to record the
+     * sensor values or <code>null</code> to disable recording
+     */
+    public void setObservationHistory(ObservationHistory observationHistory){
+        this.observationHistory = observationHistory;
+    }
+
+
+    /**
+     * Adds a {@link eu.spitfire.ssp.server.internal.utils.GraphUpdateListener} to be notified whenever a named graph
+     * was put into or deleted from this cache.
+     *
+     * @param listener the {@link eu.spitfire.ssp.server.internal.utils.GraphUpdateListener} to be added
+     */
+    public void addGraphUpdateListener(GraphUpdateListener listener){
+        this.graphUpdateListeners.add(listener);
+    }
+
+
+    private void notifyGraphUpdated(ExpiringNamedGraph graph){
+        for(GraphUpdateListener listener : this.graphUpdateListeners){
+            try{
+                listener.graphUpdated(graph);
+            }
+            catch(Exception ex){
+                LOG.error("Exception while notifying listener about update of graph \"{}\"!", graph.getGraphName(), ex);
+            }
+        }
+    }
+
+
+    private void notifyGraphDeleted(URI graphName){
+        for(GraphUpdateListener listener : this.graphUpdateListeners){
+            try{
+                listener.graphDeleted(graphName);
+            }
+            catch(Exception ex){
+                LOG.error("Exception while notifying listener about deletion of graph \"{}\"!", graphName, ex);
+            }
+        }
+    }
+
+
+    /**
+     * Sets the period (after the expiry of a graph) to keep serving the expired graph while a refresh is in progress.
+     * Responses containing an expired graph are marked with a <code>Warning</code> and an <code>Age</code> header.
+     * Expired graphs are deleted from the cache after this period (plus {@link #DELAY_AFTER_EXPIRY_MILLIS}).
+     *
+     * @param staleWhileRevalidateMillis the number of milliseconds to serve expired graphs
+     */
+    public void setStaleWhileRevalidateMillis(long staleWhileRevalidateMillis){
+        this.staleWhileRevalidateMillis = Math.max(0, staleWhileRevalidateMillis);
+    }
+
+
+    /**
+     * Enables the refresh-ahead of frequently requested graphs, i.e. graphs that were requested at least
+     * <code>threshold</code> times per minute since their last update are refreshed from their data origin shortly
+     * before they expire (unless an update was received in the meantime, e.g. from an observation). The refresh
+     * time is randomly spread by up to <code>jitterMillis</code> to avoid bursts of refreshes.
+     *
+     * @param threshold the minimum number of requests per minute (0 to disable refresh-ahead)
+     * @param leadMillis the number of milliseconds before the expiry to refresh a graph
+     * @param jitterMillis the maximum number of milliseconds to additionally refresh a graph earlier
+     * @param maxConcurrentRefreshes the maximum number of concurrent refresh-ahead requests
+     */
+    public void setRefreshAhead(double threshold, long leadMillis, long jitterMillis, int maxConcurrentRefreshes){
+        this.refreshAheadThreshold = threshold;
+        this.refreshAheadLeadMillis = Math.max(0, leadMillis);
+        this.refreshAheadJitterMillis = Math.max(0, jitterMillis);
+        this.refreshAheadPermits = new Semaphore(Math.max(1, maxConcurrentRefreshes));
+    }
+
+
+    /**
+     * Sets the (optional) {@link eu.spitfire.ssp.server.internal.utils.NegativeCache} to answer requests for missing
+     * graphs and resources without accessing the store. The Bloom filter of the given cache is (asynchronously)
+     * filled with the names of all graphs and all subjects contained in this cache.
+     *
+     * @param negativeCache the {@link eu.spitfire.ssp.server.internal.utils.NegativeCache} or <code>null</code> to
+     * disable negative caching
+     */
+    public void setNegativeCache(final NegativeCache negativeCache){
+        this.negativeCache = negativeCache;
+        if(negativeCache == null){
+            return;
+        }
+
+        Futures.addCallback(getNamedGraphNames(), new FutureCallback<List<URI>>() {
+
+            @Override
+            public void onSuccess(List<URI> graphNames) {
+                for(URI graphName : graphNames){
+                    negativeCache.addKnown(graphName.toString());
+                }
+
+                Query query = QueryFactory.create(
+                        "SELECT DISTINCT ?s WHERE {{?s ?p ?o .} UNION {GRAPH ?g {?s ?p ?o .}}}"
+                );
+
+                Futures.addCallback(processSparqlQuery(query), new FutureCallback<QueryExecutionResults>() {
+
+                    @Override
+                    public void onSuccess(QueryExecutionResults results) {
+                        ResultSet resultSet = results.getResultSet();
+                        while(resultSet.hasNext()){
+                            RDFNode subject = resultSet.nextSolution().get("s");
+                            if(subject != null && subject.isURIResource()){
+                                negativeCache.addKnown(subject.asResource().getURI());
+                            }
+                        }
+                        negativeCache.setComplete();
+                        LOG.info("Bloom filter of negative cache filled.");
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        LOG.warn("Could not retrieve subjects for negative cache (use TTL only)!", t);
+                    }
+
+                }, internalTasksExecutor);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOG.warn("Could not retrieve graph names for negative cache (use TTL only)!", t);
+            }
+
+        }, internalTasksExecutor);
+    }
+
+
+    private boolean isKnownMissing(URI iri){
+        return this.negativeCache != null && this.negativeCache.isMissing(iri.toString());
+    }
+
+
+    private void addKnownNamedGraph(URI graphName, Model graph){
+        if(this.negativeCache != null){
+            this.negativeCache.addKnown(graphName, graph);
+        }
+    }
+
+
+    private void addMiss(URI iri){
+        if(this.negativeCache != null){
+            this.negativeCache.addMiss(iri.toString());
+        }
+    }
+
+
+    private void writeNotFound(ChannelHandlerContext ctx, MessageEvent me, URI iri){
+        HttpResponse httpResponse = HttpResponseFactory.createHttpResponse(
+                ((HttpRequest) me.getMessage()).getProtocolVersion(), HttpResponseStatus.NOT_FOUND,
+                "404 Not Found: " + iri
+        );
+
+        ChannelFuture future = Channels.future(ctx.getChannel());
+        Channels.write(ctx, future, httpResponse, me.getRemoteAddress());
+        future.addListener(ChannelFutureListener.CLOSE);
+    }
+
+
+    private void recordObservation(URI graphName, Model graph){
+        if(this.observationHistory != null){
+            this.observationHistory.record(graphName, graph);
+        }
+    }
+
     /**
      * This method is invoked for upstream {@link MessageEvent}s and handles incoming {@link HttpRequest}s.
      * It tries to find a fresh status of the requested resource (identified using the requests target URI) in its
@@ -109,13 +353,27 @@ public abstract class SemanticCache extends SimpleChannelHandler {
                                 internalTasksExecutor.execute(new GraphRequestHandler(null, ctx, me));
                             } else {
                                 URI graphName = new URI(queryPart.substring(6).replace(" ", "%20"));
-                                internalTasksExecutor.execute(new GraphRequestHandler(graphName, ctx, me));
+                                if(isKnownMissing(graphName)) {
+                                    writeNotFound(ctx, me, graphName);
+                                } else {
+                                    internalTasksExecutor.execute(new GraphRequestHandler(graphName, ctx, me));
+                                }
                             }
                             return;
                         }
+                        else if (queryPart.startsWith("dump=")) {
+                            RDFFormat format = queryPart.equals("dump=trig") ?
+                                    RDFFormat.TRIG_BLOCKS : RDFFormat.NQUADS;
+                            internalTasksExecutor.execute(new DumpRequestHandler(format, ctx, me));
+                            return;
+                        }
                         else if (queryPart.startsWith("resource=")) {
                             URI resourceName = new URI(queryPart.substring(9));
-                            internalTasksExecutor.execute(new ResourceRequestHandler(resourceName, ctx, me));
+                            if(isKnownMissing(resourceName)) {
+                                writeNotFound(ctx, me, resourceName);
+                            } else {
+                                internalTasksExecutor.execute(new ResourceRequestHandler(resourceName, ctx, me));
+                            }
                             return;
                         }
                     }
@@ -144,53 +402,57 @@ public abstract class SemanticCache extends SimpleChannelHandler {
 
         @Override
         public void run() {
-            try {
-                Query query = QueryFactory.create("SELECT ?p ?o WHERE {<" + resourceName + "> ?p ?o .}");
-
-                Futures.addCallback(processSparqlQuery(query), new FutureCallback<QueryExecutionResults>() {
-
-                    @Override
-                    public void onSuccess(QueryExecutionResults results) {
-                        ResultSet resultSet = results.getResultSet();
-                        LOG.debug("Result for lookup resource \"{}\": {}", resourceName, resultSet);
+            List<String> graphNames = catalog.getGraphNames(resourceName.toString());
+            List<ListenableFuture<ExpiringNamedGraph>> graphFutures = new ArrayList<>(graphNames.size());
+            for(String graphName : graphNames){
+                graphFutures.add(getNamedGraph(URI.create(graphName)));
+            }
 
-                        Model model = Converter.toModel(resultSet, resourceName.toString());
+            Futures.addCallback(Futures.successfulAsList(graphFutures), new FutureCallback<List<ExpiringNamedGraph>>() {
 
-                        //Send expiring graph
-                        ExpiringGraph expiringGraph = new ExpiringGraph(model, new Date());
-                        ChannelFuture channelFuture = Channels.future(ctx.getChannel());
-                        Channels.write(ctx, channelFuture, expiringGraph, remoteSocket);
-                        channelFuture.addListener(ChannelFutureListener.CLOSE);
+                @Override
+                public void onSuccess(List<ExpiringNamedGraph> graphs) {
+                    Model model = ModelFactory.createDefaultModel();
+                    Resource subject = model.createResource(resourceName.toString());
+                    for(ExpiringNamedGraph graph : graphs){
+                        if(graph != null){
+                            model.setNsPrefixes(graph.getModel().getNsPrefixMap());
+                            model.add(graph.getModel().listStatements(subject, null, (RDFNode) null));
+                        }
                     }
+                    LOG.debug("Result for lookup resource \"{}\": {} statements from {} graphs.", resourceName,
+                            model.size(), graphNames.size());
 
-                    @Override
-                    public void onFailure(Throwable t) {
+                    if(model.isEmpty()){
+                        addMiss(resourceName);
                         HttpResponse httpResponse = HttpResponseFactory.createHttpResponse(httpVersion,
-                                HttpResponseStatus.INTERNAL_SERVER_ERROR, t.getMessage());
+                                HttpResponseStatus.NOT_FOUND, "404 Not Found: " + resourceName);
 
                         ChannelFuture channelFuture = Channels.future(ctx.getChannel());
                         Channels.write(ctx, channelFuture, httpResponse, remoteSocket);
-
                         channelFuture.addListener(ChannelFutureListener.CLOSE);
+                        return;
                     }
 
-                }, ioTasksExecutor);
-            }
-            catch (Exception ex) {
-                ioTasksExecutor.execute(new Runnable(){
+                    //Send expiring graph
+                    ExpiringGraph expiringGraph = new ExpiringGraph(model, new Date());
+                    ChannelFuture channelFuture = Channels.future(ctx.getChannel());
+                    Channels.write(ctx, channelFuture, expiringGraph, remoteSocket);
+                    channelFuture.addListener(ChannelFutureListener.CLOSE);
+                }
 
-                    @Override
-                    public void run() {
-                        HttpResponse httpResponse = HttpResponseFactory.createHttpResponse(httpVersion,
-                                HttpResponseStatus.INTERNAL_SERVER_ERROR, ex.getMessage());
+                @Override
+                public void onFailure(Throwable t) {
+                    HttpResponse httpResponse = HttpResponseFactory.createHttpResponse(httpVersion,
+                            HttpResponseStatus.INTERNAL_SERVER_ERROR, t.getMessage());
 
-                        ChannelFuture channelFuture = Channels.future(ctx.getChannel());
-                        Channels.write(ctx, channelFuture, httpResponse, remoteSocket);
+                    ChannelFuture channelFuture = Channels.future(ctx.getChannel());
+                    Channels.write(ctx, channelFuture, httpResponse, remoteSocket);
 
-                        channelFuture.addListener(ChannelFutureListener.CLOSE);
-                    }
-                });
-            }
+                    channelFuture.addListener(ChannelFutureListener.CLOSE);
+                }
+
+            }, ioTasksExecutor);
         }
     }
 
@@ -211,6 +473,11 @@ public abstract class SemanticCache extends SimpleChannelHandler {
         public void run() {
             LOG.debug("Lookup graph \"{}\".", graphName);
 
+            AtomicInteger accesses = graphName == null ? null : namedGraphAccesses.get(graphName);
+            if(accesses != null){
+                accesses.incrementAndGet();
+            }
+
             ListenableFuture<? extends ExpiringGraph> future;
             if(graphName == null){
                 future = getDefaultGraph();
@@ -224,12 +491,24 @@ public abstract class SemanticCache extends SimpleChannelHandler {
                 public void onSuccess(ExpiringGraph expiringGraph) {
                     if (expiringGraph == null) {
                         LOG.warn("Graph \"{}\" NOT FOUND in cache!", graphName);
-                        ctx.sendUpstream(me);
-                    } else {
-                        ChannelFuture future = Channels.future(ctx.getChannel());
-                        Channels.write(ctx, future, expiringGraph, me.getRemoteAddress());
+                        readThrough();
+                        return;
+                    }
 
-                        future.addListener(ChannelFutureListener.CLOSE);
+                    Date expiry = graphName == null ? null : namedGraphExpiries.get(graphName);
+                    long now = System.currentTimeMillis();
+                    if (expiry == null || expiry.getTime() >= now) {
+                        write(expiringGraph);
+                    } else if (now - expiry.getTime() <= staleWhileRevalidateMillis) {
+                        //serve stale graph and refresh it in background
+                        refreshNamedGraph(graphName, true);
+                        Long update = namedGraphUpdates.get(graphName);
+                        long age = update == null ? 0 : (now - update) / 1000;
+                        write(new StaleGraph(expiringGraph.getModel(), expiry, age));
+                    } else {
+                        //expired beyond the stale-while-revalidate period (but not deleted yet)
+                        LOG.debug("Graph \"{}\" expired at {} (too stale to be served).", graphName, expiry);
+                        readThrough();
                     }
                 }
 
@@ -241,12 +520,380 @@ public abstract class SemanticCache extends SimpleChannelHandler {
 
             }, ioTasksExecutor);
         }
+
+
+        private void readThrough(){
+            ListenableFuture<ExpiringNamedGraph> refreshFuture =
+                    graphName == null ? null : refreshNamedGraph(graphName, false);
+
+            if(refreshFuture == null){
+                if(graphName != null){
+                    addMiss(graphName);
+                }
+                ctx.sendUpstream(me);
+                return;
+            }
+
+            Futures.addCallback(refreshFuture, new FutureCallback<ExpiringNamedGraph>() {
+
+                @Override
+                public void onSuccess(ExpiringNamedGraph expiringNamedGraph) {
+                    LOG.debug("Graph \"{}\" retrieved from data origin (read-through).", graphName);
+                    write(expiringNamedGraph);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    // data origin unavailable, serve its last known status (if any) marked as stale
+                    if(t instanceof DataOriginUnavailableException) {
+                        DataOriginUnavailableException ex = (DataOriginUnavailableException) t;
+                        if(ex.getLastStatus() != null) {
+                            LOG.warn("Data origin of graph \"{}\" unavailable (serve last known status).", graphName);
+                            ExpiringNamedGraph lastStatus = ex.getLastStatus();
+                            if(lastStatus.getContent() != null){
+                                write(new StaleGraph(lastStatus.getContent(), lastStatus.getLanguage(),
+                                        lastStatus.getExpiry(), ex.getAge()));
+                            } else {
+                                write(new StaleGraph(lastStatus.getModel(), lastStatus.getExpiry(), ex.getAge()));
+                            }
+                            return;
+                        }
+                    }
+
+                    LOG.warn("Could not retrieve graph \"{}\" from data origin!", graphName, t);
+                    ctx.sendUpstream(me);
+                }
+
+            }, ioTasksExecutor);
+        }
+
+
+        private void write(ExpiringGraph expiringGraph){
+            ChannelFuture future = Channels.future(ctx.getChannel());
+            Channels.write(ctx, future, expiringGraph, me.getRemoteAddress());
+
+            future.addListener(ChannelFutureListener.CLOSE);
+        }
+    }
+
+
+    /**
+     * Retrieves the actual status of the graph with the given name from its data origin and puts it into the cache.
+     * There is at most one refresh per graph at a time, i.e. concurrent invocations for the same graph share the
+     * same future.
+     *
+     * If the data origin returns the status that was put into the cache last (e.g. from a response cache of its
+     * accessor), the status is not put into the cache again, i.e. neither its expiry nor the access statistics of
+     * the graph are reset.
+     *
+     * @param graphName the name of the graph to be refreshed
+     * @param bypassCache <code>true</code> if the status must not be taken from a cache of the accessor (i.e. for
+     *                    refreshes of cached graphs) or <code>false</code> otherwise (i.e. for cache misses)
+     *
+     * @return a {@link com.google.common.util.concurrent.ListenableFuture} to be set with the actual status of the
+     * graph after it was put into the cache or <code>null</code> if the data origin of the graph is unknown
+     */
+    private ListenableFuture<ExpiringNamedGraph> refreshNamedGraph(final URI graphName, boolean bypassCache){
+        DataOriginMapper dataOriginMapper = dataOriginMappers.get(graphName);
+        if(dataOriginMapper == null){
+            return null;
+        }
+
+        final SettableFuture<ExpiringNamedGraph> refreshFuture = SettableFuture.create();
+        ListenableFuture<ExpiringNamedGraph> runningRefresh = refreshFutures.putIfAbsent(graphName, refreshFuture);
+        if(runningRefresh != null){
+            return runningRefresh;
+        }
+
+        LOG.info("Refresh graph \"{}\" from data origin.", graphName);
+        Futures.addCallback(dataOriginMapper.getStatus(graphName, bypassCache),
+                new FutureCallback<ExpiringNamedGraph>() {
+
+            @Override
+            public void onSuccess(final ExpiringNamedGraph expiringNamedGraph) {
+                WeakReference<ExpiringNamedGraph> cachedStatus = namedGraphStatuses.get(graphName);
+                if(cachedStatus != null && cachedStatus.get() == expiringNamedGraph){
+                    LOG.debug("Graph \"{}\" unchanged since last update (not put to cache again).", graphName);
+                    refreshFutures.remove(graphName);
+                    refreshFuture.set(expiringNamedGraph);
+                    return;
+                }
+
+                // a representation to be passed through does not need to wait for the update of the cache
+                if(expiringNamedGraph.getContent() != null){
+                    refreshFuture.set(expiringNamedGraph);
+                }
+
+                SettableFuture<Void> updateFuture = SettableFuture.create();
+                getCacheTasksExecutor().execute(new PutExpiringNamedGraphToCacheTask(expiringNamedGraph, updateFuture));
+
+                Futures.addCallback(updateFuture, new FutureCallback<Void>() {
+                    @Override
+                    public void onSuccess(Void result) {
+                        refreshFutures.remove(graphName);
+                        refreshFuture.set(expiringNamedGraph);
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        refreshFutures.remove(graphName);
+                        refreshFuture.setException(t);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOG.warn("Could not refresh graph \"{}\"!", graphName, t);
+                refreshFutures.remove(graphName);
+                refreshFuture.setException(t);
+            }
+
+        }, internalTasksExecutor);
+
+        return refreshFuture;
+    }
+
+
+    /**
+     * Writes all named graphs contained in the cache as N-Quads or TriG (i.e. with the graph names) in HTTP chunks.
+     * There is one chunk per named graph and the next graph is not retrieved from the cache before the previous
+     * chunk was written, i.e. the memory consumption does not depend on the size of the cache.
+     */
+    private class DumpRequestHandler implements Runnable{
+
+        private static final long WRITABILITY_CHECK_MILLIS = 100;
+
+        private final RDFFormat format;
+        private final ChannelHandlerContext ctx;
+        private final MessageEvent me;
+        private final HttpVersion httpVersion;
+        private Iterator<URI> graphNames;
+
+        private DumpRequestHandler(RDFFormat format, ChannelHandlerContext ctx, MessageEvent me){
+            this.format = format;
+            this.ctx = ctx;
+            this.me = me;
+            this.httpVersion = ((HttpRequest) me.getMessage()).getProtocolVersion();
+        }
+
+        @Override
+        public void run() {
+            Futures.addCallback(getNamedGraphNames(), new FutureCallback<List<URI>>() {
+
+                @Override
+                public void onSuccess(List<URI> result) {
+                    LOG.info("Start dump of {} graphs to {}.", result.size(), me.getRemoteAddress());
+                    graphNames = result.iterator();
+                    writeResponseHead();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    LOG.error("Could not retrieve names of graphs to be dumped!", t);
+                    HttpResponse httpResponse = HttpResponseFactory.createHttpResponse(httpVersion,
+                            HttpResponseStatus.INTERNAL_SERVER_ERROR, t.getMessage());
+
+                    ChannelFuture channelFuture = Channels.future(ctx.getChannel());
+                    Channels.write(ctx, channelFuture, httpResponse, me.getRemoteAddress());
+                    channelFuture.addListener(ChannelFutureListener.CLOSE);
+                }
+
+            }, ioTasksExecutor);
+        }
+
+
+        private void writeResponseHead(){
+            HttpResponse httpResponse = new DefaultHttpResponse(httpVersion, HttpResponseStatus.OK);
+            httpResponse.setChunked(true);
+            httpResponse.headers().set(HttpHeaders.Names.TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+            httpResponse.headers().set(HttpHeaders.Names.CONTENT_TYPE, format == RDFFormat.TRIG_BLOCKS ?
+                    "application/trig; charset=UTF-8" : "application/n-quads; charset=UTF-8");
+
+            write(httpResponse);
+        }
+
+
+        private void writeNextChunk(){
+            Channel channel = ctx.getChannel();
+
+            if(!channel.isConnected()){
+                LOG.warn("Connection to {} closed (dump aborted)!", me.getRemoteAddress());
+                return;
+            }
+
+            if(!graphNames.hasNext()){
+                ChannelFuture channelFuture = Channels.future(channel);
+                Channels.write(ctx, channelFuture, HttpChunk.LAST_CHUNK, me.getRemoteAddress());
+                channelFuture.addListener(ChannelFutureListener.CLOSE);
+                LOG.info("Finished dump to {}.", me.getRemoteAddress());
+                return;
+            }
+
+            //Wait until the client consumed (some of) the written data
+            if(!channel.isWritable()){
+                internalTasksExecutor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        writeNextChunk();
+                    }
+                }, WRITABILITY_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            final URI graphName = graphNames.next();
+            Futures.addCallback(getNamedGraph(graphName), new FutureCallback<ExpiringNamedGraph>() {
+
+                @Override
+                public void onSuccess(ExpiringNamedGraph expiringNamedGraph) {
+                    if(expiringNamedGraph == null){
+                        writeNextChunk();
+                    } else {
+                        write(new DefaultHttpChunk(serialize(graphName, expiringNamedGraph.getModel())));
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    LOG.warn("Could not retrieve graph \"{}\" to be dumped (skipped)!", graphName, t);
+                    writeNextChunk();
+                }
+
+            }, ioTasksExecutor);
+        }
+
+
+        private void write(Object message){
+            ChannelFuture channelFuture = Channels.future(ctx.getChannel());
+            channelFuture.addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) throws Exception {
+                    if(future.isSuccess()){
+                        writeNextChunk();
+                    } else {
+                        LOG.warn("Could not write dump to {} (aborted)!", me.getRemoteAddress(), future.getCause());
+                        future.getChannel().close();
+                    }
+                }
+            });
+
+            Channels.write(ctx, channelFuture, message, me.getRemoteAddress());
+        }
+
+
+        private ChannelBuffer serialize(URI graphName, Model model){
+            ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+            StreamRDF stream = StreamRDFWriter.getWriterStream(new ChannelBufferOutputStream(buffer), format);
+            Node graph = NodeFactory.createURI(graphName.toString());
+
+            stream.start();
+            Iterator<Triple> triples = model.getGraph().find(Node.ANY, Node.ANY, Node.ANY);
+            while(triples.hasNext()){
+                stream.quad(new Quad(graph, triples.next()));
+            }
+            stream.finish();
+
+            return buffer;
+        }
+    }
+
+
+    private void setNamedGraphExpiry(URI graphName, Date expiry) {
+        namedGraphUpdates.put(graphName, System.currentTimeMillis());
+        namedGraphAccesses.put(graphName, new AtomicInteger(0));
+        if (expiry != null) {
+            namedGraphExpiries.put(graphName, expiry);
+        } else {
+            namedGraphExpiries.remove(graphName);
+        }
+        scheduleRefreshAhead(graphName, expiry);
     }
 
 
+    private void removeNamedGraphExpiry(URI graphName) {
+        namedGraphStatuses.remove(graphName);
+        namedGraphUpdates.remove(graphName);
+        namedGraphExpiries.remove(graphName);
+        namedGraphAccesses.remove(graphName);
+        scheduleRefreshAhead(graphName, null);
+    }
+
+
+    private void scheduleRefreshAhead(URI graphName, Date expiry) {
+        ScheduledFuture refreshAheadFuture = refreshAheadFutures.remove(graphName);
+        if (refreshAheadFuture != null) {
+            refreshAheadFuture.cancel(false);
+        }
+
+        if (refreshAheadThreshold <= 0 || expiry == null || !dataOriginMappers.containsKey(graphName)) {
+            return;
+        }
+
+        long jitter = refreshAheadJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(refreshAheadJitterMillis) : 0;
+        long delay = expiry.getTime() - refreshAheadLeadMillis - jitter - System.currentTimeMillis();
+
+        refreshAheadFutures.put(graphName, internalTasksExecutor.schedule(
+                new RefreshAheadTask(graphName), Math.max(0, delay), TimeUnit.MILLISECONDS
+        ));
+    }
+
+
+    /**
+     * Refreshes a graph before its expiry if it was requested frequently since its last update.
+     */
+    private class RefreshAheadTask implements Runnable{
+
+        private final URI graphName;
+
+        private RefreshAheadTask(URI graphName){
+            this.graphName = graphName;
+        }
+
+        @Override
+        public void run() {
+            AtomicInteger accesses = namedGraphAccesses.get(graphName);
+            Long update = namedGraphUpdates.get(graphName);
+            if(accesses == null || update == null){
+                return;
+            }
+
+            double minutes = Math.max(1000, System.currentTimeMillis() - update) / 60000.0;
+            double rate = accesses.get() / minutes;
+            if(rate < refreshAheadThreshold){
+                LOG.debug("No refresh-ahead for graph \"{}\" ({} requests per minute).", graphName, rate);
+                return;
+            }
+
+            if(!refreshAheadPermits.tryAcquire()){
+                LOG.warn("Too many concurrent refreshes (no refresh-ahead for graph \"{}\")!", graphName);
+                return;
+            }
+
+            ListenableFuture<ExpiringNamedGraph> refreshFuture = refreshNamedGraph(graphName, true);
+            if(refreshFuture == null){
+                refreshAheadPermits.release();
+                return;
+            }
+
+            LOG.debug("Refresh-ahead for graph \"{}\" ({} requests per minute).", graphName, rate);
+            Futures.addCallback(refreshFuture, new FutureCallback<ExpiringNamedGraph>() {
+                @Override
+                public void onSuccess(ExpiringNamedGraph result) {
+                    refreshAheadPermits.release();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    refreshAheadPermits.release();
+                }
+            });
+        }
+    }
+
 
     private void scheduleNamedGraphExpiry(final URI graphName, Date expiry) {
         LOG.info("Received new status of {} (expiry: {})", graphName, expiry);
+        setNamedGraphExpiry(graphName, expiry);
         Long startTime = System.currentTimeMillis();
         LOG.debug("Schedule timeout for resource {}.", graphName);
 
@@ -264,12 +911,17 @@ public abstract class SemanticCache extends SimpleChannelHandler {
                 @Override
                 public void run() {
                     try {
+                        namedGraphExpiryFutures.remove(graphName);
+                        removeNamedGraphExpiry(graphName);
+                        catalog.removeNamedGraph(graphName);
                         deleteNamedGraph(graphName);
+                        notifyGraphDeleted(graphName);
                     } catch (Exception e) {
                         LOG.error("Could not delete resource {} from cache.", graphName, e);
                     }
                 }
-            }, expiry.getTime() - System.currentTimeMillis() + DELAY_AFTER_EXPIRY_MILLIS, TimeUnit.MILLISECONDS));
+            }, expiry.getTime() - System.currentTimeMillis() + DELAY_AFTER_EXPIRY_MILLIS + staleWhileRevalidateMillis,
+                    TimeUnit.MILLISECONDS));
         }
     }
 
@@ -303,6 +955,38 @@ public abstract class SemanticCache extends SimpleChannelHandler {
 
     public abstract ListenableFuture<ExpiringGraph> getDefaultGraph();
 
+
+    /**
+     * Method to retrieve the names of all named graphs contained in the cache, e.g. to dump the cache graph by graph.
+     * The default implementation runs a SPARQL query using {@link #processSparqlQuery(Query)}. Inheriting classes
+     * may override this method if the names can be retrieved more efficiently.
+     *
+     * @return a {@link com.google.common.util.concurrent.ListenableFuture} to be set with the names of all named
+     * graphs contained in the cache
+     */
+    public ListenableFuture<List<URI>> getNamedGraphNames() {
+        Query query = QueryFactory.create("SELECT DISTINCT ?g WHERE {GRAPH ?g {?s ?p ?o .}}");
+
+        return Futures.transform(processSparqlQuery(query), new Function<QueryExecutionResults, List<URI>>() {
+            @Override
+            public List<URI> apply(QueryExecutionResults results) {
+                List<URI> graphNames = new ArrayList<>();
+                ResultSet resultSet = results.getResultSet();
+                while(resultSet.hasNext()){
+                    RDFNode graphName = resultSet.nextSolution().get("g");
+                    if(graphName != null && graphName.isURIResource()){
+                        try {
+                            graphNames.add(new URI(graphName.asResource().getURI()));
+                        } catch (Exception ex) {
+                            LOG.warn("Malformed graph name \"{}\" (ignored)!", graphName);
+                        }
+                    }
+                }
+                return graphNames;
+            }
+        });
+    }
+
     /**
      * Method to put a named graph into the cache. The returned future MUST be set with <code>null</code> if
      * the operation was successful, i.e. the named graph was put or with an {@link java.lang.Exception} if the
@@ -317,6 +1001,35 @@ public abstract class SemanticCache extends SimpleChannelHandler {
     public abstract ListenableFuture<Void> putNamedGraphToCache(URI graphName, Model namedGraph);
 
 
+    /**
+     * Method to put several named graphs into the cache at once. The returned future MUST be set with
+     * <code>null</code> if all graphs were put or with an {@link java.lang.Exception} if (at least) one of the graphs
+     * could not be put into the cache.
+     *
+     * The default implementation invokes {@link #putNamedGraphToCache(URI, Model)} for each graph. Inheriting classes
+     * should override this method if they support more efficient bulk insertions.
+     *
+     * @param namedGraphs a {@link java.util.Map} containing the names of the graphs to be put as keys and the
+     *                    {@link Model}s containing the graphs as values
+     *
+     * @return a {@link com.google.common.util.concurrent.ListenableFuture} which is to be set with the result of the
+     * put operation
+     */
+    public ListenableFuture<Void> putNamedGraphsToCache(Map<URI, Model> namedGraphs) {
+        List<ListenableFuture<Void>> futures = new ArrayList<>(namedGraphs.size());
+        for(Map.Entry<URI, Model> namedGraph : namedGraphs.entrySet()) {
+            futures.add(putNamedGraphToCache(namedGraph.getKey(), namedGraph.getValue()));
+        }
+
+        return Futures.transform(Futures.allAsList(futures), new Function<List<Void>, Void>() {
+            @Override
+            public Void apply(List<Void> results) {
+                return null;
+            }
+        });
+    }
+
+
     public abstract ListenableFuture<Void> updateSensorValue(URI graphName, RDFNode sensorValue);
 
     /**
@@ -333,6 +1046,26 @@ public abstract class SemanticCache extends SimpleChannelHandler {
 
     protected abstract ScheduledExecutorService getCacheTasksExecutor();
 
+
+    /**
+     * Returns statistics about the internal state of this cache (e.g. counters) as key-value pairs to be published
+     * by the {@link eu.spitfire.ssp.server.webservices.Statistics} webservice. The default implementation returns the
+     * number of executed and coalesced SPARQL queries and the statistics of the (optional) negative cache and
+     * observation history. Inheriting classes may override this method to add their own statistics.
+     *
+     * @return a {@link java.util.Map} containing the names of the statistics as keys and their current values
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new HashMap<>(this.queryCoalescer.getStatistics());
+        if(this.negativeCache != null){
+            statistics.putAll(this.negativeCache.getStatistics());
+        }
+        if(this.observationHistory != null){
+            statistics.putAll(this.observationHistory.getStatistics());
+        }
+        return statistics;
+    }
+
     /**
      * Method to process SPAQRL queries. Inheriting classes of
      * {@link SemanticCache} should override this method in order to support
@@ -355,6 +1088,12 @@ public abstract class SemanticCache extends SimpleChannelHandler {
                 this.getCacheTasksExecutor().execute(task);
             }
 
+            else if(me.getMessage() instanceof DataOriginBulkRegistrationRequest){
+                DataOriginBulkRegistrationRequest request = (DataOriginBulkRegistrationRequest) me.getMessage();
+                DataOriginBulkRegistrationTask task = new DataOriginBulkRegistrationTask(request);
+                this.getCacheTasksExecutor().execute(task);
+            }
+
             else if(me.getMessage() instanceof DataOriginDeregistrationRequest){
                 DataOriginDeregistrationRequest request = (DataOriginDeregistrationRequest) me.getMessage();
                 DataOriginDeregistrationTask task = new DataOriginDeregistrationTask(request);
@@ -375,6 +1114,11 @@ public abstract class SemanticCache extends SimpleChannelHandler {
                 this.getCacheTasksExecutor().execute(task);
             }
 
+            else if (me.getMessage() instanceof InternalExpiryUpdateRequest){
+                ExpiryUpdateTask task = new ExpiryUpdateTask((InternalExpiryUpdateRequest) me.getMessage());
+                this.getCacheTasksExecutor().execute(task);
+            }
+
             else if (me.getMessage() instanceof InternalQueryExecutionRequest) {
                 QueryProcessingTask task = new QueryProcessingTask((InternalQueryExecutionRequest) me.getMessage());
                 this.getCacheTasksExecutor().execute(task);
@@ -415,6 +1159,8 @@ public abstract class SemanticCache extends SimpleChannelHandler {
             Futures.addCallback(deleteNamedGraph(graphName), new FutureCallback<Void>() {
                 @Override
                 public void onSuccess(Void aVoid) {
+                    catalog.removeNamedGraph(graphName);
+                    notifyGraphDeleted(graphName);
                     deletionFuture.set(null);
                 }
 
@@ -428,34 +1174,99 @@ public abstract class SemanticCache extends SimpleChannelHandler {
 
     }
 
+    private void completeRegistration(DataOriginRegistrationRequest registrationRequest){
+        URI graphName = registrationRequest.getDataOrigin().getGraphName();
+        Model initialGraph = registrationRequest.getInitialStatus();
+        DataOriginMapper dataOriginMapper = registrationRequest.getHttpProxyService();
+
+        LOG.debug("Initial graph \"{}\" added to cache!", graphName);
+        recordObservation(graphName, initialGraph);
+        addKnownNamedGraph(graphName, initialGraph);
+        if(dataOriginMapper != null){
+            dataOriginMappers.put(graphName, dataOriginMapper);
+        }
+        addToCatalog(graphName, initialGraph);
+        setNamedGraphExpiry(graphName, registrationRequest.getExpiry());
+        notifyGraphUpdated(new ExpiringNamedGraph(graphName, initialGraph, registrationRequest.getExpiry()));
+        registrationRequest.getRegistrationFuture().set(null);
+    }
+
+
     private class DataOriginRegistrationTask implements Runnable {
 
-        private URI graphName;
-        private Model initialGraph;
-        private SettableFuture<?> registrationFuture;
+        private DataOriginRegistrationRequest registrationRequest;
 
         private DataOriginRegistrationTask(DataOriginRegistrationRequest registrationRequest) {
-            this.graphName = registrationRequest.getDataOrigin().getGraphName();
-            this.initialGraph = registrationRequest.getInitialStatus();
-            this.registrationFuture = registrationRequest.getRegistrationFuture();
+            this.registrationRequest = registrationRequest;
         }
 
         @Override
         public void run() {
+            final URI graphName = registrationRequest.getDataOrigin().getGraphName();
+            Model initialGraph = registrationRequest.getInitialStatus();
+
             //Add new graph with initial status to cache
+            addKnownNamedGraph(graphName, initialGraph);
             ListenableFuture<Void> insertionFuture = putNamedGraphToCache(graphName, initialGraph);
             Futures.addCallback(insertionFuture, new FutureCallback<Void>() {
 
                 @Override
                 public void onSuccess(Void result) {
-                    LOG.debug("Initial graph \"{}\" added to cache!", graphName);
-                    registrationFuture.set(null);
+                    completeRegistration(registrationRequest);
                 }
 
                 @Override
                 public void onFailure(Throwable throwable) {
                     LOG.error("Could not add graph \"{}\" to cache!", graphName, throwable);
-                    registrationFuture.setException(throwable);
+                    registrationRequest.getRegistrationFuture().setException(throwable);
+                }
+
+            }, internalTasksExecutor);
+        }
+    }
+
+
+    /**
+     * Adds the initial status of all data origins contained in a
+     * {@link eu.spitfire.ssp.server.internal.message.DataOriginBulkRegistrationRequest} with a single call of
+     * {@link #putNamedGraphsToCache(java.util.Map)}, i.e. one transaction for implementations supporting bulk
+     * insertions instead of one per data origin.
+     */
+    private class DataOriginBulkRegistrationTask implements Runnable {
+
+        private List<DataOriginRegistrationRequest> registrationRequests;
+
+        private DataOriginBulkRegistrationTask(DataOriginBulkRegistrationRequest bulkRegistrationRequest) {
+            this.registrationRequests = bulkRegistrationRequest.getRegistrations();
+        }
+
+        @Override
+        public void run() {
+            Map<URI, Model> initialGraphs = new HashMap<>();
+            for(DataOriginRegistrationRequest registrationRequest : registrationRequests){
+                URI graphName = registrationRequest.getDataOrigin().getGraphName();
+                Model initialGraph = registrationRequest.getInitialStatus();
+                addKnownNamedGraph(graphName, initialGraph);
+                initialGraphs.put(graphName, initialGraph);
+            }
+
+            final int size = initialGraphs.size();
+            Futures.addCallback(putNamedGraphsToCache(initialGraphs), new FutureCallback<Void>() {
+
+                @Override
+                public void onSuccess(Void result) {
+                    LOG.info("Added {} initial graphs to cache!", size);
+                    for(DataOriginRegistrationRequest registrationRequest : registrationRequests){
+                        completeRegistration(registrationRequest);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    LOG.error("Could not add {} initial graphs to cache!", size, throwable);
+                    for(DataOriginRegistrationRequest registrationRequest : registrationRequests){
+                        registrationRequest.getRegistrationFuture().setException(throwable);
+                    }
                 }
 
             }, internalTasksExecutor);
@@ -483,6 +1294,13 @@ public abstract class SemanticCache extends SimpleChannelHandler {
                 @Override
                 public void onSuccess(Void result) {
                     LOG.info("Successfully deleted graph {} from cache!", graphName);
+                    if(observationHistory != null){
+                        observationHistory.remove(graphName);
+                    }
+                    dataOriginMappers.remove(graphName);
+                    removeNamedGraphExpiry(graphName);
+                    catalog.removeNamedGraph(graphName);
+                    notifyGraphDeleted(graphName);
 
                     ScheduledFuture expiryFuture = namedGraphExpiryFutures.remove(graphName);
                     if (expiryFuture != null){
@@ -509,7 +1327,7 @@ public abstract class SemanticCache extends SimpleChannelHandler {
     private class PutExpiringNamedGraphToCacheTask implements Runnable{
 
         private final URI graphName;
-        private final Model graph;
+        private final ExpiringNamedGraph status;
         private final Date expiry;
         private final SettableFuture<Void> future;
 
@@ -519,7 +1337,7 @@ public abstract class SemanticCache extends SimpleChannelHandler {
 
         private PutExpiringNamedGraphToCacheTask(ExpiringNamedGraph graph, SettableFuture<Void> future){
             this.graphName = graph.getGraphName();
-            this.graph = graph.getModel();
+            this.status = graph;
             this.expiry = graph.getExpiry();
             this.future = future;
         }
@@ -527,6 +1345,19 @@ public abstract class SemanticCache extends SimpleChannelHandler {
         @Override
         public void run() {
 
+            // parse the status (if not done yet)
+            final Model graph;
+            try{
+                graph = status.getModel();
+            }
+            catch(Exception ex){
+                LOG.error("Could not read graph \"{}\"!", graphName, ex);
+                if(future != null){
+                    future.setException(ex);
+                }
+                return;
+            }
+
             //Update cache
             LOG.debug("Start put graph \"{}\" to cache.", graphName);
             ListenableFuture<Void> updateFuture = putNamedGraphToCache(graphName, graph);
@@ -535,16 +1366,24 @@ public abstract class SemanticCache extends SimpleChannelHandler {
 
                 @Override
                 public void onSuccess(Void result) {
+                    namedGraphStatuses.put(graphName, new WeakReference<>(status));
+                    addKnownNamedGraph(graphName, graph);
+                    addToCatalog(graphName, graph);
                     if(future != null){
                         future.set(null);
                     }
                     scheduleNamedGraphExpiry(graphName,  expiry);
+                    recordObservation(graphName, graph);
+                    notifyGraphUpdated(status);
                     LOG.info("Successfully put graph \"{}\" to cache ", graphName);
                 }
 
                 @Override
                 public void onFailure(Throwable t) {
                     LOG.error("Failed to put graph \"{}\" to cache!", graphName, t);
+                    if(future != null){
+                        future.setException(t);
+                    }
                 }
 
             }, getInternalTasksExecutor());
@@ -552,6 +1391,35 @@ public abstract class SemanticCache extends SimpleChannelHandler {
     }
 
 
+    /**
+     * Extends the expiry of a cached graph without touching its content (e.g. for unchanged observations). Executed
+     * by the cache tasks executor to keep the order with preceding updates of the same graph.
+     */
+    private class ExpiryUpdateTask implements Runnable{
+
+        private final URI graphName;
+        private final Date expiry;
+        private final SettableFuture<Void> future;
+
+        private ExpiryUpdateTask(InternalExpiryUpdateRequest request){
+            this.graphName = request.getGraphName();
+            this.expiry = request.getExpiry();
+            this.future = request.getExpiryUpdateFuture();
+        }
+
+        @Override
+        public void run() {
+            if(!catalog.containsNamedGraph(graphName)){
+                future.setException(new NamedGraphNotFoundException("Graph not found: " + graphName));
+                return;
+            }
+
+            scheduleNamedGraphExpiry(graphName, expiry);
+            future.set(null);
+        }
+    }
+
+
     private class QueryProcessingTask implements Runnable{
 
         private Query query;
@@ -564,20 +1432,27 @@ public abstract class SemanticCache extends SimpleChannelHandler {
 
         @Override
         public void run() {
-            LOG.debug("Received Query Request: " + query.toString(Syntax.syntaxSPARQL));
+            //the serialization of the parsed query is normalized (e.g. whitespace and prefixes)
+            final String key = query.toString(Syntax.syntaxSPARQL);
+            LOG.debug("Received Query Request: " + key);
+
+            if(queryCoalescer.join(key, resultsFuture)){
+                LOG.debug("Identical query already in execution (results will be shared).");
+                return;
+            }
+
             Futures.addCallback(processSparqlQuery(query), new FutureCallback<QueryExecutionResults>() {
 
                 @Override
                 public void onSuccess(QueryExecutionResults results) {
-                    resultsFuture.set(results);
+                    queryCoalescer.complete(key, results);
                 }
 
                 @Override
                 public void onFailure(Throwable throwable) {
-                    resultsFuture.setException(throwable);
+                    queryCoalescer.fail(key, throwable);
                 }
             }, MoreExecutors.directExecutor());
         }
     }
 }
-
@@ -0,0 +1,42 @@
+package eu.spitfire.ssp.server.internal.exception;
+
+import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
+
+/**
+ * Exception to indicate that a data origin is (considered) unavailable, i.e. that a request was not even sent. The
+ * exception contains the last known status of the data origin (if any), e.g. to be served as stale graph.
+ */
+public class DataOriginUnavailableException extends Exception{
+
+    private final ExpiringNamedGraph lastStatus;
+    private final long age;
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.server.internal.exception.DataOriginUnavailableException}
+     *
+     * @param message the message of the exception
+     * @param lastStatus the last known status of the data origin or <code>null</code> if unknown
+     * @param age the number of seconds since the last known status was retrieved
+     */
+    public DataOriginUnavailableException(String message, ExpiringNamedGraph lastStatus, long age){
+        super(message);
+        this.lastStatus = lastStatus;
+        this.age = age;
+    }
+
+    /**
+     * Returns the last known status of the data origin or <code>null</code> if unknown
+     * @return the last known status of the data origin or <code>null</code> if unknown
+     */
+    public ExpiringNamedGraph getLastStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * Returns the number of seconds since the last known status was retrieved
+     * @return the number of seconds since the last known status was retrieved
+     */
+    public long getAge() {
+        return age;
+    }
+}
@@ -0,0 +1,300 @@
+package eu.spitfire.ssp.server.internal.history;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A ring buffer containing the observations (i.e. pairs of timestamp and numeric value) of a single sensor. The
+ * timestamps and values are stored in primitive arrays, i.e. recording an observation does neither create objects
+ * nor RDF triples. The arrays grow on demand (by doubling) up to the capacity, i.e. series with few observations
+ * occupy little memory. If the buffer is full, the oldest observation is overwritten. Observations older than the
+ * retention period are removed on access.
+ *
+ * The timestamps are kept in ascending order, i.e. window queries are answered using binary search.
+ */
+public class ObservationBuffer {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] timestamps;
+    private double[] values;
+    private final int capacity;
+    private final long retentionMillis;
+
+    //index of the next observation to be written and number of contained observations
+    private int head;
+    private int size;
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.server.internal.history.ObservationBuffer}
+     *
+     * @param capacity the maximum number of observations to be kept
+     * @param retentionMillis the maximum age of the observations to be kept (in milliseconds)
+     */
+    public ObservationBuffer(int capacity, long retentionMillis) {
+        if(capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be greater than 0!");
+        }
+
+        this.capacity = capacity;
+        this.timestamps = new long[Math.min(capacity, INITIAL_CAPACITY)];
+        this.values = new double[this.timestamps.length];
+        this.retentionMillis = retentionMillis;
+    }
+
+
+    /**
+     * Adds a new observation. If the given timestamp is before the latest timestamp contained in this buffer, the
+     * latest timestamp is used instead to keep the timestamps ordered.
+     *
+     * @param timestamp the time of the observation (in milliseconds since epoch)
+     * @param value the observed value
+     */
+    public synchronized void add(long timestamp, double value) {
+        if(size > 0) {
+            timestamp = Math.max(timestamp, timestamps[index(size - 1)]);
+        }
+
+        if(size == timestamps.length && size < capacity) {
+            grow();
+        }
+
+        timestamps[head] = timestamp;
+        values[head] = value;
+        head = (head + 1) % timestamps.length;
+
+        if(size < timestamps.length) {
+            size++;
+        }
+    }
+
+
+    /**
+     * Returns the number of observations contained in this buffer.
+     *
+     * @return the number of observations contained in this buffer
+     */
+    public synchronized int size() {
+        evict(System.currentTimeMillis());
+        return size;
+    }
+
+
+    /**
+     * Returns the latest <code>count</code> observations (or less if this buffer contains less observations).
+     *
+     * @param count the maximum number of observations to be returned
+     *
+     * @return the latest <code>count</code> observations in ascending order of their timestamps
+     */
+    public synchronized Observations getLast(int count) {
+        evict(System.currentTimeMillis());
+        int from = Math.max(0, size - Math.max(0, count));
+        return copy(from, size);
+    }
+
+
+    /**
+     * Returns the observations with a timestamp in the given range.
+     *
+     * @param from the start of the range (inclusive, in milliseconds since epoch)
+     * @param to the end of the range (exclusive, in milliseconds since epoch)
+     *
+     * @return the observations with a timestamp in the given range in ascending order of their timestamps
+     */
+    public synchronized Observations getRange(long from, long to) {
+        evict(System.currentTimeMillis());
+        return copy(lowerBound(from), lowerBound(to));
+    }
+
+
+    /**
+     * Returns the minimum, maximum and average value of the observations with a timestamp in the given range.
+     *
+     * @param from the start of the range (inclusive, in milliseconds since epoch)
+     * @param to the end of the range (exclusive, in milliseconds since epoch)
+     *
+     * @return the {@link eu.spitfire.ssp.server.internal.history.ObservationBuffer.Aggregate} of the observations
+     * in the given range or <code>null</code> if there are no such observations
+     */
+    public synchronized Aggregate aggregate(long from, long to) {
+        evict(System.currentTimeMillis());
+        int start = lowerBound(from);
+        int end = lowerBound(to);
+        return start < end ? aggregate(from, start, end) : null;
+    }
+
+
+    /**
+     * Downsamples the observations with a timestamp in the given range to buckets of the given length, i.e. returns
+     * the minimum, maximum and average value for each bucket. Empty buckets are omitted.
+     *
+     * @param from the start of the range (inclusive, in milliseconds since epoch)
+     * @param to the end of the range (exclusive, in milliseconds since epoch)
+     * @param bucketMillis the length of the buckets (in milliseconds)
+     *
+     * @return the {@link eu.spitfire.ssp.server.internal.history.ObservationBuffer.Aggregate}s of all non-empty
+     * buckets in ascending order of their start
+     */
+    public synchronized List<Aggregate> downsample(long from, long to, long bucketMillis) {
+        if(bucketMillis < 1) {
+            throw new IllegalArgumentException("Bucket length must be greater than 0!");
+        }
+
+        evict(System.currentTimeMillis());
+        List<Aggregate> result = new ArrayList<>();
+
+        int start = lowerBound(from);
+        int end = lowerBound(to);
+        while(start < end) {
+            long bucketStart = from + ((timestamps[index(start)] - from) / bucketMillis) * bucketMillis;
+            int bucketEnd = Math.min(end, lowerBound(bucketStart + bucketMillis));
+            result.add(aggregate(bucketStart, start, bucketEnd));
+            start = bucketEnd;
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Doubles the length of the arrays (up to the capacity) and moves the oldest observation to index 0.
+     */
+    private void grow() {
+        long[] newTimestamps = new long[Math.min(capacity, timestamps.length * 2)];
+        double[] newValues = new double[newTimestamps.length];
+        for(int i = 0; i < size; i++) {
+            newTimestamps[i] = timestamps[index(i)];
+            newValues[i] = values[index(i)];
+        }
+
+        timestamps = newTimestamps;
+        values = newValues;
+        head = size;
+    }
+
+
+    private Aggregate aggregate(long start, int from, int to) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+
+        for(int i = from; i < to; i++) {
+            double value = values[index(i)];
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+        }
+
+        return new Aggregate(start, to - from, min, max, sum / (to - from));
+    }
+
+
+    private Observations copy(int from, int to) {
+        Observations result = new Observations(to - from);
+        for(int i = from; i < to; i++) {
+            result.timestamps[i - from] = timestamps[index(i)];
+            result.values[i - from] = values[index(i)];
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the (logical) index of the first observation with a timestamp not before the given one.
+     */
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(timestamps[index(middle)] < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Converts the given logical index (0 is the oldest observation) into the physical index of the arrays.
+     */
+    private int index(int i) {
+        return (head - size + i + timestamps.length) % timestamps.length;
+    }
+
+
+    private void evict(long now) {
+        if(retentionMillis > 0) {
+            while(size > 0 && timestamps[index(0)] < now - retentionMillis) {
+                size--;
+            }
+        }
+    }
+
+
+    /**
+     * A sequence of observations with the timestamps and values in separate (primitive) arrays.
+     */
+    public static class Observations {
+
+        private final long[] timestamps;
+        private final double[] values;
+
+        private Observations(int size) {
+            this.timestamps = new long[size];
+            this.values = new double[size];
+        }
+
+        public long[] getTimestamps() {
+            return timestamps;
+        }
+
+        public double[] getValues() {
+            return values;
+        }
+    }
+
+
+    /**
+     * The number of observations and the minimum, maximum and average value of the observations in a window.
+     */
+    public static class Aggregate {
+
+        private final long start;
+        private final int count;
+        private final double min;
+        private final double max;
+        private final double avg;
+
+        private Aggregate(long start, int count, double min, double max, double avg) {
+            this.start = start;
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.avg = avg;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getAvg() {
+            return avg;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package eu.spitfire.ssp.server.internal.history;
+
+import com.hp.hpl.jena.rdf.model.*;
+import eu.spitfire.ssp.server.internal.utils.Converter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional store for the history of sensor values to be used alongside a
+ * {@link eu.spitfire.ssp.server.handler.SemanticCache}. The cache only contains the latest status of a named graph.
+ * Whenever a new status is put into the cache, the numeric value of the observation (i.e. the object of the
+ * <code>ssn:hasValue</code> statement) is recorded in an {@link eu.spitfire.ssp.server.internal.history.ObservationBuffer}
+ * per graph. The history is not materialized as RDF triples.
+ */
+public class ObservationHistory {
+
+    private static Logger LOG = LoggerFactory.getLogger(ObservationHistory.class.getName());
+
+    private static final Property HAS_VALUE = ResourceFactory.createProperty(Converter.SSN_NAMESPACE, "hasValue");
+
+    private final ConcurrentHashMap<URI, ObservationBuffer> buffers;
+    private final int capacity;
+    private final long retentionMillis;
+
+    private final AtomicLong recordedObservations;
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.server.internal.history.ObservationHistory}
+     *
+     * @param capacity the maximum number of observations to be kept per graph
+     * @param retentionMillis the maximum age of the observations to be kept (in milliseconds, 0 for no limit)
+     */
+    public ObservationHistory(int capacity, long retentionMillis) {
+        this.buffers = new ConcurrentHashMap<>();
+        this.capacity = capacity;
+        this.retentionMillis = retentionMillis;
+        this.recordedObservations = new AtomicLong();
+    }
+
+
+    /**
+     * Records the numeric value contained in the given {@link com.hp.hpl.jena.rdf.model.Model} (if any) as new
+     * observation of the graph with the given name.
+     *
+     * @param graphName the name of the graph
+     * @param graph the {@link com.hp.hpl.jena.rdf.model.Model} containing the new status of the graph
+     */
+    public void record(URI graphName, Model graph) {
+        NodeIterator iterator = graph.listObjectsOfProperty(HAS_VALUE);
+        try {
+            while(iterator.hasNext()) {
+                RDFNode object = iterator.next();
+                if(object.isLiteral() && object.asLiteral().getValue() instanceof Number) {
+                    double value = ((Number) object.asLiteral().getValue()).doubleValue();
+                    record(graphName, System.currentTimeMillis(), value);
+                    return;
+                }
+            }
+        } catch (Exception ex) {
+            LOG.warn("Could not record observation of graph \"{}\"!", graphName, ex);
+        } finally {
+            iterator.close();
+        }
+    }
+
+
+    /**
+     * Records the given value as new observation of the graph with the given name.
+     *
+     * @param graphName the name of the graph
+     * @param timestamp the time of the observation (in milliseconds since epoch)
+     * @param value the observed value
+     */
+    public void record(URI graphName, long timestamp, double value) {
+        ObservationBuffer buffer = buffers.get(graphName);
+        if(buffer == null) {
+            buffer = new ObservationBuffer(capacity, retentionMillis);
+            ObservationBuffer previous = buffers.putIfAbsent(graphName, buffer);
+            buffer = previous == null ? buffer : previous;
+        }
+
+        buffer.add(timestamp, value);
+        recordedObservations.incrementAndGet();
+    }
+
+
+    /**
+     * Removes the history of the graph with the given name, e.g. if the graph was deleted from the cache.
+     *
+     * @param graphName the name of the graph
+     */
+    public void remove(URI graphName) {
+        buffers.remove(graphName);
+    }
+
+
+    /**
+     * Returns the {@link eu.spitfire.ssp.server.internal.history.ObservationBuffer} of the graph with the given
+     * name or <code>null</code> if there is no history of this graph.
+     *
+     * @param graphName the name of the graph
+     *
+     * @return the {@link eu.spitfire.ssp.server.internal.history.ObservationBuffer} of the graph with the given name
+     */
+    public ObservationBuffer getBuffer(URI graphName) {
+        return buffers.get(graphName);
+    }
+
+
+    /**
+     * Returns the names of all graphs with recorded observations and the number of observations per graph.
+     *
+     * @return the names of all graphs with recorded observations and the number of observations per graph
+     */
+    public Map<URI, Integer> getSeries() {
+        Map<URI, Integer> result = new TreeMap<>();
+        for(Map.Entry<URI, ObservationBuffer> entry : buffers.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().size());
+        }
+        return result;
+    }
+
+
+    /**
+     * Returns the number of graphs with recorded observations and the total number of recorded observations.
+     *
+     * @return the statistics of this history
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new HashMap<>();
+        statistics.put("history.series", String.valueOf(buffers.size()));
+        statistics.put("history.observations.recorded", String.valueOf(recordedObservations.get()));
+        return statistics;
+    }
+}
@@ -0,0 +1,94 @@
+package eu.spitfire.ssp.server.internal.history;
+
+import com.hp.hpl.jena.sparql.expr.ExprEvalException;
+import com.hp.hpl.jena.sparql.expr.NodeValue;
+import com.hp.hpl.jena.sparql.function.Function;
+import com.hp.hpl.jena.sparql.function.FunctionBase2;
+import com.hp.hpl.jena.sparql.function.FunctionFactory;
+import com.hp.hpl.jena.sparql.function.FunctionRegistry;
+
+import java.net.URI;
+
+/**
+ * SPARQL extension functions to access the {@link eu.spitfire.ssp.server.internal.history.ObservationHistory}
+ * within queries, e.g.
+ *
+ * <code>BIND(hist:avg(?graph, 3600) AS ?avg)</code>
+ *
+ * with prefix <code>hist: &lt;http://spitfire-project.eu/ontology/ns/history#&gt;</code>. The first argument is
+ * the name of the graph, the second one the length of the window (in seconds) ending now. The functions
+ * <code>hist:min</code>, <code>hist:max</code>, <code>hist:avg</code> and <code>hist:count</code> return the
+ * respective aggregate of the observations in the window, <code>hist:last</code> returns the latest observation
+ * (the window is ignored). If there are no observations, the evaluation fails, i.e. the variable remains unbound.
+ *
+ * The functions are evaluated by Jena ARQ only.
+ */
+public class ObservationHistoryFunction extends FunctionBase2 {
+
+    public static final String NAMESPACE = "http://spitfire-project.eu/ontology/ns/history#";
+
+    private static final String[] AGGREGATES = new String[]{"min", "max", "avg", "count", "last"};
+
+    private final ObservationHistory history;
+    private final String aggregate;
+
+    private ObservationHistoryFunction(ObservationHistory history, String aggregate) {
+        this.history = history;
+        this.aggregate = aggregate;
+    }
+
+
+    /**
+     * Registers the functions for the given {@link eu.spitfire.ssp.server.internal.history.ObservationHistory}
+     * at the global Jena {@link com.hp.hpl.jena.sparql.function.FunctionRegistry}.
+     *
+     * @param history the {@link eu.spitfire.ssp.server.internal.history.ObservationHistory} to be queried
+     */
+    public static void register(final ObservationHistory history) {
+        for(final String aggregate : AGGREGATES) {
+            FunctionRegistry.get().put(NAMESPACE + aggregate, new FunctionFactory() {
+                @Override
+                public Function create(String uri) {
+                    return new ObservationHistoryFunction(history, aggregate);
+                }
+            });
+        }
+    }
+
+
+    @Override
+    public NodeValue exec(NodeValue graph, NodeValue window) {
+        URI graphName;
+        try {
+            graphName = new URI(graph.isIRI() ? graph.asNode().getURI() : graph.asString());
+        } catch (Exception ex) {
+            throw new ExprEvalException("No valid graph name: " + graph);
+        }
+
+        ObservationBuffer buffer = history.getBuffer(graphName);
+        if(buffer == null) {
+            throw new ExprEvalException("No history for graph: " + graphName);
+        }
+
+        if("last".equals(aggregate)) {
+            double[] values = buffer.getLast(1).getValues();
+            if(values.length == 0) {
+                throw new ExprEvalException("No observations for graph: " + graphName);
+            }
+            return NodeValue.makeDouble(values[0]);
+        }
+
+        long now = System.currentTimeMillis();
+        ObservationBuffer.Aggregate result = buffer.aggregate(now - window.getInteger().longValue() * 1000, now + 1);
+        if(result == null) {
+            throw new ExprEvalException("No observations for graph: " + graphName);
+        }
+
+        switch(aggregate) {
+            case "min": return NodeValue.makeDouble(result.getMin());
+            case "max": return NodeValue.makeDouble(result.getMax());
+            case "count": return NodeValue.makeInteger(result.getCount());
+            default: return NodeValue.makeDouble(result.getAvg());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package eu.spitfire.ssp.server.internal.message;
+
+import eu.spitfire.ssp.backend.generic.DataOrigin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Internal message to be send downstream to register several data origins at once, i.e. with one (bulk) insertion
+ * of their initial status into the cache. Every contained
+ * {@link eu.spitfire.ssp.server.internal.message.DataOriginRegistrationRequest} is handled as if it was sent
+ * separately, i.e. its registration future is set individually.
+ */
+public class DataOriginBulkRegistrationRequest<I, D extends DataOrigin<I>>{
+
+    private List<DataOriginRegistrationRequest<I, D>> registrations;
+
+    public DataOriginBulkRegistrationRequest(List<DataOriginRegistrationRequest<I, D>> registrations){
+        this.registrations = new ArrayList<>(registrations);
+    }
+
+    public List<DataOriginRegistrationRequest<I, D>> getRegistrations() {
+        return registrations;
+    }
+
+    public String toString(){
+        return "DOBRM: [Registrations: " + registrations.size() + "]";
+    }
+}
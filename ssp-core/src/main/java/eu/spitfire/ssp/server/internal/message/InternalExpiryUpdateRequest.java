@@ -0,0 +1,53 @@
+package eu.spitfire.ssp.server.internal.message;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.net.URI;
+import java.util.Date;
+
+/**
+ * Internal message to extend the expiry of a cached named graph without replacing its content, e.g. if a data origin
+ * confirmed that the status of the graph did not change.
+ */
+public class InternalExpiryUpdateRequest {
+
+    private final URI graphName;
+    private final Date expiry;
+    private final SettableFuture<Void> expiryUpdateFuture;
+
+    /**
+     * Creates a new {@link eu.spitfire.ssp.server.internal.message.InternalExpiryUpdateRequest}.
+     *
+     * @param graphName the name of the graph to update the expiry of
+     * @param expiry the new expiry of the graph
+     */
+    public InternalExpiryUpdateRequest(URI graphName, Date expiry){
+        this.graphName = graphName;
+        this.expiry = expiry;
+        this.expiryUpdateFuture = SettableFuture.create();
+    }
+
+    public URI getGraphName() {
+        return graphName;
+    }
+
+    public Date getExpiry() {
+        return expiry;
+    }
+
+    /**
+     * Returns the {@link com.google.common.util.concurrent.SettableFuture} to be set with <code>null</code> if the
+     * expiry was updated or with a {@link eu.spitfire.ssp.server.internal.exception.NamedGraphNotFoundException} if
+     * the graph is not contained in the cache.
+     *
+     * @return the {@link com.google.common.util.concurrent.SettableFuture} to be set with the result of the update
+     */
+    public SettableFuture<Void> getExpiryUpdateFuture() {
+        return expiryUpdateFuture;
+    }
+
+    @Override
+    public String toString(){
+        return "[InternalExpiryUpdateRequest] Graph: " + this.graphName + ", Expiry: " + this.expiry;
+    }
+}
@@ -0,0 +1,215 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.google.common.base.Charsets;
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoder for RDF terms encoded by a {@link eu.spitfire.ssp.server.internal.utils.BinaryRdfEncoder}. The decoder
+ * maintains the dictionary of one stream, i.e. an instance must not be used for more than one stream. Blank nodes
+ * with the same label within one stream are decoded as the same (fresh) blank node.
+ */
+public class BinaryRdfDecoder {
+
+    private final List<Node> dictionary;
+    private final Map<String, Node> blankNodes;
+
+
+    public BinaryRdfDecoder() {
+        this.dictionary = new ArrayList<>();
+        this.blankNodes = new HashMap<>();
+    }
+
+
+    /**
+     * Reads the magic bytes, the version and the kind of content from the given
+     * {@link org.jboss.netty.buffer.ChannelBuffer}.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to read from
+     *
+     * @return the kind of content following the header
+     *
+     * @throws java.lang.IllegalArgumentException if the buffer does not start with a valid header
+     */
+    public int readHeader(ChannelBuffer buffer) {
+        if(buffer.readableBytes() < BinaryRdfEncoder.MAGIC.length + 2) {
+            throw new IllegalArgumentException("Incomplete header!");
+        }
+        for(byte b : BinaryRdfEncoder.MAGIC) {
+            if(buffer.readByte() != b) {
+                throw new IllegalArgumentException("Invalid magic bytes!");
+            }
+        }
+        int version = buffer.readUnsignedByte();
+        if(version != BinaryRdfEncoder.VERSION) {
+            throw new IllegalArgumentException("Unsupported version: " + version);
+        }
+        return buffer.readUnsignedByte();
+    }
+
+
+    /**
+     * Reads the triples of a stream of kind {@link eu.spitfire.ssp.server.internal.utils.BinaryRdfEncoder#TRIPLES}
+     * (including the header) from the given {@link org.jboss.netty.buffer.ChannelBuffer} and adds them to the given
+     * {@link com.hp.hpl.jena.graph.Graph}.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to read from
+     * @param graph the {@link com.hp.hpl.jena.graph.Graph} to add the triples to
+     *
+     * @throws java.lang.IllegalArgumentException if the content of the buffer is malformed, i.e. in particular if a
+     * triple is not preceded by <code>1</code> or the stream ends before the terminating <code>0</code>
+     */
+    public void readTriples(ChannelBuffer buffer, Graph graph) {
+        int kind = readHeader(buffer);
+        if(kind != BinaryRdfEncoder.TRIPLES) {
+            throw new IllegalArgumentException("Unexpected kind of content: " + kind);
+        }
+
+        while(true) {
+            int tag = readUnsignedByte(buffer);
+            if(tag == 0) {
+                return;
+            }
+            if(tag != 1) {
+                throw new IllegalArgumentException("Unexpected tag before triple: " + tag);
+            }
+
+            Node subject = readTerm(buffer);
+            Node predicate = readTerm(buffer);
+            Node object = readTerm(buffer);
+            if(subject == null || predicate == null || object == null) {
+                throw new IllegalArgumentException("Unbound term in triple!");
+            }
+            graph.add(new Triple(subject, predicate, object));
+        }
+    }
+
+
+    /**
+     * Reads the next RDF term from the given {@link org.jboss.netty.buffer.ChannelBuffer}.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to read from
+     *
+     * @return the RDF term or <code>null</code> for unbound variables
+     *
+     * @throws java.lang.IllegalArgumentException if the content of the buffer is malformed
+     */
+    public Node readTerm(ChannelBuffer buffer) {
+        int tag = readUnsignedByte(buffer);
+        Node node;
+
+        switch(tag) {
+            case BinaryRdfEncoder.UNBOUND:
+                return null;
+
+            case BinaryRdfEncoder.REFERENCE:
+                int index = readVarInt(buffer);
+                if(index >= dictionary.size()) {
+                    throw new IllegalArgumentException("Invalid reference: " + index);
+                }
+                return dictionary.get(index);
+
+            case BinaryRdfEncoder.IRI:
+                node = NodeFactory.createURI(readString(buffer));
+                break;
+
+            case BinaryRdfEncoder.BLANK_NODE:
+                String label = readString(buffer);
+                node = blankNodes.get(label);
+                if(node == null) {
+                    node = NodeFactory.createAnon();
+                    blankNodes.put(label, node);
+                }
+                break;
+
+            case BinaryRdfEncoder.PLAIN_LITERAL:
+                node = NodeFactory.createLiteral(readString(buffer));
+                break;
+
+            case BinaryRdfEncoder.LANG_LITERAL:
+                String lexicalForm = readString(buffer);
+                node = NodeFactory.createLiteral(lexicalForm, readString(buffer), false);
+                break;
+
+            case BinaryRdfEncoder.TYPED_LITERAL:
+                lexicalForm = readString(buffer);
+                Node datatype = readTerm(buffer);
+                if(datatype == null || !datatype.isURI()) {
+                    throw new IllegalArgumentException("Invalid datatype: " + datatype);
+                }
+                node = NodeFactory.createLiteral(
+                        lexicalForm, TypeMapper.getInstance().getSafeTypeByName(datatype.getURI())
+                );
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown tag: " + tag);
+        }
+
+        if(dictionary.size() < BinaryRdfEncoder.MAX_DICTIONARY_SIZE) {
+            dictionary.add(node);
+        }
+        return node;
+    }
+
+
+    /**
+     * Reads a string written by
+     * {@link eu.spitfire.ssp.server.internal.utils.BinaryRdfEncoder#writeString(
+     * org.jboss.netty.buffer.ChannelBuffer, String)}.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to read from
+     *
+     * @return the string
+     */
+    public static String readString(ChannelBuffer buffer) {
+        int length = readVarInt(buffer);
+        if(length > buffer.readableBytes()) {
+            throw new IllegalArgumentException("Incomplete string!");
+        }
+        String value = buffer.toString(buffer.readerIndex(), length, Charsets.UTF_8);
+        buffer.skipBytes(length);
+        return value;
+    }
+
+
+    /**
+     * Reads a non-negative integer written by
+     * {@link eu.spitfire.ssp.server.internal.utils.BinaryRdfEncoder#writeVarInt(
+     * org.jboss.netty.buffer.ChannelBuffer, int)}.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to read from
+     *
+     * @return the integer
+     *
+     * @throws java.lang.IllegalArgumentException if the integer is too long or the buffer ends within the integer
+     */
+    public static int readVarInt(ChannelBuffer buffer) {
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7) {
+            int b = readUnsignedByte(buffer);
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Variable length integer too long!");
+    }
+
+
+    private static int readUnsignedByte(ChannelBuffer buffer) {
+        if(!buffer.readable()) {
+            throw new IllegalArgumentException("Unexpected end of stream!");
+        }
+        return buffer.readUnsignedByte();
+    }
+}
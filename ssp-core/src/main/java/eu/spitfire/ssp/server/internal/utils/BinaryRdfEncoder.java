@@ -0,0 +1,178 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.google.common.base.Charsets;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.util.iterator.ExtendedIterator;
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encoder for RDF terms in a compact binary representation. Every term is encoded as one tag byte followed by its
+ * components (strings are encoded as unsigned variable length integer (length) followed by the UTF-8 bytes). The
+ * first occurrence of a term is written completely and added to a dictionary, i.e. any further occurrence is written
+ * as reference to the dictionary entry (tag {@link #REFERENCE} followed by the index as variable length integer).
+ * The dictionary is limited to {@link #MAX_DICTIONARY_SIZE} entries. Decoders must maintain the dictionary the same
+ * way, i.e. add every term not written as reference as long as there are less than {@link #MAX_DICTIONARY_SIZE}
+ * entries.
+ *
+ * An instance of {@link eu.spitfire.ssp.server.internal.utils.BinaryRdfEncoder} keeps the dictionary of one
+ * stream, i.e. must not be used for more than one stream.
+ */
+public class BinaryRdfEncoder {
+
+    /**
+     * Magic bytes at the beginning of every stream (followed by the version and the kind of content)
+     */
+    public static final byte[] MAGIC = new byte[]{'S', 'B', 'R'};
+
+    /**
+     * The version of the encoding
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The maximum number of entries of the dictionary of a stream
+     */
+    public static final int MAX_DICTIONARY_SIZE = 65536;
+
+    /**
+     * The kind of content of streams containing triples, see {@link #writeTriples(ChannelBuffer, Graph)} (kind
+     * <code>1</code> is used for SPARQL results)
+     */
+    public static final int TRIPLES = 2;
+
+    public static final int UNBOUND = 0;
+    public static final int IRI = 1;
+    public static final int BLANK_NODE = 2;
+    public static final int PLAIN_LITERAL = 3;
+    public static final int LANG_LITERAL = 4;
+    public static final int TYPED_LITERAL = 5;
+    public static final int REFERENCE = 6;
+
+    private final Map<Node, Integer> dictionary;
+
+
+    public BinaryRdfEncoder() {
+        this.dictionary = new HashMap<>();
+    }
+
+
+    /**
+     * Writes the magic bytes, the version and the given kind of content to the given
+     * {@link org.jboss.netty.buffer.ChannelBuffer}.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to write to
+     * @param kind the kind of content following the header
+     */
+    public void writeHeader(ChannelBuffer buffer, int kind) {
+        buffer.writeBytes(MAGIC);
+        buffer.writeByte(VERSION);
+        buffer.writeByte(kind);
+    }
+
+
+    /**
+     * Writes the header (kind {@link #TRIPLES}) and all triples of the given {@link com.hp.hpl.jena.graph.Graph} to
+     * the given {@link org.jboss.netty.buffer.ChannelBuffer}. Every triple is written as one byte <code>1</code>
+     * followed by subject, predicate and object. The end is marked by one byte <code>0</code>.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to write to
+     * @param graph the {@link com.hp.hpl.jena.graph.Graph} to be written
+     */
+    public void writeTriples(ChannelBuffer buffer, Graph graph) {
+        writeHeader(buffer, TRIPLES);
+        ExtendedIterator<Triple> triples = graph.find(Node.ANY, Node.ANY, Node.ANY);
+        try {
+            while(triples.hasNext()) {
+                Triple triple = triples.next();
+                buffer.writeByte(1);
+                writeTerm(buffer, triple.getSubject());
+                writeTerm(buffer, triple.getPredicate());
+                writeTerm(buffer, triple.getObject());
+            }
+        } finally {
+            triples.close();
+        }
+        buffer.writeByte(0);
+    }
+
+
+    /**
+     * Writes the given RDF term to the given {@link org.jboss.netty.buffer.ChannelBuffer}.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to write to
+     * @param node the RDF term to be written (<code>null</code> for unbound variables)
+     */
+    public void writeTerm(ChannelBuffer buffer, Node node) {
+        if(node == null) {
+            buffer.writeByte(UNBOUND);
+            return;
+        }
+
+        Integer index = dictionary.get(node);
+        if(index != null) {
+            buffer.writeByte(REFERENCE);
+            writeVarInt(buffer, index);
+            return;
+        }
+
+        if(node.isURI()) {
+            buffer.writeByte(IRI);
+            writeString(buffer, node.getURI());
+        } else if(node.isBlank()) {
+            buffer.writeByte(BLANK_NODE);
+            writeString(buffer, node.getBlankNodeLabel());
+        } else if(node.isLiteral() && !node.getLiteralLanguage().isEmpty()) {
+            buffer.writeByte(LANG_LITERAL);
+            writeString(buffer, node.getLiteralLexicalForm());
+            writeString(buffer, node.getLiteralLanguage());
+        } else if(node.isLiteral() && node.getLiteralDatatypeURI() != null) {
+            buffer.writeByte(TYPED_LITERAL);
+            writeString(buffer, node.getLiteralLexicalForm());
+            writeTerm(buffer, NodeFactory.createURI(node.getLiteralDatatypeURI()));
+        } else if(node.isLiteral()) {
+            buffer.writeByte(PLAIN_LITERAL);
+            writeString(buffer, node.getLiteralLexicalForm());
+        } else {
+            throw new IllegalArgumentException("Unsupported RDF term: " + node);
+        }
+
+        if(dictionary.size() < MAX_DICTIONARY_SIZE) {
+            dictionary.put(node, dictionary.size());
+        }
+    }
+
+
+    /**
+     * Writes the given string as variable length integer (number of bytes) followed by its UTF-8 bytes.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to write to
+     * @param value the string to be written
+     */
+    public static void writeString(ChannelBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(Charsets.UTF_8);
+        writeVarInt(buffer, bytes.length);
+        buffer.writeBytes(bytes);
+    }
+
+
+    /**
+     * Writes the given non-negative integer with 7 bits per byte (least significant group first), i.e. the most
+     * significant bit of each byte indicates if there are more bytes to follow.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to write to
+     * @param value the non-negative integer to be written
+     */
+    public static void writeVarInt(ChannelBuffer buffer, int value) {
+        while((value & ~0x7F) != 0) {
+            buffer.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer.writeByte(value);
+    }
+}
@@ -0,0 +1,103 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Opaque token to continue a paginated listing after the last entry of the previous page (keyset pagination). The
+ * token encodes the sort key of the last entry and the number of entries with exactly this key that were already
+ * returned (to handle non-unique keys). It is serialized as URL-safe Base64 and thus can be used as query parameter
+ * without further encoding.
+ */
+public class ContinuationToken {
+
+    private static final Gson GSON = new Gson();
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+    private final List<String> key;
+    private final int skip;
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.server.internal.utils.ContinuationToken}
+     *
+     * @param key the sort key of the last entry of the previous page
+     * @param skip the number of entries with the given key that were already returned
+     */
+    public ContinuationToken(List<String> key, int skip) {
+        this.key = Collections.unmodifiableList(new ArrayList<>(key));
+        this.skip = skip;
+    }
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.server.internal.utils.ContinuationToken} for a unique key
+     *
+     * @param key the (unique) sort key of the last entry of the previous page
+     */
+    public ContinuationToken(String key) {
+        this(Collections.singletonList(key), 0);
+    }
+
+
+    public List<String> getKey() {
+        return key;
+    }
+
+
+    public int getSkip() {
+        return skip;
+    }
+
+
+    /**
+     * Returns the opaque (URL-safe) representation of this token.
+     *
+     * @return the opaque (URL-safe) representation of this token
+     */
+    public String encode() {
+        String[] values = new String[key.size() + 1];
+        values[0] = String.valueOf(skip);
+        for(int i = 0; i < key.size(); i++) {
+            values[i + 1] = key.get(i);
+        }
+        return ENCODING.encode(GSON.toJson(values).getBytes(Charsets.UTF_8));
+    }
+
+
+    /**
+     * Decodes the given opaque token.
+     *
+     * @param token the opaque token (as returned by {@link #encode()})
+     *
+     * @return the decoded {@link eu.spitfire.ssp.server.internal.utils.ContinuationToken}
+     *
+     * @throws java.lang.IllegalArgumentException if the given token is malformed
+     */
+    public static ContinuationToken decode(String token) throws IllegalArgumentException {
+        try {
+            String[] values = GSON.fromJson(new String(ENCODING.decode(token), Charsets.UTF_8), String[].class);
+            if(values == null || values.length < 2) {
+                throw new IllegalArgumentException("Malformed continuation token: " + token);
+            }
+            int skip = Integer.parseInt(values[0]);
+            if(skip < 0) {
+                throw new IllegalArgumentException("Malformed continuation token: " + token);
+            }
+            return new ContinuationToken(Arrays.asList(values).subList(1, values.length), skip);
+        } catch (JsonParseException | NumberFormatException ex) {
+            throw new IllegalArgumentException("Malformed continuation token: " + token);
+        }
+    }
+
+
+    @Override
+    public String toString() {
+        return "[Continuation token: key " + key + ", skip " + skip + "]";
+    }
+}
@@ -0,0 +1,305 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.hp.hpl.jena.rdf.model.*;
+import com.hp.hpl.jena.vocabulary.RDF;
+
+import java.net.URI;
+import java.util.*;
+
+/**
+ * Catalog of the named graphs contained in a {@link eu.spitfire.ssp.server.handler.SemanticCache}, i.e.
+ * <ul>
+ *     <li>graph name &rarr; number of triples, time of the last update and name of the backend,</li>
+ *     <li>subject &rarr; names of the graphs mentioning the subject and</li>
+ *     <li><code>rdf:type</code> &rarr; subjects being instances of the type.</li>
+ * </ul>
+ *
+ * The catalog is maintained by the cache on every put and delete of a named graph. All maps are sorted by their
+ * keys to support keyset-paginated directory listings.
+ */
+public class GraphCatalog {
+
+    private final TreeMap<String, GraphEntry> graphs;
+    private final TreeMap<String, Set<String>> subjects;
+    private final Map<String, TreeMap<String, Integer>> types;
+
+
+    public GraphCatalog() {
+        this.graphs = new TreeMap<>();
+        this.subjects = new TreeMap<>();
+        this.types = new HashMap<>();
+    }
+
+
+    /**
+     * Replaces the catalog entries of the named graph with the given name with the entries for the given
+     * {@link com.hp.hpl.jena.rdf.model.Model}.
+     *
+     * @param graphName the name of the graph
+     * @param graph the {@link com.hp.hpl.jena.rdf.model.Model} containing the new status of the graph
+     * @param backendName the name of the backend providing the graph (or <code>null</code> to keep the previous one)
+     */
+    public synchronized void putNamedGraph(URI graphName, Model graph, String backendName) {
+        GraphEntry previous = removeNamedGraph(graphName);
+        if(backendName == null && previous != null) {
+            backendName = previous.backend;
+        }
+
+        GraphEntry entry = new GraphEntry(graphName.toString(), graph.size(), System.currentTimeMillis(), backendName);
+
+        ResIterator iterator = graph.listSubjects();
+        try {
+            while(iterator.hasNext()) {
+                Resource subject = iterator.next();
+                if(subject.isURIResource()) {
+                    entry.subjects.add(subject.getURI());
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+
+        StmtIterator typeStatements = graph.listStatements(null, RDF.type, (RDFNode) null);
+        try {
+            while(typeStatements.hasNext()) {
+                Statement statement = typeStatements.nextStatement();
+                if(statement.getSubject().isURIResource() && statement.getObject().isURIResource()) {
+                    entry.types.add(new String[]{
+                            statement.getObject().asResource().getURI(), statement.getSubject().getURI()
+                    });
+                }
+            }
+        } finally {
+            typeStatements.close();
+        }
+
+        for(String subject : entry.subjects) {
+            Set<String> graphNames = subjects.get(subject);
+            if(graphNames == null) {
+                graphNames = new TreeSet<>();
+                subjects.put(subject, graphNames);
+            }
+            graphNames.add(entry.name);
+        }
+
+        for(String[] type : entry.types) {
+            TreeMap<String, Integer> instances = types.get(type[0]);
+            if(instances == null) {
+                instances = new TreeMap<>();
+                types.put(type[0], instances);
+            }
+            Integer count = instances.get(type[1]);
+            instances.put(type[1], count == null ? 1 : count + 1);
+        }
+
+        graphs.put(entry.name, entry);
+    }
+
+
+    /**
+     * Removes the catalog entries of the named graph with the given name.
+     *
+     * @param graphName the name of the graph
+     *
+     * @return the removed entry or <code>null</code> if there was no entry for the given graph
+     */
+    public synchronized GraphEntry removeNamedGraph(URI graphName) {
+        GraphEntry entry = graphs.remove(graphName.toString());
+        if(entry == null) {
+            return null;
+        }
+
+        for(String subject : entry.subjects) {
+            Set<String> graphNames = subjects.get(subject);
+            if(graphNames != null) {
+                graphNames.remove(entry.name);
+                if(graphNames.isEmpty()) {
+                    subjects.remove(subject);
+                }
+            }
+        }
+
+        for(String[] type : entry.types) {
+            TreeMap<String, Integer> instances = types.get(type[0]);
+            Integer count = instances == null ? null : instances.get(type[1]);
+            if(count != null) {
+                if(count > 1) {
+                    instances.put(type[1], count - 1);
+                } else {
+                    instances.remove(type[1]);
+                    if(instances.isEmpty()) {
+                        types.remove(type[0]);
+                    }
+                }
+            }
+        }
+
+        return entry;
+    }
+
+
+    /**
+     * Returns <code>true</code> if the catalog contains an entry for the graph with the given name.
+     *
+     * @param graphName the name of the graph
+     *
+     * @return <code>true</code> if the catalog contains an entry for the graph with the given name
+     */
+    public synchronized boolean containsNamedGraph(URI graphName) {
+        return graphs.containsKey(graphName.toString());
+    }
+
+
+    /**
+     * Returns the names of the graphs mentioning the given subject.
+     *
+     * @param subject the URI of the subject
+     *
+     * @return the names of the graphs mentioning the given subject (sorted)
+     */
+    public synchronized List<String> getGraphNames(String subject) {
+        Set<String> graphNames = subjects.get(subject);
+        return graphNames == null ? new ArrayList<String>() : new ArrayList<>(graphNames);
+    }
+
+
+    /**
+     * Returns the number of named graphs contained in this catalog.
+     *
+     * @return the number of named graphs contained in this catalog
+     */
+    public synchronized int getGraphCount() {
+        return graphs.size();
+    }
+
+
+    /**
+     * Returns a page of the graph entries (sorted by name), i.e. the first entries with a name greater than the given
+     * one. The cost of a page only depends on the page size, not on its position.
+     *
+     * @param after the name of the last graph of the previous page or <code>null</code> for the first page
+     * @param limit the maximum number of entries to return
+     *
+     * @return a page of the graph entries (sorted by name)
+     */
+    public synchronized List<GraphEntry> getGraphs(String after, int limit) {
+        return new ArrayList<>(page(after == null ? graphs : graphs.tailMap(after, false), limit).values());
+    }
+
+
+    /**
+     * Returns the number of subjects (of the given type) contained in this catalog.
+     *
+     * @param type the URI of the type or <code>null</code> for all subjects
+     *
+     * @return the number of subjects (of the given type) contained in this catalog
+     */
+    public synchronized int getSubjectCount(String type) {
+        if(type == null) {
+            return subjects.size();
+        }
+        TreeMap<String, Integer> instances = types.get(type);
+        return instances == null ? 0 : instances.size();
+    }
+
+
+    /**
+     * Returns a page of the subjects (of the given type) with the names of the graphs mentioning them, i.e. the first
+     * subjects with a URI greater than the given one. The cost of a page only depends on the page size, not on its
+     * position.
+     *
+     * @param type the URI of the type or <code>null</code> for all subjects
+     * @param after the URI of the last subject of the previous page or <code>null</code> for the first page
+     * @param limit the maximum number of entries to return
+     *
+     * @return a page of the subjects (sorted by URI) with the names of the graphs mentioning them
+     */
+    public synchronized List<SubjectEntry> getSubjects(String type, String after, int limit) {
+        NavigableMap<String, ?> keys = type == null ? subjects : types.get(type);
+        if(keys == null) {
+            return new ArrayList<>();
+        }
+
+        List<SubjectEntry> result = new ArrayList<>();
+        for(String subject : page(after == null ? keys : keys.tailMap(after, false), limit).keySet()) {
+            result.add(new SubjectEntry(subject, getGraphNames(subject)));
+        }
+        return result;
+    }
+
+
+    private static <V> NavigableMap<String, V> page(NavigableMap<String, V> map, int limit) {
+        if(limit <= 0 || map.isEmpty()) {
+            return new TreeMap<>();
+        }
+        Iterator<String> keys = map.navigableKeySet().iterator();
+        String last = null;
+        for(int i = 0; i < limit && keys.hasNext(); i++) {
+            last = keys.next();
+        }
+        return new TreeMap<>(map.headMap(last, true));
+    }
+
+
+    /**
+     * Catalog entry of a named graph.
+     */
+    public static class GraphEntry {
+
+        private final String name;
+        private final long triples;
+        private final long lastUpdate;
+        private final String backend;
+
+        private final transient Set<String> subjects;
+        private final transient List<String[]> types;
+
+        private GraphEntry(String name, long triples, long lastUpdate, String backend) {
+            this.name = name;
+            this.triples = triples;
+            this.lastUpdate = lastUpdate;
+            this.backend = backend;
+            this.subjects = new HashSet<>();
+            this.types = new ArrayList<>();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getTriples() {
+            return triples;
+        }
+
+        public long getLastUpdate() {
+            return lastUpdate;
+        }
+
+        public String getBackend() {
+            return backend;
+        }
+    }
+
+
+    /**
+     * Catalog entry of a subject.
+     */
+    public static class SubjectEntry {
+
+        private final String name;
+        private final List<String> graphs;
+
+        private SubjectEntry(String name, List<String> graphs) {
+            this.name = name;
+            this.graphs = graphs;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getGraphs() {
+            return graphs;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
+
+import java.net.URI;
+
+/**
+ * A {@link eu.spitfire.ssp.server.internal.utils.GraphUpdateListener} is notified by the
+ * {@link eu.spitfire.ssp.server.handler.SemanticCache} whenever a named graph was put into or deleted from the cache,
+ * e.g. to push the new status to observers of the graph.
+ *
+ * Listeners are invoked by the internal tasks executor of the cache, i.e. implementations must not block.
+ */
+public interface GraphUpdateListener {
+
+    /**
+     * Invoked after the given graph was put into the cache.
+     *
+     * @param graph the {@link eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph} put into the cache
+     */
+    public void graphUpdated(ExpiringNamedGraph graph);
+
+    /**
+     * Invoked after the graph with the given name was deleted from the cache.
+     *
+     * @param graphName the name of the deleted graph
+     */
+    public void graphDeleted(URI graphName);
+}
@@ -4,15 +4,14 @@ import com.google.common.collect.Multimap;
 import com.google.gson.Gson;
 
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringGraph;
+import eu.spitfire.ssp.server.internal.wrapper.StaleGraph;
 
 import com.hp.hpl.jena.query.ResultSet;
-import com.hp.hpl.jena.query.ResultSetFormatter;
 import com.hp.hpl.jena.rdf.model.Model;
 import org.apache.jena.riot.Lang;
 import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFFormat;
 import org.jboss.netty.buffer.ChannelBuffer;
-import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.handler.codec.http.*;
 import org.slf4j.Logger;
@@ -23,7 +22,6 @@ import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
-import java.util.Map;
 import java.util.TimeZone;
 
 import static org.jboss.netty.handler.codec.http.HttpResponseStatus.OK;
@@ -50,7 +48,7 @@ public class HttpResponseFactory {
     }
 
 
-    public static HttpResponse createHttpJsonResponse(HttpVersion version, Map<String, String> content){
+    public static HttpResponse createHttpJsonResponse(HttpVersion version, Object content){
         HttpResponse httpResponse = new DefaultHttpResponse(version, HttpResponseStatus.OK);
 
         ChannelBuffer payload = ChannelBuffers.wrappedBuffer(GSON.toJson(content).getBytes(Charset.forName("UTF-8")));
@@ -90,15 +88,19 @@ public class HttpResponseFactory {
             ResultSet resultSet){
 
         ChannelBuffer payload = ChannelBuffers.dynamicBuffer();
-        ChannelBufferOutputStream outputStream = new ChannelBufferOutputStream(payload);
 
-        ResultSetFormatter.output(outputStream, resultSet, queryResultsFormat.getResultsFormat());
+        SparqlResultsWriter writer = SparqlResultsWriter.create(queryResultsFormat, resultSet.getResultVars());
+        writer.writeHead(payload);
+        while(resultSet.hasNext()){
+            writer.writeRow(payload, resultSet.nextBinding());
+        }
+        writer.writeTail(payload);
 
         HttpResponse httpResponse = new DefaultHttpResponse(version, HttpResponseStatus.OK);
         httpResponse.setContent(payload);
 
-        httpResponse.headers().add(HttpHeaders.Names.CONTENT_TYPE,
-            queryResultsFormat.getMimeType()  + "; charset=ISO-8859-1");
+        httpResponse.headers().add(HttpHeaders.Names.CONTENT_TYPE, queryResultsFormat == QueryResultsFormat.BINARY ?
+                queryResultsFormat.getMimeType() : queryResultsFormat.getMimeType() + "; charset=UTF-8");
         httpResponse.headers().add(HttpHeaders.Names.CONTENT_LENGTH, payload.readableBytes());
 
         return httpResponse;
@@ -106,29 +108,64 @@ public class HttpResponseFactory {
     }
 
 
+    /**
+     * Creates an {@link org.jboss.netty.handler.codec.http.HttpResponse} containing the given graph serialized in
+     * the given {@link eu.spitfire.ssp.server.internal.utils.Language}.
+     *
+     * If the graph contains the representation received from its data origin in the requested language, this
+     * representation is sent as it is. Otherwise, the graph is serialized from its model. Note that a graph received
+     * in another language is parsed on the calling (i.e. the response) thread when its model is needed the first time
+     * and concurrent requests for the same graph wait for this (see
+     * {@link eu.spitfire.ssp.server.internal.wrapper.ExpiringGraph#getModel()}, which is synchronized).
+     *
+     * @param version the {@link org.jboss.netty.handler.codec.http.HttpVersion} of the response
+     * @param language the {@link eu.spitfire.ssp.server.internal.utils.Language} of the payload
+     * @param expiringGraph the {@link eu.spitfire.ssp.server.internal.wrapper.ExpiringGraph} to be sent
+     *
+     * @return the {@link org.jboss.netty.handler.codec.http.HttpResponse} containing the given graph
+     */
     public static HttpResponse createHttpResponse(HttpVersion version, Language language, ExpiringGraph expiringGraph){
 
-        Model model = expiringGraph.getModel();
-        StringWriter writer = new StringWriter();
+        ChannelBuffer payload;
+
+        // pass the representation received from the data origin through (no parsing and serialization)
+        if(language == expiringGraph.getLanguage() && expiringGraph.getContent() != null){
+            payload = expiringGraph.getContent();
+            LOG.debug("Pass through representation ({}).", language);
+        }
+
+        // compact binary representation (not supported by Jena)
+        else if(language == Language.RDF_BINARY){
+            payload = ChannelBuffers.dynamicBuffer();
+            new BinaryRdfEncoder().writeTriples(payload, expiringGraph.getModel().getGraph());
+        }
+
+        else{
+            Model model = expiringGraph.getModel();
+            StringWriter writer = new StringWriter();
 
-        //model.write(writer, language.getRdfFormat().getLang().getName());
-        //RDFDataMgr.write(writer, model, language.getRdfFormat().getLang());
-        RDFDataMgr.write(writer, model, Lang.TTL);
+            //model.write(writer, language.getRdfFormat().getLang().getName());
+            //RDFDataMgr.write(writer, model, language.getRdfFormat().getLang());
+            RDFDataMgr.write(writer, model, Lang.TTL);
 
-        LOG.info("Model to be serialized:\n{}", model);
+            byte[] content = writer.toString().getBytes(Charset.forName("UTF-8"));
+            payload = ChannelBuffers.wrappedBuffer(content);
+        }
 
         HttpResponse httpResponse = new DefaultHttpResponse(version, OK);
-        byte[] content = writer.toString().getBytes(Charset.forName("UTF-8"));
-        ChannelBuffer payload = ChannelBuffers.wrappedBuffer(content);
         httpResponse.setContent(payload);
 
-        LOG.error("\n{}", new String(content, Charset.forName("UTF-8")));
-
         //Set HTTP response headers
-        httpResponse.headers().add(HttpHeaders.Names.CONTENT_TYPE, language.getMimeType() + "; charset=UTF-8");
+        httpResponse.headers().add(HttpHeaders.Names.CONTENT_TYPE, language == Language.RDF_BINARY ?
+                language.getMimeType() : language.getMimeType() + "; charset=UTF-8");
         httpResponse.headers().add(HttpHeaders.Names.CONTENT_LENGTH, payload.readableBytes());
         httpResponse.headers().add(HttpHeaders.Names.EXPIRES, DATE_FORMAT.format(expiringGraph.getExpiry()));
         httpResponse.headers().add(HttpHeaders.Names.CACHE_CONTROL, "no-cache, no-store, must-revalidate");
+
+        if(expiringGraph instanceof StaleGraph){
+            httpResponse.headers().add(HttpHeaders.Names.WARNING, "110 - \"Response is Stale\"");
+            httpResponse.headers().add(HttpHeaders.Names.AGE, ((StaleGraph) expiringGraph).getAge());
+        }
 //        httpResponse.headers().add("Access-Control-Allow-Origin", "*");
 //        httpResponse.headers().add("Access-Control-Allow-Credentials", "true");
 
@@ -6,7 +6,7 @@ import org.apache.jena.riot.RDFFormat;
 
 /**
  * A wrapper class for the internal representation of content format names in the JENA framework and corresponding
- * HTTP mime types.
+ * HTTP mime types and CoAP content formats.
  *
  * @author Oliver Kleine
  */
@@ -14,17 +14,29 @@ public enum Language{
     /**
      * Corresponds to HTTP mime type "application/rdf+xml"
      */
-    RDF_XML(RDFFormat.RDFXML_ABBREV, "application/rdf+xml"),
+    RDF_XML(RDFFormat.RDFXML_ABBREV, "application/rdf+xml", ContentFormat.APP_RDF_XML),
 
     /**
      * Corresponds to HTTP mime type "application/n3"
      */
-    RDF_N3 (RDFFormat.TURTLE_BLOCKS, "application/n3"),
+    RDF_N3 (RDFFormat.TURTLE_BLOCKS, "application/n3", ContentFormat.APP_N3),
 
     /**
      * Corresponds to HTTP mime type "application/turtle"
      */
-    RDF_TURTLE(RDFFormat.TURTLE_BLOCKS, "application/turtle");
+    RDF_TURTLE(RDFFormat.TURTLE_BLOCKS, "application/turtle", ContentFormat.APP_TURTLE),
+
+    /**
+     * Corresponds to HTTP mime type "application/x-rdf+binary" and CoAP content format {@link #APP_RDF_BINARY}, i.e.
+     * the compact binary format written by {@link eu.spitfire.ssp.server.internal.utils.BinaryRdfEncoder} (not
+     * supported by Jena, i.e. there is no corresponding {@link org.apache.jena.riot.RDFFormat})
+     */
+    RDF_BINARY(null, "application/x-rdf+binary", Language.APP_RDF_BINARY);
+
+    /**
+     * The CoAP content format number of {@link #RDF_BINARY} (from the range for experimental use, see RFC 7252)
+     */
+    public static final long APP_RDF_BINARY = 65100;
 
     /**
      * A String representing the JENA name of the language
@@ -36,10 +48,16 @@ public enum Language{
      */
     private String mimeType;
 
+    /**
+     * The number of the corresponding CoAP content format
+     */
+    private long coapContentFormat;
 
-    private Language(RDFFormat rdfFormat, String mimeType) {
+
+    private Language(RDFFormat rdfFormat, String mimeType, long coapContentFormat) {
         this.rdfFormat = rdfFormat;
         this.mimeType = mimeType;
+        this.coapContentFormat = coapContentFormat;
     }
 
     /**
@@ -65,13 +83,10 @@ public enum Language{
     }
 
     public static Language getByCoapContentFormat(long contentFormat){
-
-        if(contentFormat == ContentFormat.APP_RDF_XML)
-            return RDF_XML;
-        if(contentFormat == ContentFormat.APP_N3)
-            return RDF_N3;
-        if(contentFormat == ContentFormat.APP_TURTLE)
-            return RDF_TURTLE;
+        for(Language language : Language.values()){
+            if(language.coapContentFormat == contentFormat)
+                return language;
+        }
 
         return null;
     }
@@ -93,4 +108,8 @@ public enum Language{
     public RDFFormat getRdfFormat(){
         return this.rdfFormat;
     }
+
+    public long getCoapContentFormat(){
+        return this.coapContentFormat;
+    }
 }
@@ -0,0 +1,184 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ResIterator;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache for the IRIs of graphs and resources that are known to be missing, i.e. to answer requests for such IRIs
+ * without accessing the store. An IRI is considered missing if
+ * <ul>
+ *     <li>it is definitely not contained in the {@link com.google.common.hash.BloomFilter} of known graph names and
+ *     subjects (only after the filter was completely filled, see {@link #setComplete()}) or</li>
+ *     <li>a previous lookup of the IRI failed less than the given TTL ago.</li>
+ * </ul>
+ *
+ * Since a {@link com.google.common.hash.BloomFilter} does not support removals, deleted graphs and subjects remain
+ * in the filter, i.e. requests for them are answered by the store (and then by the TTL cache).
+ */
+public class NegativeCache {
+
+    /**
+     * The maximum number of missing IRIs to be kept. If there are more, new misses are not cached.
+     */
+    public static final int MAX_MISSES = 10000;
+
+    private final long ttlMillis;
+    private final BloomFilter<CharSequence> knownIris;
+    private volatile boolean complete;
+
+    private final Map<String, Long> misses;
+
+    private final AtomicLong bloomFilterHits;
+    private final AtomicLong missHits;
+
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.server.internal.utils.NegativeCache}
+     *
+     * @param ttlMillis the number of milliseconds to remember a missing IRI
+     * @param expectedIris the expected number of graph names and subjects (to size the
+     * {@link com.google.common.hash.BloomFilter})
+     */
+    public NegativeCache(long ttlMillis, int expectedIris) {
+        this.ttlMillis = ttlMillis;
+        this.knownIris = BloomFilter.create(Funnels.stringFunnel(Charsets.UTF_8), Math.max(1000, expectedIris), 0.01);
+        this.misses = new ConcurrentHashMap<>();
+        this.bloomFilterHits = new AtomicLong();
+        this.missHits = new AtomicLong();
+    }
+
+
+    /**
+     * Returns <code>true</code> if the given IRI is known to be missing or <code>false</code> otherwise.
+     *
+     * @param iri the IRI of the graph or resource to be looked up
+     *
+     * @return <code>true</code> if the given IRI is known to be missing or <code>false</code> otherwise
+     */
+    public boolean isMissing(String iri) {
+        if(complete && !mightBeKnown(iri)) {
+            bloomFilterHits.incrementAndGet();
+            return true;
+        }
+
+        Long expiry = misses.get(iri);
+        if(expiry != null) {
+            if(expiry > System.currentTimeMillis()) {
+                missHits.incrementAndGet();
+                return true;
+            }
+            misses.remove(iri);
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Remembers the given IRI as missing for the configured TTL.
+     *
+     * @param iri the IRI of the graph or resource that was not found
+     */
+    public void addMiss(String iri) {
+        if(misses.size() >= MAX_MISSES) {
+            removeExpiredMisses();
+            if(misses.size() >= MAX_MISSES) {
+                return;
+            }
+        }
+
+        misses.put(iri, System.currentTimeMillis() + ttlMillis);
+    }
+
+
+    /**
+     * Adds the given graph name and the subjects of the given graph to the known IRIs and removes them from the
+     * missing IRIs.
+     *
+     * @param graphName the name of the graph
+     * @param graph the content of the graph (may be <code>null</code>)
+     */
+    public void addKnown(URI graphName, Model graph) {
+        addKnown(graphName.toString());
+
+        if(graph != null) {
+            ResIterator subjects = graph.listSubjects();
+            try {
+                while(subjects.hasNext()) {
+                    Resource subject = subjects.next();
+                    if(subject.isURIResource()) {
+                        addKnown(subject.getURI());
+                    }
+                }
+            } finally {
+                subjects.close();
+            }
+        }
+    }
+
+
+    /**
+     * Adds the given IRI to the known IRIs and removes it from the missing IRIs.
+     *
+     * @param iri the IRI of a graph or resource contained in the cache
+     */
+    public void addKnown(String iri) {
+        synchronized (knownIris) {
+            knownIris.put(iri);
+        }
+        misses.remove(iri);
+    }
+
+
+    /**
+     * Marks the {@link com.google.common.hash.BloomFilter} of known IRIs as complete, i.e. contains all graph names
+     * and subjects contained in the cache. Before, only the TTL cache is used.
+     */
+    public void setComplete() {
+        this.complete = true;
+    }
+
+
+    private boolean mightBeKnown(String iri) {
+        synchronized (knownIris) {
+            return knownIris.mightContain(iri);
+        }
+    }
+
+
+    private void removeExpiredMisses() {
+        long now = System.currentTimeMillis();
+        Iterator<Long> iterator = misses.values().iterator();
+        while(iterator.hasNext()) {
+            if(iterator.next() <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+
+    /**
+     * Returns the number of requests answered by the Bloom filter and the TTL cache and the number of cached misses.
+     *
+     * @return the statistics of this cache
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new HashMap<>();
+        statistics.put("negative-cache.complete", String.valueOf(complete));
+        statistics.put("negative-cache.hits.bloom-filter", String.valueOf(bloomFilterHits.get()));
+        statistics.put("negative-cache.hits.misses", String.valueOf(missHits.get()));
+        statistics.put("negative-cache.misses", String.valueOf(misses.size()));
+        return statistics;
+    }
+}
@@ -0,0 +1,162 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.sparql.engine.ResultSetStream;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import eu.spitfire.ssp.server.internal.wrapper.QueryExecutionResults;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces concurrent executions of identical SPARQL queries (single-flight), i.e. a query that arrives while an
+ * identical one (same normalized query string) is executed is not executed again but shares the results of the
+ * running execution. The results are fanned out to all waiting futures, every one with its own
+ * {@link com.hp.hpl.jena.query.ResultSet} (as a {@link com.hp.hpl.jena.query.ResultSet} can only be consumed once).
+ *
+ * Queries arriving after the execution finished are executed again, i.e. results are never cached.
+ */
+public class QueryCoalescer {
+
+    private final ConcurrentHashMap<String, Flight> flights;
+
+    private final AtomicLong executedQueries;
+    private final AtomicLong coalescedQueries;
+
+
+    public QueryCoalescer() {
+        this.flights = new ConcurrentHashMap<>();
+        this.executedQueries = new AtomicLong();
+        this.coalescedQueries = new AtomicLong();
+    }
+
+
+    /**
+     * Joins the running execution of the query with the given key (if any). Otherwise the caller becomes responsible
+     * to execute the query and to eventually call {@link #complete(String, QueryExecutionResults)} or
+     * {@link #fail(String, Throwable)} with the given key.
+     *
+     * @param key the normalized query
+     * @param resultsFuture the future to be set with the results
+     *
+     * @return <code>true</code> if there is a running execution (which will set the given future) or
+     * <code>false</code> if the caller has to execute the query
+     */
+    public boolean join(String key, SettableFuture<QueryExecutionResults> resultsFuture) {
+        Flight flight = new Flight(resultsFuture);
+
+        while(true) {
+            Flight running = flights.putIfAbsent(key, flight);
+            if(running == null) {
+                executedQueries.incrementAndGet();
+                return false;
+            }
+            if(running.add(resultsFuture)) {
+                coalescedQueries.incrementAndGet();
+                return true;
+            }
+            //running execution just finished
+            flights.remove(key, running);
+        }
+    }
+
+
+    /**
+     * Sets the given results on all futures waiting for the query with the given key.
+     *
+     * @param key the normalized query
+     * @param results the {@link eu.spitfire.ssp.server.internal.wrapper.QueryExecutionResults} of the query
+     */
+    public void complete(String key, QueryExecutionResults results) {
+        List<SettableFuture<QueryExecutionResults>> futures = remove(key);
+        if(futures.size() == 1) {
+            futures.get(0).set(results);
+            return;
+        }
+
+        ResultSet resultSet = results.getResultSet();
+        List<Binding> bindings = new ArrayList<>();
+        while(resultSet.hasNext()) {
+            bindings.add(resultSet.nextBinding());
+        }
+        Model model = resultSet.getResourceModel() == null ? ModelFactory.createDefaultModel() :
+                resultSet.getResourceModel();
+
+        for(SettableFuture<QueryExecutionResults> future : futures) {
+            ResultSet copy = new ResultSetStream(resultSet.getResultVars(), model,
+                    QueryIterPlainWrapper.create(bindings.iterator()));
+            future.set(new QueryExecutionResults(results.getDuration(), copy, results.getNext()));
+        }
+    }
+
+
+    /**
+     * Sets the given exception on all futures waiting for the query with the given key.
+     *
+     * @param key the normalized query
+     * @param throwable the reason of the failed execution
+     */
+    public void fail(String key, Throwable throwable) {
+        for(SettableFuture<QueryExecutionResults> future : remove(key)) {
+            future.setException(throwable);
+        }
+    }
+
+
+    private List<SettableFuture<QueryExecutionResults>> remove(String key) {
+        Flight flight = flights.remove(key);
+        return flight == null ? new ArrayList<SettableFuture<QueryExecutionResults>>() : flight.close();
+    }
+
+
+    /**
+     * Returns the number of executed and coalesced queries and the ratio of coalesced queries.
+     *
+     * @return the statistics of this coalescer
+     */
+    public Map<String, String> getStatistics() {
+        long executed = executedQueries.get();
+        long coalesced = coalescedQueries.get();
+
+        Map<String, String> statistics = new HashMap<>();
+        statistics.put("queries.executed", String.valueOf(executed));
+        statistics.put("queries.coalesced", String.valueOf(coalesced));
+        statistics.put("queries.coalesced.ratio", executed + coalesced == 0 ? "0" :
+                String.format("%.3f", (double) coalesced / (executed + coalesced)));
+        statistics.put("queries.in-flight", String.valueOf(flights.size()));
+        return statistics;
+    }
+
+
+    private static class Flight {
+
+        private List<SettableFuture<QueryExecutionResults>> futures;
+
+        private Flight(SettableFuture<QueryExecutionResults> future) {
+            this.futures = new ArrayList<>();
+            this.futures.add(future);
+        }
+
+        private synchronized boolean add(SettableFuture<QueryExecutionResults> future) {
+            if(futures == null) {
+                return false;
+            }
+            futures.add(future);
+            return true;
+        }
+
+        private synchronized List<SettableFuture<QueryExecutionResults>> close() {
+            List<SettableFuture<QueryExecutionResults>> result = futures;
+            futures = null;
+            return result;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package eu.spitfire.ssp.server.internal.utils;
 
-
 import com.hp.hpl.jena.sparql.resultset.ResultsFormat;
+import de.uzl.itm.ncoap.message.options.ContentFormat;
 
 /**
  * A wrapper class for the internal representation of serialization format names for SPARQL results in the JENA
@@ -29,7 +29,19 @@ public enum QueryResultsFormat {
     /**
      * Corresponds to HTTP mime type "text/tab-separated-values"
      */
-    TSV(ResultsFormat.FMT_RS_TSV, "text/tab-separated-values");
+    TSV(ResultsFormat.FMT_RS_TSV, "text/tab-separated-values"),
+
+    /**
+     * Corresponds to HTTP mime type "application/x-sparql-results+binary", i.e. the compact binary format written by
+     * {@link eu.spitfire.ssp.server.internal.utils.SparqlResultsWriter} (not supported by Jena, i.e. there is no
+     * corresponding {@link com.hp.hpl.jena.sparql.resultset.ResultsFormat})
+     */
+    BINARY(null, "application/x-sparql-results+binary");
+
+    /**
+     * The CoAP content format number of {@link #BINARY} (from the range for experimental use, see RFC 7252)
+     */
+    public static final long APP_SPARQL_RESULTS_BINARY = 65101;
 
     /**
      * The corresponding {@link com.hp.hpl.jena.sparql.resultset.ResultsFormat}
@@ -66,6 +78,27 @@ public enum QueryResultsFormat {
     }
 
 
+    /**
+     * Returns the {@link QueryResultsFormat} according to the given CoAP content format or <code>null</code> if the
+     * given content format is not supported (i.e. {@link de.uzl.itm.ncoap.message.options.ContentFormat#APP_JSON},
+     * {@link de.uzl.itm.ncoap.message.options.ContentFormat#APP_XML} and {@link #APP_SPARQL_RESULTS_BINARY}).
+     *
+     * @param contentFormat the number of the CoAP content format
+     *
+     * @return the {@link QueryResultsFormat} according to the given CoAP content format or <code>null</code>
+     */
+    public static QueryResultsFormat getByCoapContentFormat(long contentFormat){
+        if(contentFormat == ContentFormat.APP_JSON)
+            return JSON;
+        if(contentFormat == ContentFormat.APP_XML)
+            return XML;
+        if(contentFormat == APP_SPARQL_RESULTS_BINARY)
+            return BINARY;
+
+        return null;
+    }
+
+
     public static boolean isSupported(String mimeType){
         return getByHttpMimeType(mimeType) == null;
     }
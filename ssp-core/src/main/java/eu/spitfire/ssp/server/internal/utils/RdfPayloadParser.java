@@ -0,0 +1,390 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.google.common.base.Charsets;
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.sparql.graph.GraphFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.ReaderRIOT;
+import org.apache.jena.riot.system.StreamRDFLib;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferInputStream;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parser for RDF payloads contained in a {@link org.jboss.netty.buffer.ChannelBuffer}, e.g. the content of CoAP
+ * responses and update notifications. The payload is read straight from the buffer (i.e. without copying it into
+ * a byte array) and the triples are added to a plain {@link com.hp.hpl.jena.graph.Graph}.
+ *
+ * Payloads in {@link eu.spitfire.ssp.server.internal.utils.Language#RDF_TURTLE} or
+ * {@link eu.spitfire.ssp.server.internal.utils.Language#RDF_N3} consisting of N-Triples only (which is what most
+ * constrained devices send) are parsed by a simple scanner without any tokenizer and prefix setup. All other
+ * payloads (or if the scanner fails) are parsed by a RIOT {@link org.apache.jena.riot.ReaderRIOT}. The readers are
+ * reused per thread and language. Payloads in {@link eu.spitfire.ssp.server.internal.utils.Language#RDF_BINARY} are
+ * read by a {@link eu.spitfire.ssp.server.internal.utils.BinaryRdfDecoder}.
+ *
+ * The number of payloads, the number of bytes and the parse time are recorded per language, i.e. the payload sizes
+ * and parse throughputs of the languages can be compared (see {@link #getStatistics()}).
+ */
+public class RdfPayloadParser {
+
+    private static final ThreadLocal<Map<Language, ReaderRIOT>> READERS =
+            new ThreadLocal<Map<Language, ReaderRIOT>>() {
+                @Override
+                protected Map<Language, ReaderRIOT> initialValue() {
+                    return new EnumMap<>(Language.class);
+                }
+            };
+
+    private static final AtomicLong FAST_PATH_PARSES = new AtomicLong();
+    private static final AtomicLong READER_PARSES = new AtomicLong();
+    private static final AtomicLong BINARY_PARSES = new AtomicLong();
+    private static final AtomicLong PARSED_BYTES = new AtomicLong();
+    private static final AtomicLong PARSE_NANOS = new AtomicLong();
+
+    private static final Map<Language, AtomicLong[]> LANGUAGE_STATISTICS = new EnumMap<>(Language.class);
+    static{
+        for(Language language : Language.values()){
+            // number of payloads, number of bytes, parse time (nanoseconds)
+            LANGUAGE_STATISTICS.put(language, new AtomicLong[]{new AtomicLong(), new AtomicLong(), new AtomicLong()});
+        }
+    }
+
+    private RdfPayloadParser() {
+        // no instances
+    }
+
+
+    /**
+     * Parses the readable bytes of the given {@link org.jboss.netty.buffer.ChannelBuffer} (without changing its
+     * reader index).
+     *
+     * @param payload the {@link org.jboss.netty.buffer.ChannelBuffer} containing the serialized triples
+     * @param language the {@link eu.spitfire.ssp.server.internal.utils.Language} of the payload
+     *
+     * @return a {@link com.hp.hpl.jena.rdf.model.Model} containing the parsed triples
+     *
+     * @throws org.apache.jena.riot.RiotException if the payload is malformed
+     * @throws java.lang.IllegalArgumentException if the payload is malformed binary RDF
+     */
+    public static Model parse(ChannelBuffer payload, Language language) {
+        long startTime = System.nanoTime();
+        Graph graph = GraphFactory.createDefaultGraph();
+
+        if(language == Language.RDF_BINARY) {
+            new BinaryRdfDecoder().readTriples(payload.duplicate(), graph);
+            BINARY_PARSES.incrementAndGet();
+        }
+
+        else if(language != Language.RDF_XML && NTriplesScanner.scan(payload, graph)) {
+            FAST_PATH_PARSES.incrementAndGet();
+        }
+
+        else {
+            graph = GraphFactory.createDefaultGraph();
+            Lang lang = language.getRdfFormat().getLang();
+            ReaderRIOT reader = READERS.get().get(language);
+            if(reader == null) {
+                reader = RDFDataMgr.createReader(lang);
+                READERS.get().put(language, reader);
+            }
+
+            ChannelBufferInputStream inputStream = new ChannelBufferInputStream(payload.duplicate());
+            reader.read(inputStream, null, lang.getContentType(), StreamRDFLib.graph(graph), null);
+            READER_PARSES.incrementAndGet();
+        }
+
+        long duration = System.nanoTime() - startTime;
+        PARSED_BYTES.addAndGet(payload.readableBytes());
+        PARSE_NANOS.addAndGet(duration);
+
+        AtomicLong[] statistics = LANGUAGE_STATISTICS.get(language);
+        statistics[0].incrementAndGet();
+        statistics[1].addAndGet(payload.readableBytes());
+        statistics[2].addAndGet(duration);
+
+        return ModelFactory.createModelForGraph(graph);
+    }
+
+
+    /**
+     * Returns the number of payloads parsed by the N-Triples scanner, by a RIOT reader and by the binary decoder, the
+     * total number of parsed bytes and the throughput (bytes per millisecond of parsing). The number of payloads, the
+     * average payload size (bytes) and the throughput are also given per language.
+     *
+     * @return the statistics of this parser
+     */
+    public static Map<String, String> getStatistics() {
+        Map<String, String> statistics = new HashMap<>();
+        statistics.put("payloads.parsed.fast-path", String.valueOf(FAST_PATH_PARSES.get()));
+        statistics.put("payloads.parsed.reader", String.valueOf(READER_PARSES.get()));
+        statistics.put("payloads.parsed.binary", String.valueOf(BINARY_PARSES.get()));
+        statistics.put("payloads.parsed.bytes", String.valueOf(PARSED_BYTES.get()));
+        statistics.put("payloads.parsed.throughput", String.valueOf(getThroughput(PARSED_BYTES, PARSE_NANOS)));
+
+        for(Map.Entry<Language, AtomicLong[]> entry : LANGUAGE_STATISTICS.entrySet()) {
+            AtomicLong[] values = entry.getValue();
+            long count = values[0].get();
+            if(count == 0) {
+                continue;
+            }
+            String prefix = "payloads." + entry.getKey().name().toLowerCase(Locale.ENGLISH);
+            statistics.put(prefix + ".count", String.valueOf(count));
+            statistics.put(prefix + ".size", String.valueOf(values[1].get() / count));
+            statistics.put(prefix + ".throughput", String.valueOf(getThroughput(values[1], values[2])));
+        }
+
+        return statistics;
+    }
+
+
+    private static long getThroughput(AtomicLong bytes, AtomicLong nanos) {
+        long millis = nanos.get() / 1000000;
+        return millis == 0 ? 0 : bytes.get() / millis;
+    }
+
+
+    /**
+     * Scanner for N-Triples (absolute IRIs, blank nodes and literals with optional language tag or datatype). The
+     * scanner gives up (i.e. returns <code>false</code>) on anything else, e.g. prefixes, relative IRIs or escaped
+     * IRIs, to let the payload be parsed by a complete parser.
+     */
+    private static class NTriplesScanner {
+
+        private final ChannelBuffer buffer;
+        private final int end;
+        private int index;
+        private final Map<String, Node> blankNodes;
+
+
+        private NTriplesScanner(ChannelBuffer buffer) {
+            this.buffer = buffer;
+            this.index = buffer.readerIndex();
+            this.end = buffer.writerIndex();
+            this.blankNodes = new HashMap<>();
+        }
+
+
+        private static boolean scan(ChannelBuffer payload, Graph graph) {
+            return new NTriplesScanner(payload).scan(graph);
+        }
+
+
+        private boolean scan(Graph graph) {
+            while(skipWhitespaceAndComments()) {
+                Node subject = readSubject();
+                if(subject == null || !skipWhitespace()) {
+                    return false;
+                }
+
+                Node predicate = buffer.getByte(index) == '<' ? readIri() : null;
+                if(predicate == null || !skipWhitespace()) {
+                    return false;
+                }
+
+                Node object = readObject();
+                if(object == null || !skipWhitespace() || buffer.getByte(index) != '.') {
+                    return false;
+                }
+                index++;
+
+                graph.add(new Triple(subject, predicate, object));
+            }
+            return true;
+        }
+
+
+        private boolean skipWhitespace() {
+            while(index < end) {
+                byte b = buffer.getByte(index);
+                if(b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                    return true;
+                }
+                index++;
+            }
+            return false;
+        }
+
+
+        private boolean skipWhitespaceAndComments() {
+            while(skipWhitespace()) {
+                if(buffer.getByte(index) != '#') {
+                    return true;
+                }
+                while(index < end && buffer.getByte(index) != '\n') {
+                    index++;
+                }
+            }
+            return false;
+        }
+
+
+        private Node readSubject() {
+            byte b = buffer.getByte(index);
+            return b == '<' ? readIri() : b == '_' ? readBlankNode() : null;
+        }
+
+
+        private Node readObject() {
+            byte b = buffer.getByte(index);
+            return b == '<' ? readIri() : b == '_' ? readBlankNode() : b == '"' ? readLiteral() : null;
+        }
+
+
+        private Node readIri() {
+            int start = ++index;
+            while(index < end) {
+                byte b = buffer.getByte(index);
+                if(b == '>') {
+                    String iri = buffer.toString(start, index - start, Charsets.UTF_8);
+                    index++;
+                    return iri.indexOf(':') > 0 ? NodeFactory.createURI(iri) : null;
+                }
+                if(b == '\\' || b == '<' || b == '"' || b == ' ' || b == '\n') {
+                    return null;
+                }
+                index++;
+            }
+            return null;
+        }
+
+
+        private Node readBlankNode() {
+            if(index + 2 >= end || buffer.getByte(index + 1) != ':') {
+                return null;
+            }
+
+            int start = index += 2;
+            while(index < end) {
+                byte b = buffer.getByte(index);
+                if(b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '.') {
+                    break;
+                }
+                index++;
+            }
+
+            String label = buffer.toString(start, index - start, Charsets.UTF_8);
+            Node blankNode = blankNodes.get(label);
+            if(blankNode == null) {
+                blankNode = NodeFactory.createAnon();
+                blankNodes.put(label, blankNode);
+            }
+            return blankNode;
+        }
+
+
+        private Node readLiteral() {
+            int start = ++index;
+            boolean escaped = false;
+            while(index < end) {
+                byte b = buffer.getByte(index);
+                if(b == '"') {
+                    break;
+                }
+                if(b == '\\') {
+                    escaped = true;
+                    index++;
+                }
+                else if(b == '\n' || b == '\r') {
+                    return null;
+                }
+                index++;
+            }
+            if(index >= end) {
+                return null;
+            }
+
+            String lexicalForm = buffer.toString(start, index - start, Charsets.UTF_8);
+            if(escaped) {
+                lexicalForm = unescape(lexicalForm);
+                if(lexicalForm == null) {
+                    return null;
+                }
+            }
+            index++;
+
+            if(index < end && buffer.getByte(index) == '@') {
+                start = ++index;
+                while(index < end && (Character.isLetterOrDigit(buffer.getByte(index))
+                        || buffer.getByte(index) == '-')) {
+                    index++;
+                }
+                if(index == start) {
+                    return null;
+                }
+                return NodeFactory.createLiteral(lexicalForm, buffer.toString(start, index - start, Charsets.UTF_8),
+                        false);
+            }
+
+            if(index + 2 < end && buffer.getByte(index) == '^' && buffer.getByte(index + 1) == '^') {
+                index += 2;
+                if(buffer.getByte(index) != '<') {
+                    return null;
+                }
+                Node datatype = readIri();
+                if(datatype == null) {
+                    return null;
+                }
+                return NodeFactory.createLiteral(
+                        lexicalForm, TypeMapper.getInstance().getSafeTypeByName(datatype.getURI())
+                );
+            }
+
+            return NodeFactory.createLiteral(lexicalForm);
+        }
+
+
+        private static String unescape(String value) {
+            StringBuilder result = new StringBuilder(value.length());
+            for(int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if(c != '\\') {
+                    result.append(c);
+                    continue;
+                }
+
+                if(++i >= value.length()) {
+                    return null;
+                }
+                c = value.charAt(i);
+                switch(c) {
+                    case 't': result.append('\t'); break;
+                    case 'b': result.append('\b'); break;
+                    case 'n': result.append('\n'); break;
+                    case 'r': result.append('\r'); break;
+                    case 'f': result.append('\f'); break;
+                    case '"': result.append('"'); break;
+                    case '\'': result.append('\''); break;
+                    case '\\': result.append('\\'); break;
+                    case 'u':
+                    case 'U':
+                        int length = c == 'u' ? 4 : 8;
+                        if(i + length >= value.length()) {
+                            return null;
+                        }
+                        try {
+                            result.appendCodePoint(Integer.parseInt(value.substring(i + 1, i + 1 + length), 16));
+                        } catch (IllegalArgumentException ex) {
+                            return null;
+                        }
+                        i += length;
+                        break;
+                    default:
+                        return null;
+                }
+            }
+            return result.toString();
+        }
+    }
+}
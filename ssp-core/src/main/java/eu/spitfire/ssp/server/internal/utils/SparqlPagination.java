@@ -0,0 +1,238 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.ResultSetStream;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.iterator.QueryIterPlainWrapper;
+import com.hp.hpl.jena.sparql.expr.*;
+import com.hp.hpl.jena.sparql.syntax.ElementFilter;
+import com.hp.hpl.jena.sparql.syntax.ElementGroup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keyset pagination of SPARQL SELECT results. The sort key of a solution consists of the string values (i.e.
+ * <code>COALESCE(STR(?var), "")</code>) of all projected variables. To retrieve a page, the original query is
+ * rewritten, i.e. ordered by the key, filtered to solutions with a key greater than or equal to the key of the last
+ * solution of the previous page (see {@link eu.spitfire.ssp.server.internal.utils.ContinuationToken}) and limited
+ * to the page size. Solutions with equal keys are additionally ordered by the values of the variables (i.e. in the
+ * SPARQL order of RDF terms), so the number of solutions with the key of the last solution that were already
+ * returned identifies the position within these solutions.
+ *
+ * The rewriting bounds the number of solutions transferred and held per request, not the costs of the query: the
+ * engines evaluate and sort all solutions of the query for every page.
+ *
+ * Only plain SELECT queries (no aggregation, no projected expressions and no explicit ORDER BY, LIMIT or OFFSET) are
+ * paginated. All other queries are executed as they are. As the labels of blank nodes may differ between two
+ * executions, solutions with equal keys can not be ordered reliably if they contain blank nodes. Such pages are
+ * refused (see {@link #readPage(ResultSet, ContinuationToken, int)}).
+ */
+public class SparqlPagination {
+
+    private SparqlPagination() {
+        // this is to avoid instantiation
+    }
+
+
+    /**
+     * Returns <code>true</code> if the given {@link com.hp.hpl.jena.query.Query} can be paginated.
+     *
+     * @param query the {@link com.hp.hpl.jena.query.Query} to be checked
+     *
+     * @return <code>true</code> if the given {@link com.hp.hpl.jena.query.Query} can be paginated
+     */
+    public static boolean isPageable(Query query) {
+        if(!query.isSelectType() || query.hasAggregators() || query.hasGroupBy() || query.hasHaving() ||
+                query.hasOrderBy() || query.hasLimit() || query.hasOffset()) {
+            return false;
+        }
+
+        query.setResultVars();
+        return query.getProject().getExprs().isEmpty() && !query.getProjectVars().isEmpty();
+    }
+
+
+    /**
+     * Rewrites the given {@link com.hp.hpl.jena.query.Query} to retrieve the page after the given cursor. The
+     * rewritten query returns one solution more than the page size to detect if there is a next page.
+     *
+     * @param query the original {@link com.hp.hpl.jena.query.Query} (see {@link #isPageable(Query)})
+     * @param cursor the {@link eu.spitfire.ssp.server.internal.utils.ContinuationToken} of the previous page or
+     *               <code>null</code> for the first page
+     * @param pageSize the maximum number of solutions per page
+     *
+     * @return the rewritten {@link com.hp.hpl.jena.query.Query}
+     *
+     * @throws java.lang.IllegalArgumentException if the given cursor does not match the given query
+     */
+    public static Query createPageQuery(Query query, ContinuationToken cursor, int pageSize)
+            throws IllegalArgumentException {
+
+        Query result = query.cloneQuery();
+        result.setResultVars();
+        List<Var> vars = result.getProjectVars();
+
+        for(Var var : vars) {
+            result.addOrderBy(createKeyExpr(var), Query.ORDER_ASCENDING);
+        }
+        for(Var var : vars) {
+            result.addOrderBy(var, Query.ORDER_ASCENDING);
+        }
+
+        if(cursor != null) {
+            if(cursor.getKey().size() != vars.size()) {
+                throw new IllegalArgumentException("Continuation token does not match the query!");
+            }
+
+            ElementGroup pattern = new ElementGroup();
+            pattern.addElement(result.getQueryPattern());
+            pattern.addElementFilter(new ElementFilter(createCursorExpr(vars, cursor.getKey(), 0)));
+            result.setQueryPattern(pattern);
+            result.setOffset(cursor.getSkip());
+        }
+
+        result.setLimit(pageSize + 1);
+        return result;
+    }
+
+
+    /**
+     * Reads one page from the given {@link com.hp.hpl.jena.query.ResultSet} (i.e. the results of the query created
+     * by {@link #createPageQuery(Query, ContinuationToken, int)}).
+     *
+     * @param resultSet the {@link com.hp.hpl.jena.query.ResultSet} to read the page from
+     * @param cursor the {@link eu.spitfire.ssp.server.internal.utils.ContinuationToken} of the previous page or
+     *               <code>null</code> for the first page
+     * @param pageSize the maximum number of solutions per page
+     *
+     * @return the {@link eu.spitfire.ssp.server.internal.utils.SparqlPagination.Page}
+     *
+     * @throws java.lang.IllegalArgumentException if the solutions with the key of the last solution of the page continue
+     * on the next page and contain blank nodes, i.e. the position of the next page could not be determined reliably
+     */
+    public static Page readPage(ResultSet resultSet, ContinuationToken cursor, int pageSize)
+            throws IllegalArgumentException {
+
+        List<String> varNames = resultSet.getResultVars();
+        List<Binding> bindings = new ArrayList<>(Math.min(pageSize + 1, 1024));
+        while(resultSet.hasNext() && bindings.size() <= pageSize) {
+            bindings.add(resultSet.nextBinding());
+        }
+
+        ContinuationToken next = null;
+        if(bindings.size() > pageSize) {
+            Binding last = bindings.remove(pageSize);
+
+            List<Var> vars = Var.varList(varNames);
+            List<String> key = getKey(bindings.get(pageSize - 1), vars);
+
+            int skip = 0;
+            for(int i = pageSize - 1; i >= 0 && key.equals(getKey(bindings.get(i), vars)); i--) {
+                skip++;
+            }
+            //the solutions with this key continue on the next page, i.e. their order must be reproducible
+            if(key.equals(getKey(last, vars))) {
+                for(int i = pageSize - skip; i <= pageSize; i++) {
+                    Binding binding = i < pageSize ? bindings.get(i) : last;
+                    if(containsBlankNode(binding, vars)) {
+                        throw new IllegalArgumentException("Results can not be paginated (solutions with equal " +
+                                "keys contain blank nodes), retry without parameter \"cursor\"!");
+                    }
+                }
+            }
+            if(skip == pageSize && cursor != null && key.equals(cursor.getKey())) {
+                skip += cursor.getSkip();
+            }
+
+            next = new ContinuationToken(key, skip);
+        }
+
+        Model model = resultSet.getResourceModel() == null ? ModelFactory.createDefaultModel() :
+                resultSet.getResourceModel();
+        ResultSet page = new ResultSetStream(varNames, model, QueryIterPlainWrapper.create(bindings.iterator()));
+
+        return new Page(page, next);
+    }
+
+
+    private static Expr createKeyExpr(Var var) {
+        ExprList args = new ExprList();
+        args.add(new E_Str(new ExprVar(var)));
+        args.add(NodeValue.makeString(""));
+        return new E_Coalesce(args);
+    }
+
+
+    private static Expr createCursorExpr(List<Var> vars, List<String> key, int index) {
+        Expr keyExpr = createKeyExpr(vars.get(index));
+        NodeValue value = NodeValue.makeString(key.get(index));
+
+        if(index == vars.size() - 1) {
+            return new E_GreaterThanOrEqual(keyExpr, value);
+        }
+
+        return new E_LogicalOr(
+                new E_GreaterThan(keyExpr, value),
+                new E_LogicalAnd(new E_Equals(keyExpr, value), createCursorExpr(vars, key, index + 1))
+        );
+    }
+
+
+    private static boolean containsBlankNode(Binding binding, List<Var> vars) {
+        for(Var var : vars) {
+            Node node = binding.get(var);
+            if(node != null && node.isBlank()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static List<String> getKey(Binding binding, List<Var> vars) {
+        List<String> key = new ArrayList<>(vars.size());
+        for(Var var : vars) {
+            Node node = binding.get(var);
+            if(node == null || node.isBlank()) {
+                key.add("");
+            } else if(node.isURI()) {
+                key.add(node.getURI());
+            } else if(node.isLiteral()) {
+                key.add(node.getLiteralLexicalForm());
+            } else {
+                key.add(node.toString());
+            }
+        }
+        return key;
+    }
+
+
+    /**
+     * A page of SPARQL results and the {@link eu.spitfire.ssp.server.internal.utils.ContinuationToken} to retrieve
+     * the next page (or <code>null</code> if this is the last page).
+     */
+    public static class Page {
+
+        private final ResultSet resultSet;
+        private final ContinuationToken next;
+
+        private Page(ResultSet resultSet, ContinuationToken next) {
+            this.resultSet = resultSet;
+            this.next = next;
+        }
+
+        public ResultSet getResultSet() {
+            return resultSet;
+        }
+
+        public ContinuationToken getNext() {
+            return next;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.google.common.base.Charsets;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import java.util.List;
+
+/**
+ * Row by row serializer for SPARQL SELECT results, i.e. the head, every single solution and the tail of the
+ * serialized results are written separately. This allows to stream large results without buffering the complete
+ * serialization (as {@link com.hp.hpl.jena.query.ResultSetFormatter} does).
+ *
+ * Supported formats are those defined in {@link eu.spitfire.ssp.server.internal.utils.QueryResultsFormat}.
+ */
+public abstract class SparqlResultsWriter {
+
+    protected final List<Var> vars;
+
+    protected SparqlResultsWriter(List<String> varNames) {
+        this.vars = Var.varList(varNames);
+    }
+
+
+    /**
+     * Creates a new {@link eu.spitfire.ssp.server.internal.utils.SparqlResultsWriter} for the given format
+     *
+     * @param format the {@link eu.spitfire.ssp.server.internal.utils.QueryResultsFormat} to be written
+     * @param varNames the names of the result variables
+     *
+     * @return a new {@link eu.spitfire.ssp.server.internal.utils.SparqlResultsWriter} for the given format
+     */
+    public static SparqlResultsWriter create(QueryResultsFormat format, List<String> varNames) {
+        switch(format) {
+            case JSON: return new JsonWriter(varNames);
+            case CSV: return new CsvWriter(varNames);
+            case TSV: return new TsvWriter(varNames);
+            case BINARY: return new BinaryWriter(varNames);
+            default: return new XmlWriter(varNames);
+        }
+    }
+
+
+    /**
+     * Writes the head of the serialized results (e.g. the variable names).
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to write to
+     */
+    public abstract void writeHead(ChannelBuffer buffer);
+
+
+    /**
+     * Writes the given solution.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to write to
+     * @param binding the solution to be written
+     */
+    public abstract void writeRow(ChannelBuffer buffer, Binding binding);
+
+
+    /**
+     * Writes the tail of the serialized results.
+     *
+     * @param buffer the {@link org.jboss.netty.buffer.ChannelBuffer} to write to
+     */
+    public abstract void writeTail(ChannelBuffer buffer);
+
+
+    protected static void write(ChannelBuffer buffer, CharSequence value) {
+        buffer.writeBytes(value.toString().getBytes(Charsets.UTF_8));
+    }
+
+
+    /**
+     * SPARQL 1.1 Query Results JSON Format
+     */
+    private static class JsonWriter extends SparqlResultsWriter {
+
+        private boolean first = true;
+
+        private JsonWriter(List<String> varNames) {
+            super(varNames);
+        }
+
+        @Override
+        public void writeHead(ChannelBuffer buffer) {
+            StringBuilder head = new StringBuilder("{\"head\":{\"vars\":[");
+            for(int i = 0; i < vars.size(); i++) {
+                head.append(i == 0 ? "" : ",").append(quote(vars.get(i).getVarName()));
+            }
+            write(buffer, head.append("]},\"results\":{\"bindings\":[\n"));
+        }
+
+        @Override
+        public void writeRow(ChannelBuffer buffer, Binding binding) {
+            StringBuilder row = new StringBuilder(first ? "{" : ",\n{");
+            first = false;
+
+            boolean firstBinding = true;
+            for(Var var : vars) {
+                Node node = binding.get(var);
+                if(node == null) {
+                    continue;
+                }
+                row.append(firstBinding ? "" : ",").append(quote(var.getVarName())).append(":{\"type\":");
+                firstBinding = false;
+
+                if(node.isURI()) {
+                    row.append("\"uri\",\"value\":").append(quote(node.getURI()));
+                } else if(node.isBlank()) {
+                    row.append("\"bnode\",\"value\":").append(quote(node.getBlankNodeLabel()));
+                } else {
+                    row.append("\"literal\",\"value\":").append(quote(node.getLiteralLexicalForm()));
+                    if(!node.getLiteralLanguage().isEmpty()) {
+                        row.append(",\"xml:lang\":").append(quote(node.getLiteralLanguage()));
+                    } else if(node.getLiteralDatatypeURI() != null) {
+                        row.append(",\"datatype\":").append(quote(node.getLiteralDatatypeURI()));
+                    }
+                }
+                row.append("}");
+            }
+            write(buffer, row.append("}"));
+        }
+
+        @Override
+        public void writeTail(ChannelBuffer buffer) {
+            write(buffer, "\n]}}\n");
+        }
+
+        private static String quote(String value) {
+            StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+            for(int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch(c) {
+                    case '"': result.append("\\\""); break;
+                    case '\\': result.append("\\\\"); break;
+                    case '\n': result.append("\\n"); break;
+                    case '\r': result.append("\\r"); break;
+                    case '\t': result.append("\\t"); break;
+                    default:
+                        if(c < 0x20) {
+                            result.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            result.append(c);
+                        }
+                }
+            }
+            return result.append('"').toString();
+        }
+    }
+
+
+    /**
+     * SPARQL Query Results XML Format
+     */
+    private static class XmlWriter extends SparqlResultsWriter {
+
+        private XmlWriter(List<String> varNames) {
+            super(varNames);
+        }
+
+        @Override
+        public void writeHead(ChannelBuffer buffer) {
+            StringBuilder head = new StringBuilder("<?xml version=\"1.0\"?>\n")
+                    .append("<sparql xmlns=\"http://www.w3.org/2005/sparql-results#\">\n  <head>\n");
+            for(Var var : vars) {
+                head.append("    <variable name=\"").append(escape(var.getVarName())).append("\"/>\n");
+            }
+            write(buffer, head.append("  </head>\n  <results>\n"));
+        }
+
+        @Override
+        public void writeRow(ChannelBuffer buffer, Binding binding) {
+            StringBuilder row = new StringBuilder("    <result>\n");
+            for(Var var : vars) {
+                Node node = binding.get(var);
+                if(node == null) {
+                    continue;
+                }
+                row.append("      <binding name=\"").append(escape(var.getVarName())).append("\">");
+
+                if(node.isURI()) {
+                    row.append("<uri>").append(escape(node.getURI())).append("</uri>");
+                } else if(node.isBlank()) {
+                    row.append("<bnode>").append(escape(node.getBlankNodeLabel())).append("</bnode>");
+                } else {
+                    row.append("<literal");
+                    if(!node.getLiteralLanguage().isEmpty()) {
+                        row.append(" xml:lang=\"").append(escape(node.getLiteralLanguage())).append("\"");
+                    } else if(node.getLiteralDatatypeURI() != null) {
+                        row.append(" datatype=\"").append(escape(node.getLiteralDatatypeURI())).append("\"");
+                    }
+                    row.append(">").append(escape(node.getLiteralLexicalForm())).append("</literal>");
+                }
+                row.append("</binding>\n");
+            }
+            write(buffer, row.append("    </result>\n"));
+        }
+
+        @Override
+        public void writeTail(ChannelBuffer buffer) {
+            write(buffer, "  </results>\n</sparql>\n");
+        }
+
+        private static String escape(String value) {
+            return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+        }
+    }
+
+
+    /**
+     * SPARQL 1.1 Query Results CSV Format (lexical forms only)
+     */
+    private static class CsvWriter extends SparqlResultsWriter {
+
+        private CsvWriter(List<String> varNames) {
+            super(varNames);
+        }
+
+        @Override
+        public void writeHead(ChannelBuffer buffer) {
+            StringBuilder head = new StringBuilder();
+            for(int i = 0; i < vars.size(); i++) {
+                head.append(i == 0 ? "" : ",").append(escape(vars.get(i).getVarName()));
+            }
+            write(buffer, head.append("\r\n"));
+        }
+
+        @Override
+        public void writeRow(ChannelBuffer buffer, Binding binding) {
+            StringBuilder row = new StringBuilder();
+            for(int i = 0; i < vars.size(); i++) {
+                Node node = binding.get(vars.get(i));
+                row.append(i == 0 ? "" : ",");
+                if(node == null) {
+                    continue;
+                }
+                if(node.isURI()) {
+                    row.append(escape(node.getURI()));
+                } else if(node.isBlank()) {
+                    row.append("_:").append(escape(node.getBlankNodeLabel()));
+                } else {
+                    row.append(escape(node.getLiteralLexicalForm()));
+                }
+            }
+            write(buffer, row.append("\r\n"));
+        }
+
+        @Override
+        public void writeTail(ChannelBuffer buffer) {
+            //nothing to do...
+        }
+
+        private static String escape(String value) {
+            if(value.indexOf('"') == -1 && value.indexOf(',') == -1 && value.indexOf('\n') == -1 &&
+                    value.indexOf('\r') == -1) {
+                return value;
+            }
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+    }
+
+
+    /**
+     * SPARQL 1.1 Query Results TSV Format (RDF terms in Turtle syntax)
+     */
+    private static class TsvWriter extends SparqlResultsWriter {
+
+        private TsvWriter(List<String> varNames) {
+            super(varNames);
+        }
+
+        @Override
+        public void writeHead(ChannelBuffer buffer) {
+            StringBuilder head = new StringBuilder();
+            for(int i = 0; i < vars.size(); i++) {
+                head.append(i == 0 ? "?" : "\t?").append(vars.get(i).getVarName());
+            }
+            write(buffer, head.append("\n"));
+        }
+
+        @Override
+        public void writeRow(ChannelBuffer buffer, Binding binding) {
+            StringBuilder row = new StringBuilder();
+            for(int i = 0; i < vars.size(); i++) {
+                Node node = binding.get(vars.get(i));
+                row.append(i == 0 ? "" : "\t");
+                if(node == null) {
+                    continue;
+                }
+                if(node.isURI()) {
+                    row.append("<").append(node.getURI()).append(">");
+                } else if(node.isBlank()) {
+                    row.append("_:").append(node.getBlankNodeLabel());
+                } else {
+                    row.append("\"").append(escape(node.getLiteralLexicalForm())).append("\"");
+                    if(!node.getLiteralLanguage().isEmpty()) {
+                        row.append("@").append(node.getLiteralLanguage());
+                    } else if(node.getLiteralDatatypeURI() != null) {
+                        row.append("^^<").append(node.getLiteralDatatypeURI()).append(">");
+                    }
+                }
+            }
+            write(buffer, row.append("\n"));
+        }
+
+        @Override
+        public void writeTail(ChannelBuffer buffer) {
+            //nothing to do...
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\t", "\\t").replace("\n", "\\n")
+                    .replace("\r", "\\r");
+        }
+    }
+
+
+    /**
+     * Compact binary format (see {@link eu.spitfire.ssp.server.internal.utils.BinaryRdfEncoder}), i.e. the header
+     * (kind {@link #KIND}), the number and names of the variables and then one byte <code>1</code> followed by the
+     * terms per solution (in the order of the variables). The end is marked by one byte <code>0</code>.
+     */
+    private static class BinaryWriter extends SparqlResultsWriter {
+
+        /**
+         * The kind of content (see {@link eu.spitfire.ssp.server.internal.utils.BinaryRdfEncoder#writeHeader(
+         * org.jboss.netty.buffer.ChannelBuffer, int)})
+         */
+        private static final int KIND = 1;
+
+        private final BinaryRdfEncoder encoder;
+
+        private BinaryWriter(List<String> varNames) {
+            super(varNames);
+            this.encoder = new BinaryRdfEncoder();
+        }
+
+        @Override
+        public void writeHead(ChannelBuffer buffer) {
+            encoder.writeHeader(buffer, KIND);
+            BinaryRdfEncoder.writeVarInt(buffer, vars.size());
+            for(Var var : vars) {
+                BinaryRdfEncoder.writeString(buffer, var.getVarName());
+            }
+        }
+
+        @Override
+        public void writeRow(ChannelBuffer buffer, Binding binding) {
+            buffer.writeByte(1);
+            for(Var var : vars) {
+                encoder.writeTerm(buffer, binding.get(var));
+            }
+        }
+
+        @Override
+        public void writeTail(ChannelBuffer buffer) {
+            buffer.writeByte(0);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.expr.*;
+import com.hp.hpl.jena.sparql.syntax.*;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.io.WKTReader;
+import com.vividsolutions.jts.index.quadtree.Quadtree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A spatial index over the WKT literals (i.e. literals of type <code>geo:wktLiteral</code> or
+ * <code>sf:wktLiteral</code>) contained in the named graphs of a cache. The index contains the bounding boxes of
+ * the geometries and is to be maintained by the cache whenever a named graph is put or deleted.
+ *
+ * The index is used to rewrite SPARQL queries with spatial filters such as
+ * <code>FILTER(geof:sfWithin(?wkt, "POLYGON(...)"^^geo:wktLiteral))</code>. Since all supported topological
+ * relations require the bounding boxes of both geometries to intersect, such a filter is replaced by
+ * <code>FILTER(?wkt IN (...) &amp;&amp; geof:sfWithin(?wkt, "POLYGON(...)"^^geo:wktLiteral))</code> with the
+ * candidates from the index, i.e. the (expensive) spatial function is only evaluated for geometries whose bounding
+ * box intersects the one of the given geometry.
+ */
+public class SpatialIndex {
+
+    private static Logger LOG = LoggerFactory.getLogger(SpatialIndex.class.getName());
+
+    private static final Set<String> WKT_DATATYPES = new HashSet<>(Arrays.asList(
+            Converter.GEOSPARQL_NAMESPACE + "wktLiteral", Converter.SF_NAMESPACE + "wktLiteral"
+    ));
+
+    private static final Set<String> SPATIAL_FUNCTIONS = new HashSet<>();
+    static{
+        for(String function : new String[]{"sfEquals", "sfIntersects", "sfTouches", "sfCrosses", "sfWithin",
+                "sfContains", "sfOverlaps", "ehEquals", "ehOverlap", "ehInside", "ehContains", "ehCovers",
+                "ehCoveredBy", "ehMeet"}) {
+
+            SPATIAL_FUNCTIONS.add(Converter.GEOFUNCTIONS_NAMESPACE + function);
+        }
+    }
+
+    /**
+     * The maximum number of candidates to be inserted into a query. If there are more candidates the filter is not
+     * rewritten.
+     */
+    public static final int MAX_CANDIDATES = 1000;
+
+    private final Quadtree tree;
+    private final Map<URI, List<Entry>> entries;
+
+    private final AtomicLong rewrittenFilters;
+    private final AtomicLong skippedFilters;
+
+
+    public SpatialIndex() {
+        this.tree = new Quadtree();
+        this.entries = new HashMap<>();
+        this.rewrittenFilters = new AtomicLong();
+        this.skippedFilters = new AtomicLong();
+    }
+
+
+    /**
+     * Replaces the geometries of the named graph with the given name with the geometries contained in the given
+     * {@link com.hp.hpl.jena.rdf.model.Model}.
+     *
+     * @param graphName the name of the graph
+     * @param graph the {@link com.hp.hpl.jena.rdf.model.Model} containing the new status of the graph
+     */
+    public synchronized void putNamedGraph(URI graphName, Model graph) {
+        removeNamedGraph(graphName);
+
+        List<Entry> graphEntries = new ArrayList<>();
+        WKTReader reader = new WKTReader();
+
+        StmtIterator iterator = graph.listStatements();
+        while(iterator.hasNext()) {
+            RDFNode object = iterator.nextStatement().getObject();
+            if(object.isLiteral() && WKT_DATATYPES.contains(object.asLiteral().getDatatypeURI())) {
+                Envelope envelope = getEnvelope(reader, object.asLiteral().getLexicalForm());
+                if(envelope != null) {
+                    Entry entry = new Entry(object.asNode(), envelope);
+                    tree.insert(envelope, entry);
+                    graphEntries.add(entry);
+                }
+            }
+        }
+
+        if(!graphEntries.isEmpty()) {
+            entries.put(graphName, graphEntries);
+            LOG.debug("Added {} geometries of graph \"{}\" to spatial index.", graphEntries.size(), graphName);
+        }
+    }
+
+
+    /**
+     * Removes the geometries of the named graph with the given name from the index.
+     *
+     * @param graphName the name of the graph
+     */
+    public synchronized void removeNamedGraph(URI graphName) {
+        List<Entry> graphEntries = entries.remove(graphName);
+        if(graphEntries != null) {
+            for(Entry entry : graphEntries) {
+                tree.remove(entry.envelope, entry);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the WKT literals whose bounding box intersects the given {@link com.vividsolutions.jts.geom.Envelope}.
+     *
+     * @param envelope the {@link com.vividsolutions.jts.geom.Envelope} to look up
+     *
+     * @return the WKT literals whose bounding box intersects the given {@link com.vividsolutions.jts.geom.Envelope}
+     */
+    public synchronized Set<Node> getCandidates(Envelope envelope) {
+        Set<Node> candidates = new LinkedHashSet<>();
+        for(Object object : tree.query(envelope)) {
+            Entry entry = (Entry) object;
+            if(entry.envelope.intersects(envelope)) {
+                candidates.add(entry.literal);
+            }
+        }
+        return candidates;
+    }
+
+
+    /**
+     * Returns a copy of the given {@link com.hp.hpl.jena.query.Query} with spatial filters restricted to the
+     * candidates from this index or the given {@link com.hp.hpl.jena.query.Query} itself if there are no spatial
+     * filters to be rewritten.
+     *
+     * @param query the {@link com.hp.hpl.jena.query.Query} to be rewritten
+     *
+     * @return the rewritten {@link com.hp.hpl.jena.query.Query}
+     */
+    public Query rewrite(Query query) {
+        if(query.getQueryPattern() == null || !containsSpatialFilter(query.getQueryPattern())) {
+            return query;
+        }
+
+        try {
+            Query result = query.cloneQuery();
+            if(rewrite(result.getQueryPattern())) {
+                LOG.debug("Rewritten query:\n{}", result);
+                return result;
+            }
+        } catch (Exception ex) {
+            LOG.warn("Could not rewrite spatial filters of query!", ex);
+        }
+
+        return query;
+    }
+
+
+    private static boolean containsSpatialFilter(Element element) {
+        final boolean[] result = new boolean[1];
+        ElementWalker.walk(element, new ElementVisitorBase() {
+            @Override
+            public void visit(ElementFilter filter) {
+                result[0] = result[0] || containsGeoFunction(filter.getExpr());
+            }
+        });
+        return result[0];
+    }
+
+
+    /**
+     * Returns <code>true</code> if the given expression calls a function of the GeoSPARQL function namespace
+     * ({@link eu.spitfire.ssp.server.internal.utils.Converter#GEOFUNCTIONS_NAMESPACE}), i.e. if the function IRI of
+     * the expression or of one of its (nested) arguments is contained in that namespace.
+     *
+     * @param expr the {@link com.hp.hpl.jena.sparql.expr.Expr} to be inspected
+     *
+     * @return <code>true</code> if the given expression calls a GeoSPARQL function or <code>false</code> otherwise
+     */
+    public static boolean containsGeoFunction(Expr expr) {
+        if(expr instanceof E_Function) {
+            String functionIRI = ((E_Function) expr).getFunctionIRI();
+            if(functionIRI != null && functionIRI.startsWith(Converter.GEOFUNCTIONS_NAMESPACE)) {
+                return true;
+            }
+        }
+
+        if(expr instanceof ExprFunction) {
+            for(Expr arg : ((ExprFunction) expr).getArgs()) {
+                if(containsGeoFunction(arg)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+
+    private boolean rewrite(Element element) {
+        boolean rewritten = false;
+
+        if(element instanceof ElementGroup) {
+            List<Element> elements = ((ElementGroup) element).getElements();
+            for(int i = 0; i < elements.size(); i++) {
+                if(elements.get(i) instanceof ElementFilter) {
+                    Expr expr = ((ElementFilter) elements.get(i)).getExpr();
+                    Expr restricted = restrict(expr);
+                    if(restricted != expr) {
+                        elements.set(i, new ElementFilter(restricted));
+                        rewritten = true;
+                    }
+                } else {
+                    rewritten = rewrite(elements.get(i)) || rewritten;
+                }
+            }
+        } else if(element instanceof ElementOptional) {
+            rewritten = rewrite(((ElementOptional) element).getOptionalElement());
+        } else if(element instanceof ElementNamedGraph) {
+            rewritten = rewrite(((ElementNamedGraph) element).getElement());
+        } else if(element instanceof ElementUnion) {
+            for(Element child : ((ElementUnion) element).getElements()) {
+                rewritten = rewrite(child) || rewritten;
+            }
+        }
+
+        return rewritten;
+    }
+
+
+    private Expr restrict(Expr expr) {
+        SpatialConstraint constraint = getConstraint(expr);
+        if(constraint == null) {
+            return expr;
+        }
+
+        Set<Node> candidates = new LinkedHashSet<>();
+        for(Envelope envelope : constraint.envelopes) {
+            candidates.addAll(getCandidates(envelope));
+        }
+
+        if(candidates.size() > MAX_CANDIDATES) {
+            LOG.debug("Too many candidates ({}) for spatial filter (no rewrite)!", candidates.size());
+            skippedFilters.incrementAndGet();
+            return expr;
+        }
+
+        ExprList values = new ExprList();
+        for(Node candidate : candidates) {
+            values.add(NodeValue.makeNode(candidate));
+        }
+
+        rewrittenFilters.incrementAndGet();
+        return new E_LogicalAnd(new E_OneOf(new ExprVar(constraint.var), values), expr);
+    }
+
+
+    /**
+     * Returns the spatial constraint of the given filter expression, i.e. the variable bound to the WKT literals
+     * and the envelopes these literals must intersect for the expression to be true, or <code>null</code> if there
+     * is no such constraint.
+     */
+    private static SpatialConstraint getConstraint(Expr expr) {
+        if(expr instanceof E_LogicalAnd) {
+            SpatialConstraint constraint = getConstraint(((E_LogicalAnd) expr).getArg1());
+            return constraint != null ? constraint : getConstraint(((E_LogicalAnd) expr).getArg2());
+        }
+
+        if(expr instanceof E_LogicalOr) {
+            SpatialConstraint constraint1 = getConstraint(((E_LogicalOr) expr).getArg1());
+            SpatialConstraint constraint2 = getConstraint(((E_LogicalOr) expr).getArg2());
+            if(constraint1 == null || constraint2 == null || !constraint1.var.equals(constraint2.var)) {
+                return null;
+            }
+            constraint1.envelopes.addAll(constraint2.envelopes);
+            return constraint1;
+        }
+
+        if(expr instanceof E_Function && SPATIAL_FUNCTIONS.contains(((E_Function) expr).getFunctionIRI())) {
+            List<Expr> args = ((E_Function) expr).getArgs();
+            if(args.size() != 2) {
+                return null;
+            }
+
+            Expr variable = args.get(0).isVariable() ? args.get(0) : args.get(1);
+            Expr constant = args.get(0).isVariable() ? args.get(1) : args.get(0);
+            if(!variable.isVariable() || !constant.isConstant() || !constant.getConstant().isLiteral()) {
+                return null;
+            }
+
+            Envelope envelope = getEnvelope(new WKTReader(), constant.getConstant().asNode().getLiteralLexicalForm());
+            if(envelope == null) {
+                return null;
+            }
+
+            SpatialConstraint constraint = new SpatialConstraint(variable.asVar());
+            constraint.envelopes.add(envelope);
+            return constraint;
+        }
+
+        return null;
+    }
+
+
+    private static Envelope getEnvelope(WKTReader reader, String wkt) {
+        try {
+            //WKT literals may start with the URI of the coordinate reference system
+            String geometry = wkt.trim();
+            if(geometry.startsWith("<")) {
+                geometry = geometry.substring(geometry.indexOf('>') + 1).trim();
+            }
+            return reader.read(geometry).getEnvelopeInternal();
+        } catch (Exception ex) {
+            LOG.debug("Could not parse WKT literal \"{}\"", wkt);
+            return null;
+        }
+    }
+
+
+    /**
+     * Returns the number of indexed geometries and the number of rewritten and skipped spatial filters.
+     *
+     * @return the statistics of this index
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new HashMap<>();
+        synchronized (this) {
+            statistics.put("spatial-index.geometries", String.valueOf(tree.size()));
+        }
+        statistics.put("spatial-index.filters.rewritten", String.valueOf(rewrittenFilters.get()));
+        statistics.put("spatial-index.filters.skipped", String.valueOf(skippedFilters.get()));
+        return statistics;
+    }
+
+
+    private static class Entry {
+
+        private final Node literal;
+        private final Envelope envelope;
+
+        private Entry(Node literal, Envelope envelope) {
+            this.literal = literal;
+            this.envelope = envelope;
+        }
+    }
+
+
+    private static class SpatialConstraint {
+
+        private final Var var;
+        private final List<Envelope> envelopes;
+
+        private SpatialConstraint(Var var) {
+            this.var = var;
+            this.envelopes = new ArrayList<>();
+        }
+    }
+}
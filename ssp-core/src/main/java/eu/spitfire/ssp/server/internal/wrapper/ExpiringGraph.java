@@ -1,8 +1,10 @@
 package eu.spitfire.ssp.server.internal.wrapper;
 
 
-
 import com.hp.hpl.jena.rdf.model.Model;
+import eu.spitfire.ssp.server.internal.utils.Language;
+import eu.spitfire.ssp.server.internal.utils.RdfPayloadParser;
+import org.jboss.netty.buffer.ChannelBuffer;
 
 import java.util.Date;
 
@@ -10,6 +12,10 @@ import java.util.Date;
  * Wrapper class to contain a {@link com.hp.hpl.jena.rdf.model.Model} and a {@link java.util.Date} indicating the
  * validity lifetime of the model.
  *
+ * Instances created from a serialized representation (e.g. the payload of a CoAP response) keep that representation
+ * to be sent as it is to clients accepting the same {@link eu.spitfire.ssp.server.internal.utils.Language}. The
+ * model is not parsed before it is requested the first time.
+ *
  * @author Oliver Kleine
  */
 public class ExpiringGraph {
@@ -21,6 +27,8 @@ public class ExpiringGraph {
 
     private Model graph;
     private Date expiry;
+    private ChannelBuffer content;
+    private Language language;
 
     /**
      * Creates a new instance of {@link ExpiringGraph}
@@ -32,6 +40,20 @@ public class ExpiringGraph {
         this.expiry = expiry;
     }
 
+    /**
+     * Creates a new instance of {@link ExpiringGraph} from the given serialized representation. The model is parsed
+     * when {@link #getModel()} is called the first time.
+     *
+     * @param content the serialized representation of the graph
+     * @param language the {@link eu.spitfire.ssp.server.internal.utils.Language} of the serialized representation
+     * @param expiry the expiry of the actual status
+     */
+    public ExpiringGraph(ChannelBuffer content, Language language, Date expiry) {
+        this.content = content;
+        this.language = language;
+        this.expiry = expiry;
+    }
+
     /**
      * Creates a new instance of {@link ExpiringGraph}. The
      * expiry is automatically to the current time plus {@link #MILLIS_PER_CENTURY}, i.e. a hundred years in
@@ -46,11 +68,35 @@ public class ExpiringGraph {
     /**
      * Returns the actual graph, i.e. the model containing the actual triples.
      * @return the actual graph, i.e. the model containing the actual triples.
+     *
+     * @throws org.apache.jena.riot.RiotException if the serialized representation (if any) is malformed
      */
-    public Model getModel() {
+    public synchronized Model getModel() {
+        if(graph == null && content != null){
+            graph = RdfPayloadParser.parse(content, language);
+        }
         return graph;
     }
 
+    /**
+     * Returns the serialized representation of the graph (as received from the data origin) or <code>null</code>
+     * if there is no such representation
+     * @return the serialized representation of the graph or <code>null</code>
+     */
+    public ChannelBuffer getContent() {
+        return content == null ? null : content.duplicate();
+    }
+
+    /**
+     * Returns the {@link eu.spitfire.ssp.server.internal.utils.Language} of the serialized representation of the
+     * graph or <code>null</code> if there is no such representation
+     * @return the {@link eu.spitfire.ssp.server.internal.utils.Language} of the serialized representation or
+     * <code>null</code>
+     */
+    public Language getLanguage() {
+        return language;
+    }
+
     /**
      * Returns the expiry of the graph status
      * @return the expiry of the graph status
@@ -2,6 +2,8 @@ package eu.spitfire.ssp.server.internal.wrapper;
 
 
 import com.hp.hpl.jena.rdf.model.Model;
+import eu.spitfire.ssp.server.internal.utils.Language;
+import org.jboss.netty.buffer.ChannelBuffer;
 
 import java.net.URI;
 import java.util.Date;
@@ -29,6 +31,20 @@ public class ExpiringNamedGraph extends ExpiringGraph{
         this.graphName = graphName;
     }
 
+    /**
+     * Creates a new instance of {@link ExpiringNamedGraph} from the given serialized representation. The model is
+     * parsed when {@link #getModel()} is called the first time.
+     *
+     * @param graphName the name of the contained graph
+     * @param content the serialized representation of the graph
+     * @param language the {@link eu.spitfire.ssp.server.internal.utils.Language} of the serialized representation
+     * @param expiry the expiry of the actual status
+     */
+    public ExpiringNamedGraph(URI graphName, ChannelBuffer content, Language language, Date expiry) {
+        super(content, language, expiry);
+        this.graphName = graphName;
+    }
+
     /**
      * Creates a new instance of {@link ExpiringNamedGraph}. The
      * expiry is automatically to the current time plus {@link #MILLIS_PER_CENTURY}, i.e. a hundred years in
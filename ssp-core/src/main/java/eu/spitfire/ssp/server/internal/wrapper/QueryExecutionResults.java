@@ -9,10 +9,24 @@ public class QueryExecutionResults {
 
     private long duration;
     private ResultSet resultSet;
+    private String next;
 
     public QueryExecutionResults(long duration, ResultSet resultSet){
+        this(duration, resultSet, null);
+    }
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.server.internal.wrapper.QueryExecutionResults} for a page of
+     * paginated results.
+     *
+     * @param duration the duration of the query execution (in milliseconds)
+     * @param resultSet the {@link com.hp.hpl.jena.query.ResultSet} containing the page
+     * @param next the opaque token to retrieve the next page or <code>null</code> if this is the last page
+     */
+    public QueryExecutionResults(long duration, ResultSet resultSet, String next){
         this.duration = duration;
         this.resultSet = resultSet;
+        this.next = next;
     }
 
     public long getDuration() {
@@ -22,4 +36,13 @@ public class QueryExecutionResults {
     public ResultSet getResultSet() {
         return resultSet;
     }
+
+    /**
+     * Returns the opaque token to retrieve the next page or <code>null</code> if there is no next page.
+     *
+     * @return the opaque token to retrieve the next page or <code>null</code> if there is no next page
+     */
+    public String getNext() {
+        return next;
+    }
 }
@@ -0,0 +1,57 @@
+package eu.spitfire.ssp.server.internal.wrapper;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import eu.spitfire.ssp.server.internal.utils.Language;
+import org.jboss.netty.buffer.ChannelBuffer;
+
+import java.util.Date;
+
+/**
+ * Wrapper class for an {@link eu.spitfire.ssp.server.internal.wrapper.ExpiringGraph} that is already expired but
+ * still served from the cache while a refresh is in progress (stale-while-revalidate). Responses containing such a
+ * graph are marked with a <code>Warning</code> and an <code>Age</code> header.
+ */
+public class StaleGraph extends ExpiringGraph {
+
+    private long age;
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.server.internal.wrapper.StaleGraph}
+     *
+     * @param graph the actual graph, i.e. the model containing the actual triples.
+     * @param expiry the (past) expiry of the actual status
+     * @param age the number of seconds since the actual status was put into the cache
+     */
+    public StaleGraph(Model graph, Date expiry, long age) {
+        super(graph, expiry);
+        this.age = age;
+    }
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.server.internal.wrapper.StaleGraph} from the given serialized
+     * representation.
+     *
+     * @param content the serialized representation of the graph
+     * @param language the {@link eu.spitfire.ssp.server.internal.utils.Language} of the serialized representation
+     * @param expiry the (past) expiry of the actual status
+     * @param age the number of seconds since the actual status was retrieved
+     */
+    public StaleGraph(ChannelBuffer content, Language language, Date expiry, long age) {
+        super(content, language, expiry);
+        this.age = age;
+    }
+
+    /**
+     * Returns the number of seconds since the actual status was put into the cache
+     * @return the number of seconds since the actual status was put into the cache
+     */
+    public long getAge() {
+        return age;
+    }
+
+
+    @Override
+    public String toString() {
+        return "[Stale Graph (Expiry: " + this.getExpiry() + ", Age: " + this.age + ")]";
+    }
+}
@@ -1,14 +1,78 @@
 package eu.spitfire.ssp.server.webservices;
 
+import eu.spitfire.ssp.server.internal.utils.ContinuationToken;
+import eu.spitfire.ssp.server.internal.utils.GraphCatalog;
+import eu.spitfire.ssp.server.internal.utils.HttpResponseFactory;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
 /**
+ * Webservice to list the named graphs contained in the cache. Requests with query parameter
+ * <code>format=json</code> (or accepting <code>application/json</code>) are answered with a page of the
+ * {@link eu.spitfire.ssp.server.internal.utils.GraphCatalog} (query parameters <code>limit</code> and
+ * <code>cursor</code>, i.e. the token returned as <code>next</code> with the previous page), all other requests with the HTML page.
+ *
  * Created by olli on 09.07.14.
  */
 public class GraphDirectory extends HttpWebservice{
 
-    public GraphDirectory(ExecutorService ioExecutor, ScheduledExecutorService internalTasksExecutor) {
+    private GraphCatalog catalog;
+
+    public GraphDirectory(ExecutorService ioExecutor, ScheduledExecutorService internalTasksExecutor,
+                          GraphCatalog catalog) {
         super(ioExecutor, internalTasksExecutor, "html/services/graph-directory.html");
+        this.catalog = catalog;
+    }
+
+
+    @Override
+    protected void processGet(Channel channel, HttpRequest httpRequest, InetSocketAddress clientAddress)
+            throws Exception {
+
+        if(!isJsonRequest(httpRequest)){
+            super.processGet(channel, httpRequest, clientAddress);
+            return;
+        }
+
+        Map<String, List<String>> parameters = new QueryStringDecoder(httpRequest.getUri()).getParameters();
+        int limit = Math.max(1, Math.min(getIntParameter(parameters, "limit", DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE));
+
+        ContinuationToken cursor;
+        try {
+            cursor = getContinuationToken(parameters);
+        } catch (IllegalArgumentException ex) {
+            writeHttpResponse(channel, HttpResponseFactory.createHttpResponse(
+                    httpRequest.getProtocolVersion(), HttpResponseStatus.BAD_REQUEST, ex.getMessage()
+            ), clientAddress);
+            return;
+        }
+
+        List<GraphCatalog.GraphEntry> graphs = this.catalog.getGraphs(
+                cursor == null ? null : cursor.getKey().get(0), limit + 1
+        );
+
+        Map<String, Object> content = new HashMap<>();
+        content.put("total", this.catalog.getGraphCount());
+        if(graphs.size() > limit) {
+            graphs = graphs.subList(0, limit);
+            content.put("next", new ContinuationToken(graphs.get(limit - 1).getName()).encode());
+        }
+        content.put("graphs", graphs);
+
+        HttpResponse httpResponse = HttpResponseFactory.createHttpJsonResponse(
+                httpRequest.getProtocolVersion(), content
+        );
+
+        writeHttpResponse(channel, httpResponse, clientAddress);
     }
 }
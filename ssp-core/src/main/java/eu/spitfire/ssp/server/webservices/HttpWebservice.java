@@ -1,5 +1,6 @@
 package eu.spitfire.ssp.server.webservices;
 
+import eu.spitfire.ssp.server.internal.utils.ContinuationToken;
 import eu.spitfire.ssp.server.internal.utils.HttpResponseFactory;
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
@@ -14,6 +15,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -29,6 +32,16 @@ import java.util.concurrent.ScheduledExecutorService;
  */
 public abstract class HttpWebservice extends SimpleChannelHandler {
 
+    /**
+     * The default number of entries per page of paginated (JSON) listings
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * The maximum number of entries per page of paginated (JSON) listings
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
     private Logger log = LoggerFactory.getLogger(this.getClass().getName());
 
     private ExecutorService ioExecutor;
@@ -129,6 +142,63 @@ public abstract class HttpWebservice extends SimpleChannelHandler {
     }
 
 
+    /**
+     * Returns <code>true</code> if the given {@link org.jboss.netty.handler.codec.http.HttpRequest} asks for JSON,
+     * i.e. has query parameter <code>format=json</code> or accepts <code>application/json</code>.
+     *
+     * @param httpRequest the {@link org.jboss.netty.handler.codec.http.HttpRequest} to be checked
+     *
+     * @return <code>true</code> if the given {@link org.jboss.netty.handler.codec.http.HttpRequest} asks for JSON
+     */
+    protected static boolean isJsonRequest(HttpRequest httpRequest){
+        List<String> format = new QueryStringDecoder(httpRequest.getUri()).getParameters().get("format");
+        if(format != null && format.contains("json")){
+            return true;
+        }
+
+        String acceptHeader = httpRequest.headers().get(HttpHeaders.Names.ACCEPT);
+        return acceptHeader != null && acceptHeader.contains("application/json");
+    }
+
+
+    /**
+     * Returns the decoded {@link eu.spitfire.ssp.server.internal.utils.ContinuationToken} given as query parameter
+     * <code>cursor</code> (keyset pagination) or <code>null</code> if there is no such parameter.
+     *
+     * @param parameters the query parameters (see {@link org.jboss.netty.handler.codec.http.QueryStringDecoder})
+     *
+     * @return the decoded {@link eu.spitfire.ssp.server.internal.utils.ContinuationToken} or <code>null</code>
+     *
+     * @throws java.lang.IllegalArgumentException if the token is malformed
+     */
+    protected static ContinuationToken getContinuationToken(Map<String, List<String>> parameters)
+            throws IllegalArgumentException {
+
+        List<String> values = parameters.get("cursor");
+        return values == null || values.get(0).isEmpty() ? null : ContinuationToken.decode(values.get(0));
+    }
+
+
+    /**
+     * Returns the value of the query parameter with the given name as (non-negative) integer.
+     *
+     * @param parameters the query parameters (see {@link org.jboss.netty.handler.codec.http.QueryStringDecoder})
+     * @param name the name of the parameter
+     * @param defaultValue the value to be returned if there is no (valid) parameter with the given name
+     *
+     * @return the value of the query parameter with the given name or the given default value
+     */
+    protected static int getIntParameter(Map<String, List<String>> parameters, String name, int defaultValue){
+        try{
+            List<String> values = parameters.get(name);
+            return values == null ? defaultValue : Math.max(0, Integer.parseInt(values.get(0)));
+        }
+        catch(NumberFormatException ex){
+            return defaultValue;
+        }
+    }
+
+
     protected void processPost(Channel channel, HttpRequest httpRequest, InetSocketAddress clientAddress)
             throws Exception{
 
@@ -1,14 +1,80 @@
 package eu.spitfire.ssp.server.webservices;
 
+import eu.spitfire.ssp.server.internal.utils.ContinuationToken;
+import eu.spitfire.ssp.server.internal.utils.GraphCatalog;
+import eu.spitfire.ssp.server.internal.utils.HttpResponseFactory;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
 /**
+ * Webservice to list the resources (i.e. subjects) contained in the cache. Requests with query parameter
+ * <code>format=json</code> (or accepting <code>application/json</code>) are answered with a page of the subjects
+ * from the {@link eu.spitfire.ssp.server.internal.utils.GraphCatalog} and the names of the graphs mentioning them
+ * (query parameters <code>limit</code>, <code>cursor</code>, i.e. the token returned as <code>next</code> with the
+ * previous page, and <code>type</code> to list the instances of a class only), all other requests with the HTML page.
+ *
  * Created by olli on 19.08.15.
  */
 public class ResourceDirectory extends HttpWebservice{
 
-    public ResourceDirectory(ExecutorService ioExecutor, ScheduledExecutorService internalTasksExecutor) {
+    private GraphCatalog catalog;
+
+    public ResourceDirectory(ExecutorService ioExecutor, ScheduledExecutorService internalTasksExecutor,
+                             GraphCatalog catalog) {
         super(ioExecutor, internalTasksExecutor, "html/services/resource-directory.html");
+        this.catalog = catalog;
+    }
+
+
+    @Override
+    protected void processGet(Channel channel, HttpRequest httpRequest, InetSocketAddress clientAddress)
+            throws Exception {
+
+        if(!isJsonRequest(httpRequest)){
+            super.processGet(channel, httpRequest, clientAddress);
+            return;
+        }
+
+        Map<String, List<String>> parameters = new QueryStringDecoder(httpRequest.getUri()).getParameters();
+        int limit = Math.max(1, Math.min(getIntParameter(parameters, "limit", DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE));
+        String type = parameters.containsKey("type") ? parameters.get("type").get(0) : null;
+
+        ContinuationToken cursor;
+        try {
+            cursor = getContinuationToken(parameters);
+        } catch (IllegalArgumentException ex) {
+            writeHttpResponse(channel, HttpResponseFactory.createHttpResponse(
+                    httpRequest.getProtocolVersion(), HttpResponseStatus.BAD_REQUEST, ex.getMessage()
+            ), clientAddress);
+            return;
+        }
+
+        List<GraphCatalog.SubjectEntry> resources = this.catalog.getSubjects(
+                type, cursor == null ? null : cursor.getKey().get(0), limit + 1
+        );
+
+        Map<String, Object> content = new HashMap<>();
+        content.put("total", this.catalog.getSubjectCount(type));
+        if(resources.size() > limit) {
+            resources = resources.subList(0, limit);
+            content.put("next", new ContinuationToken(resources.get(limit - 1).getName()).encode());
+        }
+        content.put("resources", resources);
+
+        HttpResponse httpResponse = HttpResponseFactory.createHttpJsonResponse(
+                httpRequest.getProtocolVersion(), content
+        );
+
+        writeHttpResponse(channel, httpResponse, clientAddress);
     }
 }
@@ -0,0 +1,114 @@
+package eu.spitfire.ssp.server.webservices;
+
+import eu.spitfire.ssp.server.internal.history.ObservationBuffer;
+import eu.spitfire.ssp.server.internal.history.ObservationHistory;
+import eu.spitfire.ssp.server.internal.utils.HttpResponseFactory;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Webservice to query the {@link eu.spitfire.ssp.server.internal.history.ObservationHistory} as JSON. Supported
+ * query parameters are
+ * <ul>
+ *     <li><code>graph</code>: the name of the graph (if missing, all graphs with history are listed)</li>
+ *     <li><code>last</code>: the number of latest observations to be returned</li>
+ *     <li><code>from</code> and <code>to</code>: the time range (milliseconds since epoch) of the observations to
+ *     be returned (default: the complete history)</li>
+ *     <li><code>bucket</code>: the length of the buckets (milliseconds) to downsample the observations in the
+ *     time range to, i.e. the minimum, maximum and average value per bucket are returned</li>
+ * </ul>
+ */
+public class SensorHistory extends HttpWebservice {
+
+    private ObservationHistory observationHistory;
+
+    public SensorHistory(ExecutorService ioExecutor, ScheduledExecutorService internalTasksExecutor,
+                         ObservationHistory observationHistory) {
+
+        super(ioExecutor, internalTasksExecutor, null);
+        this.observationHistory = observationHistory;
+    }
+
+
+    @Override
+    protected void processGet(Channel channel, HttpRequest httpRequest, InetSocketAddress clientAddress)
+            throws Exception {
+
+        Map<String, List<String>> parameters = new QueryStringDecoder(httpRequest.getUri()).getParameters();
+        HttpResponse httpResponse;
+
+        if(!parameters.containsKey("graph")) {
+            httpResponse = HttpResponseFactory.createHttpJsonResponse(
+                    httpRequest.getProtocolVersion(), this.observationHistory.getSeries()
+            );
+        }
+
+        else {
+            ObservationBuffer buffer = this.observationHistory.getBuffer(new URI(parameters.get("graph").get(0)));
+
+            if(buffer == null) {
+                httpResponse = HttpResponseFactory.createHttpResponse(
+                        httpRequest.getProtocolVersion(), HttpResponseStatus.NOT_FOUND, "No history for this graph!"
+                );
+            }
+
+            else {
+                try {
+                    httpResponse = HttpResponseFactory.createHttpJsonResponse(
+                            httpRequest.getProtocolVersion(), query(buffer, parameters)
+                    );
+                } catch (IllegalArgumentException ex) {
+                    httpResponse = HttpResponseFactory.createHttpResponse(
+                            httpRequest.getProtocolVersion(), HttpResponseStatus.BAD_REQUEST, ex.getMessage()
+                    );
+                }
+            }
+        }
+
+        writeHttpResponse(channel, httpResponse, clientAddress);
+    }
+
+
+    private static Object query(ObservationBuffer buffer, Map<String, List<String>> parameters) {
+        if(parameters.containsKey("last")) {
+            return buffer.getLast(getInt(parameters, "last"));
+        }
+
+        long from = parameters.containsKey("from") ? getLong(parameters, "from") : 0;
+        long to = parameters.containsKey("to") ? getLong(parameters, "to") : Long.MAX_VALUE;
+
+        if(parameters.containsKey("bucket")) {
+            return buffer.downsample(from, to, getLong(parameters, "bucket"));
+        }
+
+        return buffer.getRange(from, to);
+    }
+
+
+    private static int getInt(Map<String, List<String>> parameters, String name) {
+        return (int) Math.min(Integer.MAX_VALUE, getLong(parameters, name));
+    }
+
+
+    private static long getLong(Map<String, List<String>> parameters, String name) {
+        try {
+            long value = Long.parseLong(parameters.get(name).get(0));
+            if(value < 0) {
+                throw new IllegalArgumentException("Parameter \"" + name + "\" must not be negative!");
+            }
+            return value;
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Parameter \"" + name + "\" is no number!");
+        }
+    }
+}
@@ -1,40 +1,83 @@
 package eu.spitfire.ssp.server.webservices;
 
+import com.google.common.base.Charsets;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.SettableFuture;
 import eu.spitfire.ssp.server.internal.message.InternalQueryExecutionRequest;
 import eu.spitfire.ssp.server.internal.wrapper.QueryExecutionResults;
+import eu.spitfire.ssp.server.internal.utils.ContinuationToken;
 import eu.spitfire.ssp.server.internal.utils.HttpResponseFactory;
+import eu.spitfire.ssp.server.internal.utils.SparqlPagination;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.QueryParseException;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelFuture;
 import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.local.LocalServerChannel;
+import org.jboss.netty.handler.codec.http.HttpHeaders;
 import org.jboss.netty.handler.codec.http.HttpRequest;
 import org.jboss.netty.handler.codec.http.HttpResponse;
 import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.jboss.netty.handler.codec.http.QueryStringDecoder;
+import org.jboss.netty.handler.codec.http.multipart.Attribute;
 import org.jboss.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
-import org.jboss.netty.handler.codec.http.multipart.MixedAttribute;
 
 import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
 /**
+ * Webservice to execute SPARQL queries on the cache (SPARQL 1.1 protocol), i.e. the query is either given as
+ * <ul>
+ *     <li>query parameter <code>query</code> of a GET request,</li>
+ *     <li>form parameter <code>query</code> of a POST request (URL-encoded or multipart) or</li>
+ *     <li>payload of a POST request with content type <code>application/sparql-query</code>.</li>
+ * </ul>
+ *
+ * The results are streamed in the format given by the accept header (see
+ * {@link eu.spitfire.ssp.server.handler.HttpSemanticPayloadFormatter}), the execution duration is sent as header.
+ *
+ * Pagination is opt-in: if the request contains the (query or form) parameter <code>cursor</code>, the results of
+ * plain SELECT queries (see {@link eu.spitfire.ssp.server.internal.utils.SparqlPagination#isPageable(Query)}) are
+ * returned in pages of the configured size. An empty cursor requests the first page. The token to retrieve the next
+ * page is sent as header and is to be sent as parameter <code>cursor</code> (together with the same query). Requests
+ * without that parameter are executed as they are.
+ *
  * Created by olli on 01.07.14.
  */
 public class SparqlEndpoint extends HttpWebservice{
 
+    private static final String SPARQL_QUERY = "application/sparql-query";
+
     private LocalServerChannel localChannel;
+    private int pageSize;
 
     public SparqlEndpoint(ExecutorService ioExecutor, ScheduledExecutorService internalTasksExecutor,
-                          LocalServerChannel localChannel){
+                          LocalServerChannel localChannel, int pageSize){
 
         super(ioExecutor, internalTasksExecutor, "html/services/sparql-endpoint.html");
         this.localChannel = localChannel;
+        this.pageSize = pageSize;
+    }
+
+
+    @Override
+    protected void processGet(Channel channel, HttpRequest httpRequest, InetSocketAddress clientAddress)
+            throws Exception{
+
+        Map<String, List<String>> parameters = new QueryStringDecoder(httpRequest.getUri()).getParameters();
+        if(!parameters.containsKey("query")){
+            super.processGet(channel, httpRequest, clientAddress);
+            return;
+        }
+
+        String cursor = parameters.containsKey("cursor") ? parameters.get("cursor").get(0) : null;
+        processQuery(channel, httpRequest, clientAddress, parameters.get("query").get(0), cursor);
     }
 
 
@@ -42,11 +85,60 @@ public class SparqlEndpoint extends HttpWebservice{
     public void processPost(final Channel channel, final HttpRequest httpRequest,
                             final InetSocketAddress clientAddress) throws Exception{
 
+        String contentType = httpRequest.headers().get(HttpHeaders.Names.CONTENT_TYPE);
+
+        //SPARQL query as payload
+        if(contentType != null && contentType.startsWith(SPARQL_QUERY)){
+            Map<String, List<String>> parameters = new QueryStringDecoder(httpRequest.getUri()).getParameters();
+            String cursor = parameters.containsKey("cursor") ? parameters.get("cursor").get(0) : null;
+            processQuery(channel, httpRequest, clientAddress,
+                    httpRequest.getContent().toString(Charsets.UTF_8), cursor);
+            return;
+        }
+
         //Decode SPARQL query from POST request
         HttpPostRequestDecoder decoder = new HttpPostRequestDecoder(httpRequest);
+        Attribute queryAttribute = (Attribute) decoder.getBodyHttpData("query");
+        Attribute cursorAttribute = (Attribute) decoder.getBodyHttpData("cursor");
+
+        if(queryAttribute == null){
+            HttpResponse httpResponse = HttpResponseFactory.createHttpResponse(
+                    httpRequest.getProtocolVersion(), HttpResponseStatus.BAD_REQUEST, "Missing parameter \"query\"!"
+            );
+            writeHttpResponse(channel, httpResponse, clientAddress);
+            return;
+        }
+
+        processQuery(channel, httpRequest, clientAddress, queryAttribute.getValue(),
+                cursorAttribute == null ? null : cursorAttribute.getValue());
+    }
 
-        //String query = ((MixedAttribute) decoder.getBodyHttpData("query")).getValue();
-        Query query = QueryFactory.create(((MixedAttribute) decoder.getBodyHttpData("query")).getValue());
+
+    private void processQuery(final Channel channel, final HttpRequest httpRequest,
+                              final InetSocketAddress clientAddress, String queryString, String cursorString)
+            throws Exception{
+
+        Query query;
+        final boolean paginated;
+        ContinuationToken token = null;
+        try{
+            query = QueryFactory.create(queryString);
+            paginated = this.pageSize > 0 && cursorString != null && SparqlPagination.isPageable(query);
+            if(paginated){
+                if(!cursorString.isEmpty()){
+                    token = ContinuationToken.decode(cursorString);
+                }
+                query = SparqlPagination.createPageQuery(query, token, this.pageSize);
+            }
+        }
+        catch(QueryParseException | IllegalArgumentException ex){
+            HttpResponse httpResponse = HttpResponseFactory.createHttpResponse(
+                    httpRequest.getProtocolVersion(), HttpResponseStatus.BAD_REQUEST, ex.getMessage()
+            );
+            writeHttpResponse(channel, httpResponse, clientAddress);
+            return;
+        }
+        final ContinuationToken cursor = token;
 
         //Execute SPARQL query, await the result and send it to the client
 
@@ -54,12 +146,24 @@ public class SparqlEndpoint extends HttpWebservice{
             @Override
             public void onSuccess(QueryExecutionResults results) {
 
+                if(paginated){
+                    SparqlPagination.Page page;
+                    try{
+                        page = SparqlPagination.readPage(results.getResultSet(), cursor, SparqlEndpoint.this.pageSize);
+                    }
+                    catch(IllegalArgumentException ex){
+                        HttpResponse httpResponse = HttpResponseFactory.createHttpResponse(
+                                httpRequest.getProtocolVersion(), HttpResponseStatus.BAD_REQUEST, ex.getMessage()
+                        );
+                        writeHttpResponse(channel, httpResponse, clientAddress);
+                        return;
+                    }
+                    results = new QueryExecutionResults(results.getDuration(), page.getResultSet(),
+                            page.getNext() == null ? null : page.getNext().encode());
+                }
+
                 ChannelFuture future = Channels.write(channel, results, clientAddress);
                 future.addListener(ChannelFutureListener.CLOSE);
-
-//                ResultSet resultSet = results.getResultSet();
-//                ChannelFuture future = Channels.write(channel, resultSet, clientAddress);
-//                future.addListener(ChannelFutureListener.CLOSE);
             }
 
             @Override
@@ -0,0 +1,46 @@
+package eu.spitfire.ssp.server.webservices;
+
+import eu.spitfire.ssp.server.handler.SemanticCache;
+import eu.spitfire.ssp.server.internal.utils.HttpResponseFactory;
+import eu.spitfire.ssp.server.internal.utils.RdfPayloadParser;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.handler.codec.http.HttpRequest;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Webservice to publish statistics about the internal state of the Smart Service Proxy (e.g. counters provided by
+ * the {@link eu.spitfire.ssp.server.handler.SemanticCache} and the
+ * {@link eu.spitfire.ssp.server.internal.utils.RdfPayloadParser}) as JSON.
+ */
+public class Statistics extends HttpWebservice {
+
+    private SemanticCache semanticCache;
+
+    public Statistics(ExecutorService ioExecutor, ScheduledExecutorService internalTasksExecutor,
+                      SemanticCache semanticCache) {
+
+        super(ioExecutor, internalTasksExecutor, null);
+        this.semanticCache = semanticCache;
+    }
+
+
+    @Override
+    protected void processGet(Channel channel, HttpRequest httpRequest, InetSocketAddress clientAddress)
+            throws Exception {
+
+        Map<String, String> statistics = new TreeMap<>(this.semanticCache.getStatistics());
+        statistics.putAll(RdfPayloadParser.getStatistics());
+
+        HttpResponse httpResponse = HttpResponseFactory.createHttpJsonResponse(
+                httpRequest.getProtocolVersion(), statistics
+        );
+
+        writeHttpResponse(channel, httpResponse, clientAddress);
+    }
+}
@@ -0,0 +1,190 @@
+package eu.spitfire.ssp.backend.coap.registry;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import eu.spitfire.ssp.backend.coap.CoapHostHealth;
+import eu.spitfire.ssp.backend.coap.CoapWebresource;
+import eu.spitfire.ssp.backend.generic.DataOriginAccessor;
+import eu.spitfire.ssp.server.internal.exception.OperationTimeoutException;
+import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
+import junit.framework.TestCase;
+
+import java.net.URI;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for {@link eu.spitfire.ssp.backend.coap.registry.CoapRegistrationScheduler}. The status requests are
+ * answered by the test (see {@link eu.spitfire.ssp.backend.coap.registry.CoapRegistrationSchedulerTest.Accessor}),
+ * i.e. no CoAP messages are sent.
+ */
+public class CoapRegistrationSchedulerTest extends TestCase {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private Accessor accessor;
+    private ScheduledExecutorService executor;
+
+
+    @Override
+    protected void setUp() {
+        accessor = new Accessor();
+        executor = new ScheduledThreadPoolExecutor(1);
+    }
+
+
+    @Override
+    protected void tearDown() {
+        executor.shutdownNow();
+    }
+
+
+    private CoapRegistrationScheduler createScheduler(int maxInFlight, int maxInFlightPerHost) {
+        return new CoapRegistrationScheduler(
+                accessor, new CoapHostHealth(3, 1000, 10000), executor, maxInFlight, maxInFlightPerHost
+        );
+    }
+
+
+    private static CoapWebresource createWebresource(String host, String path) {
+        return new CoapWebresource(URI.create("coap://" + host + path));
+    }
+
+
+    private static ExpiringNamedGraph createStatus(Request request) {
+        return new ExpiringNamedGraph(request.webresource.getGraphName(), ModelFactory.createDefaultModel());
+    }
+
+
+    public void testLimitsRequestsPerHost() throws Exception {
+        CoapRegistrationScheduler scheduler = createScheduler(8, 1);
+        for(int i = 0; i < 3; i++) {
+            scheduler.schedule(createWebresource("host1", "/r" + i), 0);
+        }
+        scheduler.schedule(createWebresource("host2", "/r0"), 0);
+
+        Request first = accessor.next();
+        Request second = accessor.next();
+        assertFalse(first.webresource.getIdentifier().getHost().equals(second.webresource.getIdentifier().getHost()));
+        assertNull(accessor.poll(200));
+
+        Request host1 = "host1".equals(first.webresource.getIdentifier().getHost()) ? first : second;
+        host1.future.set(createStatus(host1));
+        assertEquals("host1", accessor.next().webresource.getIdentifier().getHost());
+    }
+
+
+    public void testLimitsRequestsOfAllHosts() throws Exception {
+        CoapRegistrationScheduler scheduler = createScheduler(2, 1);
+        for(int i = 0; i < 3; i++) {
+            scheduler.schedule(createWebresource("host" + i, "/r"), 0);
+        }
+
+        Request first = accessor.next();
+        accessor.next();
+        assertNull(accessor.poll(200));
+
+        first.future.set(createStatus(first));
+        accessor.next();
+        assertNull(accessor.poll(200));
+    }
+
+
+    public void testSendsRequestsInOrderOfPriority() throws Exception {
+        CoapRegistrationScheduler scheduler = createScheduler(8, 1);
+        scheduler.schedule(createWebresource("host1", "/first"), 5);
+        scheduler.schedule(createWebresource("host1", "/low"), 9);
+        scheduler.schedule(createWebresource("host1", "/high"), 1);
+        scheduler.schedule(createWebresource("host1", "/high2"), 1);
+
+        String[] expected = new String[]{"/first", "/high", "/high2", "/low"};
+        for(String path : expected) {
+            Request request = accessor.next();
+            assertEquals(path, request.webresource.getIdentifier().getPath());
+            request.future.set(createStatus(request));
+        }
+    }
+
+
+    public void testRetriesTimedOutRequestOnce() throws Exception {
+        CoapRegistrationScheduler scheduler = createScheduler(8, 1);
+        ListenableFuture<ExpiringNamedGraph> statusFuture = scheduler.schedule(createWebresource("host1", "/r"), 0);
+
+        accessor.next().future.setException(new OperationTimeoutException("timeout"));
+        Request retry = accessor.next();
+        ExpiringNamedGraph status = createStatus(retry);
+        retry.future.set(status);
+
+        assertSame(status, statusFuture.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertEquals(1L, scheduler.getStatistics().get("retried"));
+        assertEquals(1L, scheduler.getStatistics().get("timeouts"));
+        assertEquals(1L, scheduler.getStatistics().get("succeeded"));
+    }
+
+
+    public void testFailsAfterMaxAttempts() throws Exception {
+        CoapRegistrationScheduler scheduler = createScheduler(8, 1);
+        ListenableFuture<ExpiringNamedGraph> statusFuture = scheduler.schedule(createWebresource("host1", "/r"), 0);
+
+        for(int i = 0; i < CoapRegistrationScheduler.MAX_ATTEMPTS; i++) {
+            accessor.next().future.setException(new OperationTimeoutException("timeout"));
+        }
+
+        try {
+            statusFuture.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            fail("Expected ExecutionException!");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof OperationTimeoutException);
+        }
+        assertNull(accessor.poll(200));
+        assertEquals(1L, scheduler.getStatistics().get("failed"));
+    }
+
+
+    /**
+     * Accessor to record the status requests of the scheduler (to be answered by the test).
+     */
+    private static class Accessor extends DataOriginAccessor<URI, CoapWebresource> {
+
+        private final BlockingQueue<Request> requests;
+
+        private Accessor() {
+            super(null);
+            this.requests = new LinkedBlockingQueue<>();
+        }
+
+        @Override
+        public ListenableFuture<ExpiringNamedGraph> getStatus(CoapWebresource webresource) {
+            SettableFuture<ExpiringNamedGraph> future = SettableFuture.create();
+            requests.add(new Request(webresource, future));
+            return future;
+        }
+
+        private Request next() throws InterruptedException {
+            Request request = poll(TIMEOUT_MILLIS);
+            assertNotNull("No request sent!", request);
+            return request;
+        }
+
+        private Request poll(long timeoutMillis) throws InterruptedException {
+            return requests.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    private static class Request {
+
+        private final CoapWebresource webresource;
+        private final SettableFuture<ExpiringNamedGraph> future;
+
+        private Request(CoapWebresource webresource, SettableFuture<ExpiringNamedGraph> future) {
+            this.webresource = webresource;
+            this.future = future;
+        }
+    }
+}
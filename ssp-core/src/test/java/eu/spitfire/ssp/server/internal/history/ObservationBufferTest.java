@@ -0,0 +1,118 @@
+package eu.spitfire.ssp.server.internal.history;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+/**
+ * Tests for {@link eu.spitfire.ssp.server.internal.history.ObservationBuffer}.
+ */
+public class ObservationBufferTest extends TestCase {
+
+    public void testRejectsEmptyCapacity() {
+        try {
+            new ObservationBuffer(0, 0);
+            fail("Expected IllegalArgumentException!");
+        } catch (IllegalArgumentException ex) {
+            //expected
+        }
+    }
+
+
+    public void testGrowsBeyondInitialCapacity() {
+        ObservationBuffer buffer = new ObservationBuffer(100, 0);
+        for(int i = 0; i < 40; i++) {
+            buffer.add(1000 + i, i);
+        }
+
+        assertEquals(40, buffer.size());
+        ObservationBuffer.Observations observations = buffer.getLast(40);
+        for(int i = 0; i < 40; i++) {
+            assertEquals(1000 + i, observations.getTimestamps()[i]);
+            assertEquals((double) i, observations.getValues()[i]);
+        }
+    }
+
+
+    public void testOverwritesOldestObservationIfFull() {
+        ObservationBuffer buffer = new ObservationBuffer(20, 0);
+        for(int i = 0; i < 50; i++) {
+            buffer.add(1000 + i, i);
+        }
+
+        assertEquals(20, buffer.size());
+        ObservationBuffer.Observations observations = buffer.getLast(100);
+        assertEquals(20, observations.getTimestamps().length);
+        assertEquals(1030, observations.getTimestamps()[0]);
+        assertEquals(1049, observations.getTimestamps()[19]);
+        assertEquals(49.0, observations.getValues()[19]);
+    }
+
+
+    public void testKeepsTimestampsOrdered() {
+        ObservationBuffer buffer = new ObservationBuffer(10, 0);
+        buffer.add(2000, 1);
+        buffer.add(1000, 2);
+
+        long[] timestamps = buffer.getLast(2).getTimestamps();
+        assertEquals(2000, timestamps[0]);
+        assertEquals(2000, timestamps[1]);
+    }
+
+
+    public void testGetRange() {
+        ObservationBuffer buffer = new ObservationBuffer(10, 0);
+        for(int i = 0; i < 10; i++) {
+            buffer.add(1000 + i * 100, i);
+        }
+
+        ObservationBuffer.Observations observations = buffer.getRange(1200, 1500);
+        assertEquals(3, observations.getTimestamps().length);
+        assertEquals(1200, observations.getTimestamps()[0]);
+        assertEquals(1400, observations.getTimestamps()[2]);
+        assertEquals(0, buffer.getRange(5000, 6000).getTimestamps().length);
+    }
+
+
+    public void testAggregate() {
+        ObservationBuffer buffer = new ObservationBuffer(10, 0);
+        buffer.add(1000, 4);
+        buffer.add(1100, 2);
+        buffer.add(1200, 6);
+
+        ObservationBuffer.Aggregate aggregate = buffer.aggregate(1000, 1300);
+        assertEquals(3, aggregate.getCount());
+        assertEquals(2.0, aggregate.getMin());
+        assertEquals(6.0, aggregate.getMax());
+        assertEquals(4.0, aggregate.getAvg());
+
+        assertNull(buffer.aggregate(2000, 3000));
+    }
+
+
+    public void testDownsampleOmitsEmptyBuckets() {
+        ObservationBuffer buffer = new ObservationBuffer(10, 0);
+        buffer.add(1000, 1);
+        buffer.add(1050, 3);
+        buffer.add(1300, 5);
+
+        List<ObservationBuffer.Aggregate> buckets = buffer.downsample(1000, 1400, 100);
+        assertEquals(2, buckets.size());
+        assertEquals(1000, buckets.get(0).getStart());
+        assertEquals(2, buckets.get(0).getCount());
+        assertEquals(2.0, buckets.get(0).getAvg());
+        assertEquals(1300, buckets.get(1).getStart());
+        assertEquals(1, buckets.get(1).getCount());
+    }
+
+
+    public void testEvictsObservationsOlderThanRetention() {
+        long now = System.currentTimeMillis();
+        ObservationBuffer buffer = new ObservationBuffer(10, 60000);
+        buffer.add(now - 120000, 1);
+        buffer.add(now, 2);
+
+        assertEquals(1, buffer.size());
+        assertEquals(2.0, buffer.getLast(10).getValues()[0]);
+    }
+}
@@ -0,0 +1,98 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDF;
+import org.apache.jena.riot.RDFDataMgr;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBufferOutputStream;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the serialization and parsing of sensor graphs in the binary RDF format
+ * ({@link eu.spitfire.ssp.server.internal.utils.Language#RDF_BINARY}) with Turtle.
+ *
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=eu.spitfire.ssp.server.internal.utils.BinaryRdfBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BinaryRdfBenchmark {
+
+    private static final String NS = "http://example.org/";
+
+    /**
+     * The number of observations of the graph (5 triples each)
+     */
+    @Param({"1", "100"})
+    public int observations;
+
+    private Model model;
+    private ChannelBuffer binary;
+    private ChannelBuffer turtle;
+
+    @Setup
+    public void setup() {
+        model = ModelFactory.createDefaultModel();
+        model.setNsPrefix("ex", NS);
+        Resource sensor = model.createResource(NS + "sensor#1");
+        Property observedBy = model.createProperty(NS + "observedBy");
+        Property value = model.createProperty(NS + "value");
+        Property time = model.createProperty(NS + "time");
+
+        for(int i = 0; i < observations; i++) {
+            Resource observation = model.createResource(NS + "sensor#1-observation-" + i);
+            observation.addProperty(RDF.type, model.createResource(NS + "Observation"));
+            observation.addProperty(observedBy, sensor);
+            observation.addProperty(value, model.createTypedLiteral(String.valueOf(20 + i * 0.1),
+                    XSDDatatype.XSDdouble));
+            observation.addProperty(time, model.createTypedLiteral("2015-06-01T12:00:" + (i % 60) + "Z",
+                    XSDDatatype.XSDdateTime));
+            observation.addProperty(model.createProperty(NS + "unit"), "Cel", "en");
+        }
+
+        binary = writeBinary();
+        turtle = writeTurtle();
+    }
+
+    @Benchmark
+    public ChannelBuffer writeBinary() {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        new BinaryRdfEncoder().writeTriples(buffer, model.getGraph());
+        return buffer;
+    }
+
+    @Benchmark
+    public ChannelBuffer writeTurtle() {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        RDFDataMgr.write(new ChannelBufferOutputStream(buffer), model, Language.RDF_TURTLE.getRdfFormat());
+        return buffer;
+    }
+
+    @Benchmark
+    public Model parseBinary() {
+        return RdfPayloadParser.parse(binary, Language.RDF_BINARY);
+    }
+
+    @Benchmark
+    public Model parseTurtle() {
+        return RdfPayloadParser.parse(turtle, Language.RDF_TURTLE);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BinaryRdfBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,124 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Graph;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.sparql.graph.GraphFactory;
+import junit.framework.TestCase;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+/**
+ * Tests for {@link eu.spitfire.ssp.server.internal.utils.BinaryRdfEncoder} and
+ * {@link eu.spitfire.ssp.server.internal.utils.BinaryRdfDecoder}.
+ */
+public class BinaryRdfEncoderTest extends TestCase {
+
+    private static Graph createGraph() {
+        Node sensor = NodeFactory.createURI("http://example.org/sensor#1");
+        Node observation = NodeFactory.createAnon();
+
+        Graph graph = GraphFactory.createDefaultGraph();
+        graph.add(new Triple(sensor, NodeFactory.createURI("http://example.org/observes"), observation));
+        graph.add(new Triple(observation, NodeFactory.createURI("http://example.org/value"),
+                NodeFactory.createLiteral("21.5", XSDDatatype.XSDdouble)));
+        graph.add(new Triple(sensor, NodeFactory.createURI("http://example.org/label"),
+                NodeFactory.createLiteral("Sensor \"1\"\n", "en", false)));
+        graph.add(new Triple(sensor, NodeFactory.createURI("http://example.org/comment"),
+                NodeFactory.createLiteral("plain ä")));
+        return graph;
+    }
+
+
+    private static ChannelBuffer encode(Graph graph) {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        new BinaryRdfEncoder().writeTriples(buffer, graph);
+        return buffer;
+    }
+
+
+    public void testRoundTrip() {
+        Graph graph = createGraph();
+        ChannelBuffer buffer = encode(graph);
+
+        Graph decoded = GraphFactory.createDefaultGraph();
+        new BinaryRdfDecoder().readTriples(buffer, decoded);
+
+        assertFalse(buffer.readable());
+        assertEquals(graph.size(), decoded.size());
+        assertTrue(graph.isIsomorphicWith(decoded));
+    }
+
+
+    public void testRepeatedTermsAreWrittenAsReference() {
+        Node node = NodeFactory.createURI("http://example.org/a-rather-long-uri-to-be-referenced");
+        BinaryRdfEncoder encoder = new BinaryRdfEncoder();
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+
+        encoder.writeTerm(buffer, node);
+        int length = buffer.readableBytes();
+        encoder.writeTerm(buffer, node);
+        assertEquals(2, buffer.readableBytes() - length);
+
+        BinaryRdfDecoder decoder = new BinaryRdfDecoder();
+        assertEquals(node, decoder.readTerm(buffer));
+        assertEquals(node, decoder.readTerm(buffer));
+    }
+
+
+    public void testUnboundTerm() {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        new BinaryRdfEncoder().writeTerm(buffer, null);
+        assertNull(new BinaryRdfDecoder().readTerm(buffer));
+    }
+
+
+    public void testVarIntRoundTrip() {
+        int[] values = new int[]{0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE};
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        for(int value : values) {
+            BinaryRdfEncoder.writeVarInt(buffer, value);
+        }
+        for(int value : values) {
+            assertEquals(value, BinaryRdfDecoder.readVarInt(buffer));
+        }
+    }
+
+
+    public void testRejectsMissingTerminator() {
+        ChannelBuffer buffer = encode(createGraph());
+        ChannelBuffer truncated = buffer.slice(0, buffer.readableBytes() - 1);
+        try {
+            new BinaryRdfDecoder().readTriples(truncated, GraphFactory.createDefaultGraph());
+            fail("Expected IllegalArgumentException!");
+        } catch (IllegalArgumentException ex) {
+            //expected
+        }
+    }
+
+
+    public void testRejectsUnexpectedTag() {
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer();
+        new BinaryRdfEncoder().writeHeader(buffer, BinaryRdfEncoder.TRIPLES);
+        buffer.writeByte(2);
+        try {
+            new BinaryRdfDecoder().readTriples(buffer, GraphFactory.createDefaultGraph());
+            fail("Expected IllegalArgumentException!");
+        } catch (IllegalArgumentException ex) {
+            //expected
+        }
+    }
+
+
+    public void testRejectsInvalidHeader() {
+        ChannelBuffer buffer = ChannelBuffers.wrappedBuffer(new byte[]{'S', 'B', 'X', 1, 2, 0});
+        try {
+            new BinaryRdfDecoder().readHeader(buffer);
+            fail("Expected IllegalArgumentException!");
+        } catch (IllegalArgumentException ex) {
+            //expected
+        }
+    }
+}
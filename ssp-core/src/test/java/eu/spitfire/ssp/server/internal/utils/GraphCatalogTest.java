@@ -0,0 +1,134 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import junit.framework.TestCase;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for {@link eu.spitfire.ssp.server.internal.utils.GraphCatalog}.
+ */
+public class GraphCatalogTest extends TestCase {
+
+    private static final String NS = "http://example.org/";
+    private static final String SENSOR_TYPE = NS + "Sensor";
+
+    private GraphCatalog catalog;
+
+
+    @Override
+    protected void setUp() {
+        catalog = new GraphCatalog();
+    }
+
+
+    private static Model createGraph(String... subjects) {
+        Model model = ModelFactory.createDefaultModel();
+        for(String subject : subjects) {
+            Resource resource = model.createResource(NS + subject);
+            resource.addProperty(RDF.type, model.createResource(SENSOR_TYPE));
+            resource.addProperty(RDFS.label, subject);
+        }
+        //blank nodes are not listed as subjects
+        model.createResource().addProperty(RDFS.label, "anonymous");
+        return model;
+    }
+
+
+    private static List<String> getNames(List<GraphCatalog.GraphEntry> entries) {
+        String[] names = new String[entries.size()];
+        for(int i = 0; i < names.length; i++) {
+            names[i] = entries.get(i).getName();
+        }
+        return Arrays.asList(names);
+    }
+
+
+    public void testPutNamedGraph() {
+        catalog.putNamedGraph(URI.create(NS + "graph1"), createGraph("a", "b"), "coap");
+
+        assertTrue(catalog.containsNamedGraph(URI.create(NS + "graph1")));
+        assertEquals(1, catalog.getGraphCount());
+        assertEquals(2, catalog.getSubjectCount(null));
+        assertEquals(2, catalog.getSubjectCount(SENSOR_TYPE));
+        assertEquals(0, catalog.getSubjectCount(NS + "Unknown"));
+
+        GraphCatalog.GraphEntry entry = catalog.getGraphs(null, 10).get(0);
+        assertEquals(NS + "graph1", entry.getName());
+        assertEquals(5, entry.getTriples());
+        assertEquals("coap", entry.getBackend());
+    }
+
+
+    public void testReplaceNamedGraphKeepsBackend() {
+        catalog.putNamedGraph(URI.create(NS + "graph1"), createGraph("a", "b"), "coap");
+        catalog.putNamedGraph(URI.create(NS + "graph1"), createGraph("c"), null);
+
+        assertEquals(1, catalog.getGraphCount());
+        assertEquals(Arrays.asList(NS + "graph1"), catalog.getGraphNames(NS + "c"));
+        assertTrue(catalog.getGraphNames(NS + "a").isEmpty());
+        assertEquals(1, catalog.getSubjectCount(SENSOR_TYPE));
+        assertEquals("coap", catalog.getGraphs(null, 10).get(0).getBackend());
+    }
+
+
+    public void testSubjectInSeveralGraphs() {
+        catalog.putNamedGraph(URI.create(NS + "graph2"), createGraph("a"), "files");
+        catalog.putNamedGraph(URI.create(NS + "graph1"), createGraph("a"), "coap");
+
+        assertEquals(Arrays.asList(NS + "graph1", NS + "graph2"), catalog.getGraphNames(NS + "a"));
+        assertEquals(1, catalog.getSubjectCount(SENSOR_TYPE));
+
+        catalog.removeNamedGraph(URI.create(NS + "graph1"));
+        assertEquals(Arrays.asList(NS + "graph2"), catalog.getGraphNames(NS + "a"));
+        assertEquals(1, catalog.getSubjectCount(SENSOR_TYPE));
+
+        assertNotNull(catalog.removeNamedGraph(URI.create(NS + "graph2")));
+        assertTrue(catalog.getGraphNames(NS + "a").isEmpty());
+        assertEquals(0, catalog.getSubjectCount(SENSOR_TYPE));
+        assertEquals(0, catalog.getSubjectCount(null));
+        assertNull(catalog.removeNamedGraph(URI.create(NS + "graph2")));
+    }
+
+
+    public void testGraphPages() {
+        for(int i = 0; i < 7; i++) {
+            catalog.putNamedGraph(URI.create(NS + "graph" + i), createGraph("s" + i), "coap");
+        }
+
+        assertEquals(Arrays.asList(NS + "graph0", NS + "graph1", NS + "graph2"),
+                getNames(catalog.getGraphs(null, 3)));
+        assertEquals(Arrays.asList(NS + "graph3", NS + "graph4", NS + "graph5"),
+                getNames(catalog.getGraphs(NS + "graph2", 3)));
+        assertEquals(Arrays.asList(NS + "graph6"), getNames(catalog.getGraphs(NS + "graph5", 3)));
+        assertTrue(catalog.getGraphs(NS + "graph6", 3).isEmpty());
+        assertTrue(catalog.getGraphs(null, 0).isEmpty());
+    }
+
+
+    public void testSubjectPages() {
+        catalog.putNamedGraph(URI.create(NS + "graph1"), createGraph("a", "b", "c"), "coap");
+        Model other = ModelFactory.createDefaultModel();
+        other.createResource(NS + "room").addProperty(RDFS.label, "room");
+        catalog.putNamedGraph(URI.create(NS + "graph2"), other, "coap");
+
+        List<GraphCatalog.SubjectEntry> page = catalog.getSubjects(SENSOR_TYPE, null, 2);
+        assertEquals(2, page.size());
+        assertEquals(NS + "a", page.get(0).getName());
+        assertEquals(Arrays.asList(NS + "graph1"), page.get(0).getGraphs());
+        assertEquals(NS + "b", page.get(1).getName());
+
+        page = catalog.getSubjects(SENSOR_TYPE, NS + "b", 2);
+        assertEquals(1, page.size());
+        assertEquals(NS + "c", page.get(0).getName());
+
+        assertEquals(4, catalog.getSubjects(null, null, 10).size());
+        assertTrue(catalog.getSubjects(NS + "Unknown", null, 10).isEmpty());
+    }
+}
@@ -0,0 +1,75 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.google.common.base.Charsets;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the parsing of typical CoAP payloads (a few N-Triples) with
+ * {@link eu.spitfire.ssp.server.internal.utils.RdfPayloadParser} (straight from the
+ * {@link org.jboss.netty.buffer.ChannelBuffer}) with the previous parsing, i.e. copying the payload into a byte array
+ * and reading it into a new model with the Turtle reader.
+ *
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=eu.spitfire.ssp.server.internal.utils.RdfPayloadParserBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RdfPayloadParserBenchmark {
+
+    /**
+     * The number of observations contained in the payload (3 triples each)
+     */
+    @Param({"1", "50"})
+    public int observations;
+
+    private ChannelBuffer payload;
+
+    @Setup
+    public void setup() {
+        StringBuilder triples = new StringBuilder();
+        for(int i = 0; i < observations; i++) {
+            String observation = "<coap://[2001:db8::1]/temperature#observation-" + i + ">";
+            triples.append(observation)
+                    .append(" <http://purl.oclc.org/NET/ssnx/ssn#observedBy> <coap://[2001:db8::1]/temperature> .\n")
+                    .append(observation)
+                    .append(" <http://purl.oclc.org/NET/ssnx/ssn#hasValue> ")
+                    .append("\"").append(20 + i * 0.1).append("\"^^<http://www.w3.org/2001/XMLSchema#double> .\n")
+                    .append(observation)
+                    .append(" <http://www.w3.org/2000/01/rdf-schema#label> \"Temperatur\"@de .\n");
+        }
+        payload = ChannelBuffers.wrappedBuffer(triples.toString().getBytes(Charsets.UTF_8));
+    }
+
+    @Benchmark
+    public Model parseFromBuffer() {
+        return RdfPayloadParser.parse(payload, Language.RDF_TURTLE);
+    }
+
+    @Benchmark
+    public Model parseFromByteArray() {
+        byte[] bytes = new byte[payload.readableBytes()];
+        payload.getBytes(payload.readerIndex(), bytes);
+
+        Model model = ModelFactory.createDefaultModel();
+        model.read(new ByteArrayInputStream(bytes), null, Language.RDF_TURTLE.getRdfFormat().getLang().getName());
+        return model;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(RdfPayloadParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,102 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.google.common.base.Charsets;
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import junit.framework.TestCase;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RiotException;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Tests for {@link eu.spitfire.ssp.server.internal.utils.RdfPayloadParser}, in particular for the N-Triples scanner
+ * (fast path) and the fallback to a complete parser.
+ */
+public class RdfPayloadParserTest extends TestCase {
+
+    private static final String N_TRIPLES =
+            "# observation\n" +
+            "<http://example.org/sensor#1> <http://example.org/observes> _:o1 .\n" +
+            "_:o1 <http://example.org/value> \"21.5\"^^<http://www.w3.org/2001/XMLSchema#double> .\n" +
+            "_:o1 <http://example.org/sensor> <http://example.org/sensor#1> .\n" +
+            "<http://example.org/sensor#1> <http://example.org/label> \"Sensor \\\"1\\\"\\n\\u00E4\"@en-GB .\n" +
+            "<http://example.org/sensor#1> <http://example.org/comment> \"plain\" .\n";
+
+    private static final String TURTLE =
+            "@prefix ex: <http://example.org/> .\n" +
+            "ex:sensor ex:value \"21.5\"^^<http://www.w3.org/2001/XMLSchema#double> .\n";
+
+
+    private static ChannelBuffer toBuffer(String payload) {
+        return ChannelBuffers.wrappedBuffer(payload.getBytes(Charsets.UTF_8));
+    }
+
+
+    private static Model parseWithRiot(String payload) {
+        Model model = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(model, new ByteArrayInputStream(payload.getBytes(Charsets.UTF_8)), Lang.TURTLE);
+        return model;
+    }
+
+
+    private static long getCount(String key) {
+        return Long.parseLong(RdfPayloadParser.getStatistics().get(key));
+    }
+
+
+    public void testScansNTriples() {
+        long fastPathParses = getCount("payloads.parsed.fast-path");
+
+        ChannelBuffer payload = toBuffer(N_TRIPLES);
+        int readerIndex = payload.readerIndex();
+        Model model = RdfPayloadParser.parse(payload, Language.RDF_TURTLE);
+
+        assertEquals(fastPathParses + 1, getCount("payloads.parsed.fast-path"));
+        assertEquals(readerIndex, payload.readerIndex());
+        assertEquals(5, model.size());
+        assertTrue(model.isIsomorphicWith(parseWithRiot(N_TRIPLES)));
+    }
+
+
+    public void testUnescapesLiterals() {
+        Model model = RdfPayloadParser.parse(toBuffer(N_TRIPLES), Language.RDF_TURTLE);
+        Literal label = model.listObjectsOfProperty(model.createProperty("http://example.org/label"))
+                .next().asLiteral();
+
+        assertEquals("Sensor \"1\"\nä", label.getLexicalForm());
+        assertEquals("en-GB", label.getLanguage());
+    }
+
+
+    public void testFallsBackToReaderForPrefixes() {
+        long fastPathParses = getCount("payloads.parsed.fast-path");
+        long readerParses = getCount("payloads.parsed.reader");
+
+        Model model = RdfPayloadParser.parse(toBuffer(TURTLE), Language.RDF_TURTLE);
+
+        assertEquals(fastPathParses, getCount("payloads.parsed.fast-path"));
+        assertEquals(readerParses + 1, getCount("payloads.parsed.reader"));
+        assertTrue(model.isIsomorphicWith(parseWithRiot(TURTLE)));
+    }
+
+
+    public void testFallsBackToReaderForIncompleteTriple() {
+        String payload = "<http://example.org/a> <http://example.org/b> <http://example.org/c>";
+        try {
+            RdfPayloadParser.parse(toBuffer(payload), Language.RDF_TURTLE);
+            fail("Expected RiotException!");
+        } catch (RiotException ex) {
+            //expected (the scanner gave up and the reader rejected the payload)
+        }
+    }
+
+
+    public void testParsesEmptyPayload() {
+        assertEquals(0, RdfPayloadParser.parse(toBuffer(" \n# nothing\n"), Language.RDF_TURTLE).size());
+    }
+}
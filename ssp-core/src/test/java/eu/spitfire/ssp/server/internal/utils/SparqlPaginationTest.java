@@ -0,0 +1,168 @@
+package eu.spitfire.ssp.server.internal.utils;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecution;
+import com.hp.hpl.jena.query.QueryExecutionFactory;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.ResultSet;
+import com.hp.hpl.jena.query.ResultSetFormatter;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for {@link eu.spitfire.ssp.server.internal.utils.SparqlPagination}. The pages are retrieved from a Jena
+ * in-memory model and compared with the results of the original query.
+ */
+public class SparqlPaginationTest extends TestCase {
+
+    private static final String NS = "http://example.org/";
+
+    private static final String QUERY = "SELECT ?s ?v WHERE { ?s <" + NS + "value> ?v }";
+
+    //projects ?v only, i.e. solutions of different subjects with the same value have equal keys
+    private static final String QUERY_WITH_TIES = "SELECT ?v WHERE { ?s <" + NS + "value> ?v }";
+
+    private Model model;
+
+
+    @Override
+    protected void setUp() {
+        model = ModelFactory.createDefaultModel();
+        Property value = model.createProperty(NS + "value");
+        for(int i = 0; i < 10; i++) {
+            model.createResource(NS + "sensor" + i).addLiteral(value, model.createTypedLiteral(i % 3));
+        }
+    }
+
+
+    private List<String> executeAll(Query query) {
+        QueryExecution execution = QueryExecutionFactory.create(query, model);
+        try {
+            return toStrings(execution.execSelect());
+        } finally {
+            execution.close();
+        }
+    }
+
+
+    private List<String> executePages(Query query, int pageSize) {
+        List<String> result = new ArrayList<>();
+        ContinuationToken cursor = null;
+        int pages = 0;
+
+        do {
+            Query pageQuery = SparqlPagination.createPageQuery(query, cursor, pageSize);
+            QueryExecution execution = QueryExecutionFactory.create(pageQuery, model);
+            try {
+                SparqlPagination.Page page = SparqlPagination.readPage(execution.execSelect(), cursor, pageSize);
+                List<String> solutions = toStrings(page.getResultSet());
+                assertTrue(solutions.size() <= pageSize);
+                result.addAll(solutions);
+                //the cursor must survive the round trip through the token
+                cursor = page.getNext() == null ? null : ContinuationToken.decode(page.getNext().encode());
+            } finally {
+                execution.close();
+            }
+            assertTrue("Too many pages!", ++pages <= 100);
+        } while(cursor != null);
+
+        return result;
+    }
+
+
+    private static List<String> toStrings(ResultSet resultSet) {
+        List<String> result = new ArrayList<>();
+        while(resultSet.hasNext()) {
+            Binding binding = resultSet.nextBinding();
+            result.add(binding.toString());
+        }
+        return result;
+    }
+
+
+    private static List<String> sorted(List<String> values) {
+        List<String> result = new ArrayList<>(values);
+        Collections.sort(result);
+        return result;
+    }
+
+
+    public void testIsPageable() {
+        assertTrue(SparqlPagination.isPageable(QueryFactory.create(QUERY)));
+        assertFalse(SparqlPagination.isPageable(QueryFactory.create(QUERY + " ORDER BY ?v")));
+        assertFalse(SparqlPagination.isPageable(QueryFactory.create(QUERY + " LIMIT 5")));
+        assertFalse(SparqlPagination.isPageable(QueryFactory.create(
+                "SELECT (COUNT(?s) AS ?c) WHERE { ?s <" + NS + "value> ?v }")));
+        assertFalse(SparqlPagination.isPageable(QueryFactory.create(
+                "CONSTRUCT { ?s ?p ?o } WHERE { ?s ?p ?o }")));
+    }
+
+
+    public void testPagesContainAllSolutionsOnce() {
+        Query query = QueryFactory.create(QUERY);
+        for(int pageSize = 1; pageSize <= 11; pageSize++) {
+            assertEquals("Page size " + pageSize, sorted(executeAll(query)), sorted(executePages(query, pageSize)));
+        }
+    }
+
+
+    public void testPagesContainSolutionsWithEqualKeysOnce() {
+        Query query = QueryFactory.create(QUERY_WITH_TIES);
+        for(int pageSize = 1; pageSize <= 11; pageSize++) {
+            assertEquals("Page size " + pageSize, sorted(executeAll(query)), sorted(executePages(query, pageSize)));
+        }
+    }
+
+
+    public void testLastPageHasNoCursor() {
+        Query query = QueryFactory.create(QUERY);
+        QueryExecution execution = QueryExecutionFactory.create(SparqlPagination.createPageQuery(query, null, 10),
+                model);
+        try {
+            SparqlPagination.Page page = SparqlPagination.readPage(execution.execSelect(), null, 10);
+            assertNull(page.getNext());
+            assertEquals(10, ResultSetFormatter.consume(page.getResultSet()));
+        } finally {
+            execution.close();
+        }
+    }
+
+
+    public void testRejectsCursorOfOtherQuery() {
+        ContinuationToken cursor = new ContinuationToken(Collections.singletonList("1"), 0);
+        try {
+            SparqlPagination.createPageQuery(QueryFactory.create(QUERY), cursor, 5);
+            fail("Expected IllegalArgumentException!");
+        } catch (IllegalArgumentException ex) {
+            //expected
+        }
+    }
+
+
+    public void testRejectsEqualKeysWithBlankNodesAcrossPages() {
+        Property location = model.createProperty(NS + "location");
+        for(int i = 0; i < 3; i++) {
+            model.createResource().addProperty(location, model.createResource(NS + "room"));
+        }
+
+        //all blank nodes have the same (empty) key
+        Query query = QueryFactory.create("SELECT ?s WHERE { ?s <" + NS + "location> <" + NS + "room> }");
+        QueryExecution execution = QueryExecutionFactory.create(SparqlPagination.createPageQuery(query, null, 2),
+                model);
+        try {
+            SparqlPagination.readPage(execution.execSelect(), null, 2);
+            fail("Expected IllegalArgumentException!");
+        } catch (IllegalArgumentException ex) {
+            //expected
+        } finally {
+            execution.close();
+        }
+    }
+}
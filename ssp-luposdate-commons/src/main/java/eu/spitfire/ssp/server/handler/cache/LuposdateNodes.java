@@ -0,0 +1,194 @@
+package eu.spitfire.ssp.server.handler.cache;
+
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.rdf.model.AnonId;
+import lupos.datastructures.items.literal.AnonymousLiteral;
+import lupos.datastructures.items.literal.LanguageTaggedLiteral;
+import lupos.datastructures.items.literal.LazyLiteral;
+import lupos.datastructures.items.literal.Literal;
+import lupos.datastructures.items.literal.LiteralFactory;
+import lupos.datastructures.items.literal.TypedLiteral;
+import lupos.datastructures.items.literal.URILiteral;
+
+import java.net.URISyntaxException;
+
+/**
+ * Converts Jena {@link com.hp.hpl.jena.graph.Node}s into LUPOSDATE
+ * {@link lupos.datastructures.items.literal.Literal}s and vice versa. Blank nodes keep their label in both
+ * directions, i.e. a blank node written with {@link #toLiteral(com.hp.hpl.jena.graph.Node)} can be addressed again
+ * with the same Jena node.
+ */
+public abstract class LuposdateNodes {
+
+    /**
+     * Converts the given {@link com.hp.hpl.jena.graph.Node} into a LUPOSDATE
+     * {@link lupos.datastructures.items.literal.Literal}. The lexical form of literals is escaped the same way as
+     * in N-Triples, i.e. quotes, backslashes and line breaks contained in the lexical form are preserved.
+     *
+     * @param node the {@link com.hp.hpl.jena.graph.Node} to be converted
+     *
+     * @return the {@link lupos.datastructures.items.literal.Literal} representing the given node
+     *
+     * @throws URISyntaxException if the given node is or contains a malformed URI
+     */
+    public static Literal toLiteral(Node node) throws URISyntaxException {
+        if(node.isURI()) {
+            return LiteralFactory.createURILiteral("<" + node.getURI() + ">");
+        }
+
+        if(node.isBlank()) {
+            return LiteralFactory.createAnonymousLiteral("_:" + node.getBlankNodeLabel());
+        }
+
+        String content = "\"" + escape(node.getLiteralLexicalForm()) + "\"";
+        String language = node.getLiteralLanguage();
+        String datatype = node.getLiteralDatatypeURI();
+
+        if(language != null && !language.isEmpty()) {
+            return LiteralFactory.createLanguageTaggedLiteral(content, language);
+        }
+
+        if(datatype != null) {
+            return LiteralFactory.createTypedLiteral(content, "<" + datatype + ">");
+        }
+
+        return LiteralFactory.createLiteral(content);
+    }
+
+
+    /**
+     * Converts the given {@link lupos.datastructures.items.literal.Literal} into a
+     * {@link com.hp.hpl.jena.graph.Node}. URIs, typed literals, language tagged literals and blank nodes are
+     * converted using their components, i.e. without parsing the string representation of the literal.
+     *
+     * @param literal the {@link lupos.datastructures.items.literal.Literal} to be converted
+     *
+     * @return the {@link com.hp.hpl.jena.graph.Node} representing the given literal
+     */
+    public static Node toNode(Literal literal) {
+        if(literal instanceof LazyLiteral) {
+            literal = ((LazyLiteral) literal).getLiteral();
+        }
+
+        if(literal instanceof URILiteral) {
+            return NodeFactory.createURI(((URILiteral) literal).getString());
+        }
+
+        if(literal instanceof TypedLiteral) {
+            TypedLiteral typedLiteral = (TypedLiteral) literal;
+            return NodeFactory.createLiteral(
+                    unescape(unquote(typedLiteral.getContent())),
+                    TypeMapper.getInstance().getSafeTypeByName(typedLiteral.getTypeLiteral().getString())
+            );
+        }
+
+        if(literal instanceof LanguageTaggedLiteral) {
+            LanguageTaggedLiteral languageTaggedLiteral = (LanguageTaggedLiteral) literal;
+            return NodeFactory.createLiteral(
+                    unescape(unquote(languageTaggedLiteral.getContent())),
+                    languageTaggedLiteral.getOriginalLanguage(), false
+            );
+        }
+
+        if(literal instanceof AnonymousLiteral || literal.isBlank()) {
+            String label = literal.originalString();
+            return NodeFactory.createAnon(AnonId.create(label.startsWith("_:") ? label.substring(2) : label));
+        }
+
+        return NodeFactory.createLiteral(unescape(unquote(literal.originalString())));
+    }
+
+
+    /**
+     * Removes the quotes (i.e. <code>"</code>, <code>'</code>, <code>"""</code> or <code>'''</code>) around the given
+     * content of a literal.
+     */
+    static String unquote(String content) {
+        for(String quote : new String[]{"\"\"\"", "'''", "\"", "'"}) {
+            if(content.length() >= 2 * quote.length() && content.startsWith(quote) && content.endsWith(quote)) {
+                return content.substring(quote.length(), content.length() - quote.length());
+            }
+        }
+        return content;
+    }
+
+
+    static String escape(String lexicalForm) {
+        StringBuilder builder = null;
+        for(int i = 0; i < lexicalForm.length(); i++) {
+            char c = lexicalForm.charAt(i);
+            String replacement;
+            switch(c) {
+                case '\\': replacement = "\\\\"; break;
+                case '"': replacement = "\\\""; break;
+                case '\n': replacement = "\\n"; break;
+                case '\r': replacement = "\\r"; break;
+                case '\t': replacement = "\\t"; break;
+                default: replacement = null;
+            }
+
+            if(replacement != null && builder == null) {
+                builder = new StringBuilder(lexicalForm.length() + 16);
+                builder.append(lexicalForm, 0, i);
+            }
+
+            if(builder != null) {
+                if(replacement != null) {
+                    builder.append(replacement);
+                } else {
+                    builder.append(c);
+                }
+            }
+        }
+
+        return builder == null ? lexicalForm : builder.toString();
+    }
+
+
+    /**
+     * Reverts the escaping of {@link #escape(String)} including the numeric escapes (<code>\\uXXXX</code> and
+     * <code>\\UXXXXXXXX</code>) of N-Triples and Turtle.
+     */
+    static String unescape(String content) {
+        int index = content.indexOf('\\');
+        if(index < 0) {
+            return content;
+        }
+
+        StringBuilder builder = new StringBuilder(content.length());
+        builder.append(content, 0, index);
+        while(index < content.length()) {
+            char c = content.charAt(index);
+            if(c != '\\' || index + 1 == content.length()) {
+                builder.append(c);
+                index += 1;
+                continue;
+            }
+
+            char escaped = content.charAt(index + 1);
+            switch(escaped) {
+                case 't': builder.append('\t'); break;
+                case 'n': builder.append('\n'); break;
+                case 'r': builder.append('\r'); break;
+                case 'b': builder.append('\b'); break;
+                case 'f': builder.append('\f'); break;
+                case 'u':
+                case 'U':
+                    int length = escaped == 'u' ? 4 : 8;
+                    if(index + 2 + length <= content.length()) {
+                        builder.appendCodePoint(Integer.parseInt(content.substring(index + 2, index + 2 + length), 16));
+                        index += 2 + length;
+                        continue;
+                    }
+                    builder.append(escaped);
+                    break;
+                default: builder.append(escaped);
+            }
+            index += 2;
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package eu.spitfire.ssp.server.handler.cache;
+
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.ResultSetRewindable;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.sparql.core.ResultBinding;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingFactory;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import lupos.datastructures.bindings.Bindings;
+import lupos.datastructures.items.Variable;
+import lupos.datastructures.items.literal.Literal;
+import lupos.datastructures.queryresult.QueryResult;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Adapter to make a LUPOSDATE {@link lupos.datastructures.queryresult.QueryResult} a Jena
+ * {@link com.hp.hpl.jena.query.ResultSetRewindable} without serializing and re-parsing the results.
+ *
+ * The solutions are read from the one-time iterator of the {@link lupos.datastructures.queryresult.QueryResult}
+ * and converted into the only copy kept by this result set when it is created. Thus, the result set does not refer
+ * to the (shared) dictionary of LUPOSDATE and may be read after the lock of the cache was released.
+ */
+public class LuposdateResultSet implements ResultSetRewindable {
+
+    private final List<String> resultVars;
+    private final List<Binding> solutions;
+    private int position;
+
+    private LuposdateResultSet(List<String> resultVars, List<Binding> solutions) {
+        this.resultVars = resultVars;
+        this.solutions = solutions;
+        this.position = 0;
+    }
+
+    /**
+     * Returns a {@link com.hp.hpl.jena.query.ResultSetRewindable} containing the solutions of the given
+     * {@link lupos.datastructures.queryresult.QueryResult}. This method must be called while the evaluator of the
+     * given result is still protected from concurrent writes.
+     *
+     * @param queryResult the {@link lupos.datastructures.queryresult.QueryResult} to be converted
+     *
+     * @return a {@link com.hp.hpl.jena.query.ResultSetRewindable} containing the solutions of the given
+     * {@link lupos.datastructures.queryresult.QueryResult}
+     */
+    public static LuposdateResultSet create(QueryResult queryResult) {
+        List<Variable> variables = new ArrayList<>(queryResult.getVariableSet());
+        List<Var> vars = new ArrayList<>(variables.size());
+        List<String> resultVars = new ArrayList<>(variables.size());
+        for(Variable variable : variables) {
+            Var var = Var.alloc(getName(variable));
+            vars.add(var);
+            resultVars.add(var.getVarName());
+        }
+
+        List<Binding> solutions = new ArrayList<>(queryResult.size());
+        Iterator<Bindings> iterator = queryResult.oneTimeIterator();
+        while(iterator.hasNext()) {
+            Bindings bindings = iterator.next();
+            BindingMap binding = BindingFactory.create();
+            for(int i = 0; i < vars.size(); i++) {
+                Literal literal = bindings.get(variables.get(i));
+                if(literal != null) {
+                    binding.add(vars.get(i), LuposdateNodes.toNode(literal));
+                }
+            }
+            solutions.add(binding);
+        }
+
+        return new LuposdateResultSet(resultVars, solutions);
+    }
+
+
+    private static String getName(Variable variable) {
+        String name = variable.getName();
+        return name.startsWith("?") || name.startsWith("$") ? name.substring(1) : name;
+    }
+
+
+    @Override
+    public boolean hasNext() {
+        return position < solutions.size();
+    }
+
+    @Override
+    public QuerySolution next() {
+        return nextSolution();
+    }
+
+    @Override
+    public QuerySolution nextSolution() {
+        return new ResultBinding(null, nextBinding());
+    }
+
+    @Override
+    public Binding nextBinding() {
+        if(!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return solutions.get(position++);
+    }
+
+    @Override
+    public int getRowNumber() {
+        return position;
+    }
+
+    @Override
+    public List<String> getResultVars() {
+        return resultVars;
+    }
+
+    @Override
+    public Model getResourceModel() {
+        return null;
+    }
+
+    @Override
+    public void reset() {
+        position = 0;
+    }
+
+    @Override
+    public int size() {
+        return solutions.size();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("LuposdateResultSet is read-only!");
+    }
+}
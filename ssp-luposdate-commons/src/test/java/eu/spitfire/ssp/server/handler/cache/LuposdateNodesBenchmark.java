@@ -0,0 +1,75 @@
+package eu.spitfire.ssp.server.handler.cache;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.NodeFactory;
+import com.hp.hpl.jena.sparql.util.NodeFactoryExtra;
+import lupos.datastructures.items.literal.Literal;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the conversion of LUPOSDATE {@link lupos.datastructures.items.literal.Literal}s into Jena
+ * {@link com.hp.hpl.jena.graph.Node}s via the components of the literals
+ * ({@link LuposdateNodes#toNode(lupos.datastructures.items.literal.Literal)}) with the previous conversion that
+ * parsed the string representation of the literals.
+ *
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=eu.spitfire.ssp.server.handler.cache.LuposdateNodesBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LuposdateNodesBenchmark {
+
+    private Literal[] literals;
+
+    @Setup
+    public void setup() throws URISyntaxException {
+        Node[] nodes = new Node[]{
+                NodeFactory.createURI("http://example.org/sensors/temperature-sensor-01#observation"),
+                NodeFactory.createLiteral("21.5", XSDDatatype.XSDdouble),
+                NodeFactory.createLiteral("2015-06-01T12:00:00Z", XSDDatatype.XSDdateTime),
+                NodeFactory.createLiteral("Temperatursensor im \"Raum\" 42", "de", false),
+                NodeFactory.createLiteral("plain literal"),
+                NodeFactory.createAnon()
+        };
+
+        this.literals = new Literal[nodes.length];
+        for(int i = 0; i < nodes.length; i++) {
+            this.literals[i] = LuposdateNodes.toLiteral(nodes[i]);
+        }
+    }
+
+    @Benchmark
+    public void convertViaComponents(Blackhole blackhole) {
+        for(Literal literal : literals) {
+            blackhole.consume(LuposdateNodes.toNode(literal));
+        }
+    }
+
+    @Benchmark
+    public void convertViaParser(Blackhole blackhole) {
+        for(Literal literal : literals) {
+            String value = literal.originalString();
+            if(literal.isBlank()) {
+                blackhole.consume(NodeFactory.createAnon());
+            } else {
+                blackhole.consume(NodeFactoryExtra.parseNode(value));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LuposdateNodesBenchmark.class.getSimpleName()).build()).run();
+    }
+}
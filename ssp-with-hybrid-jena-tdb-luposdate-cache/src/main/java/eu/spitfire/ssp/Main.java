@@ -57,9 +57,10 @@ public class Main {
                 }
 
                 String tdbDirectory = config.getString("cache.tdb.directory");
+                int readerThreads = config.getInt("cache.threads.readers", Runtime.getRuntime().availableProcessors());
 
                 return new HybridJenaTdbLuposdateSemanticCache(
-                    this.getIoExecutor(), this.getInternalTasksExecutor(), tdbDirectory, ontologyFiles
+                    this.getIoExecutor(), this.getInternalTasksExecutor(), tdbDirectory, ontologyFiles, readerThreads
                 );
             }
         };
@@ -2,6 +2,7 @@ package eu.spitfire.ssp.server.handler.cache;
 
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.*;
+import com.hp.hpl.jena.graph.Triple;
 import com.hp.hpl.jena.ontology.OntModel;
 import com.hp.hpl.jena.ontology.OntModelSpec;
 import com.hp.hpl.jena.query.*;
@@ -9,6 +10,7 @@ import com.hp.hpl.jena.rdf.model.InfModel;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.ModelFactory;
 import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
 import com.hp.hpl.jena.reasoner.Reasoner;
 import com.hp.hpl.jena.reasoner.ReasonerRegistry;
 import com.hp.hpl.jena.shared.impl.JenaParameters;
@@ -16,13 +18,13 @@ import com.hp.hpl.jena.tdb.TDB;
 import com.hp.hpl.jena.tdb.TDBFactory;
 import eu.spitfire.ssp.server.handler.SemanticCache;
 import eu.spitfire.ssp.server.internal.utils.Converter;
+import eu.spitfire.ssp.server.internal.utils.SpatialIndex;
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringGraph;
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
 import eu.spitfire.ssp.server.internal.wrapper.QueryExecutionResults;
 import lupos.datastructures.items.literal.LiteralFactory;
 import lupos.datastructures.items.literal.URILiteral;
 import lupos.datastructures.queryresult.QueryResult;
-import lupos.endpoint.server.format.XMLFormatter;
 import lupos.engine.evaluators.CommonCoreQueryEvaluator;
 import lupos.engine.evaluators.MemoryIndexQueryEvaluator;
 import lupos.engine.evaluators.QueryEvaluator;
@@ -35,10 +37,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -58,22 +64,64 @@ public class HybridJenaTdbLuposdateSemanticCache extends SemanticCache {
 
     private Dataset dataset;
 	private Reasoner reasoner;
+	private QueryRouter queryRouter;
+	private SpatialIndex spatialIndex;
+
+	private static final String UNION_GRAPH = "urn:x-arq:UnionGraph";
+	private static final int INFERENCE_INTERVAL_SECONDS = 30;
 
 	private ReentrantReadWriteLock lock;
-	private QueryEvaluator queryEvaluator;
+	private volatile MemoryIndexQueryEvaluator queryEvaluator;
+
+	//evaluators sharing the dataset of the evaluator above to process queries concurrently
+	private List<MemoryIndexQueryEvaluator> readerEvaluators;
+	private BlockingQueue<MemoryIndexQueryEvaluator> readers;
+	//guards all additions to the (process-wide) LUPOSDATE dictionary, i.e. query compilation and index updates
+	private final Object dictionaryMonitor = new Object();
+
+	//the inferred triples contained in the evaluator (guarded by lock)
+	private Model inferredTriples;
+	private volatile boolean inferenceRequired;
 
 	private ScheduledExecutorService cacheTasksExecutor;
+	private ScheduledExecutorService inferenceExecutor;
+	private ListeningExecutorService readerExecutor;
 
 	public HybridJenaTdbLuposdateSemanticCache(ExecutorService ioExecutor, ScheduledExecutorService internalTasksExecutor,
 											   String tdbDirectory, Set<String> ontologyPaths) {
 
+		this(ioExecutor, internalTasksExecutor, tdbDirectory, ontologyPaths, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new instance of {@link eu.spitfire.ssp.server.handler.cache.HybridJenaTdbLuposdateSemanticCache}.
+	 *
+	 * @param ioExecutor the {@link java.util.concurrent.ExecutorService} for I/O tasks
+	 * @param internalTasksExecutor the {@link java.util.concurrent.ScheduledExecutorService} for internal tasks
+	 * @param tdbDirectory the directory to store the TDB files
+	 * @param ontologyPaths the paths of the ontology files for the reasoner
+	 * @param readerThreads the number of threads to process read-only operations (i.e. SPARQL queries and graph
+	 *                      lookups) concurrently. All write operations are serialized on a single thread.
+	 */
+	public HybridJenaTdbLuposdateSemanticCache(ExecutorService ioExecutor, ScheduledExecutorService internalTasksExecutor,
+											   String tdbDirectory, Set<String> ontologyPaths, int readerThreads) {
+
 		super(ioExecutor, internalTasksExecutor);
 
+		this.readerExecutor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(readerThreads,
+				new ThreadFactoryBuilder().setNameFormat("SSP Cache Reader #%d").build()
+		));
+
 		this.cacheTasksExecutor = Executors.newSingleThreadScheduledExecutor(
 				new ThreadFactoryBuilder().setNameFormat("SSP Cache Thread #%d").build()
 		);
 
+		this.inferenceExecutor = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setNameFormat("SSP Luposdate Inference Thread #%d").build()
+		);
+
 		this.lock = new ReentrantReadWriteLock();
+		this.inferredTriples = ModelFactory.createDefaultModel();
 
         //Enable acceptence of literals having an unknown XSD datatype
         JenaParameters.enableSilentAcceptanceOfUnknownDatatypes = true;
@@ -115,91 +163,106 @@ public class HybridJenaTdbLuposdateSemanticCache extends SemanticCache {
 		this.reasoner = ReasonerRegistry.getOWLReasoner().bindSchema(ontologyModel);
 		LOG.info("Reasoner created!");
 
-		//initializeQueryEvaluator();
+		this.queryRouter = new QueryRouter(ontologyModel);
+		this.spatialIndex = new SpatialIndex();
+
+		initializeQueryEvaluator(readerThreads);
 
-		getCacheTasksExecutor().schedule(new InferenceTask(), 30, TimeUnit.SECONDS);
+		this.inferenceExecutor.scheduleWithFixedDelay(
+				new InferenceTask(), INFERENCE_INTERVAL_SECONDS, INFERENCE_INTERVAL_SECONDS, TimeUnit.SECONDS
+		);
 	}
 
-	private void initializeQueryEvaluator() {
+	private void initializeQueryEvaluator(int readerThreads) {
 		try {
 			long start = System.currentTimeMillis();
 
 			GeoFunctionRegisterer.registerGeoFunctions();
 			LOG.info("GeoFunctions registered ({} ms)", System.currentTimeMillis() - start);
-			queryEvaluator = new MemoryIndexQueryEvaluator();
-
-			queryEvaluator.setupArguments();
-			queryEvaluator.getArgs().set("result", lupos.datastructures.queryresult.QueryResult.TYPE.MEMORY);
-			queryEvaluator.getArgs().set("codemap", LiteralFactory.MapType.TRIEMAP);
-			queryEvaluator.getArgs().set("distinct", CommonCoreQueryEvaluator.DISTINCT.HASHSET);
-			queryEvaluator.getArgs().set("join", CommonCoreQueryEvaluator.JOIN.HASHMAPINDEX);
-			queryEvaluator.getArgs().set("optional", CommonCoreQueryEvaluator.JOIN.HASHMAPINDEX);
-			queryEvaluator.getArgs().set("datastructure", Indices.DATA_STRUCT.HASHMAP);
 
-			LOG.info("QueryEvaluator created ({})", System.currentTimeMillis() - start);
-
-			queryEvaluator.init();
-
-			LOG.info("QueryEvaluator initialized ({})", System.currentTimeMillis() - start);
+			//the readers must be initialized before any data is inserted (they share the dataset of the evaluator)
+			this.readerEvaluators = new ArrayList<>(readerThreads);
+			for(int i = 0; i < readerThreads; i++) {
+				this.readerEvaluators.add(createQueryEvaluator(null));
+			}
 
-			Collection<URILiteral> uriLiterals = new LinkedList<>();
-			uriLiterals.add(LiteralFactory.createStringURILiteral("<inlinedata:>"));
-			queryEvaluator.prepareInputData(uriLiterals, new LinkedList<>());
+			this.queryEvaluator = createQueryEvaluator("");
+			this.readers = new ArrayBlockingQueue<>(readerThreads);
+			for(MemoryIndexQueryEvaluator reader : this.readerEvaluators) {
+				reader.setDataset(this.queryEvaluator.getDataset());
+				this.readers.add(reader);
+			}
+			LOG.info("QueryEvaluator and {} readers initialized ({} ms)", readerThreads,
+					System.currentTimeMillis() - start);
 		} catch (Exception ex) {
 			LOG.error("Could not initialize Query Evaluator...", ex);
 		}
 	}
 
-	@Override
-	public ListenableFuture<ExpiringNamedGraph> getNamedGraph(URI graphName) {
-
-        SettableFuture<ExpiringNamedGraph> resultFuture = SettableFuture.create();
-
-        try {
-			lockDataset();
-
-			if (graphName == null){
-				LOG.error("Resource URI was NULL!");
-                resultFuture.set(null);
-                return resultFuture;
-            }
-
-			Model dbModel = dataset.getNamedModel(graphName.toString());
-
-			if (dbModel.isEmpty()) {
-				LOG.warn("No cached status found for resource {}", graphName);
-				resultFuture.set(null);
-			}
+	/**
+	 * Creates a new {@link lupos.engine.evaluators.MemoryIndexQueryEvaluator} containing the given data
+	 * (formatted as TURTLE). If the given data is <code>null</code> no input data is prepared, i.e. the
+	 * evaluator is supposed to get the dataset of another evaluator.
+	 */
+	private static MemoryIndexQueryEvaluator createQueryEvaluator(String inlineData) throws Exception {
+		MemoryIndexQueryEvaluator evaluator = new MemoryIndexQueryEvaluator();
+
+		evaluator.setupArguments();
+		evaluator.getArgs().set("result", lupos.datastructures.queryresult.QueryResult.TYPE.MEMORY);
+		evaluator.getArgs().set("codemap", LiteralFactory.MapType.TRIEMAP);
+		evaluator.getArgs().set("distinct", CommonCoreQueryEvaluator.DISTINCT.HASHSET);
+		evaluator.getArgs().set("join", CommonCoreQueryEvaluator.JOIN.HASHMAPINDEX);
+		evaluator.getArgs().set("optional", CommonCoreQueryEvaluator.JOIN.HASHMAPINDEX);
+		evaluator.getArgs().set("datastructure", Indices.DATA_STRUCT.HASHMAP);
+
+		evaluator.init();
+
+		if(inlineData != null) {
+			Collection<URILiteral> uriLiterals = new LinkedList<>();
+			uriLiterals.add(LiteralFactory.createStringURILiteral("<inlinedata:" + inlineData + ">"));
+			evaluator.prepareInputData(uriLiterals, new LinkedList<>());
+		}
 
-            else{
-                LOG.info("Cached status found for resource {}", graphName);
+		return evaluator;
+	}
 
-				ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-				RDFDataMgr.write(outputStream, dbModel, RDFFormat.TURTLE);
+	@Override
+	public ListenableFuture<ExpiringNamedGraph> getNamedGraph(final URI graphName) {
+
+		return this.readerExecutor.submit(new Callable<ExpiringNamedGraph>() {
+			@Override
+			public ExpiringNamedGraph call() throws Exception {
+				if (graphName == null){
+					LOG.error("Resource URI was NULL!");
+					return null;
+				}
 
-				ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
-				Model outModel = ModelFactory.createDefaultModel();
-				RDFDataMgr.read(outModel, inputStream, RDFFormat.TURTLE.getLang());
-				inputStream.close();
+				try {
+					lockDatasetForReading();
+					Model dbModel = dataset.getNamedModel(graphName.toString());
 
-                resultFuture.set(new ExpiringNamedGraph(graphName, outModel, new Date()));
-            }
+					if (dbModel.isEmpty()) {
+						LOG.warn("No cached status found for resource {}", graphName);
+						return null;
+					}
 
-            return resultFuture;
-		} catch(Exception ex){
-            resultFuture.setException(ex);
-            return resultFuture;
-        } finally {
-			unlockDataset();
-		}
+					LOG.info("Cached status found for resource {}", graphName);
+					Model outModel = ModelFactory.createDefaultModel();
+					outModel.setNsPrefixes(dbModel.getNsPrefixMap());
+					outModel.add(dbModel);
 
+					return new ExpiringNamedGraph(graphName, outModel, new Date());
+				} finally {
+					unlockDatasetForReading();
+				}
+			}
+		});
 	}
 
 	@Override
 	public ListenableFuture<ExpiringGraph> getDefaultGraph() {
-		SettableFuture<ExpiringGraph> future = SettableFuture.create();
+		final SettableFuture<ExpiringGraph> future = SettableFuture.create();
 	    try{
-	    	lockDataset();
 			Query query = QueryFactory.create("SELECT ?s ?p ?o WHERE {?s ?p ?o}");
 			ListenableFuture<QueryExecutionResults> resultsFuture = processSparqlQuery(query);
 
@@ -218,31 +281,25 @@ public class HybridJenaTdbLuposdateSemanticCache extends SemanticCache {
 		} catch(Exception ex) {
 			LOG.error("Could not read default (union) graph: {}", ex);
 			future.setException(ex);
-		} finally {
-			unlockDataset();
 		}
 
 		return future;
 	}
 
 	@Override
-    public ListenableFuture<Boolean> containsNamedGraph(URI graphName) {
-
-        SettableFuture<Boolean> resultFuture = SettableFuture.create();
-
-        try{
-			lockDataset();
-            //dataset.begin(ReadWrite.READ);
-            Boolean result = !dataset.getNamedModel(graphName.toString()).isEmpty();
-            resultFuture.set(result);
-            return resultFuture;
-        } catch(Exception ex){
-            resultFuture.setException(ex);
-            return resultFuture;
-        } finally {
-			unlockDataset();
-            //dataset.end();
-        }
+    public ListenableFuture<Boolean> containsNamedGraph(final URI graphName) {
+
+		return this.readerExecutor.submit(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws Exception {
+				try {
+					lockDatasetForReading();
+					return !dataset.getNamedModel(graphName.toString()).isEmpty();
+				} finally {
+					unlockDatasetForReading();
+				}
+			}
+		});
     }
 
 
@@ -254,11 +311,13 @@ public class HybridJenaTdbLuposdateSemanticCache extends SemanticCache {
         try {
 			lockDataset();
             long start = System.currentTimeMillis();
-//			dataset.removeNamedModel(graphName.toString());
-//			LOG.info("Removed old graph \"{}\" (duration: {} ms)", graphName, System.currentTimeMillis() - start);
+			Model oldGraph = ModelFactory.createDefaultModel().add(dataset.getNamedModel(graphName.toString()));
 			dataset.replaceNamedModel(graphName.toString(), namedGraph);
 			LOG.info("Deleted old and inserted new graph \"{}\" ({} ms)", graphName, System.currentTimeMillis() - start);
 
+			publishChanges(new TripleChanges(namedGraph.difference(oldGraph), oldGraph.difference(namedGraph)));
+			spatialIndex.putNamedGraph(graphName, namedGraph);
+
             resultFuture.set(null);
             return resultFuture;
 		} catch(Exception ex){
@@ -288,8 +347,12 @@ public class HybridJenaTdbLuposdateSemanticCache extends SemanticCache {
         try {
 			this.lock.writeLock().lock();
             //dataset.begin(ReadWrite.WRITE);
+			Model oldGraph = ModelFactory.createDefaultModel().add(dataset.getNamedModel(graphName.toString()));
 			dataset.removeNamedModel(graphName.toString());
 			dataset.commit();
+
+			publishChanges(new TripleChanges(ModelFactory.createDefaultModel(), oldGraph));
+			spatialIndex.removeNamedGraph(graphName);
 			LOG.debug("Removed status for resource {}", graphName);
             resultFuture.set(null);
             return resultFuture;
@@ -307,73 +370,119 @@ public class HybridJenaTdbLuposdateSemanticCache extends SemanticCache {
 		return this.cacheTasksExecutor;
 	}
 
-	private ResultSet toResultSet(final QueryResult queryResult) throws IOException {
-		long start = System.currentTimeMillis();
-
-		XMLFormatter formatter = new XMLFormatter();
-
-		//Solution with streams
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-		formatter.writeResult(outputStream, queryResult.getVariableSet(), queryResult);
-		ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
-		ResultSet resultSet = ResultSetFactory.fromXML(inputStream);
-
-		LOG.debug("Time to re-format result-set: {} millis", System.currentTimeMillis() - start);
+	@Override
+	public Map<String, String> getStatistics() {
+		Map<String, String> statistics = super.getStatistics();
+		statistics.putAll(this.queryRouter.getStatistics());
+		statistics.putAll(this.spatialIndex.getStatistics());
+		return statistics;
+	}
 
-		return resultSet;
+	private ResultSet toResultSet(final QueryResult queryResult) {
+		return LuposdateResultSet.create(queryResult);
 	}
 
     @Override
-	public ListenableFuture<QueryExecutionResults> processSparqlQuery(final Query sparqlQuery) {
+	public ListenableFuture<QueryExecutionResults> processSparqlQuery(Query query) {
 
-		if(sparqlQuery.hasDatasetDescription() || sparqlQuery.toString(Syntax.syntaxSPARQL).contains("GRAPH")) {
-			return processSparqlQueryWithGraphKeyword(sparqlQuery);
-		}
+		final Query sparqlQuery = this.spatialIndex.rewrite(query);
+		final QueryRouter.Route route = this.queryRouter.route(sparqlQuery);
 
-		SettableFuture<QueryExecutionResults> resultFuture = SettableFuture.create();
-		try {
-			lockDataset();
-			long start = System.currentTimeMillis();
-			QueryResult result = queryEvaluator.getResult(sparqlQuery.toString(Syntax.syntaxSPARQL));
-			long duration = System.currentTimeMillis() - start;
-			LOG.debug("Query Execution finished (duration: {} ms)", duration);
-			ResultSet resultSet = toResultSet(result);
-			resultFuture.set(new QueryExecutionResults(duration, resultSet));
-		} catch (Exception ex) {
-			LOG.error("Error while processing query:\n{}", sparqlQuery);
-			resultFuture.setException(ex);
-		} finally {
-			unlockDataset();
+		ListenableFuture<QueryExecutionResults> resultsFuture;
+		if(route.getEngine() == QueryRouter.Engine.JENA_TDB) {
+			resultsFuture = processSparqlQueryWithJena(sparqlQuery);
+		} else {
+			resultsFuture = processSparqlQueryWithLuposdate(sparqlQuery);
 		}
 
-		return resultFuture;
+		Futures.addCallback(resultsFuture, new FutureCallback<QueryExecutionResults>() {
+			@Override
+			public void onSuccess(QueryExecutionResults results) {
+				queryRouter.recordLatency(route, results.getDuration());
+			}
+
+			@Override
+			public void onFailure(Throwable throwable) {
+				LOG.warn("Query routed to {} (reason: {}) failed!", route.getEngine(), route.getReason());
+			}
+		});
+
+		return resultsFuture;
 	}
 
 
-	private ListenableFuture<QueryExecutionResults> processSparqlQueryWithGraphKeyword(final Query sparqlQuery) {
-		SettableFuture<QueryExecutionResults> resultFuture = SettableFuture.create();
-		QueryExecution queryExecution = null;
-		try {
-			lockDataset();
-			LOG.info("Start SPARQL query processing:\n{}", sparqlQuery.toString(Syntax.syntaxSPARQL));
-			long start = System.currentTimeMillis();
-			queryExecution = QueryExecutionFactory.create(sparqlQuery, dataset);
+	private ListenableFuture<QueryExecutionResults> processSparqlQueryWithLuposdate(final Query sparqlQuery) {
 
-			ResultSet resultSet = queryExecution.execSelect();
-			long duration = System.nanoTime() - start;
-			resultFuture.set(new QueryExecutionResults(duration/1000000, ResultSetFactory.copyResults(resultSet)));
-			LOG.info("SPARQL query successfully executed (duration: {} ns.)", duration);
+		return this.readerExecutor.submit(new Callable<QueryExecutionResults>() {
+			@Override
+			public QueryExecutionResults call() throws Exception {
+				MemoryIndexQueryEvaluator reader = readers == null ? null : readers.poll();
+				if(reader == null) {
+					LOG.error("No Luposdate reader available (initialization failed)!");
+					throw new IllegalStateException("No Luposdate reader available!");
+				}
 
-			return resultFuture;
-		} catch (Exception ex) {
-			resultFuture.setException(ex);
-			return resultFuture;
-		} finally {
-			if(queryExecution != null) {
-				queryExecution.close();
+				try {
+					lockDatasetForReading();
+					long start = System.currentTimeMillis();
+					QueryResult result = getResult(reader, sparqlQuery.toString(Syntax.syntaxSPARQL));
+					//convert the result while the lock is held (it refers to the shared dictionary)
+					ResultSet resultSet = toResultSet(result);
+					long duration = System.currentTimeMillis() - start;
+					LOG.debug("Query Execution finished (duration: {} ms)", duration);
+					return new QueryExecutionResults(duration, resultSet);
+				} catch (Exception ex) {
+					LOG.error("Error while processing query:\n{}", sparqlQuery);
+					throw ex;
+				} finally {
+					unlockDatasetForReading();
+					readers.offer(reader);
+				}
 			}
-			unlockDataset();
+		});
+	}
+
+
+	private QueryResult getResult(QueryEvaluator reader, String query) throws Exception {
+		//compilation may add new literals to the (shared) dictionary
+		synchronized (dictionaryMonitor) {
+			reader.compileQuery(query);
+			reader.logicalOptimization();
+			reader.physicalOptimization();
 		}
+		return reader.getResult();
+	}
+
+
+	private ListenableFuture<QueryExecutionResults> processSparqlQueryWithJena(final Query sparqlQuery) {
+
+		return this.readerExecutor.submit(new Callable<QueryExecutionResults>() {
+			@Override
+			public QueryExecutionResults call() throws Exception {
+				QueryExecution queryExecution = null;
+				try {
+					lockDatasetForReading();
+					LOG.info("Start SPARQL query processing:\n{}", sparqlQuery.toString(Syntax.syntaxSPARQL));
+					long start = System.currentTimeMillis();
+					queryExecution = QueryExecutionFactory.create(sparqlQuery, dataset);
+					if(!sparqlQuery.hasDatasetDescription()) {
+						//the default graph is empty, i.e. patterns outside of GRAPH refer to the union graph
+						queryExecution.getContext().set(TDB.symUnionDefaultGraph, true);
+					}
+
+					ResultSet resultSet = ResultSetFactory.copyResults(queryExecution.execSelect());
+					long duration = System.currentTimeMillis() - start;
+					LOG.info("SPARQL query successfully executed (duration: {} ms)", duration);
+
+					return new QueryExecutionResults(duration, resultSet);
+				} finally {
+					if(queryExecution != null) {
+						queryExecution.close();
+					}
+					unlockDatasetForReading();
+				}
+			}
+		});
 	}
 
 
@@ -385,64 +494,176 @@ public class HybridJenaTdbLuposdateSemanticCache extends SemanticCache {
 		this.lock.writeLock().unlock();
 	}
 
-	private class InferenceTask implements Runnable {
-		@Override
-		public void run() {
-			try {
-				lockDataset();
+	private void lockDatasetForReading(){
+		this.lock.readLock().lock();
+	}
 
-				long start = System.currentTimeMillis();
-				InfModel infModel = ModelFactory.createInfModel(reasoner, dataset.getNamedModel("urn:x-arq:UnionGraph"));
+	private void unlockDatasetForReading(){
+		this.lock.readLock().unlock();
+	}
 
-				LOG.info("InfModel created ({} ms)", System.currentTimeMillis() - start);
-				start = System.currentTimeMillis();
+	/**
+	 * Applies the given changes to the index of the {@link lupos.engine.evaluators.QueryEvaluator}. This method must
+	 * be called while holding the write lock and after the changes were applied to the TDB dataset.
+	 */
+	private void publishChanges(TripleChanges changes) {
+		if(changes.isEmpty()) {
+			return;
+		}
 
-//				File tmp = File.createTempFile("jena-inf-", ".tmp");
-//				FileOutputStream outputStream = new FileOutputStream(tmp);
-				ByteArrayOutputStream outputStream = new ByteArrayOutputStream(4194304);
+		//a triple may be removed from one graph but still be contained in another one (or be inferred)
+		changes.retainRemovedIfNotContainedIn(dataset.getNamedModel(UNION_GRAPH), this.inferredTriples);
+		changes.applyTo(this.queryEvaluator.getDataset().getDefaultGraphIndices(), this.dictionaryMonitor);
 
-				RDFDataMgr.write(outputStream, infModel, RDFFormat.TURTLE_BLOCKS);
-				LOG.info("InfModel written to Output Stream ({} ms)", System.currentTimeMillis() - start);
-				start = System.currentTimeMillis();
+		//inferred triples are updated by the next inference run
+		this.inferenceRequired = true;
+	}
+
+
+	/**
+	 * A set of added and removed triples (of the union graph) to be applied to the Luposdate index. The changes are
+	 * written into the indices directly (i.e. without SPARQL updates) and blank nodes keep their labels (see
+	 * {@link eu.spitfire.ssp.server.handler.cache.LuposdateNodes}). Thus, a removed triple with blank nodes matches
+	 * the indexed triple of the graph it was removed from and no rebuild of the index is required.
+	 */
+	private static class TripleChanges {
+
+		private List<Triple> added;
+		private List<Triple> removed;
+
+		private TripleChanges(Model added, Model removed) {
+			this.added = toTriples(added);
+			this.removed = toTriples(removed);
+		}
+
+		private static List<Triple> toTriples(Model model) {
+			List<Triple> result = new ArrayList<>((int) model.size());
+			StmtIterator iterator = model.listStatements();
+			while(iterator.hasNext()) {
+				result.add(iterator.nextStatement().asTriple());
+			}
+			return result;
+		}
 
-				GeoFunctionRegisterer.registerGeoFunctions();
-				queryEvaluator = new MemoryIndexQueryEvaluator();
-
-				queryEvaluator.setupArguments();
-				queryEvaluator.getArgs().set("result", lupos.datastructures.queryresult.QueryResult.TYPE.MEMORY);
-				queryEvaluator.getArgs().set("codemap", LiteralFactory.MapType.TRIEMAP);
-				queryEvaluator.getArgs().set("distinct", CommonCoreQueryEvaluator.DISTINCT.HASHSET);
-				queryEvaluator.getArgs().set("join", CommonCoreQueryEvaluator.JOIN.HASHMAPINDEX);
-				queryEvaluator.getArgs().set("optional", CommonCoreQueryEvaluator.JOIN.HASHMAPINDEX);
-				queryEvaluator.getArgs().set("datastructure", Indices.DATA_STRUCT.HASHMAP);
-
-				queryEvaluator.init();
-
-				Collection<URILiteral> uriLiterals = new LinkedList<>();
-//				uriLiterals.add(LiteralFactory.createStringURILiteral(
-//								"<inlinedata: " + Files.toString(tmp, Charset.defaultCharset()) + ">")
-//				);
-				uriLiterals.add(LiteralFactory.createStringURILiteral(
-								"<inlinedata: " + outputStream.toString() + ">")
+		private boolean isEmpty() {
+			return added.isEmpty() && removed.isEmpty();
+		}
+
+		/**
+		 * Retains only the removed triples that are not contained in any of the given models.
+		 */
+		private void retainRemovedIfNotContainedIn(Model... models) {
+			List<Triple> retained = new ArrayList<>(removed.size());
+			for(Triple triple : removed) {
+				if(!isContainedIn(triple, models)) {
+					retained.add(triple);
+				}
+			}
+			this.removed = retained;
+		}
+
+		private static boolean isContainedIn(Triple triple, Model... models) {
+			for(Model model : models) {
+				if(model.getGraph().contains(triple)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Removes the removed triples from and adds the added triples to the given indices. Triples that can not be
+		 * converted (i.e. contain malformed URIs) are skipped as they could not be indexed at all.
+		 */
+		private void applyTo(Collection<Indices> indices, Object dictionaryMonitor) {
+			synchronized (dictionaryMonitor) {
+				for(Triple triple : removed) {
+					lupos.datastructures.items.Triple luposTriple = toLuposTriple(triple);
+					if(luposTriple != null) {
+						for(Indices index : indices) {
+							index.remove(luposTriple);
+						}
+					}
+				}
+
+				for(Triple triple : added) {
+					lupos.datastructures.items.Triple luposTriple = toLuposTriple(triple);
+					if(luposTriple != null) {
+						for(Indices index : indices) {
+							index.add(luposTriple);
+						}
+					}
+				}
+			}
+		}
+
+		private static lupos.datastructures.items.Triple toLuposTriple(Triple triple) {
+			try {
+				return new lupos.datastructures.items.Triple(
+						LuposdateNodes.toLiteral(triple.getSubject()),
+						LuposdateNodes.toLiteral(triple.getPredicate()),
+						LuposdateNodes.toLiteral(triple.getObject())
 				);
+			} catch (URISyntaxException ex) {
+				LOG.warn("Could not index triple {} (malformed URI)!", triple);
+				return null;
+			}
+		}
+	}
 
-				LOG.info("New Query Evaluator created ({} ms)", System.currentTimeMillis() - start);
-				start = System.currentTimeMillis();
 
-				queryEvaluator.prepareInputData(uriLiterals, new LinkedList<>());
-				LOG.info("Inference task finished ({} ms)", System.currentTimeMillis() - start);
+	/**
+	 * Runs the reasoner on a snapshot of the union graph and applies the difference between the new and the previous
+	 * inferred triples to the running {@link lupos.engine.evaluators.QueryEvaluator}, i.e. the evaluator is kept and
+	 * only the changes are indexed. The reasoner runs without the write lock (on the snapshot), only the (usually
+	 * small) difference is applied while holding it.
+	 *
+	 * There is no complete rebuild of the index: a new evaluator can not be initialized concurrently to the running
+	 * one (the LUPOSDATE dictionary is process-wide) and as all changes including removals of triples with blank nodes
+	 * are applied to the indices directly, the index does not contain stale triples.
+	 */
+	private class InferenceTask implements Runnable {
+		@Override
+		public void run() {
+			if(!inferenceRequired) {
+				LOG.debug("No changes since last inference run.");
+				return;
+			}
+
+			try {
+				long start = System.currentTimeMillis();
+				Model snapshot = ModelFactory.createDefaultModel();
+
+				lockDatasetForReading();
+				try {
+					snapshot.add(dataset.getNamedModel(UNION_GRAPH));
+					inferenceRequired = false;
+				} finally {
+					unlockDatasetForReading();
+				}
 
-				//boolean deleted = tmp.delete();
-				//LOG.info("Temporary file {} deleted!", deleted ? "was" : "COULD NOT BE");
+				InfModel infModel = ModelFactory.createInfModel(reasoner, snapshot);
+				Model inferred = ModelFactory.createDefaultModel().add(infModel.difference(snapshot));
+				LOG.info("Inference finished ({} inferred triples, {} ms)", inferred.size(),
+						System.currentTimeMillis() - start);
+				start = System.currentTimeMillis();
 
+				lockDataset();
+				try {
+					TripleChanges changes = new TripleChanges(
+							inferred.difference(inferredTriples), inferredTriples.difference(inferred)
+					);
+					changes.retainRemovedIfNotContainedIn(dataset.getNamedModel(UNION_GRAPH));
+					changes.applyTo(queryEvaluator.getDataset().getDefaultGraphIndices(), dictionaryMonitor);
+					inferredTriples = inferred;
+					LOG.info("Inferred triples updated ({} ms)", System.currentTimeMillis() - start);
+				} finally {
+					unlockDataset();
+				}
 			} catch(Exception ex) {
 				LOG.error("Error in inference task...", ex);
-			} finally {
-				unlockDataset();
-				getCacheTasksExecutor().schedule(new InferenceTask(), 30, TimeUnit.SECONDS);
-				System.gc();
+				inferenceRequired = true;
 			}
 		}
 	}
 }
-
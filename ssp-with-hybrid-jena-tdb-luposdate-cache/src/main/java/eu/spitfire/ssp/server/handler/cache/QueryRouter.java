@@ -0,0 +1,387 @@
+package eu.spitfire.ssp.server.handler.cache;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.SortCondition;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.OpVisitorBase;
+import com.hp.hpl.jena.sparql.algebra.OpWalker;
+import com.hp.hpl.jena.sparql.algebra.op.*;
+import com.hp.hpl.jena.sparql.expr.Expr;
+import com.hp.hpl.jena.sparql.expr.ExprList;
+import com.hp.hpl.jena.vocabulary.OWL;
+import com.hp.hpl.jena.vocabulary.RDF;
+import com.hp.hpl.jena.vocabulary.RDFS;
+import eu.spitfire.ssp.server.internal.utils.SpatialIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether a SPARQL query is processed by Jena TDB or by LUPOSDATE. Some queries can only be answered by one
+ * of the engines:
+ *
+ * <ul>
+ *     <li>queries scoped to named graphs (GRAPH, FROM, FROM NAMED) are processed by Jena TDB since LUPOSDATE only
+ *     contains the (inferred) union graph,</li>
+ *     <li>queries using GeoSPARQL functions are processed by LUPOSDATE since Jena TDB does not support them, and</li>
+ *     <li>queries with triple patterns that may match inferred triples (i.e. with variable predicates or predicates
+ *     the reasoner infers statements for) are processed by LUPOSDATE since Jena TDB only contains the explicit
+ *     statements.</li>
+ * </ul>
+ *
+ * All other queries are routed to the engine that is expected to be the fastest. The expectation is based on the
+ * size of the basic graph patterns (BGP) of the query and the historical latencies of both engines for queries with
+ * BGPs of the same size. Without enough history, selective lookups (small BGPs with bound terms) are routed to
+ * Jena TDB and join-heavy queries to LUPOSDATE. To keep the latencies of both engines up to date, every
+ * {@link #EXPLORATION_INTERVAL}th query is routed to the other engine.
+ */
+class QueryRouter {
+
+    private static Logger LOG = LoggerFactory.getLogger(QueryRouter.class.getName());
+
+    enum Engine {
+        JENA_TDB, LUPOSDATE
+    }
+
+    private static final int MAX_BGP_SIZE_CLASS = 8;
+    private static final int MIN_SAMPLES = 10;
+    private static final int EXPLORATION_INTERVAL = 50;
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    private final Set<Node> inferablePredicates;
+
+    private final Map<Engine, Latency[]> latencies;
+    private final AtomicLong[] queriesPerSizeClass;
+    private final Map<String, AtomicLong> decisions;
+
+
+    /**
+     * Creates a new instance of {@link QueryRouter}.
+     *
+     * @param ontology the ontology the reasoner of the cache is bound to
+     */
+    QueryRouter(Model ontology) {
+        this.inferablePredicates = getInferablePredicates(ontology);
+        this.latencies = new EnumMap<>(Engine.class);
+        for(Engine engine : Engine.values()) {
+            Latency[] engineLatencies = new Latency[MAX_BGP_SIZE_CLASS + 1];
+            for(int i = 0; i <= MAX_BGP_SIZE_CLASS; i++) {
+                engineLatencies[i] = new Latency();
+            }
+            this.latencies.put(engine, engineLatencies);
+        }
+
+        this.queriesPerSizeClass = new AtomicLong[MAX_BGP_SIZE_CLASS + 1];
+        for(int i = 0; i <= MAX_BGP_SIZE_CLASS; i++) {
+            this.queriesPerSizeClass[i] = new AtomicLong();
+        }
+
+        this.decisions = new ConcurrentHashMap<>();
+        LOG.info("Query router created ({} predicates with inferred statements)", inferablePredicates.size());
+    }
+
+
+    /**
+     * Returns the {@link Route} for the given {@link com.hp.hpl.jena.query.Query}.
+     *
+     * @param query the {@link com.hp.hpl.jena.query.Query} to be routed
+     *
+     * @return the {@link Route} for the given {@link com.hp.hpl.jena.query.Query}
+     */
+    Route route(Query query) {
+        QueryFeatures features;
+        try {
+            features = new QueryFeatures(query, inferablePredicates);
+        } catch (Exception ex) {
+            LOG.warn("Could not analyze query (route by keyword)!", ex);
+            boolean graphScoped = query.hasDatasetDescription() || query.toString().contains("GRAPH");
+            return createRoute(graphScoped ? Engine.JENA_TDB : Engine.LUPOSDATE, 0, "fallback");
+        }
+
+        int sizeClass = Math.min(features.triplePatterns, MAX_BGP_SIZE_CLASS);
+
+        if(features.graphScoped) {
+            return createRoute(Engine.JENA_TDB, sizeClass, "graph-scoped");
+        }
+
+        if(features.geoFunctions) {
+            return createRoute(Engine.LUPOSDATE, sizeClass, "geosparql");
+        }
+
+        if(features.inferablePatterns) {
+            return createRoute(Engine.LUPOSDATE, sizeClass, "inference");
+        }
+
+        Latency tdbLatency = latencies.get(Engine.JENA_TDB)[sizeClass];
+        Latency luposdateLatency = latencies.get(Engine.LUPOSDATE)[sizeClass];
+
+        Engine engine;
+        String reason;
+        if(tdbLatency.getSamples() >= MIN_SAMPLES && luposdateLatency.getSamples() >= MIN_SAMPLES) {
+            engine = tdbLatency.getAverage() <= luposdateLatency.getAverage() ? Engine.JENA_TDB : Engine.LUPOSDATE;
+            reason = "latency";
+        } else if(features.triplePatterns <= 2 && features.boundTerms > 0) {
+            engine = Engine.JENA_TDB;
+            reason = "selective-lookup";
+        } else {
+            engine = Engine.LUPOSDATE;
+            reason = "join-heavy";
+        }
+
+        if(queriesPerSizeClass[sizeClass].incrementAndGet() % EXPLORATION_INTERVAL == 0) {
+            engine = engine == Engine.JENA_TDB ? Engine.LUPOSDATE : Engine.JENA_TDB;
+            reason = "exploration";
+        }
+
+        return createRoute(engine, sizeClass, reason);
+    }
+
+
+    private Route createRoute(Engine engine, int sizeClass, String reason) {
+        String key = engine.name().toLowerCase(Locale.ENGLISH) + "." + reason;
+        AtomicLong counter = decisions.get(key);
+        if(counter == null) {
+            decisions.putIfAbsent(key, new AtomicLong());
+            counter = decisions.get(key);
+        }
+        counter.incrementAndGet();
+
+        LOG.debug("Route query to {} (reason: {}, BGP size class: {})", engine, reason, sizeClass);
+        return new Route(engine, sizeClass, reason);
+    }
+
+
+    /**
+     * Updates the historical latencies with the duration of an executed query.
+     *
+     * @param route the {@link Route} the query was executed with
+     * @param duration the duration of the query execution (in milliseconds)
+     */
+    void recordLatency(Route route, long duration) {
+        latencies.get(route.getEngine())[route.sizeClass].add(duration);
+    }
+
+
+    /**
+     * Returns the number of routing decisions per engine and reason and the average latencies per engine and BGP
+     * size class.
+     *
+     * @return the statistics of this router
+     */
+    Map<String, String> getStatistics() {
+        Map<String, String> statistics = new HashMap<>();
+        for(Map.Entry<String, AtomicLong> decision : decisions.entrySet()) {
+            statistics.put("routing.decisions." + decision.getKey(), String.valueOf(decision.getValue().get()));
+        }
+
+        for(Map.Entry<Engine, Latency[]> entry : latencies.entrySet()) {
+            String engine = entry.getKey().name().toLowerCase(Locale.ENGLISH);
+            for(int i = 0; i <= MAX_BGP_SIZE_CLASS; i++) {
+                Latency latency = entry.getValue()[i];
+                if(latency.getSamples() > 0) {
+                    String key = "routing.latency." + engine + ".bgp-" + i + (i == MAX_BGP_SIZE_CLASS ? "+" : "");
+                    statistics.put(key, String.format(Locale.ENGLISH, "%.1f ms (%d queries)",
+                            latency.getAverage(), latency.getSamples()));
+                }
+            }
+        }
+
+        return statistics;
+    }
+
+
+    /**
+     * Returns the predicates the reasoner may infer statements for based on the given ontology, i.e. super
+     * properties, inverse, equivalent, symmetric and transitive properties, <code>rdf:type</code> (due to class
+     * hierarchies, domains and ranges) and <code>owl:sameAs</code>.
+     */
+    private static Set<Node> getInferablePredicates(Model ontology) {
+        Set<Node> predicates = new HashSet<>();
+        predicates.add(RDF.type.asNode());
+        predicates.add(OWL.sameAs.asNode());
+
+        StmtIterator iterator = ontology.listStatements(null, RDFS.subPropertyOf, (RDFNode) null);
+        while(iterator.hasNext()) {
+            Statement statement = iterator.nextStatement();
+            predicates.add(statement.getObject().asNode());
+        }
+
+        for(Property property : new Property[]{OWL.inverseOf, OWL.equivalentProperty}) {
+            iterator = ontology.listStatements(null, property, (RDFNode) null);
+            while(iterator.hasNext()) {
+                Statement statement = iterator.nextStatement();
+                predicates.add(statement.getSubject().asNode());
+                predicates.add(statement.getObject().asNode());
+            }
+        }
+
+        for(Resource type : new Resource[]{OWL.TransitiveProperty, OWL.SymmetricProperty}) {
+            iterator = ontology.listStatements(null, RDF.type, type);
+            while(iterator.hasNext()) {
+                predicates.add(iterator.nextStatement().getSubject().asNode());
+            }
+        }
+
+        return predicates;
+    }
+
+
+    /**
+     * The result of a routing decision.
+     */
+    static class Route {
+
+        private final Engine engine;
+        private final int sizeClass;
+        private final String reason;
+
+        private Route(Engine engine, int sizeClass, String reason) {
+            this.engine = engine;
+            this.sizeClass = sizeClass;
+            this.reason = reason;
+        }
+
+        Engine getEngine() {
+            return engine;
+        }
+
+        String getReason() {
+            return reason;
+        }
+    }
+
+
+    /**
+     * Exponentially weighted moving average of the query latencies.
+     */
+    private static class Latency {
+
+        private double average;
+        private long samples;
+
+        private synchronized void add(long duration) {
+            average = samples == 0 ? duration : SMOOTHING_FACTOR * duration + (1 - SMOOTHING_FACTOR) * average;
+            samples++;
+        }
+
+        private synchronized double getAverage() {
+            return average;
+        }
+
+        private synchronized long getSamples() {
+            return samples;
+        }
+    }
+
+
+    /**
+     * The features of a query relevant for routing, extracted from the query algebra.
+     */
+    private static class QueryFeatures extends OpVisitorBase {
+
+        private final Set<Node> inferablePredicates;
+
+        private int triplePatterns;
+        private int boundTerms;
+        private boolean graphScoped;
+        private boolean geoFunctions;
+        private boolean inferablePatterns;
+
+        private QueryFeatures(Query query, Set<Node> inferablePredicates) {
+            this.inferablePredicates = inferablePredicates;
+            this.graphScoped = query.hasDatasetDescription();
+
+            Op op = Algebra.compile(query);
+            OpWalker.walk(op, this);
+
+            if(query.getOrderBy() != null) {
+                for(SortCondition condition : query.getOrderBy()) {
+                    inspect(condition.getExpression());
+                }
+            }
+        }
+
+        @Override
+        public void visit(OpBGP opBGP) {
+            for(Triple triple : opBGP.getPattern().getList()) {
+                triplePatterns++;
+                if(triple.getSubject().isConcrete()) {
+                    boundTerms++;
+                }
+                if(triple.getObject().isConcrete()) {
+                    boundTerms++;
+                }
+
+                Node predicate = triple.getPredicate();
+                if(!predicate.isConcrete() || inferablePredicates.contains(predicate)) {
+                    inferablePatterns = true;
+                }
+            }
+        }
+
+        @Override
+        public void visit(OpPath opPath) {
+            //property paths may follow inferred statements
+            triplePatterns++;
+            inferablePatterns = true;
+        }
+
+        @Override
+        public void visit(OpGraph opGraph) {
+            graphScoped = true;
+        }
+
+        @Override
+        public void visit(OpQuadPattern quadPattern) {
+            graphScoped = true;
+        }
+
+        @Override
+        public void visit(OpDatasetNames dsNames) {
+            graphScoped = true;
+        }
+
+        @Override
+        public void visit(OpFilter opFilter) {
+            inspect(opFilter.getExprs());
+        }
+
+        @Override
+        public void visit(OpLeftJoin opLeftJoin) {
+            inspect(opLeftJoin.getExprs());
+        }
+
+        @Override
+        public void visit(OpExtend opExtend) {
+            for(Expr expr : opExtend.getVarExprList().getExprs().values()) {
+                inspect(expr);
+            }
+        }
+
+        private void inspect(ExprList exprs) {
+            if(exprs != null) {
+                for(Expr expr : exprs) {
+                    inspect(expr);
+                }
+            }
+        }
+
+        private void inspect(Expr expr) {
+            if(expr != null && SpatialIndex.containsGeoFunction(expr)) {
+                geoFunctions = true;
+            }
+        }
+    }
+}
@@ -18,7 +18,8 @@ public class Main {
 
             @Override
             public SemanticCache createSemanticCache(Configuration config){
-                return new LuposdateSemanticCache(this.getIoExecutor(), this.getInternalTasksExecutor());
+                int readerThreads = config.getInt("cache.threads.readers", Runtime.getRuntime().availableProcessors());
+                return new LuposdateSemanticCache(this.getIoExecutor(), this.getInternalTasksExecutor(), readerThreads);
             }
 
         };
@@ -0,0 +1,194 @@
+package eu.spitfire.ssp.server.handler.cache;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
+import lupos.datastructures.items.Triple;
+import lupos.datastructures.items.literal.Literal;
+import lupos.datastructures.items.literal.LiteralFactory;
+import lupos.datastructures.items.literal.URILiteral;
+import lupos.engine.evaluators.BasicIndexQueryEvaluator;
+import lupos.engine.operators.index.Dataset;
+import lupos.engine.operators.index.Indices;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+
+/**
+ * Writes triples directly into the index structures of a LUPOSDATE
+ * {@link lupos.engine.evaluators.BasicIndexQueryEvaluator}, i.e. without creating and parsing SPARQL update
+ * queries. Every triple of a named graph is added to the named graph and to the default graph. A triple is only
+ * removed from the default graph if there is no other named graph containing it.
+ *
+ * The writer keeps references to the indexed {@link lupos.datastructures.items.Triple} instances of every named
+ * graph (the LUPOSDATE indices provide no way to enumerate the triples of a graph) and counts the named graphs
+ * containing each triple of the default graph. Thus, removing a triple costs O(1) regardless of the number of
+ * graphs and no query is needed to look up the content of a graph.
+ *
+ * Instances of this class are not thread-safe and must only be used by the thread that owns the evaluator.
+ */
+class LuposdateIndexWriter {
+
+    private final Dataset dataset;
+    private final Map<URI, List<Triple>> namedGraphs;
+    private final Map<Triple, Integer> defaultGraphCounts;
+
+    LuposdateIndexWriter(BasicIndexQueryEvaluator evaluator) {
+        this.dataset = evaluator.getDataset();
+        this.namedGraphs = new HashMap<>();
+        this.defaultGraphCounts = new HashMap<>();
+    }
+
+    /**
+     * Replaces the named graph with the given name with the given {@link com.hp.hpl.jena.rdf.model.Model}.
+     *
+     * @param graphName the name of the graph to be replaced
+     * @param graph the new content of the graph
+     *
+     * @throws Exception if one of the URIs contained in the graph is malformed
+     */
+    void putNamedGraph(URI graphName, Model graph) throws Exception {
+        List<Triple> triples = new ArrayList<>((int) graph.size());
+        StmtIterator iterator = graph.listStatements();
+        while(iterator.hasNext()) {
+            triples.add(toTriple(iterator.nextStatement()));
+        }
+
+        deleteNamedGraph(graphName);
+
+        Indices namedGraphIndices = getNamedGraphIndices(graphName, true);
+        for(Triple triple : triples) {
+            if(!namedGraphIndices.contains(triple)) {
+                namedGraphIndices.add(triple);
+                addToDefaultGraph(triple);
+            }
+        }
+
+        namedGraphs.put(graphName, triples);
+    }
+
+    /**
+     * Returns the names of all named graphs written by this writer.
+     *
+     * @return the names of all named graphs written by this writer
+     */
+    Set<URI> getGraphNames() {
+        return namedGraphs.keySet();
+    }
+
+    /**
+     * Deletes the named graph with the given name (if any).
+     *
+     * @param graphName the name of the graph to be deleted
+     *
+     * @throws Exception if the given graph name is no valid URI literal
+     */
+    void deleteNamedGraph(URI graphName) throws Exception {
+        List<Triple> triples = namedGraphs.remove(graphName);
+        if(triples == null) {
+            return;
+        }
+
+        Indices namedGraphIndices = getNamedGraphIndices(graphName, false);
+        for(Triple triple : triples) {
+            if(namedGraphIndices != null && namedGraphIndices.contains(triple)) {
+                namedGraphIndices.remove(triple);
+                removeFromDefaultGraph(triple);
+            }
+        }
+    }
+
+    /**
+     * Replaces the object(s) of all triples with the given subject and predicate in the named graph with the given
+     * name by the given object.
+     *
+     * @param graphName the name of the graph to be updated
+     * @param subject the subject of the triples to be updated
+     * @param predicate the predicate of the triples to be updated
+     * @param object the new object
+     *
+     * @throws Exception if one of the given nodes contains a malformed URI
+     */
+    void replaceObjects(URI graphName, Node subject, Node predicate, Node object) throws Exception {
+        List<Triple> triples = namedGraphs.get(graphName);
+        if(triples == null) {
+            return;
+        }
+
+        Literal s = LuposdateNodes.toLiteral(subject);
+        Literal p = LuposdateNodes.toLiteral(predicate);
+        Triple replacement = new Triple(s, p, LuposdateNodes.toLiteral(object));
+        Indices namedGraphIndices = getNamedGraphIndices(graphName, true);
+
+        Iterator<Triple> iterator = triples.iterator();
+        while(iterator.hasNext()) {
+            Triple triple = iterator.next();
+            if(triple.getSubject().equals(s) && triple.getPredicate().equals(p)) {
+                iterator.remove();
+                namedGraphIndices.remove(triple);
+                removeFromDefaultGraph(triple);
+            }
+        }
+
+        triples.add(replacement);
+        namedGraphIndices.add(replacement);
+        addToDefaultGraph(replacement);
+    }
+
+
+    /**
+     * Adds the given triple to the default graph unless it is already contained in another named graph. This method
+     * must be called once for every named graph the triple was added to.
+     */
+    private void addToDefaultGraph(Triple triple) {
+        Integer count = defaultGraphCounts.get(triple);
+        defaultGraphCounts.put(triple, count == null ? 1 : count + 1);
+
+        if(count == null) {
+            for(Indices indices : dataset.getDefaultGraphIndices()) {
+                indices.add(triple);
+            }
+        }
+    }
+
+
+    /**
+     * Removes the given triple from the default graph unless it is contained in a (remaining) named graph. This
+     * method must be called once for every named graph the triple was removed from.
+     */
+    private void removeFromDefaultGraph(Triple triple) {
+        Integer count = defaultGraphCounts.remove(triple);
+        if(count != null && count > 1) {
+            defaultGraphCounts.put(triple, count - 1);
+            return;
+        }
+
+        for(Indices indices : dataset.getDefaultGraphIndices()) {
+            indices.remove(triple);
+        }
+    }
+
+
+    private Indices getNamedGraphIndices(URI graphName, boolean create) throws URISyntaxException {
+        URILiteral graphLiteral = LiteralFactory.createURILiteral("<" + graphName + ">");
+        Indices indices = dataset.getNamedGraphIndices(graphLiteral);
+
+        if(indices == null && create) {
+            indices = dataset.indicesFactory.newIndices(graphLiteral);
+            dataset.putIntoNamedGraphs(graphLiteral, indices);
+        }
+
+        return indices;
+    }
+
+
+    private static Triple toTriple(Statement statement) throws URISyntaxException {
+        return new Triple(
+                LuposdateNodes.toLiteral(statement.getSubject().asNode()),
+                LuposdateNodes.toLiteral(statement.getPredicate().asNode()),
+                LuposdateNodes.toLiteral(statement.getObject().asNode())
+        );
+    }
+}
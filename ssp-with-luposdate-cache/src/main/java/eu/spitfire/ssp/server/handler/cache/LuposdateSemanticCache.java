@@ -2,16 +2,15 @@ package eu.spitfire.ssp.server.handler.cache;
 
 import com.github.jsonldjava.core.RDFDataset;
 import com.google.common.util.concurrent.*;
+import com.hp.hpl.jena.graph.NodeFactory;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.ResultSet;
-import com.hp.hpl.jena.query.ResultSetFactory;
 import com.hp.hpl.jena.query.Syntax;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.RDFNode;
-import com.hp.hpl.jena.rdf.model.Statement;
-import com.hp.hpl.jena.rdf.model.StmtIterator;
 import eu.spitfire.ssp.server.handler.SemanticCache;
 import eu.spitfire.ssp.server.internal.utils.Converter;
+import eu.spitfire.ssp.server.internal.utils.SpatialIndex;
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringGraph;
 import eu.spitfire.ssp.server.internal.wrapper.ExpiringNamedGraph;
 import eu.spitfire.ssp.server.internal.wrapper.QueryExecutionResults;
@@ -19,7 +18,6 @@ import lupos.datastructures.items.literal.LiteralFactory;
 import lupos.datastructures.items.literal.URILiteral;
 import lupos.datastructures.queryresult.QueryResult;
 import lupos.endpoint.EvaluationHelper;
-import lupos.endpoint.server.format.XMLFormatter;
 import lupos.engine.evaluators.CommonCoreQueryEvaluator;
 import lupos.engine.evaluators.MemoryIndexQueryEvaluator;
 import lupos.engine.evaluators.QueryEvaluator;
@@ -32,6 +30,8 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -46,43 +46,70 @@ public class LuposdateSemanticCache extends SemanticCache {
     private static Logger LOG = LoggerFactory.getLogger(LuposdateSemanticCache.class.getName());
 
     private QueryEvaluator evaluator;
+    private LuposdateIndexWriter indexWriter;
+    private SpatialIndex spatialIndex = new SpatialIndex();
     private AtomicInteger waitingOperations = new AtomicInteger(0);
     private AtomicInteger finishedOperations = new AtomicInteger(0);
 
     private ReentrantReadWriteLock lock;
 
+    //evaluators sharing the dataset of the evaluator above to process read-only queries concurrently
+    private BlockingQueue<QueryEvaluator> readers;
+    private final Object compilationMonitor = new Object();
+
     private ScheduledExecutorService cacheExecutor;
+    private ExecutorService readerExecutor;
 
     public LuposdateSemanticCache(ExecutorService ioExecutorService,
                                   ScheduledExecutorService internalTasksExecutorService) {
 
+        this(ioExecutorService, internalTasksExecutorService, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new instance of {@link eu.spitfire.ssp.server.handler.cache.LuposdateSemanticCache}.
+     *
+     * @param ioExecutorService the {@link java.util.concurrent.ExecutorService} for I/O tasks
+     * @param internalTasksExecutorService the {@link java.util.concurrent.ScheduledExecutorService} for internal tasks
+     * @param readerThreads the number of threads to process read-only operations (i.e. SPARQL queries and graph
+     *                      lookups) concurrently. All write operations are serialized on a single thread.
+     */
+    public LuposdateSemanticCache(ExecutorService ioExecutorService,
+                                  ScheduledExecutorService internalTasksExecutorService, int readerThreads) {
+
         super(ioExecutorService, internalTasksExecutorService);
-        this.initialize();
+        this.initialize(readerThreads);
         this.lock = new ReentrantReadWriteLock();
+        this.readerExecutor = Executors.newFixedThreadPool(readerThreads, new ThreadFactoryBuilder().setNameFormat(
+                "SSP Luposdate Reader #%d"
+        ).build());
         //this.cacheExecutor = Executors.newSingleThreadScheduledExecutor();
         this.cacheExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat(
                 "SSP Luposdate Thread #%d"
         ).build());
     }
 
-    private void initialize(){
+    private void initialize(int readerThreads){
         try{
-            MemoryIndexQueryEvaluator queryEvaluator = new MemoryIndexQueryEvaluator();
-
-            queryEvaluator.setupArguments();
-            queryEvaluator.getArgs().set("result",          lupos.datastructures.queryresult.QueryResult.TYPE.MEMORY);
-            queryEvaluator.getArgs().set("codemap",         LiteralFactory.MapType.TRIEMAP);
-            queryEvaluator.getArgs().set("distinct",        CommonCoreQueryEvaluator.DISTINCT.HASHSET);
-            queryEvaluator.getArgs().set("join",            CommonCoreQueryEvaluator.JOIN.HASHMAPINDEX);
-            queryEvaluator.getArgs().set("optional",        CommonCoreQueryEvaluator.JOIN.HASHMAPINDEX);
-            queryEvaluator.getArgs().set("datastructure",   Indices.DATA_STRUCT.HASHMAP);
-
+            MemoryIndexQueryEvaluator queryEvaluator = createEvaluator();
             this.evaluator = queryEvaluator;
-            this.evaluator.init();
+
+            //the readers must be initialized before any data is inserted
+            List<MemoryIndexQueryEvaluator> readerEvaluators = new ArrayList<>(readerThreads);
+            for(int i = 0; i < readerThreads; i++) {
+                readerEvaluators.add(createEvaluator());
+            }
 
             Collection<URILiteral> uriLiterals = new LinkedList<>();
             uriLiterals.add(LiteralFactory.createStringURILiteral("<inlinedata:>"));
             queryEvaluator.prepareInputData(uriLiterals, new LinkedList<>());
+            this.indexWriter = new LuposdateIndexWriter(queryEvaluator);
+
+            this.readers = new ArrayBlockingQueue<>(readerThreads);
+            for(MemoryIndexQueryEvaluator reader : readerEvaluators) {
+                reader.setDataset(queryEvaluator.getDataset());
+                this.readers.add(reader);
+            }
 
             GeoFunctionRegisterer.registerGeoFunctions();
             EvaluationHelper.registerEvaluator("MIQE", MemoryIndexQueryEvaluator.class);
@@ -92,6 +119,21 @@ public class LuposdateSemanticCache extends SemanticCache {
         }
     }
 
+    private static MemoryIndexQueryEvaluator createEvaluator() throws Exception {
+        MemoryIndexQueryEvaluator queryEvaluator = new MemoryIndexQueryEvaluator();
+
+        queryEvaluator.setupArguments();
+        queryEvaluator.getArgs().set("result",          lupos.datastructures.queryresult.QueryResult.TYPE.MEMORY);
+        queryEvaluator.getArgs().set("codemap",         LiteralFactory.MapType.TRIEMAP);
+        queryEvaluator.getArgs().set("distinct",        CommonCoreQueryEvaluator.DISTINCT.HASHSET);
+        queryEvaluator.getArgs().set("join",            CommonCoreQueryEvaluator.JOIN.HASHMAPINDEX);
+        queryEvaluator.getArgs().set("optional",        CommonCoreQueryEvaluator.JOIN.HASHMAPINDEX);
+        queryEvaluator.getArgs().set("datastructure",   Indices.DATA_STRUCT.HASHMAP);
+
+        queryEvaluator.init();
+        return queryEvaluator;
+    }
+
     public ScheduledExecutorService getInternalTasksExecutor(){
         return this.cacheExecutor;
     }
@@ -155,11 +197,30 @@ public class LuposdateSemanticCache extends SemanticCache {
     @Override
     public ListenableFuture<Boolean> containsNamedGraph(final URI graphName) {
         final SettableFuture<Boolean> containsFuture = SettableFuture.create();
-        containsFuture.set(false);
+        containsFuture.set(getCatalog().containsNamedGraph(graphName));
         return containsFuture;
     }
 
 
+    @Override
+    public ListenableFuture<List<URI>> getNamedGraphNames() {
+        final SettableFuture<List<URI>> result = SettableFuture.create();
+
+        int waiting = waitingOperations.incrementAndGet();
+        LOG.debug("Wait for DB (now waiting: {})", waiting);
+
+        this.readerExecutor.execute(new ReadTask(result) {
+
+            @Override
+            public void process(QueryEvaluator reader) {
+                result.set(new ArrayList<>(indexWriter.getGraphNames()));
+            }
+        });
+
+        return result;
+    }
+
+
     @Override
     public ListenableFuture<ExpiringNamedGraph> getNamedGraph(final URI graphName) {
         final SettableFuture<ExpiringNamedGraph> result = SettableFuture.create();
@@ -167,12 +228,12 @@ public class LuposdateSemanticCache extends SemanticCache {
         int waiting = waitingOperations.incrementAndGet();
         LOG.debug("Wait for DB (now waiting: {})", waiting);
 
-        this.getInternalTasksExecutor().execute(new DatabaseTask() {
+        this.readerExecutor.execute(new ReadTask(result) {
 
             @Override
-            public void process() {
+            public void process(QueryEvaluator reader) {
                 try {
-                    result.set(getNamedGraph2(graphName));
+                    result.set(getNamedGraph2(reader, graphName));
                 } catch (Exception ex) {
                     LOG.error("Exception while putting graph {} to cache!", graphName, ex);
                     result.setException(ex);
@@ -219,12 +280,23 @@ public class LuposdateSemanticCache extends SemanticCache {
     }
 
 
-    private ExpiringNamedGraph getNamedGraph2(URI graphName) throws Exception{
+    private ExpiringNamedGraph getNamedGraph2(QueryEvaluator reader, URI graphName) throws Exception{
+        //unknown graphs are answered with null (like the Jena caches) to enable read-through and stale fallbacks
+        if(!getCatalog().containsNamedGraph(graphName)){
+            LOG.warn("No cached status found for resource {}", graphName);
+            return null;
+        }
+
         String query = "SELECT ?s ?p ?o  WHERE {GRAPH <" + graphName + "> { ?s ?p ?o }}";
 
-        QueryResult result = this.evaluator.getResult(query);
+        QueryResult result = getResult(reader, query);
         Model model = Converter.toModel(toResultSet(result));
 
+        if(model.isEmpty()){
+            LOG.warn("No cached status found for resource {}", graphName);
+            return null;
+        }
+
         return new ExpiringNamedGraph(graphName, model, new Date());
     }
 
@@ -277,94 +349,40 @@ public class LuposdateSemanticCache extends SemanticCache {
     }
 
 
-    private void putNamedGraphToCache2(URI graphName, Model graph) throws Exception{
-        long start = System.currentTimeMillis();
-
-        //delete old triples
-        this.evaluator.getResult(createDeleteQuery(graphName));
-        LOG.info("Deleted graph \"{}\" (duration: {} ms)", graphName, System.currentTimeMillis() - start);
-
-        //insert new triples from given graph
-        this.evaluator.getResult(createInsertQuery(graphName, graph));
-        LOG.info("Deleted old and inserted new graph \"{}\" ({} ms)", graphName, System.currentTimeMillis() - start);
-    }
-
-    private static final String DELETE_QUERY_TEMPLATE =
-            "DELETE {\n\t" +
-                "GRAPH <%s> { ?s ?p ?o }\n\t" +
-                "?s ?p ?o\n" +
-            "} WHERE {\n\t" +
-                "GRAPH <%s> {?s ?p ?o }\n" +
-            "}";
-
-    private static String createDeleteQuery(URI graphName){
-        String query = String.format(Locale.ENGLISH, DELETE_QUERY_TEMPLATE, graphName, graphName);
-        LOG.debug("\n" + query);
-        return query;
-    }
-
-
-    private static final String INSERT_QUERY_TEMPLATE =
-            "INSERT DATA {\n\t" +
-                "GRAPH <%s> {" +
-                    "%s\n" +
-                "}" +
-                "%s\n" +
-            "}";
-
-    private static String createInsertQuery(URI graphName, Set<String> statements){
-        String triples = "";
-        for(String triple : statements){
-            triples += triple;
-        }
-
-        String query = String.format(Locale.ENGLISH, INSERT_QUERY_TEMPLATE, graphName.toString(), "\t" + triples, triples);
-        LOG.debug("\n" + query);
-        return query;
-    }
-
-    private static final String TRIPLE_TEMPLATE_WITH_RESOURCE =
-            "\n\t<%s> <%s> <%s> .";
-
-    private static final String TRIPLE_TEMPLATE_WITH_UNTYPED_LITERAL =
-            "\n\t<%s> <%s> \"%s\" .";
-
-    private static final String TRIPLE_TEMPLATE_WITH_TYPED_LITERAL =
-            "\n\t<%s> <%s> \"%s\"^^<%s> .";
+    @Override
+    public ListenableFuture<Void> putNamedGraphsToCache(final Map<URI, Model> namedGraphs) {
+        final SettableFuture<Void> result = SettableFuture.create();
 
-    private static String createTriple(Statement statement){
+        int waiting = waitingOperations.incrementAndGet();
+        LOG.debug("Wait for DB thread (now waiting: {})", waiting);
 
-        String subject = statement.getSubject().toString();
-        String predicate = statement.getPredicate().toString();
-        RDFNode object = statement.getObject();
+        this.getInternalTasksExecutor().execute(new DatabaseTask() {
 
-        if(object.isLiteral()){
-            //typed literal
-            if(object.toString().contains("^^")){
-                String[] parts = object.toString().split("\\^\\^");
-                return String.format(
-                    Locale.ENGLISH, TRIPLE_TEMPLATE_WITH_TYPED_LITERAL, subject, predicate, parts[0], parts[1]
-                ).replace("\n", " ");
+            @Override
+            public void process() {
+                try {
+                    long start = System.currentTimeMillis();
+                    for(Map.Entry<URI, Model> namedGraph : namedGraphs.entrySet()) {
+                        putNamedGraphToCache2(namedGraph.getKey(), namedGraph.getValue());
+                    }
+                    LOG.info("Inserted {} graphs ({} ms)", namedGraphs.size(), System.currentTimeMillis() - start);
+                    result.set(null);
+                } catch (Exception ex) {
+                    LOG.error("Exception while putting {} graphs to cache!", namedGraphs.size(), ex);
+                    result.setException(ex);
+                }
             }
-            //untyped literal
-            return String.format(
-                Locale.ENGLISH, TRIPLE_TEMPLATE_WITH_UNTYPED_LITERAL, subject, predicate, object.toString()
-            ).replace("\n", " ");
-        }
+        });
 
-        return String.format(Locale.ENGLISH, TRIPLE_TEMPLATE_WITH_RESOURCE, subject, predicate, object.toString());
+        return result;
     }
 
 
-    private static String createInsertQuery(URI graphName, Model graph){
-        StmtIterator iterator = graph.listStatements();
-        Set<String> statements = new LinkedHashSet<>();
-
-        while(iterator.hasNext()){
-            statements.add(createTriple(iterator.nextStatement()));
-        }
-
-        return createInsertQuery(graphName, statements);
+    private void putNamedGraphToCache2(URI graphName, Model graph) throws Exception{
+        long start = System.currentTimeMillis();
+        this.indexWriter.putNamedGraph(graphName, graph);
+        this.spatialIndex.putNamedGraph(graphName, graph);
+        LOG.info("Deleted old and inserted new graph \"{}\" ({} ms)", graphName, System.currentTimeMillis() - start);
     }
 
 
@@ -394,7 +412,7 @@ public class LuposdateSemanticCache extends SemanticCache {
 
     @Override
     public ListenableFuture<QueryExecutionResults> processSparqlQuery(Query query){
-        return processSparqlQuery(query.toString(Syntax.syntaxSPARQL));
+        return processSparqlQuery(this.spatialIndex.rewrite(query).toString(Syntax.syntaxSPARQL));
     }
 
 
@@ -404,15 +422,15 @@ public class LuposdateSemanticCache extends SemanticCache {
         int waiting = waitingOperations.incrementAndGet();
         LOG.debug("Wait for DB thread (now waiting: {})", waiting);
 
-        this.getInternalTasksExecutor().execute(new DatabaseTask() {
+        this.readerExecutor.execute(new ReadTask(resultFuture) {
             @Override
-            public void process() {
+            public void process(QueryEvaluator reader) {
                 try {
                     LOG.debug("Start SPARQL query: \n{}", query);
 
                     long startTime = System.currentTimeMillis();
                     //ResultSet resultSet = processSparqlQuery2(query, !query.contains("GRAPH"));
-                    ResultSet resultSet = processSparqlQuery2(query);
+                    ResultSet resultSet = processSparqlQuery2(reader, query);
                     long duration = System.currentTimeMillis() - startTime;
                     resultFuture.set(new QueryExecutionResults(duration, resultSet));
 
@@ -444,7 +462,8 @@ public class LuposdateSemanticCache extends SemanticCache {
             @Override
             public void process() {
                 try {
-                    LuposdateSemanticCache.this.evaluator.getResult(createDeleteQuery(graphName));
+                    LuposdateSemanticCache.this.indexWriter.deleteNamedGraph(graphName);
+                    LuposdateSemanticCache.this.spatialIndex.removeNamedGraph(graphName);
                     result.set(null);
                 } catch (Exception ex) {
                     LOG.error("Exception while deleting graph {}!", graphName, ex);
@@ -458,15 +477,16 @@ public class LuposdateSemanticCache extends SemanticCache {
 
 
     private void updateSensorValue2(URI graphName, RDFNode sensorValue) throws Exception{
-        String updateQuery = "PREFIX ssn: <http://purl.oclc.org/NET/ssnx/ssn#>\n" +
-                "DELETE {<" + graphName + "-SensorOutput> ssn:hasValue ?value }\n" +
-                "INSERT {<" + graphName + "-SensorOutput> ssn:hasValue " + sensorValue.toString() + " }";
-
-        this.evaluator.getResult(updateQuery);
+        this.indexWriter.replaceObjects(
+                graphName,
+                NodeFactory.createURI(graphName + "-SensorOutput"),
+                NodeFactory.createURI(Converter.SSN_NAMESPACE + "hasValue"),
+                sensorValue.asNode()
+        );
     }
 
 
-    private ResultSet processSparqlQuery2(String query) throws Exception{
+    private ResultSet processSparqlQuery2(QueryEvaluator reader, String query) throws Exception{
 //        //Execute Query and make the result a JENA result set
 //        QueryResult queryResult = this.getRuleEvaluator().getResult(query);
 //        return toResultSet(queryResult);
@@ -494,27 +514,26 @@ public class LuposdateSemanticCache extends SemanticCache {
 //            return toResultSet(results.getSecond()[0]);
 //
 //        } else {
-            QueryResult result = this.evaluator.getResult(query);
+            QueryResult result = getResult(reader, query);
             return toResultSet(result);
 //        }
     }
 
 
+    private QueryResult getResult(QueryEvaluator reader, String query) throws Exception {
+        //compilation may add new literals to the (shared) dictionary
+        synchronized (compilationMonitor) {
+            reader.compileQuery(query);
+            reader.logicalOptimization();
+            reader.physicalOptimization();
+        }
+        return reader.getResult();
+    }
 
-    private ResultSet toResultSet(final QueryResult queryResult) throws IOException {
-        long start = System.currentTimeMillis();
-
-        XMLFormatter formatter = new XMLFormatter();
-
-        //Solution with streams
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        formatter.writeResult(outputStream, queryResult.getVariableSet(), queryResult);
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(outputStream.toByteArray());
-        ResultSet resultSet = ResultSetFactory.fromXML(inputStream);
 
-        LOG.debug("Time to re-format result-set: {} millis", System.currentTimeMillis() - start);
 
-        return resultSet;
+    private ResultSet toResultSet(final QueryResult queryResult) {
+        return LuposdateResultSet.create(queryResult);
     }
 
     
@@ -540,9 +559,55 @@ public class LuposdateSemanticCache extends SemanticCache {
     }
 
 
+    /**
+     * Read-only operations are executed on one of the reader threads using an evaluator from the pool of
+     * readers. They only acquire the read lock, i.e. they run concurrently with each other but not with
+     * {@link DatabaseTask}s. If there is no reader (i.e. the creation of the readers failed), the given future is
+     * failed instead.
+     */
+    private abstract class ReadTask implements Runnable{
+
+        private final SettableFuture<?> future;
+
+        private ReadTask(SettableFuture<?> future){
+            this.future = future;
+        }
+
+        @Override
+        public void run(){
+            int stillWaiting = waitingOperations.decrementAndGet();
+            QueryEvaluator reader = readers == null ? null : readers.poll();
+            if(reader == null){
+                LOG.error("No Luposdate reader available (initialization failed)!");
+                future.setException(new IllegalStateException("No Luposdate reader available!"));
+                return;
+            }
+
+            try {
+                lock.readLock().lock();
+                LOG.debug("Start DB read operation (still waiting: {})", stillWaiting);
+                this.process(reader);
+                finishedOperations.incrementAndGet();
+            } finally {
+                lock.readLock().unlock();
+                readers.offer(reader);
+            }
+        }
+
+        public abstract void process(QueryEvaluator reader);
+    }
+
+
 	@Override
 	protected ScheduledExecutorService getCacheTasksExecutor() {
 		return this.getInternalTasksExecutor();
 	}
 
+    @Override
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = super.getStatistics();
+        statistics.putAll(this.spatialIndex.getStatistics());
+        return statistics;
+    }
+
 }
@@ -0,0 +1,93 @@
+package eu.spitfire.ssp.server.handler.cache;
+
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.ResultSetFormatter;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.Resource;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of SPARQL queries sent concurrently (by 4 threads) to a
+ * {@link eu.spitfire.ssp.server.handler.cache.LuposdateSemanticCache} with one reader thread (i.e. the previous
+ * serialized processing of reads) and with 4 reader threads.
+ *
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=eu.spitfire.ssp.server.handler.cache.LuposdateSemanticCacheBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(4)
+@Fork(1)
+public class LuposdateSemanticCacheBenchmark {
+
+    private static final String NS = "http://example.org/";
+
+    private static final String QUERY =
+            "SELECT ?sensor ?value WHERE { ?sensor <" + NS + "value> ?value . ?sensor <" + NS + "room> ?room . " +
+            "FILTER(?value > 25) }";
+
+    @Param({"1", "4"})
+    public int readerThreads;
+
+    private ExecutorService ioExecutor;
+    private ScheduledExecutorService internalTasksExecutor;
+    private LuposdateSemanticCache cache;
+
+    @Setup
+    public void setup() throws Exception {
+        ioExecutor = Executors.newCachedThreadPool();
+        internalTasksExecutor = Executors.newSingleThreadScheduledExecutor();
+        cache = new LuposdateSemanticCache(ioExecutor, internalTasksExecutor, readerThreads);
+
+        Map<URI, Model> graphs = new HashMap<>();
+        for(int i = 0; i < 200; i++) {
+            Model graph = ModelFactory.createDefaultModel();
+            Resource sensor = graph.createResource(NS + "sensor#" + i);
+            sensor.addLiteral(graph.createProperty(NS + "value"), graph.createTypedLiteral(15 + i % 20));
+            sensor.addProperty(graph.createProperty(NS + "room"), graph.createResource(NS + "room#" + i % 10));
+            graphs.put(URI.create(NS + "sensor#" + i), graph);
+        }
+        cache.putNamedGraphsToCache(graphs).get();
+    }
+
+    @TearDown
+    public void tearDown() {
+        ioExecutor.shutdownNow();
+        internalTasksExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int query(QueryState state) throws Exception {
+        return ResultSetFormatter.consume(cache.processSparqlQuery(state.query).get().getResultSet());
+    }
+
+    /**
+     * The query per benchmark thread (instances of {@link com.hp.hpl.jena.query.Query} are not thread-safe)
+     */
+    @State(Scope.Thread)
+    public static class QueryState {
+
+        private final Query query = QueryFactory.create(QUERY);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LuposdateSemanticCacheBenchmark.class.getSimpleName()).build())
+                .run();
+    }
+}
@@ -0,0 +1,110 @@
+package eu.spitfire.ssp.server.handler.cache;
+
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryFactory;
+import com.hp.hpl.jena.query.ResultSetFormatter;
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import eu.spitfire.ssp.server.internal.utils.Converter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the evaluation of a GeoSPARQL filter by the
+ * {@link eu.spitfire.ssp.server.handler.cache.LuposdateSemanticCache} with and without the restriction to the
+ * candidates of the {@link eu.spitfire.ssp.server.internal.utils.SpatialIndex}. The filter of the unrestricted query
+ * is negated twice, i.e. it has the same results but is not rewritten by the index.
+ *
+ * Run with <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=eu.spitfire.ssp.server.handler.cache.SpatialFilterBenchmark</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SpatialFilterBenchmark {
+
+    private static final String NS = "http://example.org/";
+
+    private static final String PREFIXES =
+            "PREFIX geo: <" + Converter.GEOSPARQL_NAMESPACE + "> " +
+            "PREFIX geof: <" + Converter.GEOFUNCTIONS_NAMESPACE + "> ";
+
+    private static final String AREA = "\"POLYGON((10 10, 12 10, 12 12, 10 12, 10 10))\"^^geo:wktLiteral";
+
+    /**
+     * The number of geometries in the cache (placed on a grid of 1 x 1 squares)
+     */
+    @Param({"100", "2500"})
+    public int geometries;
+
+    private ExecutorService ioExecutor;
+    private ScheduledExecutorService internalTasksExecutor;
+    private LuposdateSemanticCache cache;
+
+    private Query restrictedQuery;
+    private Query unrestrictedQuery;
+
+    @Setup
+    public void setup() throws Exception {
+        ioExecutor = Executors.newCachedThreadPool();
+        internalTasksExecutor = Executors.newSingleThreadScheduledExecutor();
+        cache = new LuposdateSemanticCache(ioExecutor, internalTasksExecutor, 1);
+
+        int width = (int) Math.ceil(Math.sqrt(geometries));
+        Map<URI, Model> graphs = new HashMap<>();
+        for(int i = 0; i < geometries; i++) {
+            int x = i % width;
+            int y = i / width;
+            String wkt = "POLYGON((" + x + " " + y + ", " + (x + 1) + " " + y + ", " + (x + 1) + " " + (y + 1) +
+                    ", " + x + " " + (y + 1) + ", " + x + " " + y + "))";
+
+            Model graph = ModelFactory.createDefaultModel();
+            graph.createResource(NS + "room#" + i).addProperty(
+                    graph.createProperty(Converter.GEOSPARQL_NAMESPACE + "asWKT"),
+                    graph.createTypedLiteral(wkt, TypeMapper.getInstance().getSafeTypeByName(
+                            Converter.GEOSPARQL_NAMESPACE + "wktLiteral"))
+            );
+            graphs.put(URI.create(NS + "room#" + i), graph);
+        }
+        cache.putNamedGraphsToCache(graphs).get();
+
+        restrictedQuery = QueryFactory.create(PREFIXES +
+                "SELECT ?room WHERE { ?room geo:asWKT ?wkt . FILTER(geof:sfIntersects(?wkt, " + AREA + ")) }");
+        unrestrictedQuery = QueryFactory.create(PREFIXES +
+                "SELECT ?room WHERE { ?room geo:asWKT ?wkt . FILTER(!(!geof:sfIntersects(?wkt, " + AREA + "))) }");
+    }
+
+    @TearDown
+    public void tearDown() {
+        ioExecutor.shutdownNow();
+        internalTasksExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int restricted() throws Exception {
+        return ResultSetFormatter.consume(cache.processSparqlQuery(restrictedQuery).get().getResultSet());
+    }
+
+    @Benchmark
+    public int unrestricted() throws Exception {
+        return ResultSetFormatter.consume(cache.processSparqlQuery(unrestrictedQuery).get().getResultSet());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SpatialFilterBenchmark.class.getSimpleName()).build()).run();
+    }
+}